@@ -9,6 +9,7 @@ import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.filter.CharacterEncodingFilter;
 import org.zkoss.zk.au.http.DHtmlUpdateServlet;
 import org.zkoss.zk.ui.http.DHtmlLayoutServlet;
@@ -19,6 +20,7 @@ import javax.servlet.DispatcherType;
 import java.util.EnumSet;
 
 @SpringBootApplication
+@EnableScheduling
 @ComponentScan(basePackages = {
         "org.zkoss.reporte",
         "org.zkoss.reporte.viewmodel",
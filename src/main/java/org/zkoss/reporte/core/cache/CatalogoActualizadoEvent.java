@@ -0,0 +1,23 @@
+package org.zkoss.reporte.core.cache;
+
+import lombok.Getter;
+import org.zkoss.reporte.core.dto.response.MetadataQuery;
+
+import java.util.List;
+
+/**
+ * Se publica cada vez que se carga del backend el catálogo completo de queries: al arrancar,
+ * en cada refresco periódico y después de un alta, modificación o baja.
+ *
+ * La lista es la misma que queda en la caché del catálogo (inmodificable). Los listeners se
+ * ejecutan dentro de la carga, así que no deben volver a pedir el catálogo al servicio.
+ */
+@Getter
+public class CatalogoActualizadoEvent {
+
+    private final List<MetadataQuery> catalogo;
+
+    public CatalogoActualizadoEvent(List<MetadataQuery> catalogo) {
+        this.catalogo = catalogo;
+    }
+}
@@ -0,0 +1,124 @@
+package org.zkoss.reporte.core.cache;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.zkoss.reporte.core.dto.request.ConsultaQuery;
+import org.zkoss.reporte.core.dto.request.ParametrosFiltros;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Clave canónica de una ejecución: dos consultas equivalentes producen la misma clave
+ * aunque difieran en la forma de expresar los filtros.
+ *
+ * - Las fechas se llevan a ISO (yyyy-MM-dd) si llegan en otro formato conocido.
+ * - Los textos se recortan y los vacíos equivalen a null.
+ * - Las listas de consolidación y funciones no dependen del orden.
+ * - El lastKey se ordena por nombre de columna.
+ *
+ * La clave es el SHA-256 de la representación canónica.
+ */
+public final class ClaveConsulta {
+
+    private static final List<DateTimeFormatter> FORMATOS_FECHA = Collections.unmodifiableList(Arrays.asList(
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"),
+            DateTimeFormatter.BASIC_ISO_DATE));
+
+    private ClaveConsulta() {
+    }
+
+    public static String calcular(String codigo, ConsultaQuery consulta) {
+        return DigestUtils.sha256Hex(canonica(codigo, consulta));
+    }
+
+    /**
+     * Representación canónica en texto, útil para diagnóstico
+     */
+    public static String canonica(String codigo, ConsultaQuery consulta) {
+        StringBuilder texto = new StringBuilder(256);
+        agregar(texto, "codigo", texto(codigo));
+        if (consulta == null) {
+            return texto.toString();
+        }
+
+        agregar(texto, "nombreQuery", texto(consulta.getNombreQuery()));
+        agregar(texto, "formato", texto(consulta.getFormato()));
+
+        ParametrosFiltros filtros = consulta.getParametrosFiltros();
+        if (filtros != null) {
+            agregar(texto, "fechaInicio", fecha(filtros.getFechaInicio()));
+            agregar(texto, "fechaFin", fecha(filtros.getFechaFin()));
+            agregar(texto, "provincia", texto(filtros.getProvincia()));
+            agregar(texto, "municipio", texto(filtros.getMunicipio()));
+            agregar(texto, "consolidado", filtros.getConsolidado());
+            agregar(texto, "consolidacion", conjunto(filtros.getConsolidacion()));
+            agregar(texto, "periodoTemporal", texto(filtros.getPeriodoTemporal()));
+            agregar(texto, "funciones", conjunto(filtros.getFunciones()));
+            agregar(texto, "nivelConsolidacion", texto(filtros.getNivelConsolidacion()));
+            agregar(texto, "incluirSubtotales", filtros.getIncluirSubtotales());
+            agregar(texto, "usarTodasLasBDS", filtros.isUsarTodasLasBDS());
+            agregar(texto, "pagina", filtros.getPagina());
+            agregar(texto, "tamanoPagina", filtros.getTamanoPagina());
+            agregar(texto, "lastKey", filtros.getLastKey() != null ? new TreeMap<>(filtros.getLastKey()) : null);
+        }
+        return texto.toString();
+    }
+
+    private static void agregar(StringBuilder texto, String nombre, Object valor) {
+        if (valor != null) {
+            texto.append(nombre).append('=').append(valor).append('\u001f');
+        }
+    }
+
+    private static String texto(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        String recortado = valor.trim();
+        return recortado.isEmpty() ? null : recortado;
+    }
+
+    private static String fecha(String valor) {
+        String recortado = texto(valor);
+        if (recortado == null) {
+            return null;
+        }
+        for (DateTimeFormatter formato : FORMATOS_FECHA) {
+            try {
+                return LocalDate.parse(recortado, formato).toString();
+            } catch (DateTimeParseException e) {
+                // se prueba el siguiente formato
+            }
+        }
+        try {
+            return LocalDateTime.parse(recortado).toString();
+        } catch (DateTimeParseException e) {
+            return recortado;
+        }
+    }
+
+    private static List<String> conjunto(Collection<String> valores) {
+        if (valores == null || valores.isEmpty()) {
+            return null;
+        }
+        List<String> ordenados = new ArrayList<>(valores.size());
+        for (String valor : valores) {
+            String recortado = texto(valor);
+            if (recortado != null) {
+                ordenados.add(recortado);
+            }
+        }
+        Collections.sort(ordenados);
+        return ordenados;
+    }
+}
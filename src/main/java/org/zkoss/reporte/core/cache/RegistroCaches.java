@@ -0,0 +1,50 @@
+package org.zkoss.reporte.core.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro de las cachés de la aplicación para exponer sus estadísticas.
+ *
+ * Cada servicio construye sus propias cachés (con recordStats) y las registra con un nombre.
+ */
+@Component
+public class RegistroCaches {
+
+    private final Map<String, Cache<?, ?>> caches = new ConcurrentSkipListMap<>();
+
+    public void registrar(String nombre, Cache<?, ?> cache) {
+        caches.put(nombre, cache);
+    }
+
+    /**
+     * Aciertos, fallos, tiempo medio de carga y tamaño de cada caché registrada
+     */
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        for (Map.Entry<String, Cache<?, ?>> entrada : caches.entrySet()) {
+            estadisticas.put(entrada.getKey(), convertir(entrada.getValue()));
+        }
+        return estadisticas;
+    }
+
+    private Map<String, Object> convertir(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> valores = new LinkedHashMap<>();
+        valores.put("tamano", cache.estimatedSize());
+        valores.put("aciertos", stats.hitCount());
+        valores.put("fallos", stats.missCount());
+        valores.put("tasaAciertos", stats.hitRate());
+        valores.put("cargasExitosas", stats.loadSuccessCount());
+        valores.put("cargasFallidas", stats.loadFailureCount());
+        valores.put("tiempoMedioCargaMs", TimeUnit.NANOSECONDS.toMillis((long) stats.averageLoadPenalty()));
+        valores.put("desalojos", stats.evictionCount());
+        return valores;
+    }
+}
@@ -0,0 +1,105 @@
+package org.zkoss.reporte.core.consolidacion;
+
+import org.zkoss.reporte.core.model.columnar.Columna;
+import org.zkoss.reporte.core.model.columnar.ColumnaEntera;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.model.columnar.TipoColumna;
+
+import java.util.Arrays;
+
+/**
+ * Estado de agregación de un grupo: conteo, suma, mínimo y máximo por cada medida.
+ * Con esos cuatro valores se resuelven todas las {@link FuncionAgregacion} y dos
+ * acumuladores parciales se pueden combinar sin volver a recorrer las filas.
+ */
+final class AcumuladorGrupo {
+
+    private int primeraFila = Integer.MAX_VALUE;
+    private final long[] conteo;
+    private final double[] suma;
+    private final long[] sumaEntera;
+    private final double[] minimo;
+    private final double[] maximo;
+
+    AcumuladorGrupo(int medidas) {
+        conteo = new long[medidas];
+        suma = new double[medidas];
+        sumaEntera = new long[medidas];
+        minimo = new double[medidas];
+        maximo = new double[medidas];
+        Arrays.fill(minimo, Double.POSITIVE_INFINITY);
+        Arrays.fill(maximo, Double.NEGATIVE_INFINITY);
+    }
+
+    int getPrimeraFila() {
+        return primeraFila;
+    }
+
+    void acumular(ResultadoColumnar datos, int[] medidas, int fila) {
+        if (fila < primeraFila) {
+            primeraFila = fila;
+        }
+        for (int m = 0; m < medidas.length; m++) {
+            Columna columna = datos.getColumna(medidas[m]);
+            if (columna.esNulo(fila)) {
+                continue;
+            }
+
+            double valor;
+            if (columna.getTipo() == TipoColumna.ENTERO) {
+                long entero = ((ColumnaEntera) columna).getLong(fila);
+                sumaEntera[m] += entero;
+                valor = entero;
+            } else {
+                valor = columna.getDouble(fila);
+                if (Double.isNaN(valor)) {
+                    continue;
+                }
+            }
+
+            conteo[m]++;
+            suma[m] += valor;
+            if (valor < minimo[m]) {
+                minimo[m] = valor;
+            }
+            if (valor > maximo[m]) {
+                maximo[m] = valor;
+            }
+        }
+    }
+
+    void combinar(AcumuladorGrupo otro) {
+        primeraFila = Math.min(primeraFila, otro.primeraFila);
+        for (int m = 0; m < conteo.length; m++) {
+            conteo[m] += otro.conteo[m];
+            suma[m] += otro.suma[m];
+            sumaEntera[m] += otro.sumaEntera[m];
+            minimo[m] = Math.min(minimo[m], otro.minimo[m]);
+            maximo[m] = Math.max(maximo[m], otro.maximo[m]);
+        }
+    }
+
+    /**
+     * Valor final de la función para la medida. Las columnas enteras conservan el tipo
+     * en SUM, MAX y MIN; AVG siempre es decimal. Sin valores no nulos el resultado es null
+     * (salvo COUNT, que es 0).
+     */
+    Object resultado(int medida, FuncionAgregacion funcion, boolean entera) {
+        if (funcion == FuncionAgregacion.COUNT) {
+            return conteo[medida];
+        }
+        if (conteo[medida] == 0) {
+            return null;
+        }
+        switch (funcion) {
+            case SUM:
+                return entera ? (Object) sumaEntera[medida] : (Object) suma[medida];
+            case AVG:
+                return suma[medida] / conteo[medida];
+            case MAX:
+                return entera ? (Object) (long) maximo[medida] : (Object) maximo[medida];
+            default:
+                return entera ? (Object) (long) minimo[medida] : (Object) minimo[medida];
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.zkoss.reporte.core.consolidacion;
+
+import org.zkoss.reporte.core.model.columnar.Columna;
+import org.zkoss.reporte.core.model.columnar.ColumnaBooleana;
+import org.zkoss.reporte.core.model.columnar.ColumnaEntera;
+import org.zkoss.reporte.core.model.columnar.ColumnaTexto;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+
+import java.util.Arrays;
+
+/**
+ * Clave de agrupación de una fila. Los valores se codifican como long según el tipo de columna
+ * (código de diccionario para texto, bits del double para decimales) para no boxear por fila;
+ * solo las columnas de tipo OBJETO guardan la referencia al valor.
+ */
+final class ClaveGrupo {
+
+    private final long[] partes;
+    private final Object[] objetos;
+    private final long nulos;
+    private final int hash;
+
+    private ClaveGrupo(long[] partes, Object[] objetos, long nulos) {
+        this.partes = partes;
+        this.objetos = objetos;
+        this.nulos = nulos;
+        this.hash = 31 * (31 * Arrays.hashCode(partes) + Arrays.hashCode(objetos)) + Long.hashCode(nulos);
+    }
+
+    static ClaveGrupo de(ResultadoColumnar datos, int[] columnas, int fila) {
+        long[] partes = new long[columnas.length];
+        Object[] objetos = null;
+        long nulos = 0;
+
+        for (int i = 0; i < columnas.length; i++) {
+            Columna columna = datos.getColumna(columnas[i]);
+            if (columna.esNulo(fila)) {
+                nulos |= 1L << i;
+                continue;
+            }
+            switch (columna.getTipo()) {
+                case TEXTO:
+                    partes[i] = ((ColumnaTexto) columna).getCodigo(fila);
+                    break;
+                case ENTERO:
+                    partes[i] = ((ColumnaEntera) columna).getLong(fila);
+                    break;
+                case DECIMAL:
+                    partes[i] = Double.doubleToLongBits(columna.getDouble(fila));
+                    break;
+                case BOOLEANO:
+                    partes[i] = ((ColumnaBooleana) columna).getBoolean(fila) ? 1 : 0;
+                    break;
+                default:
+                    if (objetos == null) {
+                        objetos = new Object[columnas.length];
+                    }
+                    objetos[i] = columna.getValor(fila);
+            }
+        }
+        return new ClaveGrupo(partes, objetos, nulos);
+    }
+
+    /**
+     * Clave reducida a las dimensiones de la máscara (bit i = dimensión i).
+     * Las dimensiones excluidas quedan en cero para que todas las filas coincidan en ellas.
+     */
+    ClaveGrupo proyectar(long mascara) {
+        long[] reducidas = new long[partes.length];
+        Object[] objetosReducidos = null;
+        for (int i = 0; i < partes.length; i++) {
+            if ((mascara & (1L << i)) != 0) {
+                reducidas[i] = partes[i];
+                if (objetos != null && objetos[i] != null) {
+                    if (objetosReducidos == null) {
+                        objetosReducidos = new Object[partes.length];
+                    }
+                    objetosReducidos[i] = objetos[i];
+                }
+            }
+        }
+        return new ClaveGrupo(reducidas, objetosReducidos, nulos & mascara);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClaveGrupo)) {
+            return false;
+        }
+        ClaveGrupo otra = (ClaveGrupo) o;
+        return hash == otra.hash
+                && nulos == otra.nulos
+                && Arrays.equals(partes, otra.partes)
+                && Arrays.equals(objetos, otra.objetos);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
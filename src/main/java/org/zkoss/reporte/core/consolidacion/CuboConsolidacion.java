@@ -0,0 +1,320 @@
+package org.zkoss.reporte.core.consolidacion;
+
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnarBuilder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Agregados precalculados de un resultado sobre un conjunto de dimensiones.
+ *
+ * Las filas originales se recorren una sola vez para obtener los grupos del nivel más fino;
+ * cada combinación de dimensiones (cuboide) se deriva de esos grupos sin volver a las filas.
+ * Con pocas dimensiones se precalculan todas las combinaciones (CUBE); con más, solo los
+ * prefijos en el orden de las dimensiones (ROLLUP) y el resto se deriva bajo demanda.
+ *
+ * Cada cuboide se identifica por una máscara de bits: el bit i indica que la dimensión i
+ * participa en la agrupación. Los acumuladores guardan conteo, suma, mínimo y máximo, por
+ * lo que cambiar de función de agregación tampoco requiere recalcular.
+ *
+ * Inmutable una vez construido; las consultas pueden hacerse desde varios hilos.
+ */
+public final class CuboConsolidacion {
+
+    public static final String COLUMNA_TIPO_FILA = "tipo_fila";
+    public static final String FILA_DETALLE = "DETALLE";
+    public static final String FILA_SUBTOTAL = "SUBTOTAL";
+    public static final String FILA_TOTAL = "TOTAL";
+
+    private final ResultadoColumnar datos;
+    private final MotorConsolidacion.Plan plan;
+    private final long mascaraCompleta;
+    private final Map<Long, Map<ClaveGrupo, AcumuladorGrupo>> cuboides = new ConcurrentHashMap<>();
+
+    CuboConsolidacion(ResultadoColumnar datos,
+                      MotorConsolidacion.Plan plan,
+                      Map<ClaveGrupo, AcumuladorGrupo> base,
+                      boolean cuboCompleto) {
+        this.datos = datos;
+        this.plan = plan;
+        this.mascaraCompleta = (1L << plan.agrupacion.length) - 1;
+        cuboides.put(mascaraCompleta, base);
+
+        if (cuboCompleto) {
+            for (long mascara = 0; mascara < mascaraCompleta; mascara++) {
+                cuboides.put(mascara, derivar(mascara));
+            }
+        } else {
+            for (int prefijo = 0; prefijo < plan.agrupacion.length; prefijo++) {
+                long mascara = (1L << prefijo) - 1;
+                cuboides.put(mascara, derivar(mascara));
+            }
+        }
+    }
+
+    public List<String> getDimensiones() {
+        return Collections.unmodifiableList(plan.nombresAgrupacion);
+    }
+
+    public List<String> getMedidas() {
+        return Collections.unmodifiableList(plan.nombresMedida);
+    }
+
+    public int getCuboidesCalculados() {
+        return cuboides.size();
+    }
+
+    /**
+     * Indica si el cubo puede responder a una consulta con estos campos.
+     */
+    public boolean contiene(Collection<String> campos, Collection<String> medidas) {
+        return plan.nombresAgrupacion.containsAll(campos)
+                && (medidas == null || plan.nombresMedida.containsAll(medidas));
+    }
+
+    /**
+     * Resultado consolidado por los campos indicados, en el orden indicado.
+     *
+     * @param campos Dimensiones de agrupación; deben pertenecer al cubo
+     * @param medidas Medidas a mostrar; vacío para todas las del cubo
+     * @param funciones Funciones a aplicar; vacío para SUM
+     * @param subtotales Si es true se intercalan filas de subtotal por cada prefijo de
+     *                   {@code campos} y una fila de total general, con la columna {@value #COLUMNA_TIPO_FILA}
+     */
+    public ResultadoColumnar consultar(List<String> campos,
+                                       List<String> medidas,
+                                       Collection<FuncionAgregacion> funciones,
+                                       boolean subtotales) {
+        int[] dimensiones = new int[campos.size()];
+        for (int i = 0; i < dimensiones.length; i++) {
+            dimensiones[i] = plan.nombresAgrupacion.indexOf(campos.get(i));
+            if (dimensiones[i] < 0) {
+                throw new IllegalArgumentException("El campo '" + campos.get(i) + "' no es una dimensión del cubo");
+            }
+        }
+
+        int[] indicesMedida = resolverMedidas(medidas);
+        List<FuncionAgregacion> listaFunciones = funciones == null || funciones.isEmpty()
+                ? Collections.singletonList(FuncionAgregacion.SUM)
+                : new ArrayList<>(EnumSet.copyOf(funciones));
+
+        // Máscara de cada prefijo de la selección: mascaras[k] agrupa por las primeras k dimensiones
+        long[] mascaras = new long[dimensiones.length + 1];
+        for (int k = 1; k <= dimensiones.length; k++) {
+            mascaras[k] = mascaras[k - 1] | (1L << dimensiones[k - 1]);
+        }
+
+        List<String> columnas = new ArrayList<>(campos);
+        for (int m : indicesMedida) {
+            for (FuncionAgregacion funcion : listaFunciones) {
+                String nombre = plan.nombresMedida.get(m);
+                columnas.add(listaFunciones.size() == 1 ? nombre : nombre + "_" + funcion.getSufijo());
+            }
+        }
+        if (subtotales) {
+            columnas.add(COLUMNA_TIPO_FILA);
+        }
+
+        Salida salida = new Salida(columnas, dimensiones, indicesMedida, listaFunciones, subtotales);
+        Map<ClaveGrupo, AcumuladorGrupo> detalle = cuboide(mascaras[dimensiones.length]);
+
+        if (!subtotales) {
+            List<AcumuladorGrupo> grupos = new ArrayList<>(detalle.values());
+            grupos.sort(Comparator.comparingInt(AcumuladorGrupo::getPrimeraFila));
+            for (AcumuladorGrupo grupo : grupos) {
+                salida.agregar(grupo, dimensiones.length, FILA_DETALLE);
+            }
+            return salida.construir();
+        }
+
+        return consultarConSubtotales(detalle, mascaras, salida);
+    }
+
+    // ===== SUBTOTALES =====
+
+    /**
+     * Ordena el detalle jerárquicamente (cada nivel por orden de aparición) y cierra cada
+     * grupo de nivel superior con su fila de subtotal, tomada del cuboide correspondiente.
+     */
+    private ResultadoColumnar consultarConSubtotales(Map<ClaveGrupo, AcumuladorGrupo> detalle,
+                                                     long[] mascaras,
+                                                     Salida salida) {
+        int niveles = mascaras.length - 1;
+
+        // Rango de cada grupo de cada nivel según su primera aparición
+        List<Map<ClaveGrupo, Integer>> rangos = new ArrayList<>();
+        rangos.add(Collections.emptyMap());
+        for (int k = 1; k < niveles; k++) {
+            List<Map.Entry<ClaveGrupo, AcumuladorGrupo>> entradas = new ArrayList<>(cuboide(mascaras[k]).entrySet());
+            entradas.sort(Comparator.comparingInt(e -> e.getValue().getPrimeraFila()));
+            Map<ClaveGrupo, Integer> rango = new HashMap<>();
+            for (int i = 0; i < entradas.size(); i++) {
+                rango.put(entradas.get(i).getKey(), i);
+            }
+            rangos.add(rango);
+        }
+
+        List<FilaOrdenada> filas = new ArrayList<>(detalle.size());
+        for (Map.Entry<ClaveGrupo, AcumuladorGrupo> entrada : detalle.entrySet()) {
+            ClaveGrupo[] prefijos = new ClaveGrupo[niveles];
+            int[] orden = new int[niveles];
+            for (int k = 1; k < niveles; k++) {
+                prefijos[k] = entrada.getKey().proyectar(mascaras[k]);
+                orden[k - 1] = rangos.get(k).get(prefijos[k]);
+            }
+            if (niveles > 0) {
+                orden[niveles - 1] = entrada.getValue().getPrimeraFila();
+            }
+            filas.add(new FilaOrdenada(entrada.getValue(), prefijos, orden));
+        }
+        filas.sort((a, b) -> {
+            for (int i = 0; i < a.orden.length; i++) {
+                int comparacion = Integer.compare(a.orden[i], b.orden[i]);
+                if (comparacion != 0) {
+                    return comparacion;
+                }
+            }
+            return 0;
+        });
+
+        FilaOrdenada anterior = null;
+        for (FilaOrdenada fila : filas) {
+            if (anterior != null) {
+                cerrarSubtotales(anterior, primerNivelDistinto(anterior, fila), mascaras, salida);
+            }
+            salida.agregar(fila.grupo, niveles, FILA_DETALLE);
+            anterior = fila;
+        }
+        if (anterior != null && niveles > 0) {
+            cerrarSubtotales(anterior, 1, mascaras, salida);
+            for (AcumuladorGrupo total : cuboide(0L).values()) {
+                salida.agregar(total, 0, FILA_TOTAL);
+            }
+        }
+        return salida.construir();
+    }
+
+    /**
+     * Primer nivel (1-based) cuyo prefijo cambia entre dos filas consecutivas del detalle.
+     */
+    private static int primerNivelDistinto(FilaOrdenada anterior, FilaOrdenada actual) {
+        for (int k = 1; k < anterior.prefijos.length; k++) {
+            if (!anterior.prefijos[k].equals(actual.prefijos[k])) {
+                return k;
+            }
+        }
+        return anterior.prefijos.length;
+    }
+
+    /**
+     * Emite los subtotales de la fila anterior desde el nivel más profundo hasta {@code hastaNivel}.
+     */
+    private void cerrarSubtotales(FilaOrdenada anterior, int hastaNivel, long[] mascaras, Salida salida) {
+        for (int k = anterior.prefijos.length - 1; k >= hastaNivel; k--) {
+            AcumuladorGrupo subtotal = cuboide(mascaras[k]).get(anterior.prefijos[k]);
+            salida.agregar(subtotal, k, FILA_SUBTOTAL);
+        }
+    }
+
+    private static final class FilaOrdenada {
+        private final AcumuladorGrupo grupo;
+        private final ClaveGrupo[] prefijos;  // prefijos[k] = clave del grupo en el nivel k (k >= 1)
+        private final int[] orden;
+
+        private FilaOrdenada(AcumuladorGrupo grupo, ClaveGrupo[] prefijos, int[] orden) {
+            this.grupo = grupo;
+            this.prefijos = prefijos;
+            this.orden = orden;
+        }
+    }
+
+    // ===== CUBOIDES =====
+
+    private Map<ClaveGrupo, AcumuladorGrupo> cuboide(long mascara) {
+        return cuboides.computeIfAbsent(mascara, this::derivar);
+    }
+
+    /**
+     * Agrega los grupos del nivel más fino proyectados sobre la máscara.
+     */
+    private Map<ClaveGrupo, AcumuladorGrupo> derivar(long mascara) {
+        Map<ClaveGrupo, AcumuladorGrupo> base = cuboides.get(mascaraCompleta);
+        Map<ClaveGrupo, AcumuladorGrupo> resultado = new HashMap<>();
+        for (Map.Entry<ClaveGrupo, AcumuladorGrupo> entrada : base.entrySet()) {
+            ClaveGrupo clave = entrada.getKey().proyectar(mascara);
+            AcumuladorGrupo acumulador = resultado.get(clave);
+            if (acumulador == null) {
+                acumulador = new AcumuladorGrupo(plan.medidas.length);
+                resultado.put(clave, acumulador);
+            }
+            acumulador.combinar(entrada.getValue());
+        }
+        return resultado;
+    }
+
+    private int[] resolverMedidas(List<String> medidas) {
+        if (medidas == null || medidas.isEmpty()) {
+            int[] todas = new int[plan.medidas.length];
+            for (int i = 0; i < todas.length; i++) {
+                todas[i] = i;
+            }
+            return todas;
+        }
+        List<Integer> indices = new ArrayList<>();
+        for (String medida : medidas) {
+            int indice = plan.nombresMedida.indexOf(medida);
+            if (indice >= 0 && !indices.contains(indice)) {
+                indices.add(indice);
+            }
+        }
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Arma las filas de salida a partir de los acumuladores.
+     */
+    private final class Salida {
+        private final ResultadoColumnarBuilder builder;
+        private final int[] dimensiones;
+        private final int[] medidas;
+        private final List<FuncionAgregacion> funciones;
+        private final boolean conTipo;
+        private final Object[] fila;
+
+        private Salida(List<String> columnas, int[] dimensiones, int[] medidas,
+                       List<FuncionAgregacion> funciones, boolean conTipo) {
+            this.builder = new ResultadoColumnarBuilder(columnas);
+            this.dimensiones = dimensiones;
+            this.medidas = medidas;
+            this.funciones = funciones;
+            this.conTipo = conTipo;
+            this.fila = new Object[columnas.size()];
+        }
+
+        /**
+         * Las dimensiones a partir de {@code nivel} quedan en null.
+         */
+        private void agregar(AcumuladorGrupo grupo, int nivel, String tipo) {
+            int posicion = 0;
+            for (int d = 0; d < dimensiones.length; d++) {
+                fila[posicion++] = d < nivel
+                        ? datos.getValor(grupo.getPrimeraFila(), plan.agrupacion[dimensiones[d]])
+                        : null;
+            }
+            for (int m : medidas) {
+                for (FuncionAgregacion funcion : funciones) {
+                    fila[posicion++] = grupo.resultado(m, funcion, plan.medidaEntera[m]);
+                }
+            }
+            if (conTipo) {
+                fila[posicion] = tipo;
+            }
+            builder.agregarFila(fila, fila.length);
+        }
+
+        private ResultadoColumnar construir() {
+            return builder.construir();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.zkoss.reporte.core.consolidacion;
+
+/**
+ * Funciones de agregación disponibles en la consolidación local.
+ */
+public enum FuncionAgregacion {
+    SUM("suma"),
+    AVG("promedio"),
+    COUNT("conteo"),
+    MAX("maximo"),
+    MIN("minimo");
+
+    private final String sufijo;
+
+    FuncionAgregacion(String sufijo) {
+        this.sufijo = sufijo;
+    }
+
+    /**
+     * Sufijo de la columna resultante cuando se aplica más de una función.
+     */
+    public String getSufijo() {
+        return sufijo;
+    }
+}
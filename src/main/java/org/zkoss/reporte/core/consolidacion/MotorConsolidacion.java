@@ -0,0 +1,331 @@
+package org.zkoss.reporte.core.consolidacion;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.zkoss.reporte.core.model.columnar.Columna;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnarBuilder;
+import org.zkoss.reporte.core.model.columnar.TipoColumna;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Consolidación (group-by + agregación) en memoria sobre un {@link ResultadoColumnar}.
+ *
+ * Permite reagrupar un resultado ya obtenido del backend por cualquier combinación de campos
+ * sin volver a consultarlo. Las filas se reparten en bloques que se agregan en paralelo con
+ * fork/join; cada bloque produce un mapa parcial de grupos y los parciales se combinan al unir.
+ *
+ * El orden de los grupos en el resultado es el de su primera aparición en los datos.
+ */
+@Component
+@Slf4j
+public class MotorConsolidacion {
+
+    // Filas por bloque por debajo del cual no se divide más la tarea
+    static final int UMBRAL_BLOQUE = 32_768;
+
+    private final ForkJoinPool pool;
+
+    public MotorConsolidacion(@Qualifier("consolidacionPool") ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Consolida los datos.
+     *
+     * @param datos Resultado original, sin consolidar
+     * @param camposAgrupacion Campos por los que se agrupa (los inexistentes se ignoran)
+     * @param camposMedida Campos numéricos a agregar; si está vacío se usan todas las columnas
+     *                     numéricas que no son de agrupación
+     * @param funciones Funciones a aplicar sobre cada medida; si está vacío se usa SUM
+     * @return Resultado con una fila por grupo: campos de agrupación seguidos de las medidas agregadas
+     */
+    public ResultadoColumnar consolidar(ResultadoColumnar datos,
+                                        List<String> camposAgrupacion,
+                                        List<String> camposMedida,
+                                        Collection<FuncionAgregacion> funciones) {
+        long inicio = System.currentTimeMillis();
+        Plan plan = planificar(datos, camposAgrupacion, camposMedida, funciones);
+        Map<ClaveGrupo, AcumuladorGrupo> grupos = agregar(datos, plan);
+
+        ResultadoColumnar resultado = construirResultado(datos, plan, grupos.values());
+
+        log.debug("Consolidación local: {} filas -> {} grupos por {} en {} ms",
+                datos.getCantidadFilas(), resultado.getCantidadFilas(), plan.nombresAgrupacion,
+                System.currentTimeMillis() - inicio);
+        return resultado;
+    }
+
+    /**
+     * Precalcula los agregados de todas las combinaciones de dimensiones (o solo sus prefijos
+     * si hay más de {@code maxDimensionesCubo}) con una única pasada sobre las filas.
+     *
+     * @param dimensiones Campos de agrupación candidatos, en orden jerárquico
+     * @param camposMedida Medidas; vacío para todas las columnas numéricas restantes
+     * @param maxDimensionesCubo Hasta cuántas dimensiones se calculan todas las combinaciones
+     */
+    public CuboConsolidacion construirCubo(ResultadoColumnar datos,
+                                           List<String> dimensiones,
+                                           List<String> camposMedida,
+                                           int maxDimensionesCubo) {
+        long inicio = System.currentTimeMillis();
+        Plan plan = planificar(datos, dimensiones, camposMedida, null);
+        Map<ClaveGrupo, AcumuladorGrupo> base = agregar(datos, plan);
+
+        CuboConsolidacion cubo = new CuboConsolidacion(datos, plan, base,
+                plan.agrupacion.length <= maxDimensionesCubo);
+
+        log.debug("Cubo de consolidación: {} filas, {} dimensiones, {} grupos base, {} cuboides en {} ms",
+                datos.getCantidadFilas(), plan.agrupacion.length, base.size(),
+                cubo.getCuboidesCalculados(), System.currentTimeMillis() - inicio);
+        return cubo;
+    }
+
+    /**
+     * Construye el cubo en el pool de consolidación sin bloquear al llamador.
+     */
+    public CompletableFuture<CuboConsolidacion> construirCuboAsync(ResultadoColumnar datos,
+                                                                   List<String> dimensiones,
+                                                                   List<String> camposMedida,
+                                                                   int maxDimensionesCubo) {
+        return CompletableFuture.supplyAsync(
+                () -> construirCubo(datos, dimensiones, camposMedida, maxDimensionesCubo), pool);
+    }
+
+    /**
+     * Medidas que se agregan al consolidar por {@code camposAgrupacion}: las pedidas que existen
+     * y no son de agrupación o, si no se pide ninguna, todas las columnas numéricas que no son
+     * de agrupación.
+     *
+     * Quien elige entre el cubo y la consolidación directa debe resolverlas antes, para que
+     * ambos caminos devuelvan las mismas columnas.
+     */
+    public static List<String> resolverMedidas(ResultadoColumnar datos,
+                                               List<String> camposAgrupacion,
+                                               List<String> camposMedida) {
+        Set<Integer> excluidas = new HashSet<>();
+        if (camposAgrupacion != null) {
+            for (String campo : camposAgrupacion) {
+                excluidas.add(datos.posicion(campo));
+            }
+        }
+
+        List<String> medidas = new ArrayList<>();
+        if (camposMedida != null && !camposMedida.isEmpty()) {
+            for (String campo : camposMedida) {
+                int posicion = datos.posicion(campo);
+                if (posicion >= 0 && excluidas.add(posicion)) {
+                    medidas.add(datos.getColumna(posicion).getNombre());
+                }
+            }
+        } else {
+            for (int c = 0; c < datos.getCantidadColumnas(); c++) {
+                if (!excluidas.contains(c) && datos.getColumna(c).esNumerica()) {
+                    medidas.add(datos.getColumna(c).getNombre());
+                }
+            }
+        }
+        return medidas;
+    }
+
+    private Map<ClaveGrupo, AcumuladorGrupo> agregar(ResultadoColumnar datos, Plan plan) {
+        TareaAgregacion tarea = new TareaAgregacion(datos, plan, 0, datos.getCantidadFilas());
+        if (datos.getCantidadFilas() <= UMBRAL_BLOQUE) {
+            return tarea.compute();
+        }
+        // Desde un hilo del propio pool se divide en el mismo pool sin bloquear un worker
+        return ForkJoinTask.inForkJoinPool() ? tarea.invoke() : pool.invoke(tarea);
+    }
+
+    // ===== PLAN =====
+
+    /**
+     * Posiciones de columnas y funciones resueltas una sola vez antes de recorrer las filas.
+     */
+    static final class Plan {
+        final int[] agrupacion;
+        final int[] medidas;
+        final boolean[] medidaEntera;
+        final List<String> nombresAgrupacion = new ArrayList<>();
+        final List<String> nombresMedida = new ArrayList<>();
+        final List<FuncionAgregacion> funciones;
+
+        private Plan(int[] agrupacion, int[] medidas, boolean[] medidaEntera, List<FuncionAgregacion> funciones) {
+            this.agrupacion = agrupacion;
+            this.medidas = medidas;
+            this.medidaEntera = medidaEntera;
+            this.funciones = funciones;
+        }
+
+        /**
+         * Nombre de la columna de salida. Con una sola función se conserva el nombre de la medida.
+         */
+        String nombreSalida(int medida, FuncionAgregacion funcion) {
+            String nombre = nombresMedida.get(medida);
+            return funciones.size() == 1 ? nombre : nombre + "_" + funcion.getSufijo();
+        }
+    }
+
+    static Plan planificar(ResultadoColumnar datos,
+                           List<String> camposAgrupacion,
+                           List<String> camposMedida,
+                           Collection<FuncionAgregacion> funciones) {
+        List<Integer> agrupacion = new ArrayList<>();
+        Set<Integer> enAgrupacion = new HashSet<>();
+        if (camposAgrupacion != null) {
+            for (String campo : camposAgrupacion) {
+                int posicion = datos.posicion(campo);
+                if (posicion >= 0 && enAgrupacion.add(posicion)) {
+                    agrupacion.add(posicion);
+                }
+            }
+        }
+        if (agrupacion.size() > 63) {
+            throw new IllegalArgumentException("Demasiados campos de agrupación: " + agrupacion.size());
+        }
+
+        List<Integer> medidas = new ArrayList<>();
+        for (String campo : resolverMedidas(datos, camposAgrupacion, camposMedida)) {
+            medidas.add(datos.posicion(campo));
+        }
+
+        List<FuncionAgregacion> listaFunciones = funciones == null || funciones.isEmpty()
+                ? Collections.singletonList(FuncionAgregacion.SUM)
+                : new ArrayList<>(EnumSet.copyOf(funciones));
+
+        int[] posicionesMedida = medidas.stream().mapToInt(Integer::intValue).toArray();
+        boolean[] enteras = new boolean[posicionesMedida.length];
+        for (int m = 0; m < posicionesMedida.length; m++) {
+            enteras[m] = datos.getColumna(posicionesMedida[m]).getTipo() == TipoColumna.ENTERO;
+        }
+
+        Plan plan = new Plan(agrupacion.stream().mapToInt(Integer::intValue).toArray(),
+                posicionesMedida, enteras, listaFunciones);
+        for (int c : plan.agrupacion) {
+            plan.nombresAgrupacion.add(datos.getColumna(c).getNombre());
+        }
+        for (int c : plan.medidas) {
+            plan.nombresMedida.add(datos.getColumna(c).getNombre());
+        }
+        return plan;
+    }
+
+    // ===== AGREGACIÓN PARALELA =====
+
+    private static final class TareaAgregacion extends RecursiveTask<Map<ClaveGrupo, AcumuladorGrupo>> {
+
+        private final ResultadoColumnar datos;
+        private final Plan plan;
+        private final int desde;
+        private final int hasta;
+
+        private TareaAgregacion(ResultadoColumnar datos, Plan plan, int desde, int hasta) {
+            this.datos = datos;
+            this.plan = plan;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected Map<ClaveGrupo, AcumuladorGrupo> compute() {
+            if (hasta - desde <= UMBRAL_BLOQUE) {
+                return agregarBloque();
+            }
+
+            int medio = (desde + hasta) >>> 1;
+            TareaAgregacion izquierda = new TareaAgregacion(datos, plan, desde, medio);
+            TareaAgregacion derecha = new TareaAgregacion(datos, plan, medio, hasta);
+            izquierda.fork();
+            Map<ClaveGrupo, AcumuladorGrupo> resultadoDerecha = derecha.compute();
+            Map<ClaveGrupo, AcumuladorGrupo> resultadoIzquierda = izquierda.join();
+            return combinar(resultadoIzquierda, resultadoDerecha);
+        }
+
+        private Map<ClaveGrupo, AcumuladorGrupo> agregarBloque() {
+            Map<ClaveGrupo, AcumuladorGrupo> grupos = new HashMap<>();
+            for (int fila = desde; fila < hasta; fila++) {
+                ClaveGrupo clave = ClaveGrupo.de(datos, plan.agrupacion, fila);
+                AcumuladorGrupo acumulador = grupos.get(clave);
+                if (acumulador == null) {
+                    acumulador = new AcumuladorGrupo(plan.medidas.length);
+                    grupos.put(clave, acumulador);
+                }
+                acumulador.acumular(datos, plan.medidas, fila);
+            }
+            return grupos;
+        }
+
+        /**
+         * Vuelca el mapa más chico sobre el más grande.
+         */
+        private static Map<ClaveGrupo, AcumuladorGrupo> combinar(Map<ClaveGrupo, AcumuladorGrupo> a,
+                                                                 Map<ClaveGrupo, AcumuladorGrupo> b) {
+            Map<ClaveGrupo, AcumuladorGrupo> mayor = a.size() >= b.size() ? a : b;
+            Map<ClaveGrupo, AcumuladorGrupo> menor = mayor == a ? b : a;
+            for (Map.Entry<ClaveGrupo, AcumuladorGrupo> entrada : menor.entrySet()) {
+                AcumuladorGrupo existente = mayor.get(entrada.getKey());
+                if (existente == null) {
+                    mayor.put(entrada.getKey(), entrada.getValue());
+                } else {
+                    existente.combinar(entrada.getValue());
+                }
+            }
+            return mayor;
+        }
+    }
+
+    // ===== RESULTADO =====
+
+    static List<String> columnasSalida(Plan plan) {
+        List<String> columnas = new ArrayList<>(plan.nombresAgrupacion);
+        for (int m = 0; m < plan.medidas.length; m++) {
+            for (FuncionAgregacion funcion : plan.funciones) {
+                columnas.add(plan.nombreSalida(m, funcion));
+            }
+        }
+        return columnas;
+    }
+
+    /**
+     * Una fila por grupo. Los valores de agrupación se leen de la primera fila del grupo.
+     */
+    private static ResultadoColumnar construirResultado(ResultadoColumnar datos,
+                                                        Plan plan,
+                                                        Collection<AcumuladorGrupo> grupos) {
+        List<AcumuladorGrupo> ordenados = new ArrayList<>(grupos);
+        ordenados.sort(Comparator.comparingInt(AcumuladorGrupo::getPrimeraFila));
+
+        List<String> columnas = columnasSalida(plan);
+        ResultadoColumnarBuilder builder = new ResultadoColumnarBuilder(columnas);
+        Object[] fila = new Object[columnas.size()];
+
+        for (AcumuladorGrupo grupo : ordenados) {
+            llenarFila(datos, plan, grupo, fila, -1L);
+            builder.agregarFila(fila, fila.length);
+        }
+        return builder.construir();
+    }
+
+    /**
+     * Carga en {@code fila} los valores de agrupación y las medidas del grupo.
+     * Las dimensiones fuera de {@code mascara} quedan en null (usado por los subtotales).
+     */
+    static void llenarFila(ResultadoColumnar datos, Plan plan, AcumuladorGrupo grupo, Object[] fila, long mascara) {
+        int posicion = 0;
+        for (int d = 0; d < plan.agrupacion.length; d++) {
+            Columna columna = datos.getColumna(plan.agrupacion[d]);
+            fila[posicion++] = (mascara & (1L << d)) != 0 ? columna.getValor(grupo.getPrimeraFila()) : null;
+        }
+        for (int m = 0; m < plan.medidas.length; m++) {
+            for (FuncionAgregacion funcion : plan.funciones) {
+                fila[posicion++] = grupo.resultado(m, funcion, plan.medidaEntera[m]);
+            }
+        }
+    }
+}
@@ -6,9 +6,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ParametrosFiltros {
@@ -24,10 +25,14 @@ public class ParametrosFiltros {
     private Boolean consolidado;
     private List<String> consolidacion;
     private String periodoTemporal;
+    private List<String> funciones;  // SUM, AVG, COUNT, MAX, MIN
+    private String nivelConsolidacion;
+    private Boolean incluirSubtotales;
 
     private boolean usarTodasLasBDS;
 
     // Paginación
     private Integer pagina;
     private Integer tamanoPagina;
-}
\ No newline at end of file
+    private Map<String, Object> lastKey;  // Clave de la última fila de la página anterior (keyset pagination)
+}
@@ -0,0 +1,18 @@
+package org.zkoss.reporte.core.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class SolicitudExportacion {
+    private String tipoConsulta;
+    private ConsultaQuery consulta;   // formatos "excel", "pdf", "csv-zip" y "csv-gz" los genera este servidor; otros, el backend
+    private String nombre;            // Nombre descriptivo del archivo y de la hoja
+    private boolean porProvincia;     // Un libro por provincia, en un zip (solo Excel)
+    private String vista;             // Filtros rápidos y orden aplicados a los datos en memoria
+}
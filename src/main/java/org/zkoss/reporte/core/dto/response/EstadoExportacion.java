@@ -0,0 +1,39 @@
+package org.zkoss.reporte.core.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadoExportacion {
+
+    public static final String ESTADO_EN_COLA = "EN_COLA";
+    public static final String ESTADO_EN_CURSO = "EN_CURSO";
+    public static final String ESTADO_COMPLETADO = "COMPLETADO";
+    public static final String ESTADO_ERROR = "ERROR";
+    public static final String ESTADO_CANCELADO = "CANCELADO";
+    public static final String ESTADO_EXPIRADO = "EXPIRADO";
+
+    private String id;
+    private String nombreArchivo;
+    private String estado;  // EN_COLA, EN_CURSO, COMPLETADO, ERROR, CANCELADO, EXPIRADO (archivo ya borrado)
+    private Long filas;     // Filas escritas hasta el momento
+    private Boolean reutilizado;  // El archivo ya estaba generado por una exportación idéntica
+    private String error;
+    private Long bytes;            // Tamaño del archivo generado
+    private Long duracionMs;       // Tiempo de generación (0 si se reutilizó un archivo)
+    private Long bytesPorSegundo;  // Ritmo de escritura del archivo; null si no se generó
+    private LocalDateTime fechaCreacion;
+    private LocalDateTime fechaFin;
+
+    public boolean isTerminado() {
+        return ESTADO_COMPLETADO.equals(estado) || ESTADO_ERROR.equals(estado) || ESTADO_CANCELADO.equals(estado)
+                || ESTADO_EXPIRADO.equals(estado);
+    }
+}
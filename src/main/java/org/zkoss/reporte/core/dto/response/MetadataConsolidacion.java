@@ -8,7 +8,7 @@ import lombok.NoArgsConstructor;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class MetadataConsolidacion {
@@ -16,8 +16,10 @@ public class MetadataConsolidacion {
     private Boolean consolidado;
     private List<String> camposAgrupacion;
     private List<String> camposNumericos;
+    private List<String> funciones;
     private String periodoTemporal;  // DIARIO, MENSUAL, etc
     private Integer registrosOriginales;  // Antes de consolidar
     private Integer registrosConsolidados;  // Después de consolidar
+    private Boolean local;  // Consolidado en este cliente sobre datos ya obtenidos
 
 }
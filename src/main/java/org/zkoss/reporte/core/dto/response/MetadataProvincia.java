@@ -0,0 +1,23 @@
+package org.zkoss.reporte.core.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetadataProvincia {
+
+    public static final String ESTADO_OK = "OK";
+    public static final String ESTADO_ERROR = "ERROR";
+    public static final String ESTADO_TIMEOUT = "TIMEOUT";
+
+    private String provincia;
+    private Long tiempoEjecucionMs;
+    private Integer registros;
+    private String estado;  // OK, ERROR, TIMEOUT
+    private String error;
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
 
 import java.util.List;
 import java.util.Map;
@@ -14,9 +15,21 @@ import java.util.Map;
 @AllArgsConstructor
 public class QueryResponse {
 
+    /**
+     * Filas como Map. Cuando existe {@link #resultado} es una vista sobre él, no una copia.
+     */
     private List<Map<String, Object>> datos;
     private List<String> columnas;
     private MetadataPaginacion paginacion;
     private MetadataQuery query;
     private MetadataConsolidacion consolidacion;
-}
\ No newline at end of file
+
+    /**
+     * Almacenamiento columnar tipado de los datos.
+     */
+    private ResultadoColumnar resultado;
+
+    // Ejecución distribuida por provincia
+    private List<MetadataProvincia> provincias;
+    private Boolean parcial;  // true si alguna provincia falló o no respondió a tiempo
+}
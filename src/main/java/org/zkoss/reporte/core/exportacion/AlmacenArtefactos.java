@@ -0,0 +1,203 @@
+package org.zkoss.reporte.core.exportacion;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zkoss.reporte.spring_zk_config.ExportacionProperties;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Archivos de exportación ya generados, guardados por contenido.
+ *
+ * Cada archivo se nombra con la clave de la consulta que lo produjo ({@code <clave>.<extensión>}),
+ * de modo que una exportación idéntica reutiliza el archivo en lugar de volver al backend.
+ * Los archivos sobreviven a los reinicios: al arrancar se indexa el directorio.
+ *
+ * - Un archivo más antiguo que {@code ttlArtefactosMs} no se reutiliza: los datos pudieron cambiar.
+ * - Superados {@code maxArtefactos} o {@code maxBytesArtefactos} se borran los menos usados (LRU).
+ * - Cada archivo borrado se avisa a los interesados ({@link #alBorrar}), para que no lo sigan
+ *   ofreciendo para descarga.
+ */
+@Component
+@Slf4j
+public class AlmacenArtefactos {
+
+    private static final String PREFIJO_TEMPORAL = "generando-";
+
+    @Autowired
+    private ExportacionProperties properties;
+
+    private Path directorio;
+
+    // Orden de acceso: el primero es el menos usado
+    private final LinkedHashMap<String, Artefacto> artefactos = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesTotales;
+
+    private final List<Consumer<Path>> accionesAlBorrar = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void inicializar() throws IOException {
+        String configurado = properties.getDirectorioArtefactos();
+        directorio = Files.createDirectories(configurado != null && !configurado.isEmpty()
+                ? Paths.get(configurado)
+                : Paths.get(System.getProperty("java.io.tmpdir"), "reporte-artefactos"));
+
+        // Los más recientes quedan al final del orden LRU
+        List<Artefacto> existentes = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio)) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                if (nombre.startsWith(PREFIJO_TEMPORAL)) {
+                    // Generación interrumpida por un reinicio
+                    RegistroDescargas.borrar(archivo);
+                    continue;
+                }
+                // La clave no tiene puntos; la extensión puede tenerlos (csv.gz)
+                int punto = nombre.indexOf('.');
+                if (punto <= 0 || !Files.isRegularFile(archivo)) {
+                    continue;
+                }
+                existentes.add(new Artefacto(nombre.substring(0, punto), archivo, Files.size(archivo),
+                        Files.getLastModifiedTime(archivo).toMillis()));
+            }
+        }
+        existentes.sort(Comparator.comparingLong(artefacto -> artefacto.creado));
+
+        synchronized (this) {
+            for (Artefacto artefacto : existentes) {
+                artefactos.put(artefacto.clave, artefacto);
+                bytesTotales += artefacto.bytes;
+            }
+            desalojar();
+        }
+        log.info("Almacén de exportaciones en {} - {} archivos, {} bytes", directorio, artefactos.size(), bytesTotales);
+    }
+
+    /**
+     * Registra una acción a ejecutar con cada archivo que el almacén borra (vencido o desalojado).
+     */
+    public void alBorrar(Consumer<Path> accion) {
+        accionesAlBorrar.add(accion);
+    }
+
+    /**
+     * Archivo vigente para la clave, o null si no existe o está vencido.
+     */
+    public synchronized Path buscar(String clave) {
+        Artefacto artefacto = artefactos.get(clave);
+        if (artefacto == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - artefacto.creado > properties.getTtlArtefactosMs()
+                || !Files.isReadable(artefacto.archivo)) {
+            quitar(clave);
+            return null;
+        }
+        return artefacto.archivo;
+    }
+
+    /**
+     * Archivo vacío en el directorio del almacén donde generar un artefacto.
+     */
+    public Path crearTemporal(String extension) throws IOException {
+        return Files.createTempFile(directorio, PREFIJO_TEMPORAL, "." + extension);
+    }
+
+    /**
+     * Incorpora el archivo generado con su clave y devuelve su ubicación definitiva.
+     */
+    public Path guardar(String clave, String extension, Path generado) throws IOException {
+        Path destino = directorio.resolve(clave + "." + extension);
+        Files.move(generado, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long bytes = Files.size(destino);
+
+        synchronized (this) {
+            quitarDelIndice(clave);
+            artefactos.put(clave, new Artefacto(clave, destino, bytes, System.currentTimeMillis()));
+            bytesTotales += bytes;
+            desalojar();
+        }
+        log.debug("Exportación guardada - {} ({} bytes)", destino, bytes);
+        return destino;
+    }
+
+    public synchronized Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("directorio", directorio.toString());
+        estadisticas.put("archivos", artefactos.size());
+        estadisticas.put("bytes", bytesTotales);
+        estadisticas.put("maxArchivos", properties.getMaxArtefactos());
+        estadisticas.put("maxBytes", properties.getMaxBytesArtefactos());
+        return estadisticas;
+    }
+
+    // ===== PRIVADOS =====
+
+    /**
+     * Borra los menos usados hasta quedar dentro de los límites. El último guardado se
+     * conserva aunque por sí solo supere el límite de bytes.
+     */
+    private void desalojar() {
+        Iterator<Map.Entry<String, Artefacto>> iterador = artefactos.entrySet().iterator();
+        while (artefactos.size() > 1
+                && (artefactos.size() > properties.getMaxArtefactos() || bytesTotales > properties.getMaxBytesArtefactos())
+                && iterador.hasNext()) {
+            Artefacto artefacto = iterador.next().getValue();
+            iterador.remove();
+            bytesTotales -= artefacto.bytes;
+            borrar(artefacto.archivo);
+            log.debug("Exportación desalojada - {}", artefacto.archivo);
+        }
+    }
+
+    private void quitar(String clave) {
+        Artefacto artefacto = quitarDelIndice(clave);
+        if (artefacto != null) {
+            borrar(artefacto.archivo);
+        }
+    }
+
+    private void borrar(Path archivo) {
+        RegistroDescargas.borrar(archivo);
+        for (Consumer<Path> accion : accionesAlBorrar) {
+            accion.accept(archivo);
+        }
+    }
+
+    private Artefacto quitarDelIndice(String clave) {
+        Artefacto artefacto = artefactos.remove(clave);
+        if (artefacto != null) {
+            bytesTotales -= artefacto.bytes;
+        }
+        return artefacto;
+    }
+
+    private static final class Artefacto {
+        private final String clave;
+        private final Path archivo;
+        private final long bytes;
+        private final long creado;
+
+        private Artefacto(String clave, Path archivo, long bytes, long creado) {
+            this.clave = clave;
+            this.archivo = archivo;
+            this.bytes = bytes;
+            this.creado = creado;
+        }
+    }
+}
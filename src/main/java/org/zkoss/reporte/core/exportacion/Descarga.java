@@ -0,0 +1,24 @@
+package org.zkoss.reporte.core.exportacion;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+
+/**
+ * Archivo generado en disco, pendiente de descarga por el navegador.
+ */
+@Getter
+@AllArgsConstructor
+public class Descarga {
+
+    private final Path archivo;
+    private final String nombre;
+    private final String contentType;
+
+    // Solo la sesión HTTP que la generó puede descargarla
+    private final String sesion;
+
+    // Desktop de ZK dueño del archivo: se borra cuando el desktop se destruye
+    private final String propietario;
+}
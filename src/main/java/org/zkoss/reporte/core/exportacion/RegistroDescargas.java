@@ -0,0 +1,91 @@
+package org.zkoss.reporte.core.exportacion;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zkoss.reporte.spring_zk_config.ExportacionProperties;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Archivos temporales de exportación servidos por {@code DescargaController}.
+ *
+ * Cada archivo se registra con un token aleatorio, la sesión que lo generó y su desktop
+ * propietario. Los archivos de un desktop se borran al destruirse el desktop, y todos al
+ * detener la aplicación.
+ */
+@Component
+@Slf4j
+public class RegistroDescargas {
+
+    @Autowired
+    private ExportacionProperties properties;
+
+    private final Map<String, Descarga> descargas = new ConcurrentHashMap<>();
+
+    /**
+     * Crea un archivo temporal vacío en el directorio de exportación.
+     */
+    public Path crearArchivo(String extension) throws IOException {
+        String directorio = properties.getDirectorioTemporal();
+        if (directorio == null || directorio.isEmpty()) {
+            return Files.createTempFile("reporte-", extension);
+        }
+        Path base = Files.createDirectories(Paths.get(directorio));
+        return Files.createTempFile(base, "reporte-", extension);
+    }
+
+    /**
+     * Registra el archivo y devuelve el token para descargarlo.
+     */
+    public String registrar(Path archivo, String nombre, String contentType, String sesion, String propietario) {
+        String token = UUID.randomUUID().toString();
+        descargas.put(token, new Descarga(archivo, nombre, contentType, sesion, propietario));
+        log.debug("Descarga registrada - {} ({}) para desktop {}", nombre, archivo, propietario);
+        return token;
+    }
+
+    /**
+     * Descarga del token, o null si no existe o pertenece a otra sesión.
+     */
+    public Descarga obtener(String token, String sesion) {
+        Descarga descarga = token != null ? descargas.get(token) : null;
+        return descarga != null && descarga.getSesion().equals(sesion) ? descarga : null;
+    }
+
+    /**
+     * Borra los archivos del desktop.
+     */
+    public void liberar(String propietario) {
+        descargas.entrySet().removeIf(entrada -> {
+            if (!entrada.getValue().getPropietario().equals(propietario)) {
+                return false;
+            }
+            borrar(entrada.getValue().getArchivo());
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void liberarTodo() {
+        for (Descarga descarga : descargas.values()) {
+            borrar(descarga.getArchivo());
+        }
+        descargas.clear();
+    }
+
+    public static void borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar el archivo temporal {}: {}", archivo, e.getMessage());
+        }
+    }
+}
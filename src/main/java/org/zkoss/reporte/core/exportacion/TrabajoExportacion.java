@@ -0,0 +1,127 @@
+package org.zkoss.reporte.core.exportacion;
+
+import lombok.Getter;
+import org.zkoss.reporte.core.dto.request.SolicitudExportacion;
+import org.zkoss.reporte.core.dto.response.EstadoExportacion;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.utils.http.CancelacionHttp;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Una generación de archivo de exportación, compartida por todas las sesiones que pidieron
+ * la misma exportación mientras estaba en curso.
+ *
+ * El estado lo escribe el hilo que genera el archivo y lo leen las pantallas y la API.
+ */
+@Getter
+public class TrabajoExportacion {
+
+    private final String id = UUID.randomUUID().toString();
+    private final String clave;
+    private final SolicitudExportacion solicitud;
+    private final String extension;
+    private final String contentType;
+    private final String nombreArchivo;
+    private final LocalDateTime creado = LocalDateTime.now();
+
+    // Sesiones HTTP que esperan el archivo; sin ninguna, el trabajo se cancela
+    private final Set<String> sesiones = ConcurrentHashMap.newKeySet();
+    private final CancelacionHttp cancelacion = new CancelacionHttp();
+    private final AtomicLong filas = new AtomicLong();
+
+    // Resultado ya obtenido por la pantalla, si el archivo se genera desde memoria
+    private volatile ResultadoColumnar datos;
+
+    private volatile String estado = EstadoExportacion.ESTADO_EN_COLA;
+    private volatile boolean reutilizado;
+    private volatile Path archivo;
+    private volatile long inicio;
+    private volatile long bytes;
+    private volatile long duracionMs;
+    private volatile String error;
+    private volatile LocalDateTime terminado;
+
+    public TrabajoExportacion(String clave, SolicitudExportacion solicitud, ResultadoColumnar datos,
+                              String extension, String contentType, String nombreArchivo) {
+        this.clave = clave;
+        this.solicitud = solicitud;
+        this.datos = datos;
+        this.extension = extension;
+        this.contentType = contentType;
+        this.nombreArchivo = nombreArchivo;
+    }
+
+    public void iniciar() {
+        inicio = System.currentTimeMillis();
+        estado = EstadoExportacion.ESTADO_EN_CURSO;
+    }
+
+    public void sumarFilas(long cantidad) {
+        filas.addAndGet(cantidad);
+    }
+
+    public void completar(Path archivo, long bytes, boolean reutilizado) {
+        this.archivo = archivo;
+        this.bytes = bytes;
+        this.reutilizado = reutilizado;
+        this.duracionMs = inicio > 0 ? System.currentTimeMillis() - inicio : 0;
+        terminar(EstadoExportacion.ESTADO_COMPLETADO, null);
+    }
+
+    public void fallar(String error) {
+        terminar(EstadoExportacion.ESTADO_ERROR, error);
+    }
+
+    public void cancelar() {
+        cancelacion.cancelar();
+        terminar(EstadoExportacion.ESTADO_CANCELADO, null);
+    }
+
+    /**
+     * El almacén borró el archivo: el trabajo deja de ofrecerlo para descarga.
+     */
+    public synchronized void expirar() {
+        if (EstadoExportacion.ESTADO_COMPLETADO.equals(estado)) {
+            archivo = null;
+            error = "El archivo ya no está disponible, vuelva a exportar";
+            estado = EstadoExportacion.ESTADO_EXPIRADO;
+        }
+    }
+
+    public boolean isTerminado() {
+        return terminado != null;
+    }
+
+    public EstadoExportacion toEstado() {
+        return EstadoExportacion.builder()
+                .id(id)
+                .nombreArchivo(nombreArchivo)
+                .estado(estado)
+                .filas(filas.get())
+                .reutilizado(reutilizado)
+                .error(error)
+                .bytes(archivo != null ? bytes : null)
+                .duracionMs(archivo != null ? duracionMs : null)
+                .bytesPorSegundo(archivo != null && !reutilizado ? bytes * 1000 / Math.max(1, duracionMs) : null)
+                .fechaCreacion(creado)
+                .fechaFin(terminado)
+                .build();
+    }
+
+    private synchronized void terminar(String estadoFinal, String mensaje) {
+        if (terminado != null) {
+            return;
+        }
+        // El estado se conserva un tiempo; los datos ya no hacen falta
+        datos = null;
+        error = mensaje;
+        estado = estadoFinal;
+        terminado = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,162 @@
+package org.zkoss.reporte.core.indices;
+
+import lombok.Getter;
+import org.zkoss.reporte.core.model.columnar.Columna;
+import org.zkoss.reporte.core.model.columnar.ColumnaBooleana;
+import org.zkoss.reporte.core.model.columnar.ColumnaEntera;
+import org.zkoss.reporte.core.model.columnar.ColumnaTexto;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.Locale;
+
+/**
+ * Filtro rápido sobre una columna de un resultado en memoria.
+ *
+ * - IGUAL: mismo valor (los textos sin distinguir mayúsculas).
+ * - RANGO: entre {@code valor} y {@code hasta}, ambos inclusive; un extremo vacío no limita.
+ *   Numérico en columnas numéricas; en las demás, por orden de texto (las fechas ISO ordenan bien).
+ * - CONTIENE: el texto del valor contiene {@code valor}, sin distinguir mayúsculas.
+ *
+ * Las filas nulas nunca coinciden. En columnas de texto el filtro se evalúa una vez por valor
+ * del diccionario y no por fila.
+ */
+@Getter
+public final class FiltroColumna {
+
+    public enum Tipo { IGUAL, RANGO, CONTIENE }
+
+    private final String columna;
+    private final Tipo tipo;
+    private final String valor;
+    private final String hasta;
+
+    public FiltroColumna(String columna, Tipo tipo, String valor, String hasta) {
+        if (columna == null || tipo == null) {
+            throw new IllegalArgumentException("El filtro necesita columna y tipo");
+        }
+        this.columna = columna;
+        this.tipo = tipo;
+        this.valor = valor != null ? valor.trim() : "";
+        this.hasta = hasta != null ? hasta.trim() : "";
+        if (tipo != Tipo.RANGO && this.valor.isEmpty()) {
+            throw new IllegalArgumentException("Ingrese un valor para filtrar " + columna);
+        }
+    }
+
+    public String getDescripcion() {
+        switch (tipo) {
+            case IGUAL:
+                return columna + " = " + valor;
+            case RANGO:
+                return columna + " entre " + (valor.isEmpty() ? "-" : valor) + " y " + (hasta.isEmpty() ? "-" : hasta);
+            default:
+                return columna + " contiene \"" + valor + "\"";
+        }
+    }
+
+    /**
+     * Filas del resultado que cumplen el filtro.
+     */
+    public BitSet aplicar(ResultadoColumnar resultado) {
+        int posicion = resultado.posicion(columna);
+        if (posicion < 0) {
+            throw new IllegalArgumentException("La columna " + columna + " no existe en el resultado");
+        }
+        Columna datos = resultado.getColumna(posicion);
+        int filas = resultado.getCantidadFilas();
+        BitSet coincidencias = new BitSet(filas);
+
+        switch (datos.getTipo()) {
+            case TEXTO:
+                ColumnaTexto texto = (ColumnaTexto) datos;
+                String[] diccionario = texto.getDiccionario();
+                boolean[] coincide = new boolean[diccionario.length];
+                for (int i = 0; i < diccionario.length; i++) {
+                    coincide[i] = coincideTexto(diccionario[i]);
+                }
+                for (int f = 0; f < filas; f++) {
+                    int codigo = texto.getCodigo(f);
+                    if (codigo >= 0 && coincide[codigo]) {
+                        coincidencias.set(f);
+                    }
+                }
+                break;
+            case ENTERO:
+            case DECIMAL:
+                if (tipo == Tipo.CONTIENE) {
+                    filtrarPorTexto(datos, filas, coincidencias);
+                    break;
+                }
+                double desde = numero(valor, Double.NEGATIVE_INFINITY);
+                double limite = tipo == Tipo.IGUAL ? desde : numero(hasta, Double.POSITIVE_INFINITY);
+                boolean entera = datos instanceof ColumnaEntera;
+                for (int f = 0; f < filas; f++) {
+                    if (datos.esNulo(f)) {
+                        continue;
+                    }
+                    double numero = entera ? ((ColumnaEntera) datos).getLong(f) : datos.getDouble(f);
+                    if (numero >= desde && numero <= limite) {
+                        coincidencias.set(f);
+                    }
+                }
+                break;
+            case BOOLEANO:
+                if (tipo == Tipo.IGUAL) {
+                    boolean buscado = esVerdadero(valor);
+                    for (int f = 0; f < filas; f++) {
+                        if (!datos.esNulo(f) && ((ColumnaBooleana) datos).getBoolean(f) == buscado) {
+                            coincidencias.set(f);
+                        }
+                    }
+                    break;
+                }
+                filtrarPorTexto(datos, filas, coincidencias);
+                break;
+            default:
+                filtrarPorTexto(datos, filas, coincidencias);
+        }
+        return coincidencias;
+    }
+
+    // ===== PRIVADOS =====
+
+    private void filtrarPorTexto(Columna datos, int filas, BitSet coincidencias) {
+        for (int f = 0; f < filas; f++) {
+            Object valorFila = datos.getValor(f);
+            if (valorFila != null && coincideTexto(valorFila.toString())) {
+                coincidencias.set(f);
+            }
+        }
+    }
+
+    private boolean coincideTexto(String texto) {
+        switch (tipo) {
+            case IGUAL:
+                return texto.equalsIgnoreCase(valor);
+            case RANGO:
+                return (valor.isEmpty() || texto.compareToIgnoreCase(valor) >= 0)
+                        && (hasta.isEmpty() || texto.compareToIgnoreCase(hasta) <= 0);
+            default:
+                return texto.toLowerCase(Locale.ROOT).contains(valor.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static double numero(String texto, double siVacio) {
+        if (texto.isEmpty()) {
+            return siVacio;
+        }
+        try {
+            return new BigDecimal(texto.replace(',', '.')).doubleValue();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor numérico inválido: " + texto);
+        }
+    }
+
+    private static boolean esVerdadero(String texto) {
+        String normalizado = texto.toLowerCase(Locale.ROOT);
+        return normalizado.equals("true") || normalizado.equals("si") || normalizado.equals("sí")
+                || normalizado.equals("1");
+    }
+}
@@ -0,0 +1,350 @@
+package org.zkoss.reporte.core.indices;
+
+import org.zkoss.reporte.core.dto.response.MetadataQuery;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda en memoria sobre el catálogo de queries.
+ *
+ * Indexa código, nombre, categoría, etiquetas (provincias y campos declarados) y descripción,
+ * normalizados sin acentos ni mayúsculas. Cada término buscado debe aparecer en la query:
+ *
+ * - Términos de 3 o más caracteres: intersección de las listas de trigramas y verificación
+ *   de la subcadena (los trigramas solo descartan candidatos).
+ * - Términos de 1 o 2 caracteres: prefijo de alguna palabra, por búsqueda binaria en el
+ *   vocabulario ordenado.
+ *
+ * El ranking suma, por término, el peso del mejor campo donde aparece (doble si es inicio de
+ * palabra); a igual puntaje gana la query más usada ({@code contadorUsos}).
+ *
+ * Cada índice es inmutable y se reemplaza entero. Al cambiar el catálogo solo se normalizan
+ * las queries nuevas o modificadas; las demás conservan sus términos ya calculados.
+ */
+public final class IndiceCatalogo {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    // Código, nombre, categoría, etiquetas, descripción
+    private static final int CAMPOS = 5;
+    private static final int[] PESOS = {8, 6, 3, 2, 1};
+
+    private static final int[] SIN_DOCUMENTOS = new int[0];
+
+    public static final IndiceCatalogo VACIO = new IndiceCatalogo(Collections.emptyList(),
+            new Documento[0], Collections.emptyMap(), new String[0], new int[0][]);
+
+    private final List<MetadataQuery> origen;
+    // Ordenados por uso descendente: la posición desempata el ranking
+    private final Documento[] documentos;
+    private final Map<Long, int[]> trigramas;
+    private final String[] palabras;
+    private final int[][] documentosPorPalabra;
+
+    private IndiceCatalogo(List<MetadataQuery> origen, Documento[] documentos, Map<Long, int[]> trigramas,
+                           String[] palabras, int[][] documentosPorPalabra) {
+        this.origen = origen;
+        this.documentos = documentos;
+        this.trigramas = trigramas;
+        this.palabras = palabras;
+        this.documentosPorPalabra = documentosPorPalabra;
+    }
+
+    /**
+     * Construye el índice de un catálogo reutilizando los documentos del índice anterior
+     * cuyas queries no cambiaron.
+     */
+    public static IndiceCatalogo construir(List<MetadataQuery> catalogo, IndiceCatalogo anterior) {
+        Map<String, Documento> previos = new HashMap<>();
+        for (Documento documento : anterior.documentos) {
+            previos.put(documento.query.getCodigo(), documento);
+        }
+
+        List<Documento> lista = new ArrayList<>(catalogo.size());
+        for (MetadataQuery query : catalogo) {
+            if (query == null || query.getCodigo() == null) {
+                continue;
+            }
+            Documento previo = previos.get(query.getCodigo());
+            lista.add(previo != null && previo.query.equals(query) ? previo : new Documento(query));
+        }
+        lista.sort(Comparator.comparingLong((Documento documento) -> documento.usos).reversed()
+                .thenComparing(documento -> documento.campos[1]));
+        Documento[] documentos = lista.toArray(new Documento[0]);
+
+        Map<Long, IntLista> trigramasTemp = new HashMap<>();
+        TreeMap<String, IntLista> palabrasTemp = new TreeMap<>();
+        for (int d = 0; d < documentos.length; d++) {
+            for (long trigrama : documentos[d].trigramas) {
+                trigramasTemp.computeIfAbsent(trigrama, t -> new IntLista()).agregar(d);
+            }
+            for (String palabra : documentos[d].palabras) {
+                palabrasTemp.computeIfAbsent(palabra, p -> new IntLista()).agregar(d);
+            }
+        }
+
+        Map<Long, int[]> trigramas = new HashMap<>(trigramasTemp.size() * 2);
+        for (Map.Entry<Long, IntLista> entrada : trigramasTemp.entrySet()) {
+            trigramas.put(entrada.getKey(), entrada.getValue().toArray());
+        }
+        String[] palabras = new String[palabrasTemp.size()];
+        int[][] documentosPorPalabra = new int[palabras.length][];
+        int p = 0;
+        for (Map.Entry<String, IntLista> entrada : palabrasTemp.entrySet()) {
+            palabras[p] = entrada.getKey();
+            documentosPorPalabra[p++] = entrada.getValue().toArray();
+        }
+
+        return new IndiceCatalogo(catalogo, documentos, trigramas, palabras, documentosPorPalabra);
+    }
+
+    /**
+     * Lista del catálogo a partir de la cual se construyó el índice.
+     */
+    public List<MetadataQuery> getOrigen() {
+        return origen;
+    }
+
+    public int getCantidadQueries() {
+        return documentos.length;
+    }
+
+    /**
+     * Queries que contienen todos los términos del texto, de la más a la menos relevante.
+     * Sin términos devuelve el catálogo completo, de la más a la menos usada.
+     */
+    public List<MetadataQuery> buscar(String texto) {
+        String normalizado = normalizar(texto);
+        if (normalizado.isEmpty()) {
+            List<MetadataQuery> todas = new ArrayList<>(documentos.length);
+            for (Documento documento : documentos) {
+                todas.add(documento.query);
+            }
+            return todas;
+        }
+        String[] terminos = normalizado.split(" ");
+
+        BitSet candidatos = null;
+        for (String termino : terminos) {
+            BitSet delTermino = termino.length() >= 3 ? porTrigramas(termino) : porPrefijo(termino);
+            if (candidatos == null) {
+                candidatos = delTermino;
+            } else {
+                candidatos.and(delTermino);
+            }
+            if (candidatos.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+
+        List<long[]> puntajes = new ArrayList<>();
+        for (int d = candidatos.nextSetBit(0); d >= 0; d = candidatos.nextSetBit(d + 1)) {
+            int puntaje = puntuar(documentos[d], terminos);
+            if (puntaje > 0) {
+                puntajes.add(new long[]{puntaje, d});
+            }
+        }
+        puntajes.sort((a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0]) : Long.compare(a[1], b[1]));
+
+        List<MetadataQuery> resultado = new ArrayList<>(puntajes.size());
+        for (long[] puntaje : puntajes) {
+            resultado.add(documentos[(int) puntaje[1]].query);
+        }
+        return resultado;
+    }
+
+    /**
+     * Minúsculas, sin acentos y con un único espacio entre palabras.
+     */
+    public static String normalizar(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return "";
+        }
+        String sinAcentos = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARADORES.matcher(sinAcentos.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    // ===== PRIVADOS =====
+
+    private BitSet porTrigramas(String termino) {
+        long[] delTermino = trigramasDe(termino);
+        int[][] listas = new int[delTermino.length][];
+        for (int t = 0; t < delTermino.length; t++) {
+            int[] lista = trigramas.get(delTermino[t]);
+            if (lista == null) {
+                return new BitSet();
+            }
+            listas[t] = lista;
+        }
+        // Se parte de la lista más corta
+        Arrays.sort(listas, Comparator.comparingInt(lista -> lista.length));
+        BitSet resultado = conjunto(listas[0]);
+        for (int t = 1; t < listas.length && !resultado.isEmpty(); t++) {
+            resultado.and(conjunto(listas[t]));
+        }
+        return resultado;
+    }
+
+    private BitSet porPrefijo(String prefijo) {
+        BitSet resultado = new BitSet(documentos.length);
+        int desde = Arrays.binarySearch(palabras, prefijo);
+        if (desde < 0) {
+            desde = -desde - 1;
+        }
+        for (int p = desde; p < palabras.length && palabras[p].startsWith(prefijo); p++) {
+            for (int d : documentosPorPalabra[p]) {
+                resultado.set(d);
+            }
+        }
+        return resultado;
+    }
+
+    private BitSet conjunto(int[] documentos) {
+        BitSet conjunto = new BitSet(this.documentos.length);
+        for (int d : documentos) {
+            conjunto.set(d);
+        }
+        return conjunto;
+    }
+
+    /**
+     * Suma de los pesos del mejor campo de cada término, o 0 si algún término no aparece.
+     */
+    private static int puntuar(Documento documento, String[] terminos) {
+        int total = 0;
+        for (String termino : terminos) {
+            int mejor = 0;
+            for (int c = 0; c < CAMPOS; c++) {
+                String campo = documento.campos[c];
+                int posicion = campo.indexOf(termino);
+                if (posicion < 0) {
+                    continue;
+                }
+                while (posicion > 0 && campo.charAt(posicion - 1) != ' ') {
+                    posicion = campo.indexOf(termino, posicion + 1);
+                }
+                boolean inicioPalabra = posicion >= 0;
+                if (termino.length() < 3 && !inicioPalabra) {
+                    continue;
+                }
+                mejor = Math.max(mejor, inicioPalabra ? PESOS[c] * 2 : PESOS[c]);
+            }
+            if (mejor == 0) {
+                return 0;
+            }
+            total += mejor;
+        }
+        return total;
+    }
+
+    private static long[] trigramasDe(String texto) {
+        if (texto.length() < 3) {
+            return new long[0];
+        }
+        long[] resultado = new long[texto.length() - 2];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = trigrama(texto, i);
+        }
+        return resultado;
+    }
+
+    private static long trigrama(String texto, int posicion) {
+        return ((long) texto.charAt(posicion) << 32) | ((long) texto.charAt(posicion + 1) << 16) | texto.charAt(posicion + 2);
+    }
+
+    /**
+     * Una query con sus campos normalizados y sus términos, calculados una sola vez.
+     */
+    private static final class Documento {
+        private final MetadataQuery query;
+        private final long usos;
+        private final String[] campos = new String[CAMPOS];
+        private final long[] trigramas;
+        private final String[] palabras;
+
+        private Documento(MetadataQuery query) {
+            this.query = query;
+            this.usos = query.getContadorUsos() != null ? query.getContadorUsos() : 0;
+            campos[0] = normalizar(query.getCodigo());
+            campos[1] = normalizar(query.getNombre());
+            campos[2] = normalizar(query.getCategoria());
+            campos[3] = normalizar(etiquetas(query));
+            campos[4] = normalizar(query.getDescripcion());
+
+            Set<Long> distintos = new HashSet<>();
+            Set<String> vocabulario = new HashSet<>();
+            for (String campo : campos) {
+                for (int i = 0; i + 3 <= campo.length(); i++) {
+                    distintos.add(trigrama(campo, i));
+                }
+                if (!campo.isEmpty()) {
+                    vocabulario.addAll(Arrays.asList(campo.split(" ")));
+                }
+            }
+            trigramas = new long[distintos.size()];
+            int t = 0;
+            for (Long trigrama : distintos) {
+                trigramas[t++] = trigrama;
+            }
+            palabras = vocabulario.toArray(new String[0]);
+        }
+
+        private static String etiquetas(MetadataQuery query) {
+            StringBuilder etiquetas = new StringBuilder();
+            agregar(etiquetas, query.getProvincia());
+            agregar(etiquetas, query.getProvinciasIncluidas());
+            agregar(etiquetas, query.getCamposAgrupacionList());
+            agregar(etiquetas, query.getCamposNumericosList());
+            agregar(etiquetas, query.getCamposUbicacionList());
+            agregar(etiquetas, query.getCamposTiempoList());
+            return etiquetas.toString();
+        }
+
+        private static void agregar(StringBuilder etiquetas, List<String> valores) {
+            if (valores != null) {
+                for (String valor : valores) {
+                    agregar(etiquetas, valor);
+                }
+            }
+        }
+
+        private static void agregar(StringBuilder etiquetas, String valor) {
+            if (valor != null) {
+                etiquetas.append(valor).append(' ');
+            }
+        }
+    }
+
+    /**
+     * Lista de enteros creciente, sin boxing.
+     */
+    private static final class IntLista {
+        private int[] valores = new int[4];
+        private int cantidad;
+
+        private void agregar(int valor) {
+            if (cantidad == valores.length) {
+                valores = Arrays.copyOf(valores, cantidad * 2);
+            }
+            valores[cantidad++] = valor;
+        }
+
+        private int[] toArray() {
+            return cantidad == 0 ? SIN_DOCUMENTOS : Arrays.copyOf(valores, cantidad);
+        }
+    }
+}
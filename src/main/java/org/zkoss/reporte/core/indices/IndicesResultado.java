@@ -0,0 +1,314 @@
+package org.zkoss.reporte.core.indices;
+
+import org.zkoss.reporte.core.model.columnar.Columna;
+import org.zkoss.reporte.core.model.columnar.ColumnaBooleana;
+import org.zkoss.reporte.core.model.columnar.ColumnaEntera;
+import org.zkoss.reporte.core.model.columnar.ColumnaTexto;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Índices de orden y filtro de un {@link ResultadoColumnar} en memoria.
+ *
+ * La permutación de cada columna se construye la primera vez que se ordena por ella y se
+ * conserva mientras viva el resultado, compartida por todas las pantallas que lo muestran.
+ * No guarda el resultado: cada operación lo recibe, así la caché de {@link MotorIndices}
+ * no lo retiene y los índices se liberan con él.
+ *
+ * - Texto y booleanos: counting sort sobre el rango del valor en el diccionario ordenado
+ *   (lineal en filas; el diccionario se ordena una vez con reglas del español).
+ * - Números: merge sort estable de los índices sobre claves long precalculadas (los decimales
+ *   como bits ordenables), en paralelo con fork/join.
+ * - Objetos: orden estable comparando los valores.
+ *
+ * Los filtros producen un BitSet de filas; la vista final combina orden y filtros sin copiar filas.
+ */
+public final class IndicesResultado {
+
+    // Filas por bloque por debajo del cual el merge sort no se divide más
+    static final int UMBRAL_BLOQUE = 16_384;
+    private static final int UMBRAL_INSERCION = 32;
+
+    private final ForkJoinPool pool;
+    private final Map<String, OrdenColumna> ordenes = new ConcurrentHashMap<>();
+
+    IndicesResultado(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Permutación de las filas del resultado ordenadas por la columna.
+     */
+    public OrdenColumna orden(ResultadoColumnar resultado, String columna) {
+        return ordenes.computeIfAbsent(columna, nombre -> construirOrden(resultado, nombre));
+    }
+
+    /**
+     * Filas que cumplen todos los filtros, o null si no hay filtros.
+     */
+    public BitSet filtrar(ResultadoColumnar resultado, List<FiltroColumna> filtros) {
+        if (filtros == null || filtros.isEmpty()) {
+            return null;
+        }
+        BitSet seleccion = null;
+        for (FiltroColumna filtro : filtros) {
+            BitSet coincidencias = filtro.aplicar(resultado);
+            if (seleccion == null) {
+                seleccion = coincidencias;
+            } else {
+                seleccion.and(coincidencias);
+            }
+        }
+        return seleccion;
+    }
+
+    /**
+     * Índices de fila a mostrar: ordenados por la columna (o en el orden original si es null)
+     * y restringidos a los filtros.
+     */
+    public int[] vista(ResultadoColumnar resultado, String columnaOrden, boolean ascendente,
+                       List<FiltroColumna> filtros) {
+        BitSet seleccion = filtrar(resultado, filtros);
+        if (columnaOrden != null) {
+            return orden(resultado, columnaOrden).vista(ascendente, seleccion);
+        }
+        if (seleccion == null) {
+            int[] todas = new int[resultado.getCantidadFilas()];
+            for (int i = 0; i < todas.length; i++) {
+                todas[i] = i;
+            }
+            return todas;
+        }
+        return seleccion.stream().toArray();
+    }
+
+    // ===== CONSTRUCCIÓN DE ÍNDICES =====
+
+    private OrdenColumna construirOrden(ResultadoColumnar resultado, String nombre) {
+        int posicion = resultado.posicion(nombre);
+        if (posicion < 0) {
+            throw new IllegalArgumentException("La columna " + nombre + " no existe en el resultado");
+        }
+        Columna columna = resultado.getColumna(posicion);
+        int filas = resultado.getCantidadFilas();
+
+        // Filas con valor al principio, nulas al final, ambas en orden original
+        int[] orden = new int[filas];
+        int noNulos = 0;
+        for (int f = 0; f < filas; f++) {
+            if (!columna.esNulo(f)) {
+                orden[noNulos++] = f;
+            }
+        }
+        int siguienteNulo = noNulos;
+        for (int f = 0; f < filas && siguienteNulo < filas; f++) {
+            if (columna.esNulo(f)) {
+                orden[siguienteNulo++] = f;
+            }
+        }
+
+        switch (columna.getTipo()) {
+            case TEXTO:
+                ColumnaTexto texto = (ColumnaTexto) columna;
+                int[] rangos = rangosTexto(texto);
+                ordenarPorRango(orden, noNulos, rangos.length, fila -> rangos[texto.getCodigo(fila)]);
+                break;
+            case BOOLEANO:
+                ColumnaBooleana booleana = (ColumnaBooleana) columna;
+                ordenarPorRango(orden, noNulos, 2, fila -> booleana.getBoolean(fila) ? 1 : 0);
+                break;
+            case ENTERO:
+            case DECIMAL:
+                ordenarEnParalelo(orden, noNulos, clavesNumericas(columna, orden, noNulos));
+                break;
+            default:
+                ordenarObjetos(orden, noNulos, columna);
+        }
+        return new OrdenColumna(orden, noNulos);
+    }
+
+    /**
+     * Rango de cada código del diccionario en orden alfabético.
+     */
+    private static int[] rangosTexto(ColumnaTexto columna) {
+        String[] diccionario = columna.getDiccionario();
+        Collator collator = Collator.getInstance(new Locale("es"));
+        CollationKey[] claves = new CollationKey[diccionario.length];
+        for (int i = 0; i < diccionario.length; i++) {
+            claves[i] = collator.getCollationKey(diccionario[i]);
+        }
+        Integer[] codigos = new Integer[diccionario.length];
+        for (int i = 0; i < codigos.length; i++) {
+            codigos[i] = i;
+        }
+        Arrays.sort(codigos, Comparator.comparing(codigo -> claves[codigo]));
+
+        int[] rangos = new int[diccionario.length];
+        for (int r = 0; r < codigos.length; r++) {
+            rangos[codigos[r]] = r;
+        }
+        return rangos;
+    }
+
+    /**
+     * Counting sort estable de las primeras {@code cantidad} posiciones por un rango en [0, rangos).
+     */
+    private static void ordenarPorRango(int[] orden, int cantidad, int rangos, RangoFila rango) {
+        int[] inicio = new int[rangos + 1];
+        int[] rangoPorPosicion = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            rangoPorPosicion[i] = rango.rango(orden[i]);
+            inicio[rangoPorPosicion[i] + 1]++;
+        }
+        for (int r = 0; r < rangos; r++) {
+            inicio[r + 1] += inicio[r];
+        }
+        int[] ordenado = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            ordenado[inicio[rangoPorPosicion[i]]++] = orden[i];
+        }
+        System.arraycopy(ordenado, 0, orden, 0, cantidad);
+    }
+
+    /**
+     * Clave long por fila que ordena igual que el valor. Para los decimales se usan los bits
+     * del double con el signo corregido (mismo orden que Double.compare).
+     */
+    private static long[] clavesNumericas(Columna columna, int[] orden, int cantidad) {
+        long[] claves = new long[columna.getFilas()];
+        if (columna instanceof ColumnaEntera) {
+            ColumnaEntera entera = (ColumnaEntera) columna;
+            for (int i = 0; i < cantidad; i++) {
+                claves[orden[i]] = entera.getLong(orden[i]);
+            }
+        } else {
+            for (int i = 0; i < cantidad; i++) {
+                long bits = Double.doubleToLongBits(columna.getDouble(orden[i]));
+                // Negativos: se invierten los bits de magnitud para que el long con signo ordene igual que el double
+                claves[orden[i]] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            }
+        }
+        return claves;
+    }
+
+    private static void ordenarObjetos(int[] orden, int cantidad, Columna columna) {
+        Integer[] filas = new Integer[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            filas[i] = orden[i];
+        }
+        Arrays.sort(filas, (a, b) -> compararObjetos(columna.getValor(a), columna.getValor(b)));
+        for (int i = 0; i < cantidad; i++) {
+            orden[i] = filas[i];
+        }
+    }
+
+    private void ordenarEnParalelo(int[] orden, int cantidad, long[] claves) {
+        TareaOrden tarea = new TareaOrden(orden, new int[cantidad], 0, cantidad, claves);
+        if (cantidad <= UMBRAL_BLOQUE) {
+            tarea.compute();
+        } else if (ForkJoinTask.inForkJoinPool()) {
+            tarea.invoke();
+        } else {
+            pool.invoke(tarea);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compararObjetos(Object a, Object b) {
+        if (a instanceof Comparable && b != null && a.getClass() == b.getClass()) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return String.valueOf(a).compareTo(String.valueOf(b));
+    }
+
+    @FunctionalInterface
+    private interface RangoFila {
+        int rango(int fila);
+    }
+
+    // ===== ORDEN PARALELO =====
+
+    /**
+     * Merge sort estable de orden[desde, hasta) por claves[fila]; las mitades se ordenan en paralelo.
+     */
+    private static final class TareaOrden extends RecursiveAction {
+
+        private final int[] orden;
+        private final int[] auxiliar;
+        private final int desde;
+        private final int hasta;
+        private final long[] claves;
+
+        private TareaOrden(int[] orden, int[] auxiliar, int desde, int hasta, long[] claves) {
+            this.orden = orden;
+            this.auxiliar = auxiliar;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.claves = claves;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde <= UMBRAL_BLOQUE) {
+                ordenar(desde, hasta);
+                return;
+            }
+            int medio = (desde + hasta) >>> 1;
+            invokeAll(new TareaOrden(orden, auxiliar, desde, medio, claves),
+                    new TareaOrden(orden, auxiliar, medio, hasta, claves));
+            mezclar(desde, medio, hasta);
+        }
+
+        private void ordenar(int inicio, int fin) {
+            if (fin - inicio <= UMBRAL_INSERCION) {
+                for (int i = inicio + 1; i < fin; i++) {
+                    int fila = orden[i];
+                    long clave = claves[fila];
+                    int j = i - 1;
+                    while (j >= inicio && claves[orden[j]] > clave) {
+                        orden[j + 1] = orden[j];
+                        j--;
+                    }
+                    orden[j + 1] = fila;
+                }
+                return;
+            }
+            int medio = (inicio + fin) >>> 1;
+            ordenar(inicio, medio);
+            ordenar(medio, fin);
+            mezclar(inicio, medio, fin);
+        }
+
+        private void mezclar(int inicio, int medio, int fin) {
+            // Ya ordenado: la última de la izquierda no supera a la primera de la derecha
+            if (claves[orden[medio - 1]] <= claves[orden[medio]]) {
+                return;
+            }
+            System.arraycopy(orden, inicio, auxiliar, inicio, fin - inicio);
+            int i = inicio;
+            int j = medio;
+            int k = inicio;
+            while (i < medio && j < fin) {
+                orden[k++] = claves[auxiliar[j]] < claves[auxiliar[i]] ? auxiliar[j++] : auxiliar[i++];
+            }
+            while (i < medio) {
+                orden[k++] = auxiliar[i++];
+            }
+            while (j < fin) {
+                orden[k++] = auxiliar[j++];
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.zkoss.reporte.core.indices;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.zkoss.reporte.core.cache.RegistroCaches;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.spring_zk_config.ResultadosProperties;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Índices de orden y filtro por resultado en memoria.
+ *
+ * Se indexa por identidad del resultado (claves débiles): el mismo resultado servido por la
+ * caché a varias pantallas comparte sus índices, y cuando el resultado deja de usarse sus
+ * índices se liberan con él. Para eso el valor no referencia a la clave:
+ * {@link IndicesResultado} recibe el resultado en cada operación.
+ */
+@Component
+public class MotorIndices {
+
+    private final ForkJoinPool pool;
+    private final Cache<ResultadoColumnar, IndicesResultado> indices;
+
+    public MotorIndices(@Qualifier("consolidacionPool") ForkJoinPool pool,
+                        ResultadosProperties properties,
+                        RegistroCaches registroCaches) {
+        this.pool = pool;
+        this.indices = Caffeine.newBuilder()
+                .weakKeys()
+                .maximumSize(properties.getMaxResultadosIndexados())
+                .recordStats()
+                .build();
+        registroCaches.registrar("indicesResultados", indices);
+    }
+
+    public IndicesResultado obtener(ResultadoColumnar resultado) {
+        return indices.get(resultado, clave -> new IndicesResultado(pool));
+    }
+}
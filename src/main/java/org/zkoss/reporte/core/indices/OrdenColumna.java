@@ -0,0 +1,53 @@
+package org.zkoss.reporte.core.indices;
+
+import java.util.BitSet;
+
+/**
+ * Permutación de las filas de un resultado ordenadas por una columna: primero las filas con
+ * valor en orden ascendente (estable) y al final las nulas, en su orden original.
+ *
+ * Es inmutable; las vistas se arman recorriéndola sin copiar filas.
+ */
+public final class OrdenColumna {
+
+    private final int[] filas;
+    private final int noNulos;
+
+    OrdenColumna(int[] filas, int noNulos) {
+        this.filas = filas;
+        this.noNulos = noNulos;
+    }
+
+    public int getCantidadFilas() {
+        return filas.length;
+    }
+
+    /**
+     * Índices de fila en el sentido pedido, restringidos a la selección (null = todas).
+     * Las nulas quedan al final en ambos sentidos.
+     */
+    public int[] vista(boolean ascendente, BitSet seleccion) {
+        int[] vista = new int[seleccion != null ? seleccion.cardinality() : filas.length];
+        int cantidad = 0;
+        if (ascendente) {
+            for (int i = 0; i < noNulos; i++) {
+                cantidad = agregar(vista, cantidad, filas[i], seleccion);
+            }
+        } else {
+            for (int i = noNulos - 1; i >= 0; i--) {
+                cantidad = agregar(vista, cantidad, filas[i], seleccion);
+            }
+        }
+        for (int i = noNulos; i < filas.length; i++) {
+            cantidad = agregar(vista, cantidad, filas[i], seleccion);
+        }
+        return vista;
+    }
+
+    private static int agregar(int[] vista, int cantidad, int fila, BitSet seleccion) {
+        if (seleccion == null || seleccion.get(fila)) {
+            vista[cantidad++] = fila;
+        }
+        return cantidad;
+    }
+}
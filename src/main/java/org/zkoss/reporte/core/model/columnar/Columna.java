@@ -0,0 +1,62 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import java.util.BitSet;
+
+/**
+ * Columna inmutable de un {@link ResultadoColumnar}.
+ * Los nulos se registran en un bitmap independiente del almacenamiento de valores.
+ */
+public abstract class Columna {
+
+    protected static final long BYTES_CABECERA_ARREGLO = 16;
+
+    private final String nombre;
+    private final int filas;
+    protected final BitSet nulos;
+
+    protected Columna(String nombre, int filas, BitSet nulos) {
+        this.nombre = nombre;
+        this.filas = filas;
+        this.nulos = nulos;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getFilas() {
+        return filas;
+    }
+
+    public boolean esNulo(int fila) {
+        return nulos.get(fila);
+    }
+
+    public boolean esNumerica() {
+        return getTipo() == TipoColumna.ENTERO || getTipo() == TipoColumna.DECIMAL;
+    }
+
+    /**
+     * Valor numérico de la fila; NaN si es nulo o no es un número.
+     */
+    public double getDouble(int fila) {
+        Object valor = getValor(fila);
+        return valor instanceof Number ? ((Number) valor).doubleValue() : Double.NaN;
+    }
+
+    public abstract TipoColumna getTipo();
+
+    /**
+     * Valor de la fila en su forma boxeada (null si es nulo).
+     */
+    public abstract Object getValor(int fila);
+
+    /**
+     * Estimación del heap retenido por la columna.
+     */
+    public abstract long estimarBytes();
+
+    protected long bytesNulos() {
+        return BYTES_CABECERA_ARREGLO + nulos.size() / 8;
+    }
+}
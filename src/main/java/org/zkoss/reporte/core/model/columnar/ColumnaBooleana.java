@@ -0,0 +1,32 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import java.util.BitSet;
+
+public final class ColumnaBooleana extends Columna {
+
+    private final BitSet valores;
+
+    ColumnaBooleana(String nombre, int filas, BitSet valores, BitSet nulos) {
+        super(nombre, filas, nulos);
+        this.valores = valores;
+    }
+
+    public boolean getBoolean(int fila) {
+        return valores.get(fila);
+    }
+
+    @Override
+    public TipoColumna getTipo() {
+        return TipoColumna.BOOLEANO;
+    }
+
+    @Override
+    public Object getValor(int fila) {
+        return esNulo(fila) ? null : Boolean.valueOf(valores.get(fila));
+    }
+
+    @Override
+    public long estimarBytes() {
+        return BYTES_CABECERA_ARREGLO + valores.size() / 8 + bytesNulos();
+    }
+}
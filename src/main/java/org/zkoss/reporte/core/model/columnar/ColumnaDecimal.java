@@ -0,0 +1,33 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import java.util.BitSet;
+
+public final class ColumnaDecimal extends Columna {
+
+    private final double[] valores;
+
+    ColumnaDecimal(String nombre, int filas, double[] valores, BitSet nulos) {
+        super(nombre, filas, nulos);
+        this.valores = valores;
+    }
+
+    @Override
+    public double getDouble(int fila) {
+        return esNulo(fila) ? Double.NaN : valores[fila];
+    }
+
+    @Override
+    public TipoColumna getTipo() {
+        return TipoColumna.DECIMAL;
+    }
+
+    @Override
+    public Object getValor(int fila) {
+        return esNulo(fila) ? null : valores[fila];
+    }
+
+    @Override
+    public long estimarBytes() {
+        return BYTES_CABECERA_ARREGLO + 8L * valores.length + bytesNulos();
+    }
+}
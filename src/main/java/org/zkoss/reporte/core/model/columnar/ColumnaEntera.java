@@ -0,0 +1,37 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import java.util.BitSet;
+
+public final class ColumnaEntera extends Columna {
+
+    private final long[] valores;
+
+    ColumnaEntera(String nombre, int filas, long[] valores, BitSet nulos) {
+        super(nombre, filas, nulos);
+        this.valores = valores;
+    }
+
+    public long getLong(int fila) {
+        return valores[fila];
+    }
+
+    @Override
+    public double getDouble(int fila) {
+        return esNulo(fila) ? Double.NaN : valores[fila];
+    }
+
+    @Override
+    public TipoColumna getTipo() {
+        return TipoColumna.ENTERO;
+    }
+
+    @Override
+    public Object getValor(int fila) {
+        return esNulo(fila) ? null : valores[fila];
+    }
+
+    @Override
+    public long estimarBytes() {
+        return BYTES_CABECERA_ARREGLO + 8L * valores.length + bytesNulos();
+    }
+}
@@ -0,0 +1,32 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import java.util.BitSet;
+
+/**
+ * Columna sin tipo uniforme (valores mixtos, anidados o siempre nulos).
+ */
+public final class ColumnaObjeto extends Columna {
+
+    private final Object[] valores;
+
+    ColumnaObjeto(String nombre, int filas, Object[] valores, BitSet nulos) {
+        super(nombre, filas, nulos);
+        this.valores = valores;
+    }
+
+    @Override
+    public TipoColumna getTipo() {
+        return TipoColumna.OBJETO;
+    }
+
+    @Override
+    public Object getValor(int fila) {
+        return valores[fila];
+    }
+
+    @Override
+    public long estimarBytes() {
+        // Referencia + objeto boxeado promedio
+        return BYTES_CABECERA_ARREGLO + 24L * valores.length + bytesNulos();
+    }
+}
@@ -0,0 +1,52 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import java.util.BitSet;
+
+/**
+ * Columna de texto codificada por diccionario: cada fila guarda el índice
+ * del valor dentro de {@link #getDiccionario()}. Los nulos tienen código -1.
+ */
+public final class ColumnaTexto extends Columna {
+
+    private final int[] codigos;
+    private final String[] diccionario;
+
+    ColumnaTexto(String nombre, int filas, int[] codigos, String[] diccionario, BitSet nulos) {
+        super(nombre, filas, nulos);
+        this.codigos = codigos;
+        this.diccionario = diccionario;
+    }
+
+    public int getCodigo(int fila) {
+        return codigos[fila];
+    }
+
+    public String[] getDiccionario() {
+        return diccionario;
+    }
+
+    public int getCardinalidad() {
+        return diccionario.length;
+    }
+
+    @Override
+    public TipoColumna getTipo() {
+        return TipoColumna.TEXTO;
+    }
+
+    @Override
+    public Object getValor(int fila) {
+        int codigo = codigos[fila];
+        return codigo < 0 ? null : diccionario[codigo];
+    }
+
+    @Override
+    public long estimarBytes() {
+        long bytes = BYTES_CABECERA_ARREGLO + 4L * codigos.length + bytesNulos();
+        bytes += BYTES_CABECERA_ARREGLO + 4L * diccionario.length;
+        for (String valor : diccionario) {
+            bytes += 40 + 2L * valor.length();
+        }
+        return bytes;
+    }
+}
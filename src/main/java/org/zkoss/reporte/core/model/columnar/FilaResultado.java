@@ -0,0 +1,81 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Vista Map de solo lectura sobre una fila de {@link ResultadoColumnar}.
+ * No retiene valores: cada lectura se resuelve contra las columnas.
+ */
+public final class FilaResultado extends AbstractMap<String, Object> {
+
+    private final ResultadoColumnar resultado;
+    private final int indice;
+
+    FilaResultado(ResultadoColumnar resultado, int indice) {
+        this.resultado = resultado;
+        this.indice = indice;
+    }
+
+    public ResultadoColumnar getResultado() {
+        return resultado;
+    }
+
+    public int getIndice() {
+        return indice;
+    }
+
+    public Object getValor(int columna) {
+        return resultado.getValor(indice, columna);
+    }
+
+    @Override
+    public Object get(Object clave) {
+        int posicion = resultado.posicion(clave);
+        return posicion >= 0 ? resultado.getValor(indice, posicion) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object clave) {
+        return resultado.posicion(clave) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return resultado.getCantidadColumnas();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int posicion = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return posicion < resultado.getCantidadColumnas();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int actual = posicion++;
+                        return new SimpleImmutableEntry<>(resultado.getColumnas().get(actual), getValor(actual));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return resultado.getCantidadColumnas();
+            }
+        };
+    }
+}
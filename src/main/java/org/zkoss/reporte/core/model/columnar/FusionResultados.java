@@ -0,0 +1,370 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import org.zkoss.reporte.core.consolidacion.FuncionAgregacion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Combina resultados parciales a medida que llegan, sin esperar a tenerlos todos.
+ *
+ * - Concatenación: las filas de cada parcial se agregan tal cual; las columnas se unen por nombre.
+ * - Consolidada: las filas con los mismos valores en los campos de agrupación (numéricos o no)
+ *   se unen en una. Cada columna de medida se combina según la función con la que la calculó
+ *   el parcial: SUM y COUNT se suman, MAX y MIN se comparan. AVG no se puede combinar: los
+ *   parciales deben traer SUM y COUNT de la medida ({@link #funcionesParciales}) y el promedio
+ *   se calcula al final.
+ *
+ * Las columnas de medida se reconocen por nombre: con una sola función el parcial conserva el
+ * nombre de la medida; con varias, cada columna lleva el sufijo de su función. Las columnas que
+ * no son de agrupación ni de medida conservan el primer valor no nulo del grupo.
+ *
+ * No es thread-safe: los parciales se agregan desde un único hilo.
+ */
+public final class FusionResultados {
+
+    // Concatenación
+    private ResultadoColumnarBuilder builder;
+    private final List<String> columnas = new ArrayList<>();
+    private final Map<String, Integer> posiciones = new HashMap<>();
+
+    // Consolidación
+    private final List<String> camposAgrupacion;
+    private final List<FuncionAgregacion> funcionesParciales;
+    private final List<FuncionAgregacion> funcionesSalida;
+    private final Set<String> otrasColumnas = new LinkedHashSet<>();
+    private final Map<String, Integer> medidas = new LinkedHashMap<>();
+    private final Map<List<Object>, Grupo> grupos = new LinkedHashMap<>();
+
+    private int filasRecibidas;
+
+    private FusionResultados(List<String> camposAgrupacion,
+                             List<FuncionAgregacion> funcionesParciales,
+                             List<FuncionAgregacion> funcionesSalida) {
+        this.camposAgrupacion = camposAgrupacion;
+        this.funcionesParciales = funcionesParciales;
+        this.funcionesSalida = funcionesSalida;
+        if (camposAgrupacion == null) {
+            builder = new ResultadoColumnarBuilder();
+        }
+    }
+
+    public static FusionResultados concatenacion() {
+        return new FusionResultados(null, null, null);
+    }
+
+    /**
+     * @param camposAgrupacion Campos por los que agrupó cada parcial; no puede estar vacío
+     * @param funcionesParciales Funciones con las que se pidió cada parcial; deben ser combinables
+     *                           (ver {@link #funcionesParciales})
+     * @param funcionesSalida Funciones del resultado combinado
+     */
+    public static FusionResultados consolidada(List<String> camposAgrupacion,
+                                               Collection<FuncionAgregacion> funcionesParciales,
+                                               Collection<FuncionAgregacion> funcionesSalida) {
+        if (camposAgrupacion == null || camposAgrupacion.isEmpty()) {
+            throw new IllegalArgumentException("Se necesitan los campos de agrupación para combinar parciales");
+        }
+        List<FuncionAgregacion> parciales = new ArrayList<>(EnumSet.copyOf(funcionesParciales));
+        if (parciales.contains(FuncionAgregacion.AVG)) {
+            throw new IllegalArgumentException("AVG no se puede combinar: los parciales deben traer SUM y COUNT");
+        }
+        if (!parciales.containsAll(funcionesParciales(funcionesSalida))) {
+            throw new IllegalArgumentException("Los parciales no alcanzan para calcular " + funcionesSalida);
+        }
+        return new FusionResultados(new ArrayList<>(camposAgrupacion), parciales,
+                new ArrayList<>(EnumSet.copyOf(funcionesSalida)));
+    }
+
+    /**
+     * Funciones que hay que pedir a cada parcial para poder combinar las de salida:
+     * AVG se reemplaza por SUM y COUNT.
+     */
+    public static Set<FuncionAgregacion> funcionesParciales(Collection<FuncionAgregacion> funcionesSalida) {
+        Set<FuncionAgregacion> parciales = EnumSet.noneOf(FuncionAgregacion.class);
+        for (FuncionAgregacion funcion : funcionesSalida) {
+            if (funcion == FuncionAgregacion.AVG) {
+                parciales.add(FuncionAgregacion.SUM);
+                parciales.add(FuncionAgregacion.COUNT);
+            } else {
+                parciales.add(funcion);
+            }
+        }
+        return parciales;
+    }
+
+    /**
+     * Filas recibidas en total, antes de unir grupos.
+     */
+    public int getFilasRecibidas() {
+        return filasRecibidas;
+    }
+
+    public void agregar(ResultadoColumnar parcial) {
+        if (parcial == null || parcial.getCantidadFilas() == 0) {
+            return;
+        }
+        filasRecibidas += parcial.getCantidadFilas();
+
+        if (camposAgrupacion == null) {
+            agregarConcatenado(parcial, mapearColumnas(parcial), 0, parcial.getCantidadFilas());
+        } else {
+            agregarConsolidado(parcial);
+        }
+    }
+
+    /**
+     * Concatena solo las filas [desde, hasta) del parcial.
+     */
+    public void agregarFilas(ResultadoColumnar parcial, int desde, int hasta) {
+        if (camposAgrupacion != null) {
+            throw new IllegalStateException("Solo se pueden agregar tramos de filas al concatenar");
+        }
+        if (parcial == null || desde >= hasta) {
+            return;
+        }
+        filasRecibidas += hasta - desde;
+        agregarConcatenado(parcial, mapearColumnas(parcial), desde, hasta);
+    }
+
+    public ResultadoColumnar construir() {
+        if (camposAgrupacion == null) {
+            return builder.construir();
+        }
+
+        List<String> salida = new ArrayList<>(camposAgrupacion);
+        salida.addAll(otrasColumnas);
+        for (String medida : medidas.keySet()) {
+            for (FuncionAgregacion funcion : funcionesSalida) {
+                salida.add(funcionesSalida.size() == 1 ? medida : medida + "_" + funcion.getSufijo());
+            }
+        }
+
+        ResultadoColumnarBuilder resultado = new ResultadoColumnarBuilder(salida);
+        Object[] fila = new Object[salida.size()];
+        for (Map.Entry<List<Object>, Grupo> entrada : grupos.entrySet()) {
+            Grupo grupo = entrada.getValue();
+            int c = 0;
+            for (Object valor : entrada.getKey()) {
+                fila[c++] = valor;
+            }
+            for (String columna : otrasColumnas) {
+                fila[c++] = grupo.otros.get(columna);
+            }
+            for (int m = 0; m < medidas.size(); m++) {
+                Acumulado acumulado = m < grupo.acumulados.size() ? grupo.acumulados.get(m) : null;
+                for (FuncionAgregacion funcion : funcionesSalida) {
+                    fila[c++] = acumulado != null ? acumulado.resultado(funcion) : null;
+                }
+            }
+            resultado.agregarFila(fila, fila.length);
+        }
+        return resultado.construir();
+    }
+
+    // ===== CONCATENACIÓN =====
+
+    /**
+     * Posición de cada columna del parcial en el resultado combinado, registrando las nuevas.
+     */
+    private int[] mapearColumnas(ResultadoColumnar parcial) {
+        int[] destino = new int[parcial.getCantidadColumnas()];
+        for (int i = 0; i < destino.length; i++) {
+            String nombre = parcial.getColumnas().get(i);
+            Integer posicion = posiciones.get(nombre);
+            if (posicion == null) {
+                posicion = columnas.size();
+                columnas.add(nombre);
+                posiciones.put(nombre, posicion);
+                builder.agregarColumna(nombre);
+            }
+            destino[i] = posicion;
+        }
+        return destino;
+    }
+
+    private void agregarConcatenado(ResultadoColumnar parcial, int[] destino, int desde, int hasta) {
+        Object[] fila = new Object[columnas.size()];
+        for (int f = desde; f < hasta; f++) {
+            Arrays.fill(fila, null);
+            for (int c = 0; c < destino.length; c++) {
+                fila[destino[c]] = parcial.getValor(f, c);
+            }
+            builder.agregarFila(fila, fila.length);
+        }
+    }
+
+    // ===== CONSOLIDACIÓN =====
+
+    private void agregarConsolidado(ResultadoColumnar parcial) {
+        int[] claves = new int[camposAgrupacion.size()];
+        for (int k = 0; k < claves.length; k++) {
+            claves[k] = parcial.posicion(camposAgrupacion.get(k));
+        }
+
+        // Por columna del parcial: índice de medida y función, o -1 si no es medida
+        int cantidadColumnas = parcial.getCantidadColumnas();
+        int[] medidaDe = new int[cantidadColumnas];
+        FuncionAgregacion[] funcionDe = new FuncionAgregacion[cantidadColumnas];
+        List<Integer> otras = new ArrayList<>();
+        for (int c = 0; c < cantidadColumnas; c++) {
+            medidaDe[c] = -1;
+            String nombre = parcial.getColumnas().get(c);
+            if (camposAgrupacion.contains(nombre)) {
+                continue;
+            }
+            FuncionAgregacion funcion = funcionDeColumna(nombre);
+            // Una medida sin ningún valor en el parcial no tiene tipo numérico
+            if (funcion != null && (parcial.getColumna(c).esNumerica() || esNula(parcial, c))) {
+                String medida = funcionesParciales.size() == 1
+                        ? nombre
+                        : nombre.substring(0, nombre.length() - funcion.getSufijo().length() - 1);
+                Integer indice = medidas.get(medida);
+                if (indice == null) {
+                    indice = medidas.size();
+                    medidas.put(medida, indice);
+                }
+                medidaDe[c] = indice;
+                funcionDe[c] = funcion;
+            } else {
+                otrasColumnas.add(nombre);
+                otras.add(c);
+            }
+        }
+
+        for (int f = 0; f < parcial.getCantidadFilas(); f++) {
+            List<Object> clave = new ArrayList<>(claves.length);
+            for (int c : claves) {
+                clave.add(c >= 0 ? parcial.getValor(f, c) : null);
+            }
+
+            Grupo grupo = grupos.get(clave);
+            if (grupo == null) {
+                grupo = new Grupo();
+                grupos.put(clave, grupo);
+            }
+            for (int c : otras) {
+                if (grupo.otros.get(parcial.getColumnas().get(c)) == null) {
+                    grupo.otros.put(parcial.getColumnas().get(c), parcial.getValor(f, c));
+                }
+            }
+            for (int c = 0; c < cantidadColumnas; c++) {
+                if (medidaDe[c] >= 0) {
+                    grupo.acumulado(medidaDe[c]).combinar(funcionDe[c], parcial.getValor(f, c));
+                }
+            }
+        }
+    }
+
+    /**
+     * Función con la que el parcial calculó la columna, o null si no es una columna de medida.
+     */
+    private FuncionAgregacion funcionDeColumna(String nombre) {
+        if (funcionesParciales.size() == 1) {
+            return funcionesParciales.get(0);
+        }
+        for (FuncionAgregacion funcion : funcionesParciales) {
+            String sufijo = "_" + funcion.getSufijo();
+            if (nombre.length() > sufijo.length() && nombre.endsWith(sufijo)) {
+                return funcion;
+            }
+        }
+        return null;
+    }
+
+    private static boolean esNula(ResultadoColumnar parcial, int columna) {
+        for (int f = 0; f < parcial.getCantidadFilas(); f++) {
+            if (parcial.getValor(f, columna) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Grupo {
+        private final Map<String, Object> otros = new HashMap<>();
+        private final List<Acumulado> acumulados = new ArrayList<>();
+
+        private Acumulado acumulado(int medida) {
+            while (acumulados.size() <= medida) {
+                acumulados.add(new Acumulado());
+            }
+            return acumulados.get(medida);
+        }
+    }
+
+    /**
+     * Suma, conteo, mínimo y máximo de una medida en un grupo, combinados desde los parciales.
+     * Las sumas, mínimos y máximos enteros se conservan enteros.
+     */
+    private static final class Acumulado {
+        private double suma;
+        private long sumaEntera;
+        private boolean sumaSoloEnteros = true;
+        private boolean haySuma;
+        private long conteo;
+        private Number minimo;
+        private Number maximo;
+
+        private void combinar(FuncionAgregacion funcion, Object valor) {
+            if (!(valor instanceof Number)) {
+                return;
+            }
+            Number numero = (Number) valor;
+            switch (funcion) {
+                case SUM:
+                    haySuma = true;
+                    suma += numero.doubleValue();
+                    if (esEntero(numero)) {
+                        sumaEntera += numero.longValue();
+                    } else {
+                        sumaSoloEnteros = false;
+                    }
+                    break;
+                case COUNT:
+                    conteo += numero.longValue();
+                    break;
+                case MAX:
+                    if (maximo == null || numero.doubleValue() > maximo.doubleValue()) {
+                        maximo = numero;
+                    }
+                    break;
+                case MIN:
+                    if (minimo == null || numero.doubleValue() < minimo.doubleValue()) {
+                        minimo = numero;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Función no combinable: " + funcion);
+            }
+        }
+
+        private Object resultado(FuncionAgregacion funcion) {
+            switch (funcion) {
+                case SUM:
+                    return !haySuma ? null : sumaSoloEnteros ? (Object) sumaEntera : (Object) suma;
+                case COUNT:
+                    return conteo;
+                case AVG:
+                    return haySuma && conteo > 0 ? suma / conteo : null;
+                case MAX:
+                    return maximo;
+                default:
+                    return minimo;
+            }
+        }
+
+        private static boolean esEntero(Number numero) {
+            return numero instanceof Long || numero instanceof Integer
+                    || numero instanceof Short || numero instanceof Byte;
+        }
+    }
+}
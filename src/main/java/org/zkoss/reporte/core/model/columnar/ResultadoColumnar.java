@@ -0,0 +1,129 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de una consulta almacenado por columnas.
+ *
+ * Cada columna guarda sus valores en un arreglo primitivo según su tipo
+ * (long[], double[], códigos de diccionario para texto) con un bitmap de nulos,
+ * en lugar de un Map con valores boxeados por cada fila. Las filas se exponen
+ * como vistas {@link FilaResultado} creadas bajo demanda.
+ *
+ * Inmutable una vez construido con {@link ResultadoColumnarBuilder}.
+ */
+public final class ResultadoColumnar {
+
+    private static final ResultadoColumnar VACIO = new ResultadoColumnar(new Columna[0], 0);
+
+    private final Columna[] columnas;
+    private final List<String> nombres;
+    private final Map<String, Integer> posiciones;
+    private final int cantidadFilas;
+
+    ResultadoColumnar(Columna[] columnas, int cantidadFilas) {
+        this.columnas = columnas;
+        this.cantidadFilas = cantidadFilas;
+
+        String[] nombresColumnas = new String[columnas.length];
+        Map<String, Integer> mapa = new HashMap<>(columnas.length * 2);
+        for (int i = 0; i < columnas.length; i++) {
+            nombresColumnas[i] = columnas[i].getNombre();
+            mapa.put(nombresColumnas[i], i);
+        }
+        this.nombres = Collections.unmodifiableList(Arrays.asList(nombresColumnas));
+        this.posiciones = mapa;
+    }
+
+    public static ResultadoColumnar vacio() {
+        return VACIO;
+    }
+
+    public int getCantidadFilas() {
+        return cantidadFilas;
+    }
+
+    public int getCantidadColumnas() {
+        return columnas.length;
+    }
+
+    public List<String> getColumnas() {
+        return nombres;
+    }
+
+    public Columna getColumna(int indice) {
+        return columnas[indice];
+    }
+
+    public Columna getColumna(String nombre) {
+        Integer posicion = posiciones.get(nombre);
+        return posicion != null ? columnas[posicion] : null;
+    }
+
+    /**
+     * Posición de la columna o -1 si no existe.
+     */
+    public int posicion(Object nombre) {
+        Integer posicion = posiciones.get(nombre);
+        return posicion != null ? posicion : -1;
+    }
+
+    public Object getValor(int fila, int columna) {
+        return columnas[columna].getValor(fila);
+    }
+
+    public FilaResultado fila(int indice) {
+        if (indice < 0 || indice >= cantidadFilas) {
+            throw new IndexOutOfBoundsException("Fila " + indice + " fuera de rango (" + cantidadFilas + ")");
+        }
+        return new FilaResultado(this, indice);
+    }
+
+    /**
+     * Vista de solo lectura de las filas como Map. No copia datos.
+     */
+    public List<Map<String, Object>> filas() {
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int index) {
+                return fila(index);
+            }
+
+            @Override
+            public int size() {
+                return cantidadFilas;
+            }
+        };
+    }
+
+    /**
+     * Copia con las filas indicadas, en ese orden.
+     */
+    public ResultadoColumnar seleccion(int[] filas) {
+        ResultadoColumnarBuilder builder = new ResultadoColumnarBuilder(nombres);
+        Object[] valores = new Object[columnas.length];
+        for (int fila : filas) {
+            for (int c = 0; c < columnas.length; c++) {
+                valores[c] = columnas[c].getValor(fila);
+            }
+            builder.agregarFila(valores, valores.length);
+        }
+        return builder.construir();
+    }
+
+    /**
+     * Estimación del heap retenido por el resultado completo.
+     */
+    public long estimarBytes() {
+        long bytes = 64;
+        for (Columna columna : columnas) {
+            bytes += columna.estimarBytes();
+        }
+        return bytes;
+    }
+}
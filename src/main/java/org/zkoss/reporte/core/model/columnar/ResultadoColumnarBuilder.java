@@ -0,0 +1,303 @@
+package org.zkoss.reporte.core.model.columnar;
+
+import org.zkoss.reporte.utils.json.FilaSink;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Construye un {@link ResultadoColumnar} fila por fila.
+ *
+ * El tipo de cada columna se infiere del primer valor no nulo y se promueve
+ * si aparecen valores incompatibles: ENTERO pasa a DECIMAL ante un decimal y
+ * cualquier otra mezcla termina en OBJETO. Los nombres de columna se internan.
+ *
+ * Implementa {@link FilaSink} para recibir directamente las filas del decoder.
+ * No es thread-safe.
+ */
+public class ResultadoColumnarBuilder implements FilaSink {
+
+    private static final int CAPACIDAD_INICIAL = 64;
+
+    private final List<ConstructorColumna> columnas = new ArrayList<>();
+    private int filas;
+
+    public ResultadoColumnarBuilder() {
+    }
+
+    public ResultadoColumnarBuilder(List<String> nombres) {
+        for (String nombre : nombres) {
+            agregarColumna(nombre);
+        }
+    }
+
+    /**
+     * Agrega una columna; las filas ya cargadas quedan en null para ella.
+     * Devuelve el índice asignado.
+     */
+    public int agregarColumna(String nombre) {
+        ConstructorColumna columna = new ConstructorColumna(nombre.intern());
+        for (int i = 0; i < filas; i++) {
+            columna.agregar(null);
+        }
+        columnas.add(columna);
+        return columnas.size() - 1;
+    }
+
+    /**
+     * Agrega una fila. Las posiciones más allá de {@code cantidad} se cargan como null.
+     */
+    public void agregarFila(Object[] valores, int cantidad) {
+        int total = columnas.size();
+        for (int i = 0; i < total; i++) {
+            columnas.get(i).agregar(i < cantidad ? valores[i] : null);
+        }
+        filas++;
+    }
+
+    public void agregarFila(Object... valores) {
+        agregarFila(valores, valores.length);
+    }
+
+    public int getCantidadFilas() {
+        return filas;
+    }
+
+    @Override
+    public void nuevaColumna(int indice, String nombre) {
+        agregarColumna(nombre);
+    }
+
+    @Override
+    public void fila(Object[] valores, int cantidad) {
+        agregarFila(valores, cantidad);
+    }
+
+    public ResultadoColumnar construir() {
+        Columna[] resultado = new Columna[columnas.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = columnas.get(i).construir();
+        }
+        return new ResultadoColumnar(resultado, filas);
+    }
+
+    private static TipoColumna tipoDe(Object valor) {
+        if (valor instanceof Integer || valor instanceof Long || valor instanceof Short || valor instanceof Byte) {
+            return TipoColumna.ENTERO;
+        }
+        if (valor instanceof Double || valor instanceof Float || valor instanceof BigDecimal) {
+            return TipoColumna.DECIMAL;
+        }
+        if (valor instanceof String) {
+            return TipoColumna.TEXTO;
+        }
+        if (valor instanceof Boolean) {
+            return TipoColumna.BOOLEANO;
+        }
+        return TipoColumna.OBJETO;
+    }
+
+    /**
+     * Acumula los valores de una columna en arreglos que crecen por duplicación.
+     * Solo mantiene el arreglo correspondiente al tipo actual.
+     */
+    private static final class ConstructorColumna {
+
+        private final String nombre;
+        private final BitSet nulos = new BitSet();
+        private TipoColumna tipo;
+        private int filas;
+
+        private long[] enteros;
+        private double[] decimales;
+        private int[] codigos;
+        private BitSet booleanos;
+        private Object[] objetos;
+
+        private Map<String, Integer> diccionario;
+        private List<String> valoresDiccionario;
+
+        private ConstructorColumna(String nombre) {
+            this.nombre = nombre;
+        }
+
+        private void agregar(Object valor) {
+            if (valor == null) {
+                agregarNulo();
+                return;
+            }
+
+            TipoColumna tipoValor = tipoDe(valor);
+            if (tipo == null) {
+                iniciar(tipoValor);
+            } else if (tipo != tipoValor && tipo != TipoColumna.OBJETO) {
+                if (tipo == TipoColumna.ENTERO && tipoValor == TipoColumna.DECIMAL) {
+                    promoverADecimal();
+                } else if (!(tipo == TipoColumna.DECIMAL && tipoValor == TipoColumna.ENTERO)) {
+                    promoverAObjeto();
+                }
+            }
+
+            asegurarCapacidad();
+            switch (tipo) {
+                case ENTERO:
+                    enteros[filas] = ((Number) valor).longValue();
+                    break;
+                case DECIMAL:
+                    decimales[filas] = ((Number) valor).doubleValue();
+                    break;
+                case TEXTO:
+                    codigos[filas] = codificar((String) valor);
+                    break;
+                case BOOLEANO:
+                    booleanos.set(filas, (Boolean) valor);
+                    break;
+                default:
+                    objetos[filas] = valor;
+            }
+            filas++;
+        }
+
+        private void agregarNulo() {
+            if (tipo != null) {
+                asegurarCapacidad();
+                if (tipo == TipoColumna.TEXTO) {
+                    codigos[filas] = -1;
+                }
+            }
+            nulos.set(filas);
+            filas++;
+        }
+
+        /**
+         * Fija el tipo con el primer valor no nulo. Las filas previas ya están marcadas como nulas.
+         */
+        private void iniciar(TipoColumna nuevoTipo) {
+            tipo = nuevoTipo;
+            int capacidad = Math.max(CAPACIDAD_INICIAL, filas + 1);
+            switch (tipo) {
+                case ENTERO:
+                    enteros = new long[capacidad];
+                    break;
+                case DECIMAL:
+                    decimales = new double[capacidad];
+                    break;
+                case TEXTO:
+                    codigos = new int[capacidad];
+                    Arrays.fill(codigos, 0, filas, -1);
+                    diccionario = new HashMap<>();
+                    valoresDiccionario = new ArrayList<>();
+                    break;
+                case BOOLEANO:
+                    booleanos = new BitSet(capacidad);
+                    break;
+                default:
+                    objetos = new Object[capacidad];
+            }
+        }
+
+        private void promoverADecimal() {
+            decimales = new double[enteros.length];
+            for (int i = 0; i < filas; i++) {
+                decimales[i] = enteros[i];
+            }
+            enteros = null;
+            tipo = TipoColumna.DECIMAL;
+        }
+
+        private void promoverAObjeto() {
+            Object[] nuevos = new Object[Math.max(CAPACIDAD_INICIAL, filas + 1)];
+            for (int i = 0; i < filas; i++) {
+                nuevos[i] = valorActual(i);
+            }
+            enteros = null;
+            decimales = null;
+            codigos = null;
+            booleanos = null;
+            diccionario = null;
+            valoresDiccionario = null;
+            objetos = nuevos;
+            tipo = TipoColumna.OBJETO;
+        }
+
+        private Object valorActual(int fila) {
+            if (nulos.get(fila)) {
+                return null;
+            }
+            switch (tipo) {
+                case ENTERO:
+                    return enteros[fila];
+                case DECIMAL:
+                    return decimales[fila];
+                case TEXTO:
+                    return valoresDiccionario.get(codigos[fila]);
+                case BOOLEANO:
+                    return booleanos.get(fila);
+                default:
+                    return objetos[fila];
+            }
+        }
+
+        private int codificar(String valor) {
+            Integer codigo = diccionario.get(valor);
+            if (codigo == null) {
+                codigo = valoresDiccionario.size();
+                diccionario.put(valor, codigo);
+                valoresDiccionario.add(valor);
+            }
+            return codigo;
+        }
+
+        private void asegurarCapacidad() {
+            switch (tipo) {
+                case ENTERO:
+                    if (filas == enteros.length) {
+                        enteros = Arrays.copyOf(enteros, enteros.length * 2);
+                    }
+                    break;
+                case DECIMAL:
+                    if (filas == decimales.length) {
+                        decimales = Arrays.copyOf(decimales, decimales.length * 2);
+                    }
+                    break;
+                case TEXTO:
+                    if (filas == codigos.length) {
+                        codigos = Arrays.copyOf(codigos, codigos.length * 2);
+                    }
+                    break;
+                case OBJETO:
+                    if (filas == objetos.length) {
+                        objetos = Arrays.copyOf(objetos, objetos.length * 2);
+                    }
+                    break;
+                default:
+                    // BitSet crece solo
+            }
+        }
+
+        private Columna construir() {
+            if (tipo == null) {
+                // Columna sin ningún valor no nulo
+                return new ColumnaObjeto(nombre, filas, new Object[filas], nulos);
+            }
+            switch (tipo) {
+                case ENTERO:
+                    return new ColumnaEntera(nombre, filas, Arrays.copyOf(enteros, filas), nulos);
+                case DECIMAL:
+                    return new ColumnaDecimal(nombre, filas, Arrays.copyOf(decimales, filas), nulos);
+                case TEXTO:
+                    return new ColumnaTexto(nombre, filas, Arrays.copyOf(codigos, filas),
+                            valoresDiccionario.toArray(new String[0]), nulos);
+                case BOOLEANO:
+                    return new ColumnaBooleana(nombre, filas, booleanos, nulos);
+                default:
+                    return new ColumnaObjeto(nombre, filas, Arrays.copyOf(objetos, filas), nulos);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.zkoss.reporte.core.model.columnar;
+
+/**
+ * Tipo físico de almacenamiento de una columna del resultado.
+ */
+public enum TipoColumna {
+    ENTERO,     // long[]
+    DECIMAL,    // double[]
+    TEXTO,      // códigos int[] sobre un diccionario de valores distintos
+    BOOLEANO,   // BitSet
+    OBJETO      // Object[] para valores mixtos o anidados
+}
@@ -0,0 +1,715 @@
+package org.zkoss.reporte.core.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.zkoss.reporte.core.consolidacion.FuncionAgregacion;
+import org.zkoss.reporte.core.dto.request.ConsultaQuery;
+import org.zkoss.reporte.core.dto.request.ParametrosFiltros;
+import org.zkoss.reporte.core.dto.response.*;
+import org.zkoss.reporte.core.model.columnar.FusionResultados;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.service.interfaces.ConsultaDistribuidaService;
+import org.zkoss.reporte.core.service.interfaces.ReporteService;
+import org.zkoss.reporte.exception.ConsultaCanceladaException;
+import org.zkoss.reporte.spring_zk_config.DistribucionProperties;
+import org.zkoss.reporte.utils.http.CancelacionHttp;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Ejecución de una consulta repartida por provincia desde este cliente.
+ *
+ * En lugar de una única petición en la que el backend recorre todas las bases provinciales
+ * en serie, se envía una petición por provincia en paralelo y los resultados se combinan
+ * a medida que llegan. La latencia total queda determinada por la provincia más lenta.
+ *
+ * Las provincias que fallan o no responden dentro del tiempo límite no cancelan la consulta:
+ * se informan en {@link QueryResponse#getProvincias()} y la respuesta se marca como parcial.
+ *
+ * Sin consolidar y con una página pedida, cada provincia pagina por su cuenta y solo se le
+ * piden las filas que caen en esa página (ver {@link #ejecutarPagina}).
+ */
+@Service
+@Slf4j
+public class ConsultaDistribuidaServiceImpl implements ConsultaDistribuidaService {
+
+    @Autowired
+    private ReporteService reporteService;
+
+    @Autowired
+    private DistribucionProperties properties;
+
+    @Autowired
+    @Qualifier("distribucionExecutor")
+    private Executor executor;
+
+    @Override
+    public boolean isDisponible() {
+        return properties.isHabilitada() && !properties.getProvincias().isEmpty();
+    }
+
+    @Override
+    public QueryResponse ejecutarConsulta(String tipoConsulta, ConsultaQuery consulta) {
+        if (!isDisponible()) {
+            return reporteService.ejecutarConsulta(tipoConsulta, consulta);
+        }
+
+        ParametrosFiltros filtros = consulta.getParametrosFiltros() != null
+                ? consulta.getParametrosFiltros()
+                : new ParametrosFiltros();
+        PlanFusion plan = planificarFusion(filtros);
+        if (plan == null) {
+            log.info("Consulta '{}': la consolidación no se puede combinar por provincia, la resuelve el backend",
+                    tipoConsulta);
+            return reporteService.ejecutarConsulta(tipoConsulta, consulta);
+        }
+
+        // Sin consolidar y con página pedida, cada provincia pagina por su cuenta
+        if (plan.camposAgrupacion == null && filtros.getPagina() != null && filtros.getTamanoPagina() != null
+                && filtros.getTamanoPagina() > 0) {
+            QueryResponse pagina = ejecutarPagina(tipoConsulta, consulta, filtros);
+            if (pagina != null) {
+                return pagina;
+            }
+        }
+        return ejecutarCompleta(tipoConsulta, consulta, filtros, plan);
+    }
+
+    // =============== MÉTODOS PRIVADOS ===============
+
+    /**
+     * Trae el resultado completo de cada provincia y los combina a medida que llegan.
+     */
+    private QueryResponse ejecutarCompleta(String tipoConsulta, ConsultaQuery consulta,
+                                           ParametrosFiltros filtros, PlanFusion plan) {
+        List<String> provincias = properties.getProvincias();
+        long inicio = System.currentTimeMillis();
+
+        log.info("Ejecutando consulta '{}' en {} provincias en paralelo", tipoConsulta, provincias.size());
+
+        Map<String, Supplier<QueryResponse>> porciones = new LinkedHashMap<>();
+        for (String provincia : provincias) {
+            ConsultaQuery porcion = porcion(consulta, filtrosProvincia(filtros, provincia, plan));
+            porciones.put(provincia, () -> reporteService.ejecutarConsulta(tipoConsulta, porcion));
+        }
+
+        Combinacion combinacion = new Combinacion(plan);
+        List<MetadataProvincia> resumen = dispersar(tipoConsulta, porciones, inicio,
+                parcial -> combinacion.agregar(parcial.respuesta));
+
+        if (combinacion.fusion == null) {
+            log.error("La consulta '{}' falló en todas las provincias", tipoConsulta);
+            throw new RuntimeException("Error al ejecutar consulta: ninguna provincia respondió correctamente");
+        }
+
+        long tiempoTotal = System.currentTimeMillis() - inicio;
+        QueryResponse respuesta = construirRespuesta(combinacion, plan, resumen, tiempoTotal);
+
+        log.info("Consulta distribuida '{}' completada - {} registros en {} ms, parcial: {}",
+                tipoConsulta, respuesta.getResultado().getCantidadFilas(), tiempoTotal, respuesta.getParcial());
+        return respuesta;
+    }
+
+    /**
+     * Una página de una consulta sin consolidar, o null si alguna provincia no informa su total.
+     *
+     * Las filas se ordenan por provincia (todas las de la primera, luego las de la segunda...),
+     * así cada página es un tramo de una o pocas provincias y a cada una se le piden solo las
+     * páginas propias que lo cubren. Para ubicar el tramo se necesita el total de cada provincia:
+     * sale de la primera página de todas, que se pide al empezar, y viaja en el lastKey de la
+     * respuesta junto con la última página leída de cada provincia y su lastKey. Así la página
+     * siguiente sigue con keyset pagination en cada provincia sin volver a contar.
+     */
+    private QueryResponse ejecutarPagina(String tipoConsulta, ConsultaQuery consulta, ParametrosFiltros filtros) {
+        List<String> provincias = properties.getProvincias();
+        int tamano = filtros.getTamanoPagina();
+        int pagina = Math.max(filtros.getPagina(), 1);
+        long inicio = System.currentTimeMillis();
+
+        Map<String, MetadataProvincia> metadatos = new HashMap<>();
+        Map<String, QueryResponse> primeras = new HashMap<>();
+        Map<String, EstadoProvincia> estado = EstadoProvincia.leer(filtros.getLastKey(), provincias);
+        if (estado == null) {
+            Map<String, Supplier<QueryResponse>> porciones = new LinkedHashMap<>();
+            for (String provincia : provincias) {
+                ConsultaQuery porcion = porcion(consulta, filtrosPagina(filtros, provincia, 1, tamano, null));
+                porciones.put(provincia, () -> reporteService.ejecutarConsulta(tipoConsulta, porcion));
+            }
+            for (MetadataProvincia metadata : dispersar(tipoConsulta, porciones, inicio,
+                    parcial -> primeras.put(parcial.provincia, parcial.respuesta))) {
+                metadatos.put(metadata.getProvincia(), metadata);
+            }
+
+            estado = new LinkedHashMap<>();
+            for (String provincia : provincias) {
+                QueryResponse primera = primeras.get(provincia);
+                if (primera == null) {
+                    estado.put(provincia, EstadoProvincia.FALLIDA);
+                    continue;
+                }
+                MetadataPaginacion paginacion = primera.getPaginacion();
+                if (paginacion == null || paginacion.getTotalRegistros() == null) {
+                    log.info("Consulta '{}': la provincia '{}' no informa su total, se trae completa",
+                            tipoConsulta, provincia);
+                    return null;
+                }
+                estado.put(provincia, new EstadoProvincia(paginacion.getTotalRegistros(), 1, paginacion.getLastKey()));
+            }
+        }
+
+        // Tramo de cada provincia que cae en la página, en posiciones propias [desde, hasta)
+        long desde = (long) (pagina - 1) * tamano;
+        long hasta = desde + tamano;
+        long total = 0;
+        Map<String, long[]> tramos = new LinkedHashMap<>();
+        for (Map.Entry<String, EstadoProvincia> entrada : estado.entrySet()) {
+            long totalProvincia = entrada.getValue().total;
+            long inicioTramo = Math.max(desde - total, 0);
+            long finTramo = Math.min(hasta - total, totalProvincia);
+            if (inicioTramo < finTramo) {
+                tramos.put(entrada.getKey(), new long[]{inicioTramo, finTramo});
+            }
+            total += totalProvincia;
+        }
+
+        Map<String, QueryResponse> leidas = new HashMap<>();
+        if (!tramos.isEmpty()) {
+            Map<String, Supplier<QueryResponse>> porciones = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> tramo : tramos.entrySet()) {
+                String provincia = tramo.getKey();
+                EstadoProvincia estadoProvincia = estado.get(provincia);
+                porciones.put(provincia, () -> leerTramo(tipoConsulta, consulta, filtros, provincia, estadoProvincia,
+                        tramo.getValue(), tamano, primeras.get(provincia)));
+            }
+            for (MetadataProvincia metadata : dispersar(tipoConsulta, porciones, inicio,
+                    parcial -> leidas.put(parcial.provincia, parcial.respuesta))) {
+                metadatos.put(metadata.getProvincia(), metadata);
+            }
+            if (leidas.isEmpty()) {
+                log.error("La página {} de la consulta '{}' falló en todas las provincias", pagina, tipoConsulta);
+                throw new RuntimeException("Error al ejecutar consulta: ninguna provincia respondió correctamente");
+            }
+        }
+
+        // Filas en el orden de las provincias; cada una avanza su página y lastKey
+        FusionResultados fusion = FusionResultados.concatenacion();
+        Map<String, EstadoProvincia> siguiente = new LinkedHashMap<>(estado);
+        QueryResponse referencia = null;
+        List<MetadataProvincia> resumen = new ArrayList<>();
+        for (String provincia : provincias) {
+            QueryResponse leida = leidas.get(provincia);
+            if (leida != null) {
+                fusion.agregar(leida.getResultado());
+                referencia = referencia != null ? referencia : leida;
+                siguiente.put(provincia, estado.get(provincia).avanzar(leida.getPaginacion()));
+            }
+            resumen.add(resumenPagina(provincia, estado.get(provincia), metadatos.get(provincia)));
+        }
+
+        ResultadoColumnar resultado = fusion.construir();
+        QueryResponse respuesta = new QueryResponse();
+        respuesta.setResultado(resultado);
+        respuesta.setDatos(resultado.filas());
+        respuesta.setColumnas(resultado.getColumnas());
+
+        MetadataPaginacion paginacion = new MetadataPaginacion();
+        paginacion.setTotalRegistros(total);
+        paginacion.setPaginaActual(pagina);
+        paginacion.setRegistrosPorPagina(tamano);
+        paginacion.setTotalPaginas((int) ((total + tamano - 1) / tamano));
+        paginacion.setTieneSiguiente(hasta < total);
+        paginacion.setTieneAnterior(pagina > 1);
+        paginacion.setLastKey(EstadoProvincia.escribir(siguiente));
+        respuesta.setPaginacion(paginacion);
+
+        long tiempoTotal = System.currentTimeMillis() - inicio;
+        completarRespuesta(respuesta, referencia, resumen, tiempoTotal);
+
+        log.info("Consulta distribuida '{}' página {} - {} de {} registros en {} ms, parcial: {}",
+                tipoConsulta, pagina, resultado.getCantidadFilas(), total, tiempoTotal, respuesta.getParcial());
+        return respuesta;
+    }
+
+    /**
+     * Filas [tramo[0], tramo[1]) de una provincia: se piden sus páginas que las contienen (una o
+     * dos, porque el tramo no supera una página), con el lastKey de la anterior si es la última
+     * leída. La primera página, si ya se trajo al contar, no se vuelve a pedir.
+     * La paginación de la respuesta es la de la última página pedida.
+     */
+    private QueryResponse leerTramo(String tipoConsulta, ConsultaQuery consulta, ParametrosFiltros filtros,
+                                    String provincia, EstadoProvincia estado, long[] tramo, int tamano,
+                                    QueryResponse primera) {
+        FusionResultados fusion = FusionResultados.concatenacion();
+        QueryResponse ultima = null;
+        for (long indice = tramo[0] / tamano; indice <= (tramo[1] - 1) / tamano; indice++) {
+            int numero = (int) indice + 1;
+            QueryResponse respuesta;
+            if (numero == 1 && primera != null) {
+                respuesta = primera;
+            } else {
+                Map<String, Object> lastKey = estado.pagina == numero - 1 ? estado.lastKey : null;
+                respuesta = reporteService.ejecutarConsulta(tipoConsulta,
+                        porcion(consulta, filtrosPagina(filtros, provincia, numero, tamano, lastKey)));
+            }
+            ResultadoColumnar filas = respuesta.getResultado() != null
+                    ? respuesta.getResultado()
+                    : ResultadoColumnar.vacio();
+            long base = indice * tamano;
+            fusion.agregarFilas(filas,
+                    (int) Math.max(tramo[0] - base, 0),
+                    (int) Math.min(tramo[1] - base, filas.getCantidadFilas()));
+            ultima = respuesta;
+        }
+
+        QueryResponse respuesta = new QueryResponse();
+        respuesta.setResultado(fusion.construir());
+        respuesta.setQuery(ultima.getQuery());
+        respuesta.setPaginacion(ultima.getPaginacion());
+        return respuesta;
+    }
+
+    /**
+     * Estado de la provincia en la página: el de su consulta si se le pidió algo, o el que
+     * tuvo al contar si falló entonces (no aporta filas a ninguna página).
+     */
+    private static MetadataProvincia resumenPagina(String provincia, EstadoProvincia estado,
+                                                   MetadataProvincia metadata) {
+        if (metadata != null) {
+            return metadata;
+        }
+        if (estado.fallida) {
+            return MetadataProvincia.builder()
+                    .provincia(provincia)
+                    .tiempoEjecucionMs(0L)
+                    .registros(0)
+                    .estado(MetadataProvincia.ESTADO_ERROR)
+                    .error("No respondió al iniciar la consulta")
+                    .build();
+        }
+        return MetadataProvincia.builder()
+                .provincia(provincia)
+                .tiempoEjecucionMs(0L)
+                .registros(0)
+                .estado(MetadataProvincia.ESTADO_OK)
+                .build();
+    }
+
+    /**
+     * Lanza una porción por provincia en paralelo y entrega cada respuesta a {@code alLlegar}
+     * en el hilo que llama, a medida que terminan.
+     *
+     * Cada porción corre con su propia cancelación, derivada de la del hilo que llama: las que
+     * no terminan dentro del tiempo límite se abortan, lo que cierra su conexión con el backend,
+     * sin afectar a las demás. Cancelar solo el futuro no cortaría la petición HTTP en curso.
+     *
+     * @return Estado de cada provincia, en el orden de {@code porciones}
+     */
+    private List<MetadataProvincia> dispersar(String tipoConsulta,
+                                              Map<String, Supplier<QueryResponse>> porciones,
+                                              long inicio,
+                                              Consumer<ResultadoProvincia> alLlegar) {
+        long limite = inicio + properties.getTimeoutMs();
+
+        // ===== SCATTER =====
+        // Las porciones heredan la cancelación del hilo que lanza la consulta
+        CancelacionHttp cancelacion = CancelacionHttp.actual();
+        CompletionService<ResultadoProvincia> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<ResultadoProvincia>, String> pendientes = new LinkedHashMap<>();
+        Map<String, CancelacionHttp> cancelaciones = new HashMap<>();
+        for (Map.Entry<String, Supplier<QueryResponse>> porcion : porciones.entrySet()) {
+            String provincia = porcion.getKey();
+            CancelacionHttp cancelacionProvincia = cancelacion != null ? cancelacion.derivada() : new CancelacionHttp();
+            cancelaciones.put(provincia, cancelacionProvincia);
+            pendientes.put(completion.submit(() -> CancelacionHttp.ejecutar(cancelacionProvincia,
+                    () -> ejecutarPorcion(provincia, porcion.getValue()))), provincia);
+        }
+
+        // ===== GATHER =====
+        Map<String, MetadataProvincia> metadatos = new HashMap<>();
+        try {
+            while (!pendientes.isEmpty()) {
+                long restante = limite - System.currentTimeMillis();
+                Future<ResultadoProvincia> terminado = restante > 0
+                        ? completion.poll(restante, TimeUnit.MILLISECONDS)
+                        : null;
+                if (terminado == null) {
+                    break;
+                }
+                pendientes.remove(terminado);
+
+                ResultadoProvincia parcial = terminado.get();
+                metadatos.put(parcial.provincia, parcial.metadata);
+                if (parcial.respuesta != null) {
+                    alLlegar.accept(parcial);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Consulta distribuida '{}' interrumpida", tipoConsulta);
+        } catch (ExecutionException e) {
+            // ejecutarPorcion captura sus errores; solo llega aquí un fallo inesperado
+            log.error("Error inesperado en consulta distribuida '{}': {}", tipoConsulta, e.getMessage(), e);
+        }
+
+        // Las provincias que no terminaron a tiempo se abortan
+        for (Map.Entry<Future<ResultadoProvincia>, String> pendiente : pendientes.entrySet()) {
+            cancelaciones.get(pendiente.getValue()).cancelar();
+            pendiente.getKey().cancel(true);
+            metadatos.put(pendiente.getValue(), MetadataProvincia.builder()
+                    .provincia(pendiente.getValue())
+                    .tiempoEjecucionMs(System.currentTimeMillis() - inicio)
+                    .estado(MetadataProvincia.ESTADO_TIMEOUT)
+                    .error("Sin respuesta en " + properties.getTimeoutMs() + " ms")
+                    .build());
+        }
+
+        if (cancelacion != null && cancelacion.isCancelada()) {
+            log.info("Consulta distribuida '{}' cancelada por el usuario", tipoConsulta);
+            throw new ConsultaCanceladaException("Consulta cancelada");
+        }
+
+        List<MetadataProvincia> resumen = new ArrayList<>();
+        for (String provincia : porciones.keySet()) {
+            resumen.add(metadatos.get(provincia));
+        }
+        return resumen;
+    }
+
+    private static ConsultaQuery porcion(ConsultaQuery consulta, ParametrosFiltros filtros) {
+        return ConsultaQuery.builder()
+                .nombreQuery(consulta.getNombreQuery())
+                .formato(consulta.getFormato())
+                .parametrosFiltros(filtros)
+                .build();
+    }
+
+    /**
+     * Cómo se combinan los resultados provinciales, o null si no se pueden combinar aquí.
+     *
+     * Sin consolidar se concatenan. Consolidados se vuelven a agrupar, lo que requiere conocer
+     * los campos de agrupación y que cada función se pueda calcular desde los parciales
+     * (AVG se pide como SUM y COUNT). Con periodo temporal o subtotales el backend agrega
+     * filas o columnas que aquí no se pueden reconstruir.
+     */
+    private PlanFusion planificarFusion(ParametrosFiltros filtros) {
+        if (!Boolean.TRUE.equals(filtros.getConsolidado())) {
+            return new PlanFusion(null, null, null);
+        }
+        if (filtros.getConsolidacion() == null || filtros.getConsolidacion().isEmpty()
+                || (filtros.getPeriodoTemporal() != null && !filtros.getPeriodoTemporal().isEmpty())
+                || Boolean.TRUE.equals(filtros.getIncluirSubtotales())) {
+            return null;
+        }
+
+        Set<FuncionAgregacion> salida = EnumSet.noneOf(FuncionAgregacion.class);
+        if (filtros.getFunciones() != null) {
+            for (String funcion : filtros.getFunciones()) {
+                try {
+                    salida.add(FuncionAgregacion.valueOf(funcion.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        if (salida.isEmpty()) {
+            salida.add(FuncionAgregacion.SUM);
+        }
+        return new PlanFusion(filtros.getConsolidacion(), FusionResultados.funcionesParciales(salida), salida);
+    }
+
+    /**
+     * Cada porción consulta una sola provincia y trae su resultado completo:
+     * la paginación se aplica después sobre el resultado combinado.
+     * Consolidada, se piden las funciones que se pueden combinar.
+     */
+    private ParametrosFiltros filtrosProvincia(ParametrosFiltros filtros, String provincia, PlanFusion plan) {
+        List<String> funciones = filtros.getFunciones();
+        if (plan.funcionesParciales != null) {
+            funciones = new ArrayList<>();
+            for (FuncionAgregacion funcion : plan.funcionesParciales) {
+                funciones.add(funcion.name());
+            }
+        }
+        return filtros.toBuilder()
+                .provincia(provincia)
+                .funciones(funciones)
+                .usarTodasLasBDS(false)
+                .pagina(null)
+                .tamanoPagina(null)
+                .lastKey(null)
+                .build();
+    }
+
+    /**
+     * Una página propia de la provincia, sin consolidar.
+     */
+    private static ParametrosFiltros filtrosPagina(ParametrosFiltros filtros, String provincia,
+                                                   int pagina, int tamano, Map<String, Object> lastKey) {
+        return filtros.toBuilder()
+                .provincia(provincia)
+                .usarTodasLasBDS(false)
+                .pagina(pagina)
+                .tamanoPagina(tamano)
+                .lastKey(lastKey)
+                .build();
+    }
+
+    private ResultadoProvincia ejecutarPorcion(String provincia, Supplier<QueryResponse> consulta) {
+        long inicio = System.currentTimeMillis();
+        try {
+            QueryResponse respuesta = consulta.get();
+            long tiempo = System.currentTimeMillis() - inicio;
+            int registros = respuesta.getResultado() != null ? respuesta.getResultado().getCantidadFilas() : 0;
+
+            log.debug("Provincia '{}' respondió {} registros en {} ms", provincia, registros, tiempo);
+            return new ResultadoProvincia(provincia, respuesta, MetadataProvincia.builder()
+                    .provincia(provincia)
+                    .tiempoEjecucionMs(tiempo)
+                    .registros(registros)
+                    .estado(MetadataProvincia.ESTADO_OK)
+                    .build());
+
+        } catch (Exception e) {
+            long tiempo = System.currentTimeMillis() - inicio;
+            log.warn("Provincia '{}' falló en {} ms: {}", provincia, tiempo, e.getMessage());
+            return new ResultadoProvincia(provincia, null, MetadataProvincia.builder()
+                    .provincia(provincia)
+                    .tiempoEjecucionMs(tiempo)
+                    .registros(0)
+                    .estado(MetadataProvincia.ESTADO_ERROR)
+                    .error(e.getMessage())
+                    .build());
+        }
+    }
+
+    private QueryResponse construirRespuesta(Combinacion combinacion,
+                                             PlanFusion plan,
+                                             List<MetadataProvincia> provincias,
+                                             long tiempoTotal) {
+        ResultadoColumnar resultado = combinacion.fusion.construir();
+        QueryResponse referencia = combinacion.referencia;
+
+        QueryResponse respuesta = new QueryResponse();
+        respuesta.setResultado(resultado);
+        respuesta.setDatos(resultado.filas());
+        respuesta.setColumnas(resultado.getColumnas());
+
+        // Resultado completo en una sola página
+        MetadataPaginacion paginacion = new MetadataPaginacion();
+        paginacion.setTotalRegistros((long) resultado.getCantidadFilas());
+        paginacion.setPaginaActual(1);
+        paginacion.setRegistrosPorPagina(resultado.getCantidadFilas());
+        paginacion.setTotalPaginas(1);
+        paginacion.setTieneSiguiente(false);
+        paginacion.setTieneAnterior(false);
+        respuesta.setPaginacion(paginacion);
+
+        completarRespuesta(respuesta, referencia, provincias, tiempoTotal);
+
+        if (referencia.getConsolidacion() != null) {
+            MetadataConsolidacion consolidacion = referencia.getConsolidacion().toBuilder().build();
+            consolidacion.setRegistrosOriginales(combinacion.registrosOriginales > 0
+                    ? combinacion.registrosOriginales
+                    : combinacion.fusion.getFilasRecibidas());
+            consolidacion.setRegistrosConsolidados(resultado.getCantidadFilas());
+            if (plan.funcionesSalida != null) {
+                // Las porciones pudieron pedirse con otras funciones (AVG como SUM y COUNT)
+                List<String> funciones = new ArrayList<>();
+                for (FuncionAgregacion funcion : plan.funcionesSalida) {
+                    funciones.add(funcion.name());
+                }
+                consolidacion.setFunciones(funciones);
+            }
+            respuesta.setConsolidacion(consolidacion);
+        }
+        return respuesta;
+    }
+
+    /**
+     * Metadata de la query y estado por provincia; la respuesta es parcial si alguna falló.
+     */
+    private static void completarRespuesta(QueryResponse respuesta,
+                                           QueryResponse referencia,
+                                           List<MetadataProvincia> provincias,
+                                           long tiempoTotal) {
+        List<String> incluidas = new ArrayList<>();
+        for (MetadataProvincia provincia : provincias) {
+            if (MetadataProvincia.ESTADO_OK.equals(provincia.getEstado())) {
+                incluidas.add(provincia.getProvincia());
+            }
+        }
+
+        MetadataQuery query = referencia != null && referencia.getQuery() != null
+                ? referencia.getQuery().toBuilder().build()
+                : new MetadataQuery();
+        query.setFechaEjecucion(LocalDateTime.now());
+        query.setTiempoEjecucionMs(tiempoTotal);
+        query.setProvincia(null);
+        query.setProvinciasIncluidas(incluidas);
+        respuesta.setQuery(query);
+
+        respuesta.setProvincias(provincias);
+        respuesta.setParcial(incluidas.size() < provincias.size());
+    }
+
+    /**
+     * Combina las respuestas provinciales a medida que llegan. La primera define cómo se
+     * combinan las siguientes: consolidadas, se vuelven a agrupar por los campos de agrupación
+     * que informa el backend (o, si no los informa, los pedidos), numéricos o no.
+     */
+    private static final class Combinacion {
+        private final PlanFusion plan;
+        private FusionResultados fusion;
+        private QueryResponse referencia;
+        private int registrosOriginales;
+
+        private Combinacion(PlanFusion plan) {
+            this.plan = plan;
+        }
+
+        private void agregar(QueryResponse respuesta) {
+            if (fusion == null) {
+                referencia = respuesta;
+                fusion = crearFusion(respuesta);
+            }
+            fusion.agregar(respuesta.getResultado());
+
+            MetadataConsolidacion consolidacion = respuesta.getConsolidacion();
+            if (consolidacion != null && consolidacion.getRegistrosOriginales() != null) {
+                registrosOriginales += consolidacion.getRegistrosOriginales();
+            }
+        }
+
+        private FusionResultados crearFusion(QueryResponse respuesta) {
+            if (plan.camposAgrupacion == null) {
+                return FusionResultados.concatenacion();
+            }
+            MetadataConsolidacion consolidacion = respuesta.getConsolidacion();
+            List<String> campos = consolidacion != null && consolidacion.getCamposAgrupacion() != null
+                    && !consolidacion.getCamposAgrupacion().isEmpty()
+                    ? consolidacion.getCamposAgrupacion()
+                    : plan.camposAgrupacion;
+            return FusionResultados.consolidada(campos, plan.funcionesParciales, plan.funcionesSalida);
+        }
+    }
+
+    /**
+     * Posición de una provincia en la paginación distribuida: su total de filas y la última
+     * página propia leída con su lastKey. Viaja en el lastKey de cada página combinada.
+     */
+    private static final class EstadoProvincia {
+        private static final String CLAVE_PROVINCIAS = "provincias";
+        private static final String CLAVE_TOTAL = "total";
+        private static final String CLAVE_PAGINA = "pagina";
+        private static final String CLAVE_LAST_KEY = "lastKey";
+        private static final String CLAVE_FALLIDA = "fallida";
+
+        // Sin respuesta al contar: no aporta filas en ninguna página
+        private static final EstadoProvincia FALLIDA = new EstadoProvincia(0, 0, null, true);
+
+        private final long total;
+        private final int pagina;
+        private final Map<String, Object> lastKey;
+        private final boolean fallida;
+
+        private EstadoProvincia(long total, int pagina, Map<String, Object> lastKey) {
+            this(total, pagina, lastKey, false);
+        }
+
+        private EstadoProvincia(long total, int pagina, Map<String, Object> lastKey, boolean fallida) {
+            this.total = total;
+            this.pagina = pagina;
+            this.lastKey = lastKey;
+            this.fallida = fallida;
+        }
+
+        /**
+         * Mismo total, con la última página leída en esta petición.
+         */
+        private EstadoProvincia avanzar(MetadataPaginacion paginacion) {
+            if (paginacion == null || paginacion.getPaginaActual() == null) {
+                return new EstadoProvincia(total, 0, null);
+            }
+            return new EstadoProvincia(total, paginacion.getPaginaActual(), paginacion.getLastKey());
+        }
+
+        private static Map<String, Object> escribir(Map<String, EstadoProvincia> estados) {
+            Map<String, Object> provincias = new LinkedHashMap<>();
+            for (Map.Entry<String, EstadoProvincia> entrada : estados.entrySet()) {
+                EstadoProvincia estado = entrada.getValue();
+                Map<String, Object> valores = new HashMap<>();
+                valores.put(CLAVE_TOTAL, estado.total);
+                valores.put(CLAVE_PAGINA, estado.pagina);
+                valores.put(CLAVE_LAST_KEY, estado.lastKey);
+                valores.put(CLAVE_FALLIDA, estado.fallida);
+                provincias.put(entrada.getKey(), valores);
+            }
+            return Collections.singletonMap(CLAVE_PROVINCIAS, provincias);
+        }
+
+        /**
+         * Estado de cada provincia configurada, o null si el lastKey no lo trae completo.
+         */
+        @SuppressWarnings("unchecked")
+        private static Map<String, EstadoProvincia> leer(Map<String, Object> lastKey, List<String> provincias) {
+            Object valor = lastKey != null ? lastKey.get(CLAVE_PROVINCIAS) : null;
+            if (!(valor instanceof Map)) {
+                return null;
+            }
+            Map<String, Object> guardados = (Map<String, Object>) valor;
+            Map<String, EstadoProvincia> estados = new LinkedHashMap<>();
+            for (String provincia : provincias) {
+                Object guardado = guardados.get(provincia);
+                if (!(guardado instanceof Map)) {
+                    return null;
+                }
+                Map<String, Object> valores = (Map<String, Object>) guardado;
+                if (!(valores.get(CLAVE_TOTAL) instanceof Number) || !(valores.get(CLAVE_PAGINA) instanceof Number)) {
+                    return null;
+                }
+                Object clave = valores.get(CLAVE_LAST_KEY);
+                estados.put(provincia, new EstadoProvincia(
+                        ((Number) valores.get(CLAVE_TOTAL)).longValue(),
+                        ((Number) valores.get(CLAVE_PAGINA)).intValue(),
+                        clave instanceof Map ? (Map<String, Object>) clave : null,
+                        Boolean.TRUE.equals(valores.get(CLAVE_FALLIDA))));
+            }
+            return estados;
+        }
+    }
+
+    /**
+     * Campos de agrupación y funciones para combinar; todo null cuando se concatena.
+     */
+    private static final class PlanFusion {
+        private final List<String> camposAgrupacion;
+        private final Set<FuncionAgregacion> funcionesParciales;
+        private final Set<FuncionAgregacion> funcionesSalida;
+
+        private PlanFusion(List<String> camposAgrupacion,
+                           Set<FuncionAgregacion> funcionesParciales,
+                           Set<FuncionAgregacion> funcionesSalida) {
+            this.camposAgrupacion = camposAgrupacion;
+            this.funcionesParciales = funcionesParciales;
+            this.funcionesSalida = funcionesSalida;
+        }
+    }
+
+    private static final class ResultadoProvincia {
+        private final String provincia;
+        private final QueryResponse respuesta;
+        private final MetadataProvincia metadata;
+
+        private ResultadoProvincia(String provincia, QueryResponse respuesta, MetadataProvincia metadata) {
+            this.provincia = provincia;
+            this.respuesta = respuesta;
+            this.metadata = metadata;
+        }
+    }
+}
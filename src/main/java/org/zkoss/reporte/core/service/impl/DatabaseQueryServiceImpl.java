@@ -2,21 +2,37 @@ package org.zkoss.reporte.core.service.impl;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.zkoss.reporte.core.cache.CatalogoActualizadoEvent;
+import org.zkoss.reporte.core.cache.RegistroCaches;
 import org.zkoss.reporte.core.dto.request.ConsultaQuery;
 import org.zkoss.reporte.core.dto.request.Query;
 import org.zkoss.reporte.core.dto.response.*;
+import org.zkoss.reporte.core.indices.IndiceCatalogo;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnarBuilder;
 import org.zkoss.reporte.core.service.interfaces.DatabaseQueryService;
+import org.zkoss.reporte.spring_zk_config.CatalogoProperties;
+import org.zkoss.reporte.utils.json.RespuestaDecodificada;
+import org.zkoss.reporte.utils.json.RespuestaQueryDecoder;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -46,6 +62,22 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
 
     private static final String BASE_PATH = "/api/queries-db";
 
+    @Autowired
+    private CatalogoProperties catalogoProperties;
+
+    @Autowired
+    private RegistroCaches registroCaches;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Catálogo compartido por todas las sesiones. Los objetos cacheados no deben modificarse.
+    private LoadingCache<String, MetadataQuery> queriesPorCodigo;
+    private LoadingCache<ClaveListado, List<MetadataQuery>> listasCatalogo;
+
+    // Índice de búsqueda sobre el catálogo completo; se reemplaza cuando cambia esa lista
+    private volatile IndiceCatalogo indiceCatalogo = IndiceCatalogo.VACIO;
+
     /**
      * Construye la URL base para las peticiones al backend
      * @return URL completa del endpoint base
@@ -54,6 +86,26 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
         return backendUrl + BASE_PATH;
     }
 
+    @PostConstruct
+    void inicializarCatalogo() {
+        queriesPorCodigo = Caffeine.newBuilder()
+                .maximumSize(catalogoProperties.getMaxQueries())
+                .expireAfterWrite(catalogoProperties.getExpiracionMs(), TimeUnit.MILLISECONDS)
+                .refreshAfterWrite(catalogoProperties.getRefrescoMs(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build(this::cargarQuery);
+
+        listasCatalogo = Caffeine.newBuilder()
+                .maximumSize(catalogoProperties.getMaxListas())
+                .expireAfterWrite(catalogoProperties.getExpiracionMs(), TimeUnit.MILLISECONDS)
+                .refreshAfterWrite(catalogoProperties.getRefrescoMs(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build(this::cargarListado);
+
+        registroCaches.registrar("catalogo.queries", queriesPorCodigo);
+        registroCaches.registrar("catalogo.listas", listasCatalogo);
+    }
+
     // =============== REGISTRO Y GESTIÓN DE QUERIES ===============
 
     /**
@@ -90,6 +142,8 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
         } catch (Exception e) {
             log.error("Error registrando query: {}", e.getMessage(), e);
             throw new RuntimeException("Error al registrar query: " + e.getMessage(), e);
+        } finally {
+            invalidarCatalogo(query.getCodigo());
         }
     }
 
@@ -101,6 +155,23 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
      */
     @Override
     public List<MetadataQuery> traerQuerys(String categoria) {
+        return new ArrayList<>(listasCatalogo.get(new ClaveListado(TipoListado.CATEGORIA, normalizar(categoria))));
+    }
+
+    /**
+     * Vuelve a pedir el catálogo completo al backend sin pasar por la caché y lo deja en ella;
+     * los demás listados se descartan. Si el backend falla la caché queda como estaba.
+     */
+    @Override
+    public List<MetadataQuery> recargarCatalogo() {
+        ClaveListado clave = new ClaveListado(TipoListado.CATEGORIA, "");
+        List<MetadataQuery> catalogo = cargarListado(clave);
+        listasCatalogo.invalidateAll();
+        listasCatalogo.put(clave, catalogo);
+        return new ArrayList<>(catalogo);
+    }
+
+    private List<MetadataQuery> cargarQuerys(String categoria) {
         try {
             log.info("Obteniendo queries - Categoría: {}", categoria);
 
@@ -140,6 +211,10 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
      */
     @Override
     public MetadataQuery obtenerQuery(String codigo) {
+        return codigo != null ? queriesPorCodigo.get(codigo) : null;
+    }
+
+    private MetadataQuery cargarQuery(String codigo) {
         try {
             log.info("Obteniendo query: {}", codigo);
 
@@ -198,6 +273,8 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
         } catch (Exception e) {
             log.error("Error actualizando query '{}': {}", codigo, e.getMessage(), e);
             throw new RuntimeException("Error al actualizar query: " + e.getMessage(), e);
+        } finally {
+            invalidarCatalogo(codigo);
         }
     }
 
@@ -226,6 +303,8 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
         } catch (Exception e) {
             log.error("Error eliminando query '{}': {}", codigo, e.getMessage(), e);
             throw new RuntimeException("Error al eliminar query: " + e.getMessage(), e);
+        } finally {
+            invalidarCatalogo(codigo);
         }
     }
 
@@ -245,18 +324,7 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
 
             String url = getBaseUrl() + "/ejecutar/" + codigo;
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<ConsultaQuery> request = new HttpEntity<>(consulta, headers);
-
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    request,
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
-
-            return convertirRespuestaEjecucion(response.getBody(), codigo);
+            return ejecutarConDecodificacion(url, consulta, codigo);
 
         } catch (Exception e) {
             log.error("Error ejecutando query '{}': {}", codigo, e.getMessage(), e);
@@ -278,18 +346,7 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
 
             String url = getBaseUrl() + "/consolidada/" + codigo;
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<ConsultaQuery> request = new HttpEntity<>(consulta, headers);
-
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.POST,
-                    request,
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
-
-            return convertirRespuestaEjecucion(response.getBody(), codigo);
+            return ejecutarConDecodificacion(url, consulta, codigo);
 
         } catch (Exception e) {
             log.error("Error ejecutando query consolidada '{}': {}", codigo, e.getMessage(), e);
@@ -300,41 +357,38 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
     // =============== BÚSQUEDA Y FILTRADO ===============
 
     /**
-     * Busca queries por texto en nombre, descripción o código
+     * Busca queries por texto en código, nombre, categoría, etiquetas o descripción.
+     *
+     * La búsqueda se resuelve en memoria sobre el catálogo completo cacheado, sin acentos ni
+     * mayúsculas; el backend solo interviene cuando hay que volver a cargar el catálogo.
      *
      * @param texto Texto a buscar
-     * @return Lista de queries que coinciden con la búsqueda
+     * @return Lista de queries que coinciden con la búsqueda, de la más a la menos relevante
      */
     @Override
     public List<MetadataQuery> buscarQueries(String texto) {
-        try {
-            log.info("Buscando queries: {}", texto);
-
-            String url = getBaseUrl() + "/buscar";
-            if (texto != null && !texto.isEmpty()) {
-                url += "?q=" + texto;
-            }
-
-            ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    null,
-                    new ParameterizedTypeReference<List<Map<String, Object>>>() {}
-            );
-
-            List<Map<String, Object>> queries = response.getBody();
-            if (queries != null) {
-                return queries.stream()
-                        .map(this::convertirMapAMetadataQuery)
-                        .collect(Collectors.toList());
-            }
-
-            return new ArrayList<>();
+        List<MetadataQuery> catalogo = listasCatalogo.get(new ClaveListado(TipoListado.CATEGORIA, ""));
+        IndiceCatalogo indice = indiceCatalogo;
+        if (indice.getOrigen() != catalogo) {
+            indice = reindexarCatalogo(catalogo);
+        }
+        return indice.buscar(texto);
+    }
 
-        } catch (Exception e) {
-            log.error("Error buscando queries: {}", e.getMessage(), e);
-            throw new RuntimeException("Error en búsqueda: " + e.getMessage(), e);
+    /**
+     * Reconstruye el índice de búsqueda cuando cambió la lista del catálogo (recarga, alta,
+     * modificación o baja). Solo se normalizan las queries nuevas o modificadas.
+     */
+    private synchronized IndiceCatalogo reindexarCatalogo(List<MetadataQuery> catalogo) {
+        IndiceCatalogo indice = indiceCatalogo;
+        if (indice.getOrigen() != catalogo) {
+            long inicio = System.nanoTime();
+            indice = IndiceCatalogo.construir(catalogo, indice);
+            indiceCatalogo = indice;
+            log.debug("Índice de búsqueda del catálogo reconstruido - {} queries en {} µs",
+                    indice.getCantidadQueries(), (System.nanoTime() - inicio) / 1000);
         }
+        return indice;
     }
 
     /**
@@ -344,6 +398,10 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
      */
     @Override
     public List<MetadataQuery> obtenerQueriesConsolidables() {
+        return new ArrayList<>(listasCatalogo.get(new ClaveListado(TipoListado.CONSOLIDABLES, "")));
+    }
+
+    private List<MetadataQuery> cargarQueriesConsolidables() {
         try {
             log.info("Obteniendo queries consolidables");
 
@@ -379,6 +437,10 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
      */
     @Override
     public List<MetadataQuery> obtenerQueriesPopulares(int limite) {
+        return new ArrayList<>(listasCatalogo.get(new ClaveListado(TipoListado.POPULARES, String.valueOf(limite))));
+    }
+
+    private List<MetadataQuery> cargarQueriesPopulares(int limite) {
         try {
             log.info("Obteniendo queries populares - Límite: {}", limite);
 
@@ -463,6 +525,67 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
         }
     }
 
+    // =============== CATÁLOGO EN CACHÉ ===============
+
+    private enum TipoListado { CATEGORIA, CONSOLIDABLES, POPULARES }
+
+    @Getter
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class ClaveListado {
+        private final TipoListado tipo;
+        private final String parametro;
+    }
+
+    /**
+     * Carga un listado del backend. El listado por categoría trae los metadatos completos de
+     * cada query, así que también alimenta la caché por código: abrir una query listada en el
+     * sidebar no requiere otra petición.
+     */
+    private List<MetadataQuery> cargarListado(ClaveListado clave) {
+        List<MetadataQuery> queries;
+        switch (clave.getTipo()) {
+            case CATEGORIA:
+                queries = cargarQuerys(clave.getParametro());
+                for (MetadataQuery query : queries) {
+                    if (query != null && query.getCodigo() != null) {
+                        queriesPorCodigo.put(query.getCodigo(), query);
+                    }
+                }
+                break;
+            case CONSOLIDABLES:
+                queries = cargarQueriesConsolidables();
+                break;
+            default:
+                queries = cargarQueriesPopulares(Integer.parseInt(clave.getParametro()));
+                break;
+        }
+        List<MetadataQuery> listado = Collections.unmodifiableList(queries);
+        if (clave.getTipo() == TipoListado.CATEGORIA && clave.getParametro().isEmpty()) {
+            eventPublisher.publishEvent(new CatalogoActualizadoEvent(listado));
+        }
+        return listado;
+    }
+
+    /**
+     * Se invoca después de cada alta, modificación o baja, antes de devolver el control:
+     * la query afectada y todos los listados se vuelven a pedir en el próximo acceso.
+     * El catálogo completo se recarga enseguida en segundo plano, para que los menús de
+     * las sesiones abiertas reciban el cambio sin esperar a que alguien lo pida.
+     */
+    private void invalidarCatalogo(String codigo) {
+        if (codigo != null) {
+            queriesPorCodigo.invalidate(codigo);
+        }
+        listasCatalogo.invalidateAll();
+        listasCatalogo.refresh(new ClaveListado(TipoListado.CATEGORIA, ""));
+        log.debug("Catálogo invalidado por cambios en la query: {}", codigo);
+    }
+
+    private static String normalizar(String texto) {
+        return texto != null ? texto.trim() : "";
+    }
+
     // =============== MÉTODOS PRIVADOS DE CONVERSIÓN ===============
 
     /**
@@ -738,32 +861,55 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
         return metadata;
     }
 
+    /**
+     * Envía la consulta al backend y decodifica la respuesta en streaming,
+     * sin materializar el JSON completo como Map.
+     *
+     * @param url Endpoint de ejecución
+     * @param consulta Parámetros de filtros y paginación
+     * @param codigoQuery Código de la query ejecutada
+     * @return QueryResponse con los resultados
+     */
+    private QueryResponse ejecutarConDecodificacion(String url, ConsultaQuery consulta, String codigoQuery) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        HttpEntity<ConsultaQuery> request = new HttpEntity<>(consulta, headers);
+
+        return restTemplate.execute(
+                url,
+                HttpMethod.POST,
+                restTemplate.httpEntityCallback(request),
+                response -> {
+                    ResultadoColumnarBuilder filas = new ResultadoColumnarBuilder();
+                    RespuestaDecodificada respuesta = RespuestaQueryDecoder.decodificar(response.getBody(), filas);
+                    return convertirRespuestaEjecucion(respuesta, filas.construir(), codigoQuery);
+                }
+        );
+    }
+
     /**
      * Convierte la respuesta de ejecución del backend a QueryResponse
      *
      * Procesa:
-     * - Datos principales (resultados de la query)
+     * - Datos principales (ya decodificados en formato columnar)
      * - Metadata de paginación
      * - Metadata de consolidación (si aplica)
      *
-     * @param respuesta Map con la respuesta del backend
+     * @param respuesta Secciones de metadata de la respuesta del backend
+     * @param resultado Filas decodificadas en formato columnar
      * @param codigoQuery Código de la query ejecutada
      * @return QueryResponse con todos los datos estructurados
      */
-    private QueryResponse convertirRespuestaEjecucion(Map<String, Object> respuesta, String codigoQuery) {
-        if (respuesta == null) {
-            return null;
-        }
-
+    private QueryResponse convertirRespuestaEjecucion(RespuestaDecodificada respuesta,
+                                                      ResultadoColumnar resultado,
+                                                      String codigoQuery) {
         QueryResponse queryResponse = new QueryResponse();
 
-        // Datos principales - pueden venir directamente o dentro de "datos"
-        if (respuesta.containsKey("datos")) {
-            queryResponse.setDatos((List<Map<String, Object>>) respuesta.get("datos"));
-        } else {
-            // Si la respuesta es directamente la lista
-            queryResponse.setDatos((List<Map<String, Object>>) respuesta);
-        }
+        // Datos principales: las filas son vistas sobre el resultado columnar
+        queryResponse.setResultado(resultado);
+        queryResponse.setDatos(resultado.filas());
+        queryResponse.setColumnas(resultado.getColumnas());
 
         // Metadata de query
         MetadataQuery metadataQuery = new MetadataQuery();
@@ -772,21 +918,18 @@ public class DatabaseQueryServiceImpl implements DatabaseQueryService {
         queryResponse.setQuery(metadataQuery);
 
         // Metadata de paginación
-        if (respuesta.containsKey("paginacion")) {
-            queryResponse.setPaginacion(convertirMapAPaginacion(
-                    (Map<String, Object>) respuesta.get("paginacion")));
+        if (respuesta.getPaginacion() != null) {
+            queryResponse.setPaginacion(convertirMapAPaginacion(respuesta.getPaginacion()));
         } else {
             // Crear metadata básica si no viene del backend
             MetadataPaginacion paginacion = new MetadataPaginacion();
-            paginacion.setTotalRegistros(
-                    (long) (queryResponse.getDatos() != null ? queryResponse.getDatos().size() : 0));
+            paginacion.setTotalRegistros((long) respuesta.getTotalFilas());
             queryResponse.setPaginacion(paginacion);
         }
 
         // Metadata de consolidación
-        if (respuesta.containsKey("consolidacion")) {
-            queryResponse.setConsolidacion(convertirMapAConsolidacion(
-                    (Map<String, Object>) respuesta.get("consolidacion")));
+        if (respuesta.getConsolidacion() != null) {
+            queryResponse.setConsolidacion(convertirMapAConsolidacion(respuesta.getConsolidacion()));
         }
 
         return queryResponse;
@@ -0,0 +1,504 @@
+package org.zkoss.reporte.core.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperCompileManager;
+import net.sf.jasperreports.engine.JasperReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.zkoss.reporte.core.cache.RegistroCaches;
+import org.zkoss.reporte.core.dto.request.ConsultaQuery;
+import org.zkoss.reporte.core.dto.request.ParametrosFiltros;
+import org.zkoss.reporte.core.dto.response.MetadataPaginacion;
+import org.zkoss.reporte.core.dto.response.QueryResponse;
+import org.zkoss.reporte.core.exportacion.RegistroDescargas;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.service.interfaces.ExportacionService;
+import org.zkoss.reporte.core.service.interfaces.ReporteService;
+import org.zkoss.reporte.exception.ConsultaCanceladaException;
+import org.zkoss.reporte.spring_zk_config.DistribucionProperties;
+import org.zkoss.reporte.spring_zk_config.ExportacionProperties;
+import org.zkoss.reporte.utils.compresion.GzipParalelo;
+import org.zkoss.reporte.utils.compresion.ZipParalelo;
+import org.zkoss.reporte.utils.csv.EscritorCsv;
+import org.zkoss.reporte.utils.excel.Generator;
+import org.zkoss.reporte.utils.http.CancelacionHttp;
+import org.zkoss.reporte.utils.pdf.DatosColumnaresJR;
+import org.zkoss.reporte.utils.pdf.GeneradorPdf;
+import org.zkoss.reporte.utils.pdf.PlantillaPdf;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.LongConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exportación a Excel de resultados que no están completos en memoria.
+ *
+ * La consulta se recorre en el backend página a página (pagina/tamanoPagina y el lastKey de
+ * la página anterior) sin pasar por la caché de resultados, y cada página se escribe en el
+ * libro apenas llega: en memoria quedan solo una página y la ventana de filas de SXSSF, sea
+ * cual sea el tamaño del resultado. Pasado el límite de filas de una hoja, el {@link Generator}
+ * continúa en otra.
+ *
+ * La exportación por provincia genera un libro por provincia en paralelo y los entrega en un zip.
+ *
+ * Los PDF se generan con JasperReports sobre un diseño tabular armado para las columnas del
+ * resultado; el diseño compilado se guarda en caché por query y columnas. Las páginas del
+ * backend (o el resultado en memoria) alimentan el llenado a medida que avanza, y las páginas
+ * del PDF ya llenadas se vuelcan a disco con un virtualizador.
+ *
+ * Los CSV se escriben en streaming sobre un zip o un gzip cuya compresión se reparte en
+ * bloques entre los hilos de {@code compresionExecutor}: el archivo avanza al ritmo del
+ * disco o del backend, no al de un único deflater.
+ */
+@Service
+@Slf4j
+public class ExportacionServiceImpl implements ExportacionService {
+
+    @Autowired
+    private ReporteService reporteService;
+
+    @Autowired
+    private ExportacionProperties properties;
+
+    @Autowired
+    private DistribucionProperties distribucionProperties;
+
+    @Autowired
+    @Qualifier("exportacionExecutor")
+    private Executor executor;
+
+    @Autowired
+    @Qualifier("compresionExecutor")
+    private Executor compresionExecutor;
+
+    @Autowired
+    private RegistroCaches registroCaches;
+
+    private Cache<String, JasperReport> plantillasPdf;
+
+    @PostConstruct
+    void inicializarPlantillas() {
+        plantillasPdf = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxPlantillasPdf())
+                .recordStats()
+                .build();
+        registroCaches.registrar("plantillasPdf", plantillasPdf);
+    }
+
+    @Override
+    public long exportarExcel(String tipoConsulta, ParametrosFiltros filtros, String nombre, Path destino,
+                              LongConsumer progreso) {
+        long inicio = System.currentTimeMillis();
+        try (Generator generador = crearGenerador();
+             OutputStream salida = Files.newOutputStream(destino)) {
+            recorrerConsulta(tipoConsulta, filtros, generador, nombre, progreso);
+            if (!generador.isIniciado()) {
+                generador.iniciarHoja(nombre, Collections.emptyList());
+            }
+            generador.escribir(salida);
+
+            log.info("Exportación '{}' completada - {} filas en {} ms",
+                    tipoConsulta, generador.getFilasEscritas(), System.currentTimeMillis() - inicio);
+            return generador.getFilasEscritas();
+
+        } catch (IOException e) {
+            log.error("Error escribiendo la exportación '{}': {}", tipoConsulta, e.getMessage(), e);
+            throw new RuntimeException("Error al generar el archivo: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long exportarExcelPorProvincia(String tipoConsulta, ParametrosFiltros filtros, String nombre, Path destinoZip,
+                                          LongConsumer progreso) {
+        List<String> provincias = filtros.getProvincia() != null && !filtros.getProvincia().isEmpty()
+                ? Collections.singletonList(filtros.getProvincia())
+                : distribucionProperties.getProvincias();
+        if (provincias.isEmpty()) {
+            throw new RuntimeException("No hay provincias configuradas para exportar por provincia");
+        }
+
+        long inicio = System.currentTimeMillis();
+        log.info("Exportando '{}' por provincia - {} libros en paralelo", tipoConsulta, provincias.size());
+
+        // Cada libro se escribe en su propio archivo temporal, junto al zip de destino
+        CancelacionHttp cancelacion = CancelacionHttp.actual();
+        Map<String, Path> partes = new LinkedHashMap<>();
+        List<CompletableFuture<Long>> libros = new ArrayList<>();
+        try {
+            for (String provincia : provincias) {
+                Path parte = Files.createTempFile(destinoZip.getParent(), "parte-", ".xlsx");
+                partes.put(provincia, parte);
+                ParametrosFiltros filtrosProvincia = filtros.toBuilder()
+                        .provincia(provincia)
+                        .usarTodasLasBDS(false)
+                        .build();
+                libros.add(CompletableFuture.supplyAsync(() -> CancelacionHttp.ejecutar(cancelacion,
+                        () -> exportarExcel(tipoConsulta, filtrosProvincia, nombre, parte, progreso)), executor));
+            }
+
+            long filas = 0;
+            int indice = 0;
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(destinoZip))) {
+                for (Map.Entry<String, Path> parte : partes.entrySet()) {
+                    long filasProvincia = esperar(libros.get(indice++));
+                    // Las provincias sin datos no generan libro
+                    if (filasProvincia == 0) {
+                        continue;
+                    }
+                    filas += filasProvincia;
+                    zip.putNextEntry(new ZipEntry(nombreArchivo(nombre) + "_" + nombreArchivo(parte.getKey()) + ".xlsx"));
+                    Files.copy(parte.getValue(), zip);
+                    zip.closeEntry();
+                    RegistroDescargas.borrar(parte.getValue());
+                }
+            }
+
+            log.info("Exportación por provincia '{}' completada - {} filas en {} ms",
+                    tipoConsulta, filas, System.currentTimeMillis() - inicio);
+            return filas;
+
+        } catch (IOException e) {
+            log.error("Error escribiendo la exportación por provincia '{}': {}", tipoConsulta, e.getMessage(), e);
+            throw new RuntimeException("Error al generar el archivo: " + e.getMessage(), e);
+        } finally {
+            // Ante un error, los libros que todavía no empezaron ya no se generan
+            for (CompletableFuture<Long> libro : libros) {
+                libro.cancel(false);
+            }
+            for (Path parte : partes.values()) {
+                RegistroDescargas.borrar(parte);
+            }
+        }
+    }
+
+    @Override
+    public long exportarPdf(String tipoConsulta, ParametrosFiltros filtros, String nombre, Path destino,
+                            LongConsumer progreso) {
+        PaginasConsulta paginas = new PaginasConsulta(tipoConsulta, filtros);
+        ResultadoColumnar primera = paginas.hasNext() ? paginas.next() : null;
+        return generarPdf(tipoConsulta, primera, paginas, nombre, destino, progreso);
+    }
+
+    @Override
+    public long exportarPdf(String tipoConsulta, ResultadoColumnar datos, String nombre, Path destino,
+                            LongConsumer progreso) {
+        ResultadoColumnar primero = datos != null && datos.getCantidadFilas() > 0 ? datos : null;
+        return generarPdf(tipoConsulta, primero, Collections.<ResultadoColumnar>emptyIterator(), nombre, destino, progreso);
+    }
+
+    @Override
+    public long exportarCsv(String tipoConsulta, ParametrosFiltros filtros, String nombre, Path destino, boolean zip,
+                            LongConsumer progreso) {
+        return generarCsv(tipoConsulta, new PaginasConsulta(tipoConsulta, filtros), nombre, destino, zip, progreso);
+    }
+
+    @Override
+    public long exportarCsv(String tipoConsulta, ResultadoColumnar datos, String nombre, Path destino, boolean zip,
+                            LongConsumer progreso) {
+        List<ResultadoColumnar> bloques = datos != null
+                ? Collections.singletonList(datos)
+                : Collections.<ResultadoColumnar>emptyList();
+        return generarCsv(tipoConsulta, bloques.iterator(), nombre, destino, zip, progreso);
+    }
+
+    // =============== MÉTODOS PRIVADOS ===============
+
+    private Generator crearGenerador() {
+        return new Generator(
+                properties.getVentanaFilas(),
+                properties.getFilasMuestraAncho(),
+                properties.getMaxFilasPorHoja());
+    }
+
+    /**
+     * Escribe las páginas en orden. La hoja se inicia con las columnas de la primera página
+     * que trae datos.
+     */
+    private void recorrerConsulta(String tipoConsulta, ParametrosFiltros filtros, Generator generador, String nombre,
+                                  LongConsumer progreso) {
+        PaginasConsulta paginas = new PaginasConsulta(tipoConsulta, filtros);
+        while (paginas.hasNext()) {
+            ResultadoColumnar resultado = paginas.next();
+            if (!generador.isIniciado()) {
+                generador.iniciarHoja(nombre, resultado.getColumnas());
+            }
+            generador.agregar(resultado);
+            progreso.accept(resultado.getCantidadFilas());
+        }
+    }
+
+    /**
+     * Escribe los bloques en orden sobre la salida comprimida. Los encabezados salen de la
+     * primera página que trae datos; sin datos queda un CSV vacío.
+     */
+    private long generarCsv(String tipoConsulta, Iterator<ResultadoColumnar> bloques, String nombre, Path destino,
+                            boolean zip, LongConsumer progreso) {
+        long inicio = System.currentTimeMillis();
+        OutputStream salida = null;
+        try {
+            salida = new BufferedOutputStream(Files.newOutputStream(destino), 256 * 1024);
+            OutputStream comprimido = zip
+                    ? new ZipParalelo(salida, nombreArchivo(nombre) + ".csv", compresionExecutor,
+                            properties.getTamanoBloqueCompresion(), properties.getNivelCompresion(),
+                            properties.getBloquesPendientesEfectivos())
+                    : new GzipParalelo(salida, compresionExecutor,
+                            properties.getTamanoBloqueCompresion(), properties.getNivelCompresion(),
+                            properties.getBloquesPendientesEfectivos());
+            salida = comprimido;
+
+            long filas;
+            try (EscritorCsv escritor = new EscritorCsv(comprimido)) {
+                while (bloques.hasNext()) {
+                    ResultadoColumnar bloque = bloques.next();
+                    if (!escritor.isIniciado()) {
+                        escritor.iniciar(bloque.getColumnas());
+                    }
+                    escritor.agregar(bloque);
+                    progreso.accept(bloque.getCantidadFilas());
+                }
+                filas = escritor.getFilasEscritas();
+            }
+
+            long tiempo = Math.max(1, System.currentTimeMillis() - inicio);
+            long original = zip ? ((ZipParalelo) comprimido).getBytesEntrada() : ((GzipParalelo) comprimido).getBytesEntrada();
+            long bytes = Files.size(destino);
+            log.info("CSV '{}' generado - {} filas, {} bytes ({} sin comprimir, ratio {}) en {} ms, {} KB/s",
+                    tipoConsulta, filas, bytes, original,
+                    String.format("%.2f", original > 0 ? (double) bytes / original : 0d),
+                    tiempo, original * 1000 / 1024 / tiempo);
+            return filas;
+
+        } catch (IOException e) {
+            if (CancelacionHttp.canceladaActual()) {
+                throw new ConsultaCanceladaException("Exportación cancelada", e);
+            }
+            log.error("Error generando CSV '{}': {}", tipoConsulta, e.getMessage(), e);
+            throw new RuntimeException("Error al generar el CSV: " + e.getMessage(), e);
+        } finally {
+            // Ante un error el archivo queda incompleto; quien lo creó se encarga de borrarlo
+            cerrarSinError(salida);
+        }
+    }
+
+    private static void cerrarSinError(OutputStream salida) {
+        if (salida == null) {
+            return;
+        }
+        try {
+            salida.close();
+        } catch (IOException e) {
+            log.debug("Error cerrando la salida de la exportación: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compila (o toma de la caché) el diseño para las columnas del primer bloque y llena el
+     * reporte consumiendo los bloques a medida que avanza.
+     */
+    private long generarPdf(String tipoConsulta, ResultadoColumnar primero, Iterator<ResultadoColumnar> resto,
+                            String nombre, Path destino, LongConsumer progreso) {
+        List<String> columnas = primero != null ? primero.getColumnas() : Collections.<String>emptyList();
+        List<Class<?>> tipos = new ArrayList<>(columnas.size());
+        for (int c = 0; c < columnas.size(); c++) {
+            tipos.add(DatosColumnaresJR.tipoCampo(primero.getColumna(c)));
+        }
+
+        List<ResultadoColumnar> inicio = primero != null
+                ? Collections.singletonList(primero)
+                : Collections.<ResultadoColumnar>emptyList();
+        Iterator<ResultadoColumnar> bloques = new IteradorConcatenado(inicio.iterator(), resto);
+        DatosColumnaresJR datos = new DatosColumnaresJR(columnas, tipos, bloques, properties.getMaxFilasPdf(), progreso);
+
+        long inicioMs = System.currentTimeMillis();
+        try (OutputStream salida = Files.newOutputStream(destino)) {
+            JasperReport reporte = obtenerPlantilla(tipoConsulta, columnas, tipos);
+            int paginas = new GeneradorPdf(directorioSwap(), properties.getPaginasPdfEnMemoria())
+                    .generar(reporte, nombre, datos, salida);
+
+            log.info("PDF '{}' generado - {} filas, {} páginas en {} ms",
+                    tipoConsulta, datos.getFilasLeidas(), paginas, System.currentTimeMillis() - inicioMs);
+            return datos.getFilasLeidas();
+
+        } catch (IOException | JRException e) {
+            if (CancelacionHttp.canceladaActual()) {
+                throw new ConsultaCanceladaException("Exportación cancelada", e);
+            }
+            log.error("Error generando PDF '{}': {}", tipoConsulta, e.getMessage(), e);
+            throw new RuntimeException("Error al generar el PDF: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Diseño compilado por código de query y columnas (nombre y tipo): una misma query con
+     * otra agrupación produce otras columnas y otro diseño.
+     */
+    private JasperReport obtenerPlantilla(String tipoConsulta, List<String> columnas, List<Class<?>> tipos) {
+        StringBuilder clave = new StringBuilder(tipoConsulta);
+        for (int c = 0; c < columnas.size(); c++) {
+            clave.append('|').append(columnas.get(c)).append(':').append(tipos.get(c).getSimpleName());
+        }
+        return plantillasPdf.get(clave.toString(), k -> {
+            try {
+                log.debug("Compilando plantilla PDF para '{}' con {} columnas", tipoConsulta, columnas.size());
+                return JasperCompileManager.compileReport(PlantillaPdf.crear(columnas, tipos));
+            } catch (JRException e) {
+                throw new RuntimeException("Error al compilar la plantilla PDF: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private String directorioSwap() {
+        String directorio = properties.getDirectorioTemporal();
+        return directorio != null && !directorio.isEmpty() ? directorio : System.getProperty("java.io.tmpdir");
+    }
+
+    private static long esperar(CompletableFuture<Long> libro) {
+        try {
+            return libro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Error al generar el archivo: " + e.getMessage(), e);
+        }
+    }
+
+    private static String nombreArchivo(String texto) {
+        return texto != null ? texto.replaceAll("[^a-zA-Z0-9]", "_") : "reporte";
+    }
+
+    /**
+     * Páginas de la consulta en el backend, pedidas recién cuando se necesitan, hasta que el
+     * backend indica que no hay más.
+     */
+    private final class PaginasConsulta implements Iterator<ResultadoColumnar> {
+
+        private final String tipoConsulta;
+        private final ParametrosFiltros filtros;
+        private final int tamanoPagina = properties.getTamanoPagina();
+
+        private int pagina = 1;
+        private long filasLeidas;
+        private Map<String, Object> lastKey;
+        private boolean terminada;
+        private ResultadoColumnar siguiente;
+
+        private PaginasConsulta(String tipoConsulta, ParametrosFiltros filtros) {
+            this.tipoConsulta = tipoConsulta;
+            this.filtros = filtros;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (siguiente == null && !terminada) {
+                siguiente = cargar();
+            }
+            return siguiente != null;
+        }
+
+        @Override
+        public ResultadoColumnar next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ResultadoColumnar resultado = siguiente;
+            siguiente = null;
+            return resultado;
+        }
+
+        private ResultadoColumnar cargar() {
+            if (CancelacionHttp.canceladaActual()) {
+                throw new ConsultaCanceladaException("Exportación cancelada");
+            }
+
+            ConsultaQuery consulta = ConsultaQuery.builder()
+                    .parametrosFiltros(filtros.toBuilder()
+                            .pagina(pagina)
+                            .tamanoPagina(tamanoPagina)
+                            .lastKey(lastKey)
+                            .build())
+                    .formato("json")
+                    .build();
+            QueryResponse respuesta = reporteService.ejecutarConsultaSinCache(tipoConsulta, consulta);
+            ResultadoColumnar resultado = respuesta != null ? respuesta.getResultado() : null;
+            if (resultado == null || resultado.getCantidadFilas() == 0) {
+                terminada = true;
+                return null;
+            }
+            log.debug("Exportación '{}' - página {} con {} filas", tipoConsulta, pagina, resultado.getCantidadFilas());
+
+            filasLeidas += resultado.getCantidadFilas();
+            MetadataPaginacion paginacion = respuesta.getPaginacion();
+            if (haySiguiente(paginacion, resultado.getCantidadFilas())) {
+                lastKey = paginacion != null ? paginacion.getLastKey() : null;
+                pagina++;
+            } else {
+                terminada = true;
+            }
+            return resultado;
+        }
+
+        /**
+         * Decide si hay otra página con lo que informe el backend: tieneSiguiente, si no
+         * totalPaginas o totalRegistros, y sin metadata alguna si la página vino completa.
+         * Una página vacía termina la exportación en cualquier caso.
+         */
+        private boolean haySiguiente(MetadataPaginacion paginacion, int filas) {
+            // Un backend que ignora la paginación devuelve todo en la primera respuesta
+            if (filas > tamanoPagina) {
+                return false;
+            }
+            if (paginacion != null && paginacion.getTieneSiguiente() != null) {
+                return paginacion.getTieneSiguiente();
+            }
+            if (paginacion != null && paginacion.getTotalPaginas() != null) {
+                return pagina < paginacion.getTotalPaginas();
+            }
+            if (paginacion != null && paginacion.getTotalRegistros() != null) {
+                return filasLeidas < paginacion.getTotalRegistros();
+            }
+            return filas == tamanoPagina;
+        }
+    }
+
+    private static final class IteradorConcatenado implements Iterator<ResultadoColumnar> {
+
+        private final Iterator<ResultadoColumnar> primero;
+        private final Iterator<ResultadoColumnar> segundo;
+
+        private IteradorConcatenado(Iterator<ResultadoColumnar> primero, Iterator<ResultadoColumnar> segundo) {
+            this.primero = primero;
+            this.segundo = segundo;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return primero.hasNext() || segundo.hasNext();
+        }
+
+        @Override
+        public ResultadoColumnar next() {
+            return primero.hasNext() ? primero.next() : segundo.next();
+        }
+    }
+}
@@ -1,19 +1,41 @@
 package org.zkoss.reporte.core.service.impl;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.zkoss.reporte.core.cache.ClaveConsulta;
+import org.zkoss.reporte.core.cache.RegistroCaches;
 import org.zkoss.reporte.core.dto.request.ConsultaQuery;
 import org.zkoss.reporte.core.dto.response.*;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnarBuilder;
+import org.zkoss.reporte.core.service.interfaces.DatabaseQueryService;
 import org.zkoss.reporte.core.service.interfaces.ReporteService;
-
+import org.zkoss.reporte.exception.ConsultaCanceladaException;
+import org.zkoss.reporte.spring_zk_config.CacheResultadosProperties;
+import org.zkoss.reporte.utils.http.CancelacionHttp;
+import org.zkoss.reporte.utils.json.RespuestaDecodificada;
+import org.zkoss.reporte.utils.json.RespuestaQueryDecoder;
+
+import javax.annotation.PostConstruct;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @Slf4j
@@ -27,14 +49,115 @@ public class ReporteServiceImpl implements ReporteService {
 
     private static final String BASE_PATH = "/api/infracciones";
 
+    // Bytes por llamada al copiar una descarga a disco
+    private static final long BLOQUE_DESCARGA = 1024 * 1024;
+
+    @Autowired
+    private CacheResultadosProperties cacheProperties;
+
+    @Autowired
+    private RegistroCaches registroCaches;
+
+    @Autowired
+    private DatabaseQueryService databaseQueryService;
+
+    // Resultados compartidos entre sesiones: las respuestas cacheadas no deben modificarse
+    private AsyncCache<String, QueryResponse> resultados;
+
     private String getBaseUrl() {
         return backendUrl + BASE_PATH;
     }
 
+    @PostConstruct
+    void inicializarCache() {
+        resultados = Caffeine.newBuilder()
+                .maximumWeight(cacheProperties.getMaxBytes())
+                .weigher((String clave, QueryResponse respuesta) -> pesar(respuesta))
+                .expireAfter(new Expiry<String, QueryResponse>() {
+                    @Override
+                    public long expireAfterCreate(String clave, QueryResponse respuesta, long ahora) {
+                        return vigencia(respuesta);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String clave, QueryResponse respuesta, long ahora, long restante) {
+                        return vigencia(respuesta);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String clave, QueryResponse respuesta, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+
+        registroCaches.registrar("resultados", resultados.synchronous());
+    }
+
     // =============== EJECUCIÓN DE CONSULTAS ===============
 
+    /**
+     * Ejecuta la consulta o devuelve el resultado cacheado de una consulta equivalente.
+     *
+     * Si la misma consulta ya está en curso en otra sesión se espera su resultado en lugar de
+     * repetir la petición al backend. Los errores no se cachean.
+     */
     @Override
     public QueryResponse ejecutarConsulta(String tipoConsulta, ConsultaQuery consulta) {
+        if (!cacheProperties.isHabilitada()) {
+            return ejecutarEnBackend(tipoConsulta, consulta);
+        }
+
+        String clave = ClaveConsulta.calcular(tipoConsulta, consulta);
+        AtomicReference<CompletableFuture<QueryResponse>> propia = new AtomicReference<>();
+        CompletableFuture<QueryResponse> futuro = resultados.get(clave, (k, executor) -> {
+            propia.set(new CompletableFuture<>());
+            return propia.get();
+        });
+
+        // Solo el primero en pedir la clave ejecuta la consulta, en su propio hilo
+        if (futuro == propia.get()) {
+            try {
+                futuro.complete(ejecutarEnBackend(tipoConsulta, consulta));
+            } catch (Throwable e) {
+                // Cualquier falla, incluso un Error, libera a las sesiones que esperan esta clave
+                futuro.completeExceptionally(e);
+                throw e;
+            }
+        } else {
+            log.debug("Consulta '{}' resuelta desde la caché de resultados", tipoConsulta);
+        }
+
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConsultaCanceladaException("Consulta cancelada");
+        } catch (ExecutionException e) {
+            // Si la canceló la sesión que la había iniciado, esta sesión la vuelve a pedir
+            if (e.getCause() instanceof ConsultaCanceladaException && futuro != propia.get()
+                    && !CancelacionHttp.canceladaActual()) {
+                resultados.asMap().remove(clave, futuro);
+                return ejecutarConsulta(tipoConsulta, consulta);
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Error al ejecutar consulta: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public QueryResponse ejecutarConsultaSinCache(String tipoConsulta, ConsultaQuery consulta) {
+        return ejecutarEnBackend(tipoConsulta, consulta);
+    }
+
+    private QueryResponse ejecutarEnBackend(String tipoConsulta, ConsultaQuery consulta) {
+        if (CancelacionHttp.canceladaActual()) {
+            throw new ConsultaCanceladaException("Consulta cancelada");
+        }
+
         try {
             log.info("Ejecutando consulta de infracciones - Tipo: {}", tipoConsulta);
 
@@ -42,22 +165,28 @@ public class ReporteServiceImpl implements ReporteService {
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
             HttpEntity<ConsultaQuery> request = new HttpEntity<>(consulta, headers);
 
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+            // La respuesta se decodifica en streaming, fila por fila
+            return restTemplate.execute(
                     url,
                     HttpMethod.POST,
-                    request,
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
-            );
+                    restTemplate.httpEntityCallback(request),
+                    response -> {
+                        // Extraer headers informativos
+                        boolean consolidado = "true".equals(response.getHeaders().getFirst("X-Consolidado"));
+                        String tipoConsultaHeader = response.getHeaders().getFirst("X-Tipo-Consulta");
 
-            // Extraer headers informativos
-            boolean consolidado = "true".equals(response.getHeaders().getFirst("X-Consolidado"));
-            String tipoConsultaHeader = response.getHeaders().getFirst("X-Tipo-Consulta");
+                        ResultadoColumnarBuilder filas = new ResultadoColumnarBuilder();
+                        RespuestaDecodificada respuesta = RespuestaQueryDecoder.decodificar(response.getBody(), filas);
 
-            log.info("Consulta ejecutada - Tipo: {}, Consolidado: {}", tipoConsultaHeader, consolidado);
+                        log.info("Consulta ejecutada - Tipo: {}, Consolidado: {}, Registros: {}",
+                                tipoConsultaHeader, consolidado, respuesta.getTotalFilas());
 
-            return convertirRespuestaAQueryResponse(response.getBody(), tipoConsulta, consolidado);
+                        return convertirRespuestaAQueryResponse(respuesta, filas.construir(), tipoConsulta, consolidado);
+                    }
+            );
 
         } catch (HttpClientErrorException e) {
             log.error("Error HTTP en consulta '{}': {} - {}",
@@ -70,6 +199,11 @@ public class ReporteServiceImpl implements ReporteService {
             }
 
         } catch (Exception e) {
+            // Al cancelar se aborta la conexión y la lectura falla: no es un error del backend
+            if (CancelacionHttp.canceladaActual()) {
+                log.info("Consulta '{}' cancelada por el usuario", tipoConsulta);
+                throw new ConsultaCanceladaException("Consulta cancelada", e);
+            }
             log.error("Error ejecutando consulta '{}': {}", tipoConsulta, e.getMessage(), e);
             throw new RuntimeException("Error al ejecutar consulta: " + e.getMessage(), e);
         }
@@ -118,92 +252,141 @@ public class ReporteServiceImpl implements ReporteService {
         }
     }
 
+    /**
+     * El cuerpo de la respuesta se copia al archivo por canales NIO a medida que llega.
+     */
+    @Override
+    public long descargarConsultaEnArchivo(String tipoConsulta, ConsultaQuery consulta, Path archivo) {
+        try {
+            log.info("Descargando consulta a archivo - Tipo: {}, Formato: {}", tipoConsulta, consulta.getFormato());
+
+            String url = getBaseUrl() + "/" + tipoConsulta + "/descargar";
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setAccept(Collections.singletonList(MediaType.APPLICATION_OCTET_STREAM));
+
+            HttpEntity<ConsultaQuery> request = new HttpEntity<>(consulta, headers);
+
+            Long bytes = restTemplate.execute(
+                    url,
+                    HttpMethod.POST,
+                    restTemplate.httpEntityCallback(request),
+                    response -> {
+                        try (ReadableByteChannel origen = Channels.newChannel(response.getBody());
+                             FileChannel destino = FileChannel.open(archivo,
+                                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                            long posicion = 0;
+                            long copiados;
+                            while ((copiados = destino.transferFrom(origen, posicion, BLOQUE_DESCARGA)) > 0) {
+                                posicion += copiados;
+                            }
+                            return posicion;
+                        }
+                    }
+            );
+
+            if (bytes == null || bytes == 0) {
+                log.warn("Archivo descargado está vacío");
+                throw new RuntimeException("No se pudo descargar el archivo");
+            }
+
+            log.info("Archivo descargado exitosamente - Tamaño: {} bytes", bytes);
+            return bytes;
+
+        } catch (HttpClientErrorException e) {
+            log.error("Error HTTP en descarga '{}': {} - {}",
+                    tipoConsulta, e.getStatusCode(), e.getResponseBodyAsString());
+            throw new RuntimeException("Error al descargar archivo: " + e.getMessage(), e);
+
+        } catch (Exception e) {
+            log.error("Error descargando consulta '{}': {}", tipoConsulta, e.getMessage(), e);
+            throw new RuntimeException("Error al descargar archivo: " + e.getMessage(), e);
+        }
+    }
+
+    // =============== CACHÉ DE RESULTADOS ===============
+
+    private static int pesar(QueryResponse respuesta) {
+        long bytes = respuesta.getResultado() != null ? respuesta.getResultado().estimarBytes() : 0;
+        return (int) Math.min(Integer.MAX_VALUE, bytes + 1024);
+    }
+
+    private long vigencia(QueryResponse respuesta) {
+        String categoria = respuesta.getQuery() != null ? respuesta.getQuery().getCategoria() : null;
+        Long ttl = categoria != null ? cacheProperties.getTtlPorCategoriaMs().get(categoria) : null;
+        return TimeUnit.MILLISECONDS.toNanos(ttl != null ? ttl : cacheProperties.getTtlMs());
+    }
+
+    /**
+     * Categoría de la query según el catálogo (en caché); define la vigencia del resultado.
+     */
+    private String categoriaDe(String tipoConsulta) {
+        try {
+            MetadataQuery query = databaseQueryService.obtenerQuery(tipoConsulta);
+            return query != null ? query.getCategoria() : null;
+        } catch (Exception e) {
+            log.debug("Sin categoría para la query '{}': {}", tipoConsulta, e.getMessage());
+            return null;
+        }
+    }
+
     // =============== MÉTODOS PRIVADOS DE CONVERSIÓN ===============
 
     /**
      * Convierte la respuesta del controller a QueryResponse
      */
     private QueryResponse convertirRespuestaAQueryResponse(
-            Map<String, Object> respuesta,
+            RespuestaDecodificada respuesta,
+            ResultadoColumnar resultado,
             String tipoConsulta,
             boolean consolidado) {
 
-        if (respuesta == null) {
-            return null;
+        if (!respuesta.isDatosEncontrados()) {
+            log.warn("No se pudieron extraer datos de la respuesta correctamente");
         }
 
         QueryResponse queryResponse = new QueryResponse();
 
-        // Extraer datos principales
-        List<Map<String, Object>> datos = extraerDatos(respuesta);
+        // Datos principales: las filas son vistas sobre el resultado columnar
+        List<Map<String, Object>> datos = resultado.filas();
+        queryResponse.setResultado(resultado);
         queryResponse.setDatos(datos);
+        queryResponse.setColumnas(resultado.getColumnas());
 
         // Metadata de query
         MetadataQuery metadataQuery = MetadataQuery.builder()
                 .codigo(tipoConsulta)
                 .nombre(generarNombreQuery(tipoConsulta))
-                .categoria("INFRACCIONES")
+                .categoria(categoriaDe(tipoConsulta))
                 .fechaEjecucion(LocalDateTime.now())
                 .build();
         queryResponse.setQuery(metadataQuery);
 
         // Metadata de paginación
-        MetadataPaginacion paginacion = extraerMetadataPaginacion(respuesta, datos);
+        MetadataPaginacion paginacion = extraerMetadataPaginacion(respuesta.getPaginacion(), datos);
         queryResponse.setPaginacion(paginacion);
 
         // Metadata de consolidación
         if (consolidado) {
-            MetadataConsolidacion consolidacion = extraerMetadataConsolidacion(respuesta);
+            MetadataConsolidacion consolidacion = extraerMetadataConsolidacion(respuesta.getConsolidacion());
             queryResponse.setConsolidacion(consolidacion);
         }
 
         return queryResponse;
     }
 
-    /**
-     * Extrae los datos de la respuesta
-     */
-    @SuppressWarnings("unchecked")
-    private List<Map<String, Object>> extraerDatos(Map<String, Object> respuesta) {
-        if (respuesta == null) {
-            return new ArrayList<>();
-        }
-
-        // Intentar extraer de diferentes estructuras posibles
-        if (respuesta.containsKey("datos")) {
-            Object datos = respuesta.get("datos");
-            if (datos instanceof List) {
-                return (List<Map<String, Object>>) datos;
-            }
-        }
-
-        // Si no hay key "datos", asumir que toda la respuesta son los datos
-        if (respuesta.values().stream().allMatch(v -> v instanceof Map)) {
-            return Collections.singletonList(respuesta);
-        }
-
-        // Intentar como lista directa
-        try {
-            return (List<Map<String, Object>>) respuesta;
-        } catch (ClassCastException e) {
-            log.warn("No se pudieron extraer datos de la respuesta correctamente");
-            return new ArrayList<>();
-        }
-    }
-
     /**
      * Extrae metadata de paginación
      */
     @SuppressWarnings("unchecked")
     private MetadataPaginacion extraerMetadataPaginacion(
-            Map<String, Object> respuesta,
+            Map<String, Object> paginacionMap,
             List<Map<String, Object>> datos) {
 
         MetadataPaginacion paginacion = new MetadataPaginacion();
 
-        if (respuesta.containsKey("paginacion")) {
-            Map<String, Object> paginacionMap = (Map<String, Object>) respuesta.get("paginacion");
-
+        if (paginacionMap != null) {
             paginacion.setPaginaActual(getIntegerValue(paginacionMap, "paginaActual"));
             paginacion.setRegistrosPorPagina(getIntegerValue(paginacionMap, "registrosPorPagina"));
             paginacion.setTotalRegistros(getLongValue(paginacionMap, "totalRegistros"));
@@ -231,13 +414,11 @@ public class ReporteServiceImpl implements ReporteService {
      * Extrae metadata de consolidación
      */
     @SuppressWarnings("unchecked")
-    private MetadataConsolidacion extraerMetadataConsolidacion(Map<String, Object> respuesta) {
+    private MetadataConsolidacion extraerMetadataConsolidacion(Map<String, Object> consolidacionMap) {
         MetadataConsolidacion consolidacion = new MetadataConsolidacion();
         consolidacion.setConsolidado(true);
 
-        if (respuesta.containsKey("consolidacion")) {
-            Map<String, Object> consolidacionMap = (Map<String, Object>) respuesta.get("consolidacion");
-
+        if (consolidacionMap != null) {
             consolidacion.setCamposAgrupacion(
                     (List<String>) consolidacionMap.get("camposAgrupacion"));
             consolidacion.setCamposNumericos(
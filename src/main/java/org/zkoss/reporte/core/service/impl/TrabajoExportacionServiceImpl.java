@@ -0,0 +1,409 @@
+package org.zkoss.reporte.core.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.zkoss.reporte.core.cache.ClaveConsulta;
+import org.zkoss.reporte.core.consolidacion.FuncionAgregacion;
+import org.zkoss.reporte.core.dto.request.ConsultaQuery;
+import org.zkoss.reporte.core.dto.request.ParametrosFiltros;
+import org.zkoss.reporte.core.dto.request.SolicitudExportacion;
+import org.zkoss.reporte.core.dto.response.EstadoExportacion;
+import org.zkoss.reporte.core.exportacion.AlmacenArtefactos;
+import org.zkoss.reporte.core.exportacion.Descarga;
+import org.zkoss.reporte.core.exportacion.RegistroDescargas;
+import org.zkoss.reporte.core.exportacion.TrabajoExportacion;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.service.interfaces.DatabaseQueryService;
+import org.zkoss.reporte.core.service.interfaces.ExportacionService;
+import org.zkoss.reporte.core.service.interfaces.ReporteService;
+import org.zkoss.reporte.core.service.interfaces.TrabajoExportacionService;
+import org.zkoss.reporte.exception.ConsultaCanceladaException;
+import org.zkoss.reporte.spring_zk_config.ExportacionProperties;
+import org.zkoss.reporte.utils.http.CancelacionHttp;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+
+/**
+ * Cola de exportaciones en segundo plano.
+ *
+ * Los archivos los genera un pool acotado ({@code hilosTrabajos}), de modo que la carga que
+ * las exportaciones imponen al backend no crece con la cantidad de usuarios: los trabajos
+ * que exceden el pool esperan en una cola de {@code capacidadColaTrabajos}. Con la cola
+ * llena, o con {@code maxTrabajosPorSesion} trabajos sin terminar en la sesión, el pedido
+ * se rechaza.
+ *
+ * - La API no exige autenticación: el pedido tiene que nombrar una consulta del catálogo,
+ *   un formato conocido y funciones de agregación válidas.
+ *
+ * - Dos pedidos equivalentes (misma clave canónica de consulta y formato) mientras uno está
+ *   en curso comparten una sola generación.
+ * - El archivo terminado queda en el {@link AlmacenArtefactos}; un pedido equivalente
+ *   posterior lo reutiliza mientras esté vigente.
+ * - El estado de los trabajos terminados se conserva {@code retencionTrabajosMs}. Si el
+ *   almacén borra el archivo antes, el trabajo pasa a EXPIRADO.
+ */
+@Service
+@Slf4j
+public class TrabajoExportacionServiceImpl implements TrabajoExportacionService {
+
+    private static final String FORMATO_EXCEL = "excel";
+    private static final String FORMATO_PDF = "pdf";
+    private static final String FORMATO_CSV_ZIP = "csv-zip";
+    private static final String FORMATO_CSV_GZIP = "csv-gz";
+    private static final String CONTENT_TYPE_XLSX =
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    private static final String CONTENT_TYPE_ZIP = "application/zip";
+    private static final String CONTENT_TYPE_PDF = "application/pdf";
+    private static final String CONTENT_TYPE_GZIP = "application/gzip";
+    private static final List<String> FORMATOS_LOCALES =
+            Arrays.asList(FORMATO_EXCEL, FORMATO_PDF, FORMATO_CSV_ZIP, FORMATO_CSV_GZIP);
+    // Los demás formatos los genera el backend; el formato se usa como extensión del archivo
+    private static final Pattern FORMATO_BACKEND = Pattern.compile("[a-z0-9]{1,10}");
+    private static final int MAX_LARGO_NOMBRE = 100;
+
+    @Autowired
+    private ExportacionService exportacionService;
+
+    @Autowired
+    private ReporteService reporteService;
+
+    @Autowired
+    private DatabaseQueryService databaseQueryService;
+
+    @Autowired
+    private AlmacenArtefactos almacen;
+
+    @Autowired
+    private ExportacionProperties properties;
+
+    @Autowired
+    @Qualifier("trabajosExportacionExecutor")
+    private Executor executor;
+
+    // Todos los trabajos por id; los activos además por clave, para compartir la generación
+    private final Map<String, TrabajoExportacion> trabajos = new ConcurrentHashMap<>();
+    private final Map<String, TrabajoExportacion> activos = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void inicializar() {
+        almacen.alBorrar(this::expirarTrabajos);
+    }
+
+    @Override
+    public EstadoExportacion enviar(SolicitudExportacion solicitud, String sesion) {
+        return enviar(solicitud, null, sesion);
+    }
+
+    @Override
+    public EstadoExportacion enviar(SolicitudExportacion solicitud, ResultadoColumnar datos, String sesion) {
+        purgarTerminados();
+
+        ConsultaQuery consulta = normalizar(solicitud.getConsulta());
+        validar(solicitud, consulta, sesion);
+        boolean excel = FORMATO_EXCEL.equals(consulta.getFormato());
+        boolean pdf = FORMATO_PDF.equals(consulta.getFormato());
+        boolean csvZip = FORMATO_CSV_ZIP.equals(consulta.getFormato());
+        boolean csvGzip = FORMATO_CSV_GZIP.equals(consulta.getFormato());
+        boolean porProvincia = excel && solicitud.isPorProvincia();
+        String extension = porProvincia || csvZip ? "zip"
+                : excel ? "xlsx"
+                : csvGzip ? "csv.gz"
+                : consulta.getFormato();
+        String contentType = porProvincia || csvZip ? CONTENT_TYPE_ZIP
+                : excel ? CONTENT_TYPE_XLSX
+                : pdf ? CONTENT_TYPE_PDF
+                : csvGzip ? CONTENT_TYPE_GZIP
+                : "application/octet-stream";
+
+        // Los datos en memoria pueden estar consolidados localmente: no se mezclan con los del backend
+        ResultadoColumnar datosMemoria = pdf || csvZip || csvGzip ? datos : null;
+        String clave = ClaveConsulta.calcular(solicitud.getTipoConsulta(), consulta);
+        if (porProvincia) {
+            clave = DigestUtils.sha256Hex(clave + "|porProvincia");
+        } else if (datosMemoria != null) {
+            // Distintos filtros rápidos u orden sobre el mismo resultado son archivos distintos
+            clave = DigestUtils.sha256Hex(clave + "|memoria|" + solicitud.getVista());
+        }
+
+        SolicitudExportacion normalizada = solicitud.toBuilder().consulta(consulta).porProvincia(porProvincia).build();
+        TrabajoExportacion nuevo = new TrabajoExportacion(clave, normalizada, datosMemoria, extension, contentType,
+                generarNombreArchivo(solicitud.getNombre(), extension));
+        nuevo.getSesiones().add(sesion);
+
+        TrabajoExportacion existente = activos.putIfAbsent(clave, nuevo);
+        // Un trabajo cancelado que todavía no salió del pool no se comparte
+        if (existente != null && existente.isTerminado() && activos.replace(clave, existente, nuevo)) {
+            existente = null;
+        }
+        if (existente != null) {
+            existente.getSesiones().add(sesion);
+            log.info("Exportación '{}' ya en curso, se comparte el trabajo {}", solicitud.getTipoConsulta(), existente.getId());
+            return existente.toEstado();
+        }
+        trabajos.put(nuevo.getId(), nuevo);
+
+        Path generado = almacen.buscar(clave);
+        if (generado != null) {
+            nuevo.completar(generado, tamano(generado), true);
+            activos.remove(clave, nuevo);
+            log.info("Exportación '{}' reutiliza el archivo {}", solicitud.getTipoConsulta(), generado);
+            return nuevo.toEstado();
+        }
+
+        try {
+            executor.execute(() -> generar(nuevo));
+        } catch (RejectedExecutionException e) {
+            activos.remove(clave, nuevo);
+            trabajos.remove(nuevo.getId());
+            log.warn("Cola de exportaciones llena, se rechaza '{}'", solicitud.getTipoConsulta());
+            throw new IllegalStateException("Hay demasiadas exportaciones en espera, intente nuevamente más tarde");
+        }
+
+        log.info("Exportación '{}' encolada - trabajo {}", solicitud.getTipoConsulta(), nuevo.getId());
+        return nuevo.toEstado();
+    }
+
+    @Override
+    public EstadoExportacion obtener(String id, String sesion) {
+        TrabajoExportacion trabajo = buscar(id, sesion);
+        return trabajo != null ? trabajo.toEstado() : null;
+    }
+
+    @Override
+    public List<EstadoExportacion> listar(String sesion) {
+        purgarTerminados();
+
+        List<TrabajoExportacion> propios = new ArrayList<>();
+        for (TrabajoExportacion trabajo : trabajos.values()) {
+            if (trabajo.getSesiones().contains(sesion)) {
+                propios.add(trabajo);
+            }
+        }
+        propios.sort(Comparator.comparing(TrabajoExportacion::getCreado).reversed());
+
+        List<EstadoExportacion> estados = new ArrayList<>(propios.size());
+        for (TrabajoExportacion trabajo : propios) {
+            estados.add(trabajo.toEstado());
+        }
+        return estados;
+    }
+
+    @Override
+    public void cancelar(String id, String sesion) {
+        TrabajoExportacion trabajo = buscar(id, sesion);
+        if (trabajo == null) {
+            return;
+        }
+        trabajo.getSesiones().remove(sesion);
+        if (trabajo.getSesiones().isEmpty() && !trabajo.isTerminado()) {
+            log.info("Exportación {} cancelada", id);
+            trabajo.cancelar();
+        }
+    }
+
+    @Override
+    public Descarga obtenerArchivo(String id, String sesion) {
+        TrabajoExportacion trabajo = buscar(id, sesion);
+        if (trabajo == null || !EstadoExportacion.ESTADO_COMPLETADO.equals(trabajo.getEstado())) {
+            return null;
+        }
+        // Desalojado mientras el trabajo terminaba
+        Path archivo = trabajo.getArchivo();
+        if (archivo == null || !Files.isReadable(archivo)) {
+            trabajo.expirar();
+            return null;
+        }
+        return new Descarga(archivo, trabajo.getNombreArchivo(), trabajo.getContentType(), sesion, id);
+    }
+
+    // =============== MÉTODOS PRIVADOS ===============
+
+    /**
+     * Genera el archivo en el pool de trabajos. Si el trabajo se cancela mientras espera en
+     * la cola, no llega a consultar el backend.
+     */
+    private void generar(TrabajoExportacion trabajo) {
+        if (trabajo.isTerminado()) {
+            activos.remove(trabajo.getClave(), trabajo);
+            return;
+        }
+
+        SolicitudExportacion solicitud = trabajo.getSolicitud();
+        long inicio = System.currentTimeMillis();
+        trabajo.iniciar();
+
+        Path temporal = null;
+        try {
+            temporal = almacen.crearTemporal(trabajo.getExtension());
+            Path destino = temporal;
+            CancelacionHttp.ejecutar(trabajo.getCancelacion(), () -> generarArchivo(solicitud, destino, trabajo));
+
+            if (trabajo.isTerminado()) {
+                return;
+            }
+            Path archivo = almacen.guardar(trabajo.getClave(), trabajo.getExtension(), temporal);
+            temporal = null;
+            long bytes = tamano(archivo);
+            long tiempo = System.currentTimeMillis() - inicio;
+            trabajo.completar(archivo, bytes, false);
+
+            log.info("Exportación {} completada - {} filas, {} bytes en {} ms ({} KB/s)",
+                    trabajo.getId(), trabajo.getFilas().get(), bytes, tiempo, bytes * 1000 / 1024 / Math.max(1, tiempo));
+
+        } catch (Exception e) {
+            if (e instanceof ConsultaCanceladaException || trabajo.getCancelacion().isCancelada()) {
+                log.info("Exportación {} cancelada durante la generación", trabajo.getId());
+                trabajo.cancelar();
+            } else {
+                log.error("Error en exportación {}: {}", trabajo.getId(), e.getMessage(), e);
+                trabajo.fallar(e.getMessage());
+            }
+        } finally {
+            activos.remove(trabajo.getClave(), trabajo);
+            if (temporal != null) {
+                RegistroDescargas.borrar(temporal);
+            }
+        }
+    }
+
+    private Long generarArchivo(SolicitudExportacion solicitud, Path destino, TrabajoExportacion trabajo) {
+        ConsultaQuery consulta = solicitud.getConsulta();
+        if (solicitud.isPorProvincia()) {
+            return exportacionService.exportarExcelPorProvincia(solicitud.getTipoConsulta(),
+                    consulta.getParametrosFiltros(), solicitud.getNombre(), destino, trabajo::sumarFilas);
+        }
+        if (FORMATO_EXCEL.equals(consulta.getFormato())) {
+            return exportacionService.exportarExcel(solicitud.getTipoConsulta(),
+                    consulta.getParametrosFiltros(), solicitud.getNombre(), destino, trabajo::sumarFilas);
+        }
+        if (FORMATO_PDF.equals(consulta.getFormato())) {
+            return trabajo.getDatos() != null
+                    ? exportacionService.exportarPdf(solicitud.getTipoConsulta(),
+                            trabajo.getDatos(), solicitud.getNombre(), destino, trabajo::sumarFilas)
+                    : exportacionService.exportarPdf(solicitud.getTipoConsulta(),
+                            consulta.getParametrosFiltros(), solicitud.getNombre(), destino, trabajo::sumarFilas);
+        }
+        if (FORMATO_CSV_ZIP.equals(consulta.getFormato()) || FORMATO_CSV_GZIP.equals(consulta.getFormato())) {
+            boolean zip = FORMATO_CSV_ZIP.equals(consulta.getFormato());
+            return trabajo.getDatos() != null
+                    ? exportacionService.exportarCsv(solicitud.getTipoConsulta(),
+                            trabajo.getDatos(), solicitud.getNombre(), destino, zip, trabajo::sumarFilas)
+                    : exportacionService.exportarCsv(solicitud.getTipoConsulta(),
+                            consulta.getParametrosFiltros(), solicitud.getNombre(), destino, zip, trabajo::sumarFilas);
+        }
+        return reporteService.descargarConsultaEnArchivo(solicitud.getTipoConsulta(), consulta, destino);
+    }
+
+    /**
+     * Rechaza los pedidos que no nombran una consulta del catálogo o exceden los límites.
+     * Los errores del pedido son IllegalArgumentException; los de capacidad, IllegalStateException.
+     */
+    private void validar(SolicitudExportacion solicitud, ConsultaQuery consulta, String sesion) {
+        String tipoConsulta = solicitud.getTipoConsulta();
+        if (tipoConsulta == null || tipoConsulta.isEmpty() || databaseQueryService.obtenerQuery(tipoConsulta) == null) {
+            throw new IllegalArgumentException("La consulta '" + tipoConsulta + "' no existe");
+        }
+        String formato = consulta.getFormato();
+        if (!FORMATOS_LOCALES.contains(formato) && !FORMATO_BACKEND.matcher(formato).matches()) {
+            throw new IllegalArgumentException("Formato de exportación no válido: " + formato);
+        }
+        if (solicitud.getNombre() != null && solicitud.getNombre().length() > MAX_LARGO_NOMBRE) {
+            throw new IllegalArgumentException("El nombre no puede superar los " + MAX_LARGO_NOMBRE + " caracteres");
+        }
+        List<String> funciones = consulta.getParametrosFiltros().getFunciones();
+        if (funciones != null) {
+            for (String funcion : funciones) {
+                try {
+                    FuncionAgregacion.valueOf(funcion.trim().toUpperCase());
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Función de agregación no válida: " + funcion);
+                }
+            }
+        }
+
+        long sinTerminar = trabajos.values().stream()
+                .filter(trabajo -> !trabajo.isTerminado() && trabajo.getSesiones().contains(sesion))
+                .count();
+        if (sinTerminar >= properties.getMaxTrabajosPorSesion()) {
+            throw new IllegalStateException("Hay " + sinTerminar
+                    + " exportaciones en curso en esta sesión, espere a que terminen");
+        }
+    }
+
+    /**
+     * El almacén borró el archivo: los trabajos que lo ofrecían dejan de hacerlo.
+     */
+    private void expirarTrabajos(Path archivo) {
+        for (TrabajoExportacion trabajo : trabajos.values()) {
+            if (archivo.equals(trabajo.getArchivo())) {
+                trabajo.expirar();
+                log.debug("Exportación {} expirada, su archivo fue borrado", trabajo.getId());
+            }
+        }
+    }
+
+    private TrabajoExportacion buscar(String id, String sesion) {
+        TrabajoExportacion trabajo = id != null ? trabajos.get(id) : null;
+        return trabajo != null && trabajo.getSesiones().contains(sesion) ? trabajo : null;
+    }
+
+    /**
+     * La exportación recorre la consulta completa: la paginación del pedido no forma parte
+     * de la clave ni se envía al backend.
+     */
+    private ConsultaQuery normalizar(ConsultaQuery consulta) {
+        ParametrosFiltros filtros = consulta != null && consulta.getParametrosFiltros() != null
+                ? consulta.getParametrosFiltros()
+                : new ParametrosFiltros();
+        String formato = consulta != null && consulta.getFormato() != null && !consulta.getFormato().isEmpty()
+                ? consulta.getFormato()
+                : FORMATO_EXCEL;
+        return ConsultaQuery.builder()
+                .nombreQuery(consulta != null ? consulta.getNombreQuery() : null)
+                .formato(formato)
+                .parametrosFiltros(filtros.toBuilder()
+                        .pagina(null)
+                        .tamanoPagina(null)
+                        .lastKey(null)
+                        .build())
+                .build();
+    }
+
+    private static long tamano(Path archivo) {
+        try {
+            return Files.size(archivo);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void purgarTerminados() {
+        LocalDateTime limite = LocalDateTime.now().minus(properties.getRetencionTrabajosMs(), ChronoUnit.MILLIS);
+        trabajos.values().removeIf(trabajo -> trabajo.isTerminado() && trabajo.getTerminado().isBefore(limite));
+    }
+
+    private static String generarNombreArchivo(String nombre, String extension) {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+        String nombreBase = nombre != null ? nombre.replaceAll("[^a-zA-Z0-9]", "_") : "reporte";
+        return nombreBase + "_" + timestamp + "." + extension;
+    }
+}
@@ -0,0 +1,17 @@
+package org.zkoss.reporte.core.service.interfaces;
+
+import org.zkoss.reporte.core.dto.request.ConsultaQuery;
+import org.zkoss.reporte.core.dto.response.QueryResponse;
+
+public interface ConsultaDistribuidaService {
+
+    /**
+     * Ejecutar la consulta en todas las provincias en paralelo y combinar los resultados
+     */
+    QueryResponse ejecutarConsulta(String tipoConsulta, ConsultaQuery consulta);
+
+    /**
+     * Indica si el modo distribuido está disponible (habilitado y con provincias configuradas)
+     */
+    boolean isDisponible();
+}
@@ -13,6 +13,7 @@ public interface DatabaseQueryService {
 
     MetadataRegistroQuery registrarQuery(Query query);
     List<MetadataQuery> traerQuerys(String categoria);
+    List<MetadataQuery> recargarCatalogo();
     MetadataQuery obtenerQuery(String codigo);
     MetadataRegistroQuery actualizarQuery(String codigo, Query query);
     Map<String, Object> eliminarQuery(String codigo);
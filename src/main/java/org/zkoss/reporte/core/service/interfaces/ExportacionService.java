@@ -0,0 +1,54 @@
+package org.zkoss.reporte.core.service.interfaces;
+
+import org.zkoss.reporte.core.dto.request.ParametrosFiltros;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+
+public interface ExportacionService {
+
+    /**
+     * Exportar la consulta completa a un xlsx recorriéndola página a página en el backend.
+     * Si supera el límite de filas de una hoja continúa en hojas adicionales.
+     * A progreso se le informan las filas de cada página a medida que se escriben.
+     * Devuelve la cantidad de filas exportadas.
+     */
+    long exportarExcel(String tipoConsulta, ParametrosFiltros filtros, String nombre, Path destino,
+                       LongConsumer progreso);
+
+    /**
+     * Exportar un xlsx por provincia, generados en paralelo y empaquetados en un zip.
+     * Los libros informan su progreso en paralelo: progreso debe ser thread-safe.
+     * Devuelve la cantidad de filas exportadas entre todos los libros.
+     */
+    long exportarExcelPorProvincia(String tipoConsulta, ParametrosFiltros filtros, String nombre, Path destinoZip,
+                                   LongConsumer progreso);
+
+    /**
+     * Exportar la consulta completa a PDF recorriéndola página a página en el backend.
+     * Devuelve la cantidad de filas exportadas.
+     */
+    long exportarPdf(String tipoConsulta, ParametrosFiltros filtros, String nombre, Path destino,
+                     LongConsumer progreso);
+
+    /**
+     * Exportar a PDF un resultado que ya está en memoria.
+     */
+    long exportarPdf(String tipoConsulta, ResultadoColumnar datos, String nombre, Path destino,
+                     LongConsumer progreso);
+
+    /**
+     * Exportar la consulta completa a CSV comprimido, recorriéndola página a página en el backend.
+     * Con zip el archivo es un zip con un único CSV; si no, un CSV en gzip.
+     * Devuelve la cantidad de filas exportadas.
+     */
+    long exportarCsv(String tipoConsulta, ParametrosFiltros filtros, String nombre, Path destino, boolean zip,
+                     LongConsumer progreso);
+
+    /**
+     * Exportar a CSV comprimido un resultado que ya está en memoria.
+     */
+    long exportarCsv(String tipoConsulta, ResultadoColumnar datos, String nombre, Path destino, boolean zip,
+                     LongConsumer progreso);
+}
@@ -3,6 +3,8 @@ package org.zkoss.reporte.core.service.interfaces;
 import org.zkoss.reporte.core.dto.request.ConsultaQuery;
 import org.zkoss.reporte.core.dto.response.QueryResponse;
 
+import java.nio.file.Path;
+
 public interface ReporteService {
 
     /**
@@ -10,9 +12,21 @@ public interface ReporteService {
      */
     QueryResponse ejecutarConsulta(String tipoConsulta, ConsultaQuery consulta);
 
+    /**
+     * Ejecutar consulta directamente contra el backend, sin pasar por la caché de resultados.
+     * Pensado para recorridos de una sola vez (por ejemplo, exportaciones página a página).
+     */
+    QueryResponse ejecutarConsultaSinCache(String tipoConsulta, ConsultaQuery consulta);
+
     /**
      * Descargar archivo de consulta
      */
     byte[] descargarConsulta(String tipoConsulta, ConsultaQuery consulta);
 
+    /**
+     * Descargar archivo de consulta directamente a disco, sin pasar por el heap.
+     * Devuelve la cantidad de bytes escritos.
+     */
+    long descargarConsultaEnArchivo(String tipoConsulta, ConsultaQuery consulta, Path archivo);
+
 }
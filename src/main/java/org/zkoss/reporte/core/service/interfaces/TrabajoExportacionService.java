@@ -0,0 +1,43 @@
+package org.zkoss.reporte.core.service.interfaces;
+
+import org.zkoss.reporte.core.dto.request.SolicitudExportacion;
+import org.zkoss.reporte.core.dto.response.EstadoExportacion;
+import org.zkoss.reporte.core.exportacion.Descarga;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+
+import java.util.List;
+
+public interface TrabajoExportacionService {
+
+    /**
+     * Encolar una exportación para generarla en segundo plano. Si una exportación idéntica
+     * está en curso, o su archivo ya existe, se reutiliza.
+     */
+    EstadoExportacion enviar(SolicitudExportacion solicitud, String sesion);
+
+    /**
+     * Encolar la exportación de un resultado que ya está en memoria (formato pdf): el archivo
+     * se genera en el pool de trabajos a partir de esos datos, sin volver al backend.
+     */
+    EstadoExportacion enviar(SolicitudExportacion solicitud, ResultadoColumnar datos, String sesion);
+
+    /**
+     * Estado del trabajo, o null si no existe o no pertenece a la sesión
+     */
+    EstadoExportacion obtener(String id, String sesion);
+
+    /**
+     * Trabajos de la sesión, del más reciente al más antiguo
+     */
+    List<EstadoExportacion> listar(String sesion);
+
+    /**
+     * La sesión deja de esperar el trabajo; si ninguna otra lo espera, se cancela
+     */
+    void cancelar(String id, String sesion);
+
+    /**
+     * Archivo de un trabajo completado, o null si no existe, no terminó o no pertenece a la sesión
+     */
+    Descarga obtenerArchivo(String id, String sesion);
+}
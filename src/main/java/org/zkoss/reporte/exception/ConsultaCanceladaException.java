@@ -0,0 +1,15 @@
+package org.zkoss.reporte.exception;
+
+/**
+ * La consulta se interrumpió porque el usuario la canceló.
+ */
+public class ConsultaCanceladaException extends RuntimeException {
+
+    public ConsultaCanceladaException(String message) {
+        super(message);
+    }
+
+    public ConsultaCanceladaException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,5 +1,6 @@
 package org.zkoss.reporte.security.authentication;
 
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -8,13 +9,14 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.zkoss.reporte.security.user.*;
 import org.zkoss.reporte.security.token.Token;
+import org.zkoss.reporte.security.config.JwtProperties;
 import org.zkoss.reporte.security.config.JwtService;
 import org.zkoss.reporte.security.token.TokenService;
 
@@ -31,14 +33,16 @@ public class AuthService {
     private final UsuarioRepository usuarioRepository;
     private final RolRepository rolRepository;
     private final PasswordEncoder passwordEncoder;
+    private final JwtProperties jwtProperties;
 
-    public AuthService(AuthenticationManager authenticationManager, JwtService jwtService, TokenService tokenService, UsuarioRepository usuarioRepository, RolRepository rolRepository, PasswordEncoder passwordEncoder) {
+    public AuthService(AuthenticationManager authenticationManager, JwtService jwtService, TokenService tokenService, UsuarioRepository usuarioRepository, RolRepository rolRepository, PasswordEncoder passwordEncoder, JwtProperties jwtProperties) {
         this.authenticationManager = authenticationManager;
         this.jwtService = jwtService;
         this.tokenService = tokenService;
         this.usuarioRepository = usuarioRepository;
         this.rolRepository = rolRepository;
         this.passwordEncoder = passwordEncoder;
+        this.jwtProperties = jwtProperties;
     }
 
     /**
@@ -61,6 +65,12 @@ public class AuthService {
             // Obtener los detalles del usuario autenticado
             UserDetails userDetails = (UserDetails) authentication.getPrincipal();
 
+            // Una sesión por usuario: los tokens anteriores se revocan antes de emitir el nuevo
+            if (jwtProperties.isRevocarTokensAlLogin() && userDetails instanceof UsuarioAutenticado) {
+                tokenService.revocarTodosLosTokens(
+                        usuarioRepository.getReferenceById(((UsuarioAutenticado) userDetails).getId()));
+            }
+
             // Generar token JWT
             String jwtToken = jwtService.generateToken(userDetails);
 
@@ -96,8 +106,7 @@ public class AuthService {
 
         Optional<Token> tokenEntity = tokenService.findByToken(token);
         if (tokenEntity.isPresent()) {
-//            tokenService.marcarTokenComoRevocado(tokenEntity.get());
-//            tokenService.marcarTokenComoExpirado(tokenEntity.get());
+            tokenService.revocarToken(tokenEntity.get());
             logger.info("Token revocado exitosamente para el usuario: {}", username);
             return true;
         }
@@ -143,16 +152,11 @@ public class AuthService {
         return new AuthResponse(refreshedToken, userDetails.getUsername());
     }
 
-    /**
-     * Genera un nuevo token JWT para un usuario específico.
-     * Este método se utiliza principalmente para generar tokens durante el proceso de refresh.
-     *
-     * @param usuario Entidad usuario para la cual generar el token
-     * @return Token JWT generado
-     */
     /**
      * Genera un nuevo token JWT para un usuario específico.
      * Este método convierte el usuario a un UserDetails antes de generar el token.
+     * Si el usuario llega sin los roles cargados (por ejemplo, de {@code findByUsername} fuera
+     * de una transacción) se vuelve a leer con {@code findConRolesByUsername}.
      *
      * @param usuario Entidad usuario para la cual generar el token
      * @return Token JWT generado
@@ -160,6 +164,13 @@ public class AuthService {
     public String generateTokenForUser(Usuario usuario) {
         logger.info("Generando token para el usuario: {}", usuario.getUsername());
 
+        // Los roles son perezosos: recorrerlos sin sesión lanzaría LazyInitializationException
+        if (!Hibernate.isInitialized(usuario.getRoles())) {
+            String username = usuario.getUsername();
+            usuario = usuarioRepository.findConRolesByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + username));
+        }
+
         // Lista para almacenar todas las autoridades
         List<GrantedAuthority> authorities = new ArrayList<>();
 
@@ -176,13 +187,11 @@ public class AuthService {
             }
         }
 
-        UserDetails userDetails = new User(
+        UserDetails userDetails = new UsuarioAutenticado(
+                usuario.getId(),
                 usuario.getUsername(),
                 usuario.getPassword(),
                 usuario.isActivo(),
-                true,
-                true,
-                true,
                 authorities
         );
 
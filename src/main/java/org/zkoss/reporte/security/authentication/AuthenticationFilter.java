@@ -1,16 +1,18 @@
 package org.zkoss.reporte.security.authentication;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.zkoss.reporte.security.config.JwtProperties;
 import org.zkoss.reporte.security.config.JwtService;
+import org.zkoss.reporte.security.token.ListaRevocacion;
 import org.zkoss.reporte.security.token.TokenService;
 
 // Usamos javax.servlet en lugar de jakarta.servlet para compatibilidad con Java 8
@@ -25,9 +27,10 @@ import java.io.IOException;
 public class AuthenticationFilter extends OncePerRequestFilter {
     // Intercepta todas las peticiones para validar el token JWT
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
+    private final CustomUserDetailsService userDetailsService;
     private final JwtProperties jwtProperties;
     private final TokenService tokenService;
+    private final ListaRevocacion listaRevocacion;
 
     @Override
     protected void doFilterInternal(
@@ -46,20 +49,25 @@ public class AuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // Extrae el token JWT
+        // Extrae el token JWT y verifica la firma una sola vez
         jwt = authHeader.substring(jwtProperties.getTokenPrefix().length());
-        username = jwtService.extractUsername(jwt);
+        final Claims claims;
+        try {
+            claims = jwtService.extractAllClaims(jwt);
+        } catch (JwtException | IllegalArgumentException e) {
+            // Firma inválida, token vencido o mal formado: la petición sigue sin autenticar
+            logger.debug("Token JWT rechazado: " + e.getMessage());
+            filterChain.doFilter(request, response);
+            return;
+        }
+        username = claims.getSubject();
 
         // Si hay un usuario y no está autenticado, verifica el token
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-
-            // Verificación doble: el token debe ser válido (firma/exp) y estar en la BD como no revocado
-            boolean isTokenValid = tokenService.findByToken(jwt)
-                    .map(token -> !token.isRevocado() && !token.isExpirado())
-                    .orElse(false);
+            UserDetails userDetails = this.userDetailsService.cargarUsuarioAutenticado(username);
 
-            if (jwtService.isTokenValid(jwt, userDetails) && isTokenValid) {
+            // Verificación doble: el token debe ser válido (firma/exp) y no estar revocado
+            if (jwtService.isTokenValid(claims, userDetails) && noRevocado(jwt, claims)) {
                 // Crea un token de autenticación y lo establece en el contexto de seguridad
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
@@ -75,4 +83,15 @@ public class AuthenticationFilter extends OncePerRequestFilter {
         // Continúa con la cadena de filtros
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Sin estado: lista de revocados en memoria por jti. Los tokens sin jti (emitidos antes)
+     * o con la validación sin estado desactivada se verifican contra la tabla (cacheada).
+     */
+    private boolean noRevocado(String jwt, Claims claims) {
+        if (jwtProperties.isValidacionSinEstado() && claims.getId() != null) {
+            return !listaRevocacion.estaRevocado(claims.getId());
+        }
+        return tokenService.isTokenVigente(jwt);
+    }
 }
\ No newline at end of file
@@ -1,29 +1,51 @@
 package org.zkoss.reporte.security.authentication;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.zkoss.reporte.core.cache.RegistroCaches;
+import org.zkoss.reporte.security.config.JwtProperties;
 import org.zkoss.reporte.security.user.Usuario;
 import org.zkoss.reporte.security.user.UsuarioRepository;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
     private final UsuarioRepository usuarioRepository;
 
-    public CustomUserDetailsService(UsuarioRepository usuarioRepository) {
+    // Usuarios de las peticiones con token. El login no la usa: siempre verifica contra la base
+    private final Cache<String, UserDetails> usuariosAutenticados;
+
+    public CustomUserDetailsService(UsuarioRepository usuarioRepository, JwtProperties jwtProperties,
+                                    RegistroCaches registroCaches) {
         this.usuarioRepository = usuarioRepository;
+        this.usuariosAutenticados = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getCacheUsuariosMax())
+                .expireAfterWrite(jwtProperties.getCacheUsuariosTtlMs(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        registroCaches.registrar("auth.usuarios", usuariosAutenticados);
+    }
+
+    /**
+     * Igual que {@link #loadUserByUsername} pero desde la caché de usuarios autenticados.
+     * Para validar peticiones que ya traen un token firmado.
+     */
+    public UserDetails cargarUsuarioAutenticado(String username) throws UsernameNotFoundException {
+        return usuariosAutenticados.get(username, this::loadUserByUsername);
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        Usuario usuario = usuarioRepository.findByUsername(username)
+        Usuario usuario = usuarioRepository.findConRolesByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + username));
 
         // Lista para almacenar todas las autoridades (roles y permisos)
@@ -42,13 +64,11 @@ public class CustomUserDetailsService implements UserDetailsService {
             }
         });
 
-        return new User(
+        return new UsuarioAutenticado(
+                usuario.getId(),
                 usuario.getUsername(),
                 usuario.getPassword(),
                 usuario.isActivo(),
-                true,   // accountNonExpired
-                true,   // credentialsNonExpired
-                true,   // accountNonLocked
                 authorities
         );
     }
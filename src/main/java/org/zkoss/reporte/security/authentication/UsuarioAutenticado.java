@@ -0,0 +1,27 @@
+package org.zkoss.reporte.security.authentication;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * UserDetails que además lleva el id del usuario, para registrar sus tokens sin volver a
+ * buscarlo por username.
+ */
+public class UsuarioAutenticado extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+
+    public UsuarioAutenticado(Long id, String username, String password, boolean enabled,
+                              Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, enabled, true, true, true, authorities);
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -15,4 +15,40 @@ public class JwtProperties {
     private long expiration = 2592000000L; // 30 días en milisegundos
     private String tokenPrefix = "Bearer ";
     private String headerName = "Authorization";
+
+    // UserDetails de los usuarios con token, para no ir a la base en cada petición.
+    // Un cambio de roles o la baja de un usuario se ve, como máximo, pasado este tiempo
+    private long cacheUsuariosMax = 10000;
+    private long cacheUsuariosTtlMs = 60000;
+
+    // Estado (vigente o no) de cada token; revocarlo lo quita de la caché en el acto
+    private long cacheTokensMax = 50000;
+    private long cacheTokensTtlMs = 300000;
+
+    // Validación sin estado: la revocación se consulta en la lista en memoria por jti,
+    // sin ir a la tabla de tokens. Los tokens sin jti siguen validándose contra la tabla
+    private boolean validacionSinEstado = true;
+
+    // Cada cuánto se traen de la base las revocaciones de otras instancias, y cuánto se
+    // solapa cada consulta con la anterior
+    private long intervaloRevocacionMs = 5000;
+    private long margenRevocacionMs = 10000;
+
+    // Filtro de Bloom delante de la lista de revocados
+    private boolean filtroBloomRevocacion = true;
+    private int capacidadFiltroRevocacion = 100000;
+
+    // Al autenticarse se revocan los tokens anteriores del usuario: una sola sesión por usuario
+    private boolean revocarTokensAlLogin = false;
+
+    // Purga de tokens y refresh tokens vencidos: cada cuánto corre y filas por transacción
+    private long intervaloPurgaMs = 3600000;
+    private int tamanoLotePurga = 1000;
+
+    // Escritura diferida de los tokens emitidos: cada cuánto se escriben los pendientes, en
+    // lotes de cuántos, y cuántos pueden esperar antes de escribirse en el acto
+    private boolean diarioTokens = true;
+    private long intervaloDiarioTokensMs = 100;
+    private int tamanoLoteDiarioTokens = 50;
+    private int capacidadDiarioTokens = 10000;
 }
\ No newline at end of file
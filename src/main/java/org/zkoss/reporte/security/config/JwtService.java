@@ -1,6 +1,7 @@
 package org.zkoss.reporte.security.config;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -8,15 +9,17 @@ import io.jsonwebtoken.security.Keys;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.zkoss.reporte.security.authentication.UsuarioAutenticado;
 import org.zkoss.reporte.security.user.Usuario;
 import org.zkoss.reporte.security.user.UsuarioRepository;
 import org.zkoss.reporte.security.token.TokenService;
 
+import javax.annotation.PostConstruct;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Service
@@ -27,6 +30,19 @@ public class JwtService {
     private final UsuarioRepository usuarioRepository;
     private final TokenService tokenService;
 
+    // La clave y el parser son inmutables y thread-safe: se construyen una sola vez
+    private Key signInKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void inicializar() {
+        byte[] keyBytes = Decoders.BASE64.decode(jwtProperties.getSecret());
+        signInKey = Keys.hmacShaKeyFor(keyBytes);
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -44,46 +60,59 @@ public class JwtService {
             Map<String, Object> extraClaims,
             UserDetails userDetails
     ) {
+        // jti: identifica el token en la lista de revocación sin guardar el JWT completo
+        String jti = UUID.randomUUID().toString();
         String token = Jwts
                 .builder()
                 .setClaims(extraClaims)
+                .setId(jti)
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + jwtProperties.getExpiration()))
                 .signWith(getSignInKey(), SignatureAlgorithm.HS256)
                 .compact();
 
-        // Guardar el token en la base de datos
-        Optional<Usuario> usuario = usuarioRepository.findByUsername(userDetails.getUsername());
-        usuario.ifPresent(u -> tokenService.guardarToken(u, token));
+        // Registrar el token; el id viene con el usuario autenticado, sin volver a la base
+        Long usuarioId = userDetails instanceof UsuarioAutenticado
+                ? ((UsuarioAutenticado) userDetails).getId()
+                : usuarioRepository.findByUsername(userDetails.getUsername()).map(Usuario::getId).orElse(null);
+        if (usuarioId != null) {
+            tokenService.guardarToken(usuarioId, token, jti);
+        }
 
         return token;
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(extractAllClaims(token), userDetails);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    /**
+     * Validación sobre claims ya verificados: permite validar con una sola verificación
+     * de firma por petición.
+     */
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        final String username = claims.getSubject();
+        return username != null && username.equals(userDetails.getUsername()) && !isTokenExpired(claims);
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
+    /**
+     * Verifica la firma y devuelve los claims del token.
+     *
+     * @throws io.jsonwebtoken.JwtException si el token es inválido o está vencido
+     */
+    public Claims extractAllClaims(String token) {
+        return parser
                 .parseClaimsJws(token)
                 .getBody();
     }
 
+    private boolean isTokenExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.before(new Date());
+    }
+
     private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(jwtProperties.getSecret());
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signInKey;
     }
 }
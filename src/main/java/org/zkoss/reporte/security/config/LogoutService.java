@@ -18,11 +18,6 @@ public class LogoutService implements LogoutHandler {
 
     @Override
     public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
-        // Desactivamos la funcionalidad de logout no haciendo nada
-        // Los tokens permanecerán válidos hasta que expiren naturalmente
-
-        // Código original comentado:
-        /*
         final String authHeader = request.getHeader(jwtProperties.getHeaderName());
         final String jwt;
 
@@ -32,12 +27,7 @@ public class LogoutService implements LogoutHandler {
 
         jwt = authHeader.substring(jwtProperties.getTokenPrefix().length());
 
-        Optional<Token> token = tokenService.findByToken(jwt);
-
-        if (token.isPresent()) {
-            tokenService.marcarTokenComoRevocado(token.get());
-            tokenService.marcarTokenComoExpirado(token.get());
-        }
-        */
+        // Revoca en la tabla y en la lista de revocación de esta instancia
+        tokenService.findByToken(jwt).ifPresent(tokenService::revocarToken);
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,24 @@
 package org.zkoss.reporte.security.refresh_token;
 
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.zkoss.reporte.security.user.Usuario;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
+    // El refresh genera un access token con los roles del usuario: todo en una consulta
+    @EntityGraph(attributePaths = {"usuario", "usuario.roles", "usuario.roles.permisos"})
     Optional<RefreshToken> findByToken(String token);
 
     @Modifying
@@ -31,4 +37,12 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     @Modifying
     @Query("DELETE FROM RefreshToken rt WHERE rt.expiryDate < CURRENT_TIMESTAMP")
     void deleteAllExpiredTokens();
+
+    @Query("SELECT rt.id FROM RefreshToken rt WHERE rt.expiryDate < :ahora")
+    List<Long> findIdsExpirados(Instant ahora, Pageable pagina);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.id IN :ids")
+    int deleteByIdIn(List<Long> ids);
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -95,12 +96,23 @@ public class RefreshTokenService {
     }
 
     /**
-     * Limpia tokens expirados (puede ejecutarse periódicamente)
+     * Limpia tokens expirados en lotes, cada lote en su propia transacción.
+     * La ejecuta periódicamente {@link org.zkoss.reporte.security.token.PurgaTokens}.
+     *
+     * @return cantidad de filas borradas
      */
-    @Transactional
-    public void limpiarTokensExpirados() {
-        logger.info("Ejecutando limpieza de refresh tokens expirados");
-        refreshTokenRepository.deleteAllExpiredTokens();
+    public int limpiarTokensExpirados(int tamanoLote) {
+        logger.debug("Ejecutando limpieza de refresh tokens expirados");
+        Instant ahora = Instant.now();
+        int borrados = 0;
+        List<Long> ids;
+        do {
+            ids = refreshTokenRepository.findIdsExpirados(ahora, PageRequest.of(0, tamanoLote));
+            if (!ids.isEmpty()) {
+                borrados += refreshTokenRepository.deleteByIdIn(ids);
+            }
+        } while (ids.size() == tamanoLote);
+        return borrados;
     }
 
     /**
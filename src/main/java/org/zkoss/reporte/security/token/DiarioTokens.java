@@ -0,0 +1,238 @@
+package org.zkoss.reporte.security.token;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.zkoss.reporte.security.config.JwtProperties;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Escritura diferida de los tokens emitidos.
+ *
+ * El login y el refresh no esperan el INSERT: el token queda pendiente en memoria, donde
+ * {@link TokenService} ya lo da por vigente, y cada {@code intervaloDiarioTokensMs} se
+ * escriben los pendientes en lotes de {@code tamanoLoteDiarioTokens} (un INSERT por lote
+ * con {@code hibernate.jdbc.batch_size}).
+ *
+ * - Cola llena: el token se escribe en el acto, como antes.
+ * - Base no disponible: el lote vuelve a la cola y se reintenta en el próximo ciclo.
+ *   Una revocación masiva en ese lapso marca revocados los pendientes del usuario.
+ * - Un token que no se puede insertar no impide guardar el resto del lote.
+ * - Al detener la aplicación se escriben los pendientes.
+ *
+ * Lo que todavía no se escribió se pierde si el proceso muere; esos tokens siguen siendo
+ * válidos con la validación sin estado, pero no pueden revocarse desde otra instancia.
+ */
+@Component
+public class DiarioTokens {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiarioTokens.class);
+
+    private final TokenRepository tokenRepository;
+    private final JwtProperties jwtProperties;
+
+    // Hash del token -> token emitido que todavía no está en la base
+    private final Map<String, Token> pendientes = new ConcurrentHashMap<>();
+    private BlockingDeque<Token> cola;
+    // Una sola escritura a la vez: el ciclo periódico o la confirmación de un token puntual
+    private final Object escritura = new Object();
+
+    private final AtomicLong registrados = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong escritosEnLote = new AtomicLong();
+    private final AtomicLong escritosDirecto = new AtomicLong();
+    private final AtomicLong reintentos = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+
+    public DiarioTokens(TokenRepository tokenRepository, JwtProperties jwtProperties) {
+        this.tokenRepository = tokenRepository;
+        this.jwtProperties = jwtProperties;
+    }
+
+    @PostConstruct
+    void inicializar() {
+        cola = new LinkedBlockingDeque<>(Math.max(1, jwtProperties.getCapacidadDiarioTokens()));
+    }
+
+    /**
+     * Registra un token recién emitido. Con el diario desactivado o la cola llena se escribe
+     * en el acto.
+     */
+    public void registrar(Token token) {
+        registrados.incrementAndGet();
+        if (!jwtProperties.isDiarioTokens()) {
+            tokenRepository.save(token);
+            return;
+        }
+        pendientes.put(token.getTokenHash(), token);
+        if (!cola.offerLast(token)) {
+            escribir(token);
+        }
+    }
+
+    /**
+     * Indica si el token está pendiente de escritura y no fue revocado mientras esperaba.
+     */
+    public boolean estaPendiente(String tokenHash) {
+        Token token = pendientes.get(tokenHash);
+        return token != null && !token.isRevocado();
+    }
+
+    /**
+     * Si el token está pendiente lo escribe en el acto y lo devuelve ya con id, listo para
+     * modificarlo. Vacío si no estaba pendiente: hay que buscarlo en la base.
+     */
+    public Optional<Token> confirmar(String tokenHash) {
+        synchronized (escritura) {
+            Token token = pendientes.get(tokenHash);
+            if (token == null) {
+                return Optional.empty();
+            }
+            cola.removeIf(encolado -> encolado == token);
+            escribir(token);
+            return Optional.of(token);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.intervalo-diario-tokens-ms:100}",
+            initialDelayString = "${app.jwt.intervalo-diario-tokens-ms:100}")
+    public void vaciar() {
+        escribirPendientes();
+    }
+
+    /**
+     * Escribe todos los pendientes. Lo llaman el ciclo periódico y la detención de la
+     * aplicación. Si hay un lote escribiéndose espera a que termine.
+     *
+     * @return false si la base no está disponible: los pendientes siguen en la cola
+     */
+    public boolean escribirPendientes() {
+        int tamanoLote = Math.max(1, jwtProperties.getTamanoLoteDiarioTokens());
+        synchronized (escritura) {
+            List<Token> lote = new ArrayList<>(tamanoLote);
+            while (cola.drainTo(lote, tamanoLote) > 0) {
+                if (!escribirLote(lote)) {
+                    return false;
+                }
+                lote.clear();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Revocación masiva: ejecuta la revocación en la base y después marca como revocados los
+     * tokens pendientes del usuario, sin que se escriba ningún lote en el medio. Cada token
+     * emitido antes de que termine el UPDATE ya estaba escrito, y el UPDATE lo alcanza, o
+     * sigue pendiente y se escribe revocado. Si el UPDATE falla los pendientes se revocan igual.
+     *
+     * @return los tokens pendientes revocados, para notificar la revocación en memoria
+     */
+    public List<Token> revocarPendientes(Long usuarioId, Runnable revocacionEnBase) {
+        synchronized (escritura) {
+            List<Token> revocados = new ArrayList<>();
+            try {
+                revocacionEnBase.run();
+            } finally {
+                for (Token token : pendientes.values()) {
+                    if (token.getUsuario() != null && Objects.equals(token.getUsuario().getId(), usuarioId)) {
+                        token.setRevocado(true);
+                        revocados.add(token);
+                    }
+                }
+            }
+            return revocados;
+        }
+    }
+
+    @PreDestroy
+    void detener() {
+        escribirPendientes();
+        if (!pendientes.isEmpty()) {
+            logger.error("{} tokens emitidos no se pudieron guardar al detener la aplicación", pendientes.size());
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("activo", jwtProperties.isDiarioTokens());
+        estadisticas.put("pendientes", pendientes.size());
+        estadisticas.put("capacidad", jwtProperties.getCapacidadDiarioTokens());
+        estadisticas.put("registrados", registrados.get());
+        estadisticas.put("lotes", lotes.get());
+        estadisticas.put("escritosEnLote", escritosEnLote.get());
+        estadisticas.put("escritosDirecto", escritosDirecto.get());
+        estadisticas.put("reintentos", reintentos.get());
+        estadisticas.put("descartados", descartados.get());
+        return estadisticas;
+    }
+
+    // ===== PRIVADOS =====
+
+    /**
+     * @return false si la base no está disponible: el lote volvió a la cola
+     */
+    private boolean escribirLote(List<Token> lote) {
+        try {
+            tokenRepository.saveAll(lote);
+            lotes.incrementAndGet();
+            escritosEnLote.addAndGet(lote.size());
+            for (Token token : lote) {
+                pendientes.remove(token.getTokenHash(), token);
+            }
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Algún token del lote no se puede insertar: uno por uno, para no perder los demás
+            logger.warn("Lote de {} tokens rechazado, se escriben de a uno: {}", lote.size(), e.getMessage());
+            for (Token token : lote) {
+                // El rollback deja el id asignado por la secuencia; sin él se inserta de nuevo
+                token.setId(null);
+                escribir(token);
+            }
+            return true;
+        } catch (Exception e) {
+            reintentos.incrementAndGet();
+            logger.warn("No se pudo escribir un lote de {} tokens, se reintenta: {}", lote.size(), e.getMessage());
+            // Al frente de la cola y en el mismo orden
+            for (int i = lote.size() - 1; i >= 0; i--) {
+                Token token = lote.get(i);
+                token.setId(null);
+                if (!cola.offerFirst(token)) {
+                    descartar(token, "cola llena");
+                }
+            }
+            return false;
+        }
+    }
+
+    private void escribir(Token token) {
+        try {
+            tokenRepository.save(token);
+            escritosDirecto.incrementAndGet();
+        } catch (Exception e) {
+            descartar(token, e.getMessage());
+        } finally {
+            pendientes.remove(token.getTokenHash(), token);
+        }
+    }
+
+    private void descartar(Token token, String motivo) {
+        pendientes.remove(token.getTokenHash(), token);
+        descartados.incrementAndGet();
+        logger.error("No se pudo guardar el token {}: {}", token.getJti(), motivo);
+    }
+}
@@ -0,0 +1,69 @@
+package org.zkoss.reporte.security.token;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom de cadenas: responde "seguro que no está" o "puede estar".
+ *
+ * Dimensionado para {@code capacidad} elementos con ~1% de falsos positivos (9,6 bits y
+ * 7 funciones de hash por elemento). Las consultas no bloquean; los agregados usan CAS.
+ */
+final class FiltroBloom {
+
+    private static final int FUNCIONES = 7;
+    private static final double BITS_POR_ELEMENTO = 9.6;
+
+    private final AtomicLongArray bits;
+    private final long cantidadBits;
+
+    FiltroBloom(int capacidad) {
+        long palabras = Math.max(1, (long) Math.ceil(Math.max(1, capacidad) * BITS_POR_ELEMENTO / 64));
+        this.bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, palabras));
+        this.cantidadBits = (long) bits.length() * 64;
+    }
+
+    void agregar(String valor) {
+        long h1 = hash1(valor);
+        long h2 = hash2(valor);
+        for (int i = 0; i < FUNCIONES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, cantidadBits);
+            int palabra = (int) (bit >>> 6);
+            long mascara = 1L << bit;
+            long actual;
+            do {
+                actual = bits.get(palabra);
+            } while ((actual & mascara) == 0 && !bits.compareAndSet(palabra, actual, actual | mascara));
+        }
+    }
+
+    boolean puedeContener(String valor) {
+        long h1 = hash1(valor);
+        long h2 = hash2(valor);
+        for (int i = 0; i < FUNCIONES; i++) {
+            long bit = Math.floorMod(h1 + i * h2, cantidadBits);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a de 64 bits y su mezcla final: dos hashes independientes para el doble hashing
+    private static long hash1(String valor) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < valor.length(); i++) {
+            hash ^= valor.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long hash2(String valor) {
+        long hash = valor.hashCode() * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        // Impar: recorre posiciones distintas aunque cantidadBits sea potencia de 2
+        return hash | 1;
+    }
+}
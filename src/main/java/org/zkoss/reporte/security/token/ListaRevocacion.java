@@ -0,0 +1,191 @@
+package org.zkoss.reporte.security.token;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.zkoss.reporte.security.config.JwtProperties;
+
+import javax.annotation.PostConstruct;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lista en memoria de los tokens revocados, por su identificador (claim {@code jti}).
+ *
+ * Permite validar un token sin consultar la tabla {@code tokens}: la firma y el vencimiento
+ * los verifica el JWT y la revocación se busca aquí.
+ *
+ * - Al arrancar se cargan los tokens revocados que todavía no vencieron.
+ * - Las revocaciones de esta instancia se agregan en el acto ({@link TokenService}).
+ * - Las de otras instancias se traen cada {@code intervaloRevocacionMs}: filas modificadas
+ *   desde la última marca, con un margen para no perder transacciones que confirmaron tarde.
+ * - Un filtro de Bloom delante del mapa responde "no revocado" sin tocar el mapa en casi todas
+ *   las consultas.
+ * - Los tokens vencidos se quitan: el JWT ya los rechaza por fecha.
+ */
+@Component
+public class ListaRevocacion {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListaRevocacion.class);
+
+    private final TokenRepository tokenRepository;
+    private final JwtProperties jwtProperties;
+
+    // jti -> vencimiento del token (ms)
+    private final Map<String, Long> revocados = new ConcurrentHashMap<>();
+    private volatile FiltroBloom filtro;
+    private int capacidadFiltro;
+    private volatile Date marcaAgua = new Date(0);
+
+    public ListaRevocacion(TokenRepository tokenRepository, JwtProperties jwtProperties) {
+        this.tokenRepository = tokenRepository;
+        this.jwtProperties = jwtProperties;
+    }
+
+    @PostConstruct
+    void inicializar() {
+        Date ahora = new Date();
+        // Los emitidos antes de este plazo ya vencieron
+        List<Object[]> filas = tokenRepository.findJtisRevocadosEmitidosDesde(
+                new Date(ahora.getTime() - jwtProperties.getExpiration()));
+        synchronized (this) {
+            for (Object[] fila : filas) {
+                registrar((String) fila[0], vencimiento((Date) fila[1]));
+            }
+            reconstruirFiltro();
+        }
+        marcaAgua = ahora;
+        logger.info("Lista de revocación inicializada con {} tokens", revocados.size());
+    }
+
+    /**
+     * Indica si el token con ese jti fue revocado. No bloquea.
+     */
+    public boolean estaRevocado(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        FiltroBloom actual = filtro;
+        if (actual != null && !actual.puedeContener(jti)) {
+            return false;
+        }
+        return revocados.containsKey(jti);
+    }
+
+    /**
+     * Agrega un token revocado por esta instancia.
+     *
+     * @param expiracion vencimiento del token (claim exp); pasada esa fecha la entrada se descarta
+     */
+    public synchronized void revocar(String jti, Date expiracion) {
+        if (jti == null) {
+            return;
+        }
+        registrar(jti, expiracion);
+        agregarAlFiltro(jti);
+    }
+
+    public int getCantidadRevocados() {
+        return revocados.size();
+    }
+
+    /**
+     * Trae las revocaciones hechas por otras instancias desde la última marca.
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.intervalo-revocacion-ms:5000}",
+            initialDelayString = "${app.jwt.intervalo-revocacion-ms:5000}")
+    public void sincronizar() {
+        Date desde = new Date(marcaAgua.getTime() - jwtProperties.getMargenRevocacionMs());
+        Date hasta = new Date();
+        try {
+            List<Object[]> filas = tokenRepository.findJtisRevocadosDesde(desde);
+            if (!filas.isEmpty()) {
+                synchronized (this) {
+                    for (Object[] fila : filas) {
+                        String jti = (String) fila[0];
+                        registrar(jti, vencimiento((Date) fila[1]));
+                        agregarAlFiltro(jti);
+                    }
+                }
+                logger.debug("Lista de revocación: {} filas desde {}", filas.size(), desde);
+            }
+            marcaAgua = hasta;
+        } catch (Exception e) {
+            // La marca no avanza: el próximo ciclo vuelve a pedir el mismo intervalo
+            logger.warn("No se pudo sincronizar la lista de revocación: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Quita los tokens ya vencidos y reconstruye el filtro con los que quedan.
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.intervalo-purga-revocacion-ms:600000}",
+            initialDelayString = "${app.jwt.intervalo-purga-revocacion-ms:600000}")
+    public synchronized void purgarVencidos() {
+        long ahora = System.currentTimeMillis();
+        int antes = revocados.size();
+        Iterator<Map.Entry<String, Long>> iterador = revocados.entrySet().iterator();
+        while (iterador.hasNext()) {
+            if (iterador.next().getValue() < ahora) {
+                iterador.remove();
+            }
+        }
+        reconstruirFiltro();
+        if (revocados.size() != antes) {
+            logger.info("Lista de revocación: {} tokens vencidos descartados, quedan {}",
+                    antes - revocados.size(), revocados.size());
+        }
+    }
+
+    /**
+     * Vencimiento del JWT según su fecha de emisión. No se usa la fecha de expiración de la
+     * fila: puede ser posterior a la del token.
+     */
+    public Date vencimiento(Date emision) {
+        return emision != null ? new Date(emision.getTime() + jwtProperties.getExpiration()) : null;
+    }
+
+    // ===== PRIVADOS =====
+
+    private void registrar(String jti, Date expiracion) {
+        if (jti != null) {
+            revocados.put(jti, expiracion != null ? expiracion.getTime() : Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Superada la capacidad del filtro, los falsos positivos crecen: se reconstruye más grande.
+     */
+    private void agregarAlFiltro(String jti) {
+        FiltroBloom actual = filtro;
+        if (actual == null) {
+            return;
+        }
+        if (revocados.size() > capacidadFiltro) {
+            reconstruirFiltro();
+        } else {
+            actual.agregar(jti);
+        }
+    }
+
+    /**
+     * Filtro nuevo con capacidad para el doble de lo actual (como mínimo la configurada).
+     * Se llama con el lock tomado, así ningún agregado queda fuera del filtro nuevo.
+     */
+    private void reconstruirFiltro() {
+        if (!jwtProperties.isFiltroBloomRevocacion()) {
+            filtro = null;
+            return;
+        }
+        capacidadFiltro = Math.max(jwtProperties.getCapacidadFiltroRevocacion(), revocados.size() * 2);
+        FiltroBloom nuevo = new FiltroBloom(capacidadFiltro);
+        for (String jti : revocados.keySet()) {
+            nuevo.agregar(jti);
+        }
+        filtro = nuevo;
+    }
+}
@@ -0,0 +1,93 @@
+package org.zkoss.reporte.security.token;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.zkoss.reporte.security.config.JwtProperties;
+import org.zkoss.reporte.security.refresh_token.RefreshTokenService;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Borrado periódico de tokens y refresh tokens vencidos.
+ *
+ * Sin purga las tablas crecen con cada login y las consultas por usuario se vuelven lentas.
+ * El borrado se hace en lotes de {@code tamanoLotePurga} filas, cada uno en su transacción,
+ * para no bloquear las tablas mientras se autentica.
+ */
+@Component
+public class PurgaTokens {
+
+    private static final Logger logger = LoggerFactory.getLogger(PurgaTokens.class);
+
+    private final TokenService tokenService;
+    private final RefreshTokenService refreshTokenService;
+    private final ListaRevocacion listaRevocacion;
+    private final JwtProperties jwtProperties;
+
+    private final AtomicLong ejecuciones = new AtomicLong();
+    private final AtomicLong tokensBorrados = new AtomicLong();
+    private final AtomicLong refreshTokensBorrados = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+
+    private volatile Date ultimaEjecucion;
+    private volatile long ultimaDuracionMs;
+    private volatile int ultimosTokensBorrados;
+    private volatile int ultimosRefreshTokensBorrados;
+
+    public PurgaTokens(TokenService tokenService, RefreshTokenService refreshTokenService,
+                       ListaRevocacion listaRevocacion, JwtProperties jwtProperties) {
+        this.tokenService = tokenService;
+        this.refreshTokenService = refreshTokenService;
+        this.listaRevocacion = listaRevocacion;
+        this.jwtProperties = jwtProperties;
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.intervalo-purga-ms:3600000}",
+            initialDelayString = "${app.jwt.intervalo-purga-ms:3600000}")
+    public void purgar() {
+        long inicio = System.currentTimeMillis();
+        int tamanoLote = Math.max(1, jwtProperties.getTamanoLotePurga());
+        int tokens = 0;
+        int refreshTokens = 0;
+        try {
+            tokens = tokenService.purgarVencidos(tamanoLote);
+            refreshTokens = refreshTokenService.limpiarTokensExpirados(tamanoLote);
+        } catch (Exception e) {
+            // Lo ya borrado queda confirmado; el próximo ciclo sigue desde ahí
+            errores.incrementAndGet();
+            logger.warn("Error purgando tokens vencidos: {}", e.getMessage());
+        }
+
+        ultimaEjecucion = new Date(inicio);
+        ultimaDuracionMs = System.currentTimeMillis() - inicio;
+        ultimosTokensBorrados = tokens;
+        ultimosRefreshTokensBorrados = refreshTokens;
+        ejecuciones.incrementAndGet();
+        tokensBorrados.addAndGet(tokens);
+        refreshTokensBorrados.addAndGet(refreshTokens);
+
+        if (tokens > 0 || refreshTokens > 0) {
+            logger.info("Purga de tokens: {} tokens y {} refresh tokens borrados en {} ms",
+                    tokens, refreshTokens, ultimaDuracionMs);
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("ultimaEjecucion", ultimaEjecucion);
+        estadisticas.put("ultimaDuracionMs", ultimaDuracionMs);
+        estadisticas.put("ultimosTokensBorrados", ultimosTokensBorrados);
+        estadisticas.put("ultimosRefreshTokensBorrados", ultimosRefreshTokensBorrados);
+        estadisticas.put("ejecuciones", ejecuciones.get());
+        estadisticas.put("tokensBorrados", tokensBorrados.get());
+        estadisticas.put("refreshTokensBorrados", refreshTokensBorrados.get());
+        estadisticas.put("errores", errores.get());
+        estadisticas.put("tokensRevocadosEnMemoria", listaRevocacion.getCantidadRevocados());
+        return estadisticas;
+    }
+}
@@ -14,15 +14,29 @@ import java.util.Date;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "tokens")
+@Table(name = "tokens", indexes = {
+        @Index(name = "idx_tokens_jti", columnList = "jti"),
+        @Index(name = "idx_tokens_actualizacion", columnList = "fechaActualizacion"),
+        @Index(name = "idx_tokens_expiracion", columnList = "fechaExpiracion")
+})
 public class Token {
 
+    // Secuencia y no IDENTITY: con IDENTITY Hibernate no puede agrupar los INSERT en lotes.
+    // En una base existente la crea db/migracion/002_tokens_secuencia_jti.sql
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tokens_seq")
+    @SequenceGenerator(name = "tokens_seq", sequenceName = "tokens_seq", allocationSize = 50)
     private Long id;
 
-    @Column(unique = true)
-    private String token;
+    // SHA-256 del JWT en hexadecimal: clave de ancho fijo, el token completo no se guarda.
+    // Reemplaza a la columna token: db/migracion/001_tokens_token_hash.sql calcula el hash de
+    // las filas existentes y borra la columna vieja con su restricción única
+    @Column(name = "token_hash", length = 64, unique = true)
+    private String tokenHash;
+
+    // Claim jti del JWT: clave de la lista de revocación en memoria
+    @Column(length = 36)
+    private String jti;
 
     @Enumerated(EnumType.STRING)
     private TokenType tipoToken;
@@ -40,8 +54,18 @@ public class Token {
     @Temporal(TemporalType.TIMESTAMP)
     private Date fechaExpiracion;
 
+    // Última modificación: marca de agua para replicar las revocaciones entre instancias
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date fechaActualizacion;
+
     @PrePersist
     protected void onCreate() {
         fechaCreacion = new Date();
+        fechaActualizacion = fechaCreacion;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        fechaActualizacion = new Date();
     }
 }
\ No newline at end of file
@@ -1,9 +1,13 @@
 package org.zkoss.reporte.security.token;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,5 +16,31 @@ public interface TokenRepository extends JpaRepository<Token, Long> {
     @Query("select t from Token t inner join Usuario u on t.usuario.id = u.id where u.id = :usuarioId and (t.expirado = false or t.revocado = false)")
     List<Token> findAllValidTokensByUsuario(Long usuarioId);
 
-    Optional<Token> findByToken(String token);
+    Optional<Token> findByTokenHash(String tokenHash);
+
+    // jti, fecha de emisión y hash de los tokens que revocarTodosLosTokens va a revocar
+    @Query("select t.jti, t.fechaCreacion, t.tokenHash from Token t where t.usuario.id = :usuarioId and (t.expirado = false or t.revocado = false)")
+    List<Object[]> findRevocablesByUsuarioId(Long usuarioId);
+
+    @Transactional
+    @Modifying
+    @Query("update Token t set t.revocado = true, t.expirado = true, t.fechaActualizacion = :ahora where t.usuario.id = :usuarioId and (t.expirado = false or t.revocado = false)")
+    int revokeAllByUsuarioId(Long usuarioId, Date ahora);
+
+    // Vencidos: por fecha de expiración o, en filas anteriores con expiración lejana, por emisión
+    @Query("select t.id from Token t where t.fechaExpiracion < :ahora or t.fechaCreacion < :emitidosAntes")
+    List<Long> findIdsVencidos(Date ahora, Date emitidosAntes, Pageable pagina);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Token t where t.id in :ids")
+    int deleteByIdIn(List<Long> ids);
+
+    // jti y fecha de emisión de los tokens revocados emitidos desde la fecha
+    @Query("select t.jti, t.fechaCreacion from Token t where t.jti is not null and (t.revocado = true or t.expirado = true) and t.fechaCreacion > :emitidosDesde")
+    List<Object[]> findJtisRevocadosEmitidosDesde(Date emitidosDesde);
+
+    // jti y fecha de emisión de los tokens revocados modificados desde la fecha
+    @Query("select t.jti, t.fechaCreacion from Token t where t.jti is not null and (t.revocado = true or t.expirado = true) and t.fechaActualizacion > :desde")
+    List<Object[]> findJtisRevocadosDesde(Date desde);
 }
\ No newline at end of file
@@ -1,16 +1,24 @@
 package org.zkoss.reporte.security.token;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import org.zkoss.reporte.core.cache.RegistroCaches;
 import org.zkoss.reporte.security.config.JwtProperties;
 import org.zkoss.reporte.security.user.Usuario;
+import org.zkoss.reporte.security.user.UsuarioRepository;
 
 
-import java.util.Calendar;
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
@@ -18,60 +26,152 @@ public class TokenService {
 
     private final TokenRepository tokenRepository;
     private final JwtProperties jwtProperties;
+    private final RegistroCaches registroCaches;
+    private final ListaRevocacion listaRevocacion;
+    private final DiarioTokens diarioTokens;
+    private final UsuarioRepository usuarioRepository;
+
+    // Hash del token -> vigente (ni revocado ni expirado en la base). Toda revocación invalida su entrada
+    private Cache<String, Boolean> estadoTokens;
+
+    @PostConstruct
+    void inicializarCache() {
+        estadoTokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getCacheTokensMax())
+                .expireAfterWrite(jwtProperties.getCacheTokensTtlMs(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        registroCaches.registrar("auth.tokens", estadoTokens);
+    }
 
-    public void guardarToken(Usuario usuario, String jwtToken) {
+    /**
+     * Registra el token emitido. No espera el INSERT: lo escribe {@link DiarioTokens} y,
+     * mientras tanto, esta instancia ya lo da por vigente.
+     */
+    public void guardarToken(Long usuarioId, String jwtToken, String jti) {
         Date fechaExpiracion = calcularFechaExpiracion();
 
+        // Referencia sin consulta: solo hace falta la clave foránea
         Token token = Token.builder()
-                .usuario(usuario)
-                .token(jwtToken)
+                .usuario(usuarioRepository.getReferenceById(usuarioId))
+                .tokenHash(hashToken(jwtToken))
+                .jti(jti)
                 .tipoToken(TokenType.BEARER)
                 .expirado(false)
                 .revocado(false)
                 .fechaExpiracion(fechaExpiracion)
                 .build();
 
-        tokenRepository.save(token);
+        diarioTokens.registrar(token);
+        estadoTokens.put(token.getTokenHash(), Boolean.TRUE);
     }
 
+    /**
+     * Revoca todos los tokens vigentes del usuario con un único UPDATE.
+     */
     public void revocarTodosLosTokens(Usuario usuario) {
-        List<Token> tokens = tokenRepository.findAllValidTokensByUsuario(usuario.getId());
-        if (tokens.isEmpty()) {
-            return;
+        Long usuarioId = usuario.getId();
+        List<Object[]> revocables = new ArrayList<>();
+        // Con el diario detenido durante el UPDATE: los emitidos que todavía no se escribieron
+        // quedan revocados en memoria y se escriben así
+        List<Token> pendientes = diarioTokens.revocarPendientes(usuarioId, () -> {
+            revocables.addAll(tokenRepository.findRevocablesByUsuarioId(usuarioId));
+            if (!revocables.isEmpty()) {
+                tokenRepository.revokeAllByUsuarioId(usuarioId, new Date());
+            }
+        });
+
+        for (Token token : pendientes) {
+            listaRevocacion.revocar(token.getJti(), token.getFechaExpiracion());
+            estadoTokens.invalidate(token.getTokenHash());
         }
+        // Un token escrito en el acto (diario desactivado o cola llena) entre la consulta y el
+        // UPDATE queda revocado en la base y llega a la lista por la sincronización periódica
+        for (Object[] fila : revocables) {
+            listaRevocacion.revocar((String) fila[0], listaRevocacion.vencimiento((Date) fila[1]));
+            estadoTokens.invalidate((String) fila[2]);
+        }
+    }
 
-        tokens.forEach(token -> {
-            token.setRevocado(true);
-            token.setExpirado(true);
-        });
+    /**
+     * Revoca y expira el token en una sola escritura.
+     */
+    public void revocarToken(Token token) {
+        token.setRevocado(true);
+        token.setExpirado(true);
+        tokenRepository.save(token);
+        notificarRevocacion(token);
+    }
 
-        tokenRepository.saveAll(tokens);
+    /**
+     * Indica si el token está registrado y no fue revocado ni expirado.
+     * Se consulta la base solo la primera vez por token. Un token que no está en la base no
+     * se guarda en la caché: puede haberlo emitido otra instancia que todavía no lo escribió.
+     */
+    public boolean isTokenVigente(String jwt) {
+        Boolean vigente = estadoTokens.get(hashToken(jwt), clave -> diarioTokens.estaPendiente(clave)
+                ? Boolean.TRUE
+                : tokenRepository.findByTokenHash(clave)
+                        .map(token -> !token.isRevocado() && !token.isExpirado())
+                        .orElse(null));
+        return Boolean.TRUE.equals(vigente);
     }
 
+    /**
+     * Token registrado con ese JWT. Si todavía no se había escrito, se escribe antes de devolverlo.
+     */
     public Optional<Token> findByToken(String token) {
-        return tokenRepository.findByToken(token);
+        String tokenHash = hashToken(token);
+        Optional<Token> pendiente = diarioTokens.confirmar(tokenHash);
+        return pendiente.isPresent() ? pendiente : tokenRepository.findByTokenHash(tokenHash);
+    }
+
+    /**
+     * Borra los tokens vencidos en lotes, cada lote en su propia transacción.
+     *
+     * @return cantidad de filas borradas
+     */
+    public int purgarVencidos(int tamanoLote) {
+        Date ahora = new Date();
+        Date emitidosAntes = new Date(ahora.getTime() - jwtProperties.getExpiration());
+        int borrados = 0;
+        List<Long> ids;
+        do {
+            ids = tokenRepository.findIdsVencidos(ahora, emitidosAntes, PageRequest.of(0, tamanoLote));
+            if (!ids.isEmpty()) {
+                borrados += tokenRepository.deleteByIdIn(ids);
+            }
+        } while (ids.size() == tamanoLote);
+        return borrados;
+    }
+
+    public static String hashToken(String jwt) {
+        return DigestUtils.sha256Hex(jwt);
     }
 
     public void marcarTokenComoExpirado(Token token) {
         token.setExpirado(true);
         tokenRepository.save(token);
+        notificarRevocacion(token);
     }
 
     public void marcarTokenComoRevocado(Token token) {
         token.setRevocado(true);
         tokenRepository.save(token);
+        notificarRevocacion(token);
     }
 
-//    private Date calcularFechaExpiracion() {
-//        Calendar calendar = Calendar.getInstance();
-//        calendar.add(Calendar.MILLISECOND, (int) jwtProperties.getExpiration());
-//        return calendar.getTime();
-//    }
+    /**
+     * La revocación rige en esta instancia en el acto: validación sin estado (por jti) y
+     * caché de estado por token. Las demás instancias la toman de la tabla.
+     */
+    private void notificarRevocacion(Token token) {
+        listaRevocacion.revocar(token.getJti(), listaRevocacion.vencimiento(token.getFechaCreacion()));
+        estadoTokens.invalidate(token.getTokenHash());
+    }
 
     private Date calcularFechaExpiracion() {
-        // En lugar de usar la expiración configurada, establecer una fecha muy lejana
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.YEAR, 100); // Fecha de expiración en 100 años
-        return calendar.getTime();
+        // La misma del JWT; la expiración se suma como long (30 días no entran en un int)
+        return new Date(System.currentTimeMillis() + jwtProperties.getExpiration());
     }
 }
\ No newline at end of file
@@ -2,16 +2,24 @@ package org.zkoss.reporte.security.user;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.HashSet;
 import java.util.Set;
 
+// Los roles y sus permisos casi no cambian: caché de segundo nivel
+// Igualdad por nombre: con los permisos en el hashCode, armar el Set de roles de un usuario
+// inicializaría la colección mientras Hibernate todavía la está cargando
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "roles")
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Rol {
@@ -19,6 +27,7 @@ public class Rol {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @EqualsAndHashCode.Include
     @Column(nullable = false, unique = true)
     private String nombre;
 
@@ -27,6 +36,7 @@ public class Rol {
 
     // Relación many-to-many con permisos
     @ElementCollection(targetClass = Permission.class, fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @CollectionTable(
             name = "roles_permisos",
             joinColumns = @JoinColumn(name = "rol_id")
@@ -32,7 +32,8 @@ public class Usuario {
     private String apellido;
     private boolean activo = true;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Perezosa: la autenticación los trae con findConRolesByUsername en la misma consulta
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "usuario_roles",
             joinColumns = @JoinColumn(name = "usuario_id"),
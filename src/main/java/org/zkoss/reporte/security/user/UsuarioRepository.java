@@ -1,5 +1,6 @@
 package org.zkoss.reporte.security.user;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.Optional;
@@ -7,6 +8,13 @@ import java.util.Optional;
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
     Optional<Usuario> findByUsername(String username);
+
+    /**
+     * Usuario con sus roles y los permisos de cada rol en una sola consulta, para autenticar.
+     */
+    @EntityGraph(attributePaths = {"roles", "roles.permisos"})
+    Optional<Usuario> findConRolesByUsername(String username);
+
     Optional<Usuario> findByEmail(String email);
 
     boolean existsByUsername(String username);
@@ -0,0 +1,28 @@
+package org.zkoss.reporte.spring_zk_config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caché de resultados de ejecución de consultas, compartida por todas las sesiones.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "reporte.cache-resultados")
+@Getter
+@Setter
+public class CacheResultadosProperties {
+
+    private boolean habilitada = true;
+
+    // Límite por tamaño estimado de los resultados retenidos, no por cantidad
+    private long maxBytes = 256L * 1024 * 1024;
+
+    // Vigencia de un resultado, salvo que su categoría tenga una propia
+    private long ttlMs = 300000;
+    private Map<String, Long> ttlPorCategoriaMs = new HashMap<>();
+}
@@ -0,0 +1,26 @@
+package org.zkoss.reporte.spring_zk_config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Caché del catálogo de queries (metadatos por código y listados), compartida por todas las sesiones.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "reporte.catalogo")
+@Getter
+@Setter
+public class CatalogoProperties {
+
+    // Cantidad máxima de queries y de listados (por categoría, búsqueda, etc.) retenidos
+    private long maxQueries = 2000;
+    private long maxListas = 200;
+
+    // Una entrada se descarta pasado este tiempo desde su carga
+    private long expiracionMs = 1800000;
+
+    // Pasado este tiempo, el siguiente acceso devuelve el valor actual y lo recarga en segundo plano
+    private long refrescoMs = 300000;
+}
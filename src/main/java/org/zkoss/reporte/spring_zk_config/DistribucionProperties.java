@@ -0,0 +1,33 @@
+package org.zkoss.reporte.spring_zk_config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ejecución de consultas repartida por provincia desde este cliente
+ * (modo "usar todas las BDS").
+ */
+@Configuration
+@ConfigurationProperties(prefix = "reporte.distribucion")
+@Getter
+@Setter
+public class DistribucionProperties {
+
+    // Si está deshabilitada, o no hay provincias, se delega en el backend en una sola petición
+    private boolean habilitada = true;
+
+    // Provincias a consultar, cada una contra su propia base de datos
+    private List<String> provincias = new ArrayList<>();
+
+    // Consultas por provincia en paralelo (compartido entre todos los usuarios)
+    private int hilos = 8;
+    private int capacidadCola = 64;
+
+    // Tiempo máximo de la consulta completa; las provincias que no terminan se reportan como TIMEOUT
+    private long timeoutMs = 120000;
+}
@@ -0,0 +1,125 @@
+package org.zkoss.reporte.spring_zk_config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Pools de hilos para trabajo en segundo plano fuera de los hilos de eventos de ZK.
+ */
+@Configuration
+public class EjecutoresConfig {
+
+    /**
+     * Precarga de páginas de resultados. Si la cola está llena la tarea se rechaza y la
+     * página se cargará de forma síncrona cuando el usuario llegue a ella.
+     */
+    @Bean(name = "precargaExecutor")
+    public ThreadPoolTaskExecutor precargaExecutor(ResultadosProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getHilosPrecarga());
+        executor.setMaxPoolSize(properties.getHilosPrecarga());
+        executor.setQueueCapacity(properties.getCapacidadColaPrecarga());
+        executor.setThreadNamePrefix("precarga-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Ejecución de consultas lanzadas desde las pantallas, para no retener el hilo de la
+     * petición mientras responde el backend. Con la cola llena la consulta se rechaza y se
+     * le indica al usuario que reintente.
+     */
+    @Bean(name = "ejecucionExecutor")
+    public ThreadPoolTaskExecutor ejecucionExecutor(ResultadosProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getHilosEjecucion());
+        executor.setMaxPoolSize(properties.getHilosEjecucion());
+        executor.setQueueCapacity(properties.getCapacidadColaEjecucion());
+        executor.setThreadNamePrefix("consulta-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Consultas por provincia. Con la cola llena la porción se ejecuta en el hilo que la
+     * envía, de modo que la consulta degrada a secuencial en lugar de fallar.
+     */
+    @Bean(name = "distribucionExecutor")
+    public ThreadPoolTaskExecutor distribucionExecutor(DistribucionProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getHilos());
+        executor.setMaxPoolSize(properties.getHilos());
+        executor.setQueueCapacity(properties.getCapacidadCola());
+        executor.setThreadNamePrefix("provincia-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Generación de libros de una exportación particionada (uno por provincia). Con la cola
+     * llena el libro se genera en el hilo que lo envía.
+     */
+    @Bean(name = "exportacionExecutor")
+    public ThreadPoolTaskExecutor exportacionExecutor(ExportacionProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getHilos());
+        executor.setMaxPoolSize(properties.getHilos());
+        executor.setQueueCapacity(properties.getCapacidadCola());
+        executor.setThreadNamePrefix("exportacion-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Trabajos de exportación en segundo plano. Limita cuántas exportaciones recorren el
+     * backend a la vez; las demás esperan en la cola.
+     */
+    @Bean(name = "trabajosExportacionExecutor")
+    public ThreadPoolTaskExecutor trabajosExportacionExecutor(ExportacionProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(properties.getHilosTrabajos());
+        executor.setMaxPoolSize(properties.getHilosTrabajos());
+        executor.setQueueCapacity(properties.getCapacidadColaTrabajos());
+        executor.setThreadNamePrefix("trabajo-exportacion-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Compresión en bloques de los CSV exportados, compartida por todas las exportaciones.
+     * Con la cola llena el bloque se comprime en el hilo que escribe el archivo.
+     */
+    @Bean(name = "compresionExecutor")
+    public ThreadPoolTaskExecutor compresionExecutor(ExportacionProperties properties) {
+        int hilos = properties.getHilosCompresionEfectivos();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(4 * hilos);
+        executor.setThreadNamePrefix("compresion-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Consolidación local en memoria y orden de los índices de resultados (fork/join por
+     * bloques de filas). Separado del common pool para no competir con los parallel streams
+     * del resto de la aplicación.
+     */
+    @Bean(name = "consolidacionPool", destroyMethod = "shutdown")
+    public ForkJoinPool consolidacionPool(ResultadosProperties properties) {
+        return new ForkJoinPool(properties.getParalelismoConsolidacion());
+    }
+}
@@ -0,0 +1,73 @@
+package org.zkoss.reporte.spring_zk_config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Exportación de resultados a archivos (xlsx) generados en este servidor.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "reporte.exportacion")
+@Getter
+@Setter
+public class ExportacionProperties {
+
+    // Filas del Excel retenidas en memoria mientras se escribe; el resto se vuelca a disco
+    private int ventanaFilas = 200;
+
+    // Filas que se miden para calcular el ancho de cada columna
+    private int filasMuestraAncho = 200;
+
+    // Directorio de los archivos generados (vacío = directorio temporal del sistema)
+    private String directorioTemporal;
+
+    // Filas por página al recorrer el backend para exportar un resultado que no está en memoria
+    private int tamanoPagina = 10000;
+
+    // Filas de datos por hoja antes de continuar en otra (máximo: el límite de Excel)
+    private int maxFilasPorHoja = 1048575;
+
+    // Libros que se generan en paralelo al exportar por provincia
+    private int hilos = 4;
+    private int capacidadCola = 16;
+
+    // PDF: páginas llenadas que quedan en memoria (el resto va al archivo de intercambio),
+    // filas máximas admitidas y diseños compilados en caché
+    private int paginasPdfEnMemoria = 20;
+    private int maxFilasPdf = 200000;
+    private int maxPlantillasPdf = 100;
+
+    // Trabajos de exportación en segundo plano: generaciones simultáneas y trabajos en espera
+    private int hilosTrabajos = 2;
+    private int capacidadColaTrabajos = 200;
+    // Trabajos sin terminar que puede tener una misma sesión
+    private int maxTrabajosPorSesion = 5;
+
+    // Tiempo que se conserva el estado de un trabajo terminado
+    private long retencionTrabajosMs = 3600000;
+
+    // Archivos generados, por contenido (vacío = "reporte-artefactos" en el directorio temporal)
+    private String directorioArtefactos;
+    private long maxBytesArtefactos = 2147483648L;
+    private int maxArtefactos = 500;
+
+    // Antigüedad a partir de la cual un archivo ya no se reutiliza: los datos pudieron cambiar
+    private long ttlArtefactosMs = 3600000;
+
+    // CSV comprimido: hilos de compresión (0 = uno por procesador), bytes sin comprimir por
+    // bloque, nivel de deflate (1-9) y bloques en vuelo por exportación (0 = dos por hilo)
+    private int hilosCompresion = 0;
+    private int tamanoBloqueCompresion = 1048576;
+    private int nivelCompresion = 6;
+    private int bloquesPendientesCompresion = 0;
+
+    public int getHilosCompresionEfectivos() {
+        return hilosCompresion > 0 ? hilosCompresion : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getBloquesPendientesEfectivos() {
+        return bloquesPendientesCompresion > 0 ? bloquesPendientesCompresion : 2 * getHilosCompresionEfectivos();
+    }
+}
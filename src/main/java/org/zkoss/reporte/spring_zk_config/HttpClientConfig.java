@@ -0,0 +1,104 @@
+package org.zkoss.reporte.spring_zk_config;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.zkoss.reporte.utils.http.RequestFactoryCancelable;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Motor HTTP del RestTemplate: Apache HttpClient con pool de conexiones,
+ * keep-alive, desalojo de conexiones ociosas y timeouts configurables.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientConfig.class);
+
+    private final HttpClientProperties properties;
+
+    public HttpClientConfig(HttpClientProperties properties) {
+        this.properties = properties;
+    }
+
+    @Bean
+    public PoolingHttpClientConnectionManager backendConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxConexionesTotales());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConexionesPorRuta());
+        connectionManager.setValidateAfterInactivity(properties.getValidarTrasInactividad());
+
+        for (Map.Entry<String, Integer> entry : properties.getMaxConexionesPorHost().entrySet()) {
+            connectionManager.setMaxPerRoute(rutaDe(entry.getKey()), entry.getValue());
+            logger.info("   ✓ Límite de conexiones para {}: {}", entry.getKey(), entry.getValue());
+        }
+
+        logger.info("✅ Pool HTTP creado - Total: {}, Por ruta: {}",
+                properties.getMaxConexionesTotales(), properties.getMaxConexionesPorRuta());
+        return connectionManager;
+    }
+
+    /**
+     * Ruta igual a la que arma el cliente para esa URL: con el puerto por defecto del esquema
+     * si no viene explícito (80/443) y marcada como segura en https. Si no coincide, el
+     * límite por ruta nunca se aplica.
+     */
+    static HttpRoute rutaDe(String url) {
+        URI uri = URI.create(url);
+        HttpHost host = new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme());
+        int puerto;
+        try {
+            puerto = DefaultSchemePortResolver.INSTANCE.resolve(host);
+        } catch (UnsupportedSchemeException e) {
+            throw new IllegalArgumentException("Esquema no soportado en max-conexiones-por-host: " + url, e);
+        }
+        return new HttpRoute(new HttpHost(host.getHostName(), puerto, host.getSchemeName()),
+                null, "https".equalsIgnoreCase(host.getSchemeName()));
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient backendHttpClient(PoolingHttpClientConnectionManager backendConnectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setSocketTimeout(properties.getReadTimeout())
+                .setConnectionRequestTimeout(properties.getPoolTimeout())
+                .build();
+
+        // Respeta el header Keep-Alive del backend; si no viene, usa el valor configurado
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long duracion = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duracion > 0 ? duracion : properties.getKeepAlive();
+        };
+
+        return HttpClients.custom()
+                .setConnectionManager(backendConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getInactividadMaxima(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Las peticiones hechas dentro de una CancelacionHttp se pueden abortar desde otro hilo.
+     */
+    @Bean
+    public ClientHttpRequestFactory backendRequestFactory(CloseableHttpClient backendHttpClient) {
+        return new RequestFactoryCancelable(backendHttpClient);
+    }
+}
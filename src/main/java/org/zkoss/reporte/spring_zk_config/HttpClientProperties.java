@@ -0,0 +1,37 @@
+package org.zkoss.reporte.spring_zk_config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parámetros del cliente HTTP usado por el RestTemplate hacia el backend.
+ * Todos los tiempos se expresan en milisegundos.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "api.backend.http")
+@Getter
+@Setter
+public class HttpClientProperties {
+
+    // Pool de conexiones
+    private int maxConexionesTotales = 200;
+    private int maxConexionesPorRuta = 50;
+
+    // Límites específicos por host, ej: http://localhost:8080=100
+    private Map<String, Integer> maxConexionesPorHost = new HashMap<>();
+
+    // Timeouts
+    private int connectTimeout = 5000;
+    private int readTimeout = 60000;
+    private int poolTimeout = 3000;  // Espera máxima para obtener una conexión del pool
+
+    // Reutilización de conexiones
+    private long keepAlive = 30000;  // Si el backend no envía Keep-Alive
+    private long inactividadMaxima = 30000;  // Conexiones ociosas más tiempo que esto se cierran
+    private int validarTrasInactividad = 2000;
+}
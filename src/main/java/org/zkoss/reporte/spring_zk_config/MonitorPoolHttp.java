@@ -0,0 +1,47 @@
+package org.zkoss.reporte.spring_zk_config;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Expone el estado del pool de conexiones HTTP hacia el backend.
+ */
+@Component
+public class MonitorPoolHttp {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    public MonitorPoolHttp(PoolingHttpClientConnectionManager backendConnectionManager) {
+        this.connectionManager = backendConnectionManager;
+    }
+
+    /**
+     * Estadísticas totales y por ruta (leased / pending / available / max)
+     */
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("total", convertir(connectionManager.getTotalStats()));
+
+        Map<String, Object> porRuta = new LinkedHashMap<>();
+        for (HttpRoute ruta : connectionManager.getRoutes()) {
+            porRuta.put(ruta.getTargetHost().toURI(), convertir(connectionManager.getStats(ruta)));
+        }
+        estadisticas.put("rutas", porRuta);
+
+        return estadisticas;
+    }
+
+    private Map<String, Object> convertir(PoolStats stats) {
+        Map<String, Object> valores = new LinkedHashMap<>();
+        valores.put("leased", stats.getLeased());
+        valores.put("pending", stats.getPending());
+        valores.put("available", stats.getAvailable());
+        valores.put("max", stats.getMax());
+        return valores;
+    }
+}
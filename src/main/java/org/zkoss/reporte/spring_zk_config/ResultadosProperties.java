@@ -0,0 +1,43 @@
+package org.zkoss.reporte.spring_zk_config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Parámetros de carga de resultados de consultas en las páginas ZK.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "reporte.resultados")
+@Getter
+@Setter
+public class ResultadosProperties {
+
+    // Filas pedidas al backend en cada página
+    private int tamanoPagina = 500;
+
+    // Páginas retenidas en memoria por cada listbox (ventana LRU)
+    private int paginasEnMemoria = 8;
+
+    // Hilos para precargar la página siguiente en segundo plano
+    private int hilosPrecarga = 4;
+    private int capacidadColaPrecarga = 100;
+
+    // Consolidación local: por encima de este número de filas originales se consolida en el backend.
+    // Las filas sin consolidar quedan en memoria mientras la página está abierta
+    private int maxFilasConsolidacionLocal = 50_000;
+    private int paralelismoConsolidacion = Runtime.getRuntime().availableProcessors();
+
+    // Resultados en memoria cuyos índices de orden y filtro se conservan
+    private int maxResultadosIndexados = 200;
+
+    // Ejecución de consultas fuera del hilo de la petición (compartido entre todos los usuarios)
+    private int hilosEjecucion = 16;
+    private int capacidadColaEjecucion = 32;
+
+    // Cubo de subtotales para queries consolidables: todas las combinaciones hasta este número
+    // de dimensiones, por encima solo los niveles jerárquicos (rollup)
+    private boolean cuboHabilitado = true;
+    private int maxDimensionesCubo = 5;
+}
@@ -7,6 +7,7 @@ import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import org.zkoss.zk.au.http.DHtmlUpdateServlet;
 import org.zkoss.zk.ui.WebApp;
@@ -121,7 +122,8 @@ public class ZkSpringIntegrator {
     }
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(ClientHttpRequestFactory backendRequestFactory) {
+        logger.info("✅ Creando RestTemplate con pool de conexiones HTTP");
+        return new RestTemplate(backendRequestFactory);
     }
 }
\ No newline at end of file
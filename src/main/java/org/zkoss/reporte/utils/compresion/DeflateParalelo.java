@@ -0,0 +1,186 @@
+package org.zkoss.reporte.utils.compresion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresión deflate (sin envoltorio) en bloques comprimidos en paralelo, al estilo de pigz.
+ *
+ * Los datos se cortan en bloques de {@code tamanoBloque} bytes y cada bloque se comprime en el
+ * executor con su propio Deflater, usando como diccionario los últimos 32 KB del bloque
+ * anterior para no perder compresión en los cortes. Cada bloque termina con un SYNC_FLUSH
+ * (alineado a byte) y el último con FINISH, de modo que la concatenación en orden es un único
+ * stream deflate válido.
+ *
+ * Como mucho {@code maxPendientes} bloques están en vuelo a la vez: la memoria no depende del
+ * tamaño total. El CRC-32 y los contadores se calculan en el hilo que escribe.
+ */
+public class DeflateParalelo extends OutputStream {
+
+    public static final int TAMANO_DICCIONARIO = 32 * 1024;
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final OutputStream salida;
+    private final Executor executor;
+    private final int tamanoBloque;
+    private final int nivel;
+    private final int maxPendientes;
+
+    private final Deque<CompletableFuture<byte[]>> pendientes = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+
+    private byte[] bloque;
+    private int largo;
+    private byte[] diccionario;
+    private long bytesEntrada;
+    private long bytesSalida;
+    private boolean terminado;
+
+    public DeflateParalelo(OutputStream salida, Executor executor, int tamanoBloque, int nivel, int maxPendientes) {
+        this.salida = salida;
+        this.executor = executor;
+        this.tamanoBloque = Math.max(tamanoBloque, 2 * TAMANO_DICCIONARIO);
+        this.nivel = nivel;
+        this.maxPendientes = Math.max(1, maxPendientes);
+        this.bloque = new byte[this.tamanoBloque];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] datos, int desde, int cantidad) throws IOException {
+        if (terminado) {
+            throw new IOException("El stream de compresión ya se cerró");
+        }
+        while (cantidad > 0) {
+            int copiar = Math.min(cantidad, tamanoBloque - largo);
+            System.arraycopy(datos, desde, bloque, largo, copiar);
+            largo += copiar;
+            desde += copiar;
+            cantidad -= copiar;
+            if (largo == tamanoBloque) {
+                enviarBloque(false);
+            }
+        }
+    }
+
+    /**
+     * Comprime lo que queda como bloque final y escribe todos los bloques pendientes.
+     * No cierra la salida.
+     */
+    public void finish() throws IOException {
+        if (terminado) {
+            return;
+        }
+        enviarBloque(true);
+        while (!pendientes.isEmpty()) {
+            escribirPrimero();
+        }
+        terminado = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    public long getCrc() {
+        return crc.getValue();
+    }
+
+    public long getBytesEntrada() {
+        return bytesEntrada;
+    }
+
+    public long getBytesSalida() {
+        return bytesSalida;
+    }
+
+    // ===== PRIVADOS =====
+
+    private void enviarBloque(boolean ultimo) throws IOException {
+        byte[] datos = bloque;
+        int cantidad = largo;
+        byte[] previo = diccionario;
+
+        crc.update(datos, 0, cantidad);
+        bytesEntrada += cantidad;
+        if (cantidad >= TAMANO_DICCIONARIO) {
+            diccionario = Arrays.copyOfRange(datos, cantidad - TAMANO_DICCIONARIO, cantidad);
+        }
+
+        pendientes.addLast(CompletableFuture.supplyAsync(() -> comprimir(datos, cantidad, previo, ultimo), executor));
+        if (!ultimo) {
+            bloque = new byte[tamanoBloque];
+            largo = 0;
+        }
+
+        while (pendientes.size() > maxPendientes) {
+            escribirPrimero();
+        }
+    }
+
+    private void escribirPrimero() throws IOException {
+        try {
+            byte[] comprimido = pendientes.removeFirst().get();
+            salida.write(comprimido);
+            bytesSalida += comprimido.length;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelarPendientes();
+            throw new InterruptedIOException("Compresión interrumpida");
+        } catch (ExecutionException e) {
+            cancelarPendientes();
+            throw new IOException("Error comprimiendo bloque: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void cancelarPendientes() {
+        for (CompletableFuture<byte[]> pendiente : pendientes) {
+            pendiente.cancel(false);
+        }
+        pendientes.clear();
+        terminado = true;
+    }
+
+    private byte[] comprimir(byte[] datos, int cantidad, byte[] previo, boolean ultimo) {
+        Deflater deflater = new Deflater(nivel, true);
+        try {
+            if (previo != null) {
+                deflater.setDictionary(previo);
+            }
+            deflater.setInput(datos, 0, cantidad);
+
+            ByteArrayOutputStream comprimido = new ByteArrayOutputStream(cantidad / 2 + 64);
+            byte[] buffer = new byte[TAMANO_BUFFER];
+            if (ultimo) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    comprimido.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int escrito;
+                do {
+                    escrito = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    comprimido.write(buffer, 0, escrito);
+                } while (escrito == buffer.length || !deflater.needsInput());
+            }
+            return comprimido.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.zkoss.reporte.utils.compresion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
+
+/**
+ * Salida gzip (un solo miembro) con la compresión repartida en paralelo por {@link DeflateParalelo}.
+ * El resultado se descomprime con cualquier gunzip.
+ */
+public class GzipParalelo extends OutputStream {
+
+    private static final byte[] ENCABEZADO = {
+            0x1f, (byte) 0x8b,   // firma
+            Deflater.DEFLATED,   // método
+            0,                   // flags
+            0, 0, 0, 0,          // fecha de modificación (sin informar)
+            0,                   // flags extra
+            (byte) 0xff          // sistema operativo desconocido
+    };
+
+    private final OutputStream salida;
+    private final DeflateParalelo deflate;
+    private boolean cerrado;
+
+    public GzipParalelo(OutputStream salida, Executor executor, int tamanoBloque, int nivel, int maxPendientes)
+            throws IOException {
+        this.salida = salida;
+        salida.write(ENCABEZADO);
+        this.deflate = new DeflateParalelo(salida, executor, tamanoBloque, nivel, maxPendientes);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        deflate.write(b);
+    }
+
+    @Override
+    public void write(byte[] datos, int desde, int cantidad) throws IOException {
+        deflate.write(datos, desde, cantidad);
+    }
+
+    public long getBytesEntrada() {
+        return deflate.getBytesEntrada();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        try {
+            deflate.finish();
+            escribirEntero(deflate.getCrc());
+            escribirEntero(deflate.getBytesEntrada());
+        } finally {
+            salida.close();
+        }
+    }
+
+    // Little-endian, módulo 2^32 (ISIZE se define así para archivos de más de 4 GB)
+    private void escribirEntero(long valor) throws IOException {
+        salida.write((int) valor & 0xff);
+        salida.write((int) (valor >>> 8) & 0xff);
+        salida.write((int) (valor >>> 16) & 0xff);
+        salida.write((int) (valor >>> 24) & 0xff);
+    }
+}
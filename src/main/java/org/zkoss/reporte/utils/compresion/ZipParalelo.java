@@ -0,0 +1,197 @@
+package org.zkoss.reporte.utils.compresion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executor;
+
+/**
+ * Zip de una sola entrada con la compresión repartida en paralelo por {@link DeflateParalelo}.
+ *
+ * Los tamaños y el CRC se conocen recién al terminar, por eso la entrada se escribe en
+ * streaming con descriptor de datos (flag 3) y sin volver atrás sobre la salida. Como la
+ * entrada puede superar los 4 GB, el encabezado local lleva siempre el extra ZIP64 (con los
+ * tamaños en cero) y el descriptor siempre tiene tamaños de 8 bytes: es lo que espera un
+ * lector que descomprime en streaming al ver ese extra. El directorio central y el fin de
+ * directorio usan ZIP64 solo si hace falta.
+ */
+public class ZipParalelo extends OutputStream {
+
+    private static final int FIRMA_ENCABEZADO_LOCAL = 0x04034b50;
+    private static final int FIRMA_DESCRIPTOR = 0x08074b50;
+    private static final int FIRMA_DIRECTORIO_CENTRAL = 0x02014b50;
+    private static final int FIRMA_FIN_ZIP64 = 0x06064b50;
+    private static final int FIRMA_LOCALIZADOR_ZIP64 = 0x07064b50;
+    private static final int FIRMA_FIN_DIRECTORIO = 0x06054b50;
+
+    // Se declara ZIP64 desde el encabezado local: al escribirlo todavía no se sabe el tamaño
+    private static final int VERSION_ZIP64 = 45;
+    // Descriptor de datos (bit 3) y nombre en UTF-8 (bit 11)
+    private static final int FLAGS = 0x0808;
+    private static final int METODO_DEFLATE = 8;
+    private static final int EXTRA_ZIP64 = 0x0001;
+    private static final long LIMITE_32 = 0xFFFFFFFFL;
+
+    private final OutputStream salida;
+    private final byte[] nombre;
+    private final int hora;
+    private final int fecha;
+    private final int largoEncabezado;
+    private final DeflateParalelo deflate;
+    private boolean cerrado;
+
+    public ZipParalelo(OutputStream salida, String nombreEntrada, Executor executor, int tamanoBloque, int nivel,
+                       int maxPendientes) throws IOException {
+        this.salida = salida;
+        this.nombre = nombreEntrada.getBytes(StandardCharsets.UTF_8);
+
+        LocalDateTime ahora = LocalDateTime.now();
+        this.hora = ahora.getHour() << 11 | ahora.getMinute() << 5 | ahora.getSecond() >> 1;
+        this.fecha = Math.max(0, ahora.getYear() - 1980) << 9 | ahora.getMonthValue() << 5 | ahora.getDayOfMonth();
+
+        ByteArrayOutputStream encabezado = new ByteArrayOutputStream();
+        entero(encabezado, FIRMA_ENCABEZADO_LOCAL);
+        corto(encabezado, VERSION_ZIP64);
+        corto(encabezado, FLAGS);
+        corto(encabezado, METODO_DEFLATE);
+        corto(encabezado, hora);
+        corto(encabezado, fecha);
+        entero(encabezado, 0);   // CRC, en el descriptor
+        entero(encabezado, 0);   // tamaño comprimido, en el descriptor
+        entero(encabezado, 0);   // tamaño original, en el descriptor
+        corto(encabezado, nombre.length);
+        corto(encabezado, 20);
+        encabezado.write(nombre);
+        // Extra ZIP64 con los tamaños en cero: los reales van en el descriptor, en 8 bytes
+        corto(encabezado, EXTRA_ZIP64);
+        corto(encabezado, 16);
+        largo(encabezado, 0);
+        largo(encabezado, 0);
+        encabezado.writeTo(salida);
+        this.largoEncabezado = encabezado.size();
+
+        this.deflate = new DeflateParalelo(salida, executor, tamanoBloque, nivel, maxPendientes);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        deflate.write(b);
+    }
+
+    @Override
+    public void write(byte[] datos, int desde, int cantidad) throws IOException {
+        deflate.write(datos, desde, cantidad);
+    }
+
+    public long getBytesEntrada() {
+        return deflate.getBytesEntrada();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        try {
+            deflate.finish();
+            escribirFinal();
+        } finally {
+            salida.close();
+        }
+    }
+
+    // ===== PRIVADOS =====
+
+    private void escribirFinal() throws IOException {
+        long crc = deflate.getCrc();
+        long comprimido = deflate.getBytesSalida();
+        long original = deflate.getBytesEntrada();
+        boolean zip64 = comprimido >= LIMITE_32 || original >= LIMITE_32;
+
+        ByteArrayOutputStream fin = new ByteArrayOutputStream();
+
+        // Descriptor de datos, en formato ZIP64 por el extra del encabezado local
+        entero(fin, FIRMA_DESCRIPTOR);
+        entero(fin, crc);
+        largo(fin, comprimido);
+        largo(fin, original);
+        long inicioDirectorio = largoEncabezado + comprimido + fin.size();
+
+        // Directorio central, con los tamaños en el extra ZIP64 si no entran en 32 bits
+        int inicioCentral = fin.size();
+        entero(fin, FIRMA_DIRECTORIO_CENTRAL);
+        corto(fin, VERSION_ZIP64);
+        corto(fin, VERSION_ZIP64);
+        corto(fin, FLAGS);
+        corto(fin, METODO_DEFLATE);
+        corto(fin, hora);
+        corto(fin, fecha);
+        entero(fin, crc);
+        entero(fin, zip64 ? LIMITE_32 : comprimido);
+        entero(fin, zip64 ? LIMITE_32 : original);
+        corto(fin, nombre.length);
+        corto(fin, zip64 ? 20 : 0);
+        corto(fin, 0);           // comentario
+        corto(fin, 0);           // disco
+        corto(fin, 0);           // atributos internos
+        entero(fin, 0);          // atributos externos
+        entero(fin, 0);          // la entrada empieza al principio del archivo
+        fin.write(nombre);
+        if (zip64) {
+            corto(fin, EXTRA_ZIP64);
+            corto(fin, 16);
+            largo(fin, original);
+            largo(fin, comprimido);
+        }
+        long tamanoDirectorio = fin.size() - inicioCentral;
+
+        boolean fin64 = zip64 || inicioDirectorio >= LIMITE_32;
+        if (fin64) {
+            long inicioFin64 = inicioDirectorio + tamanoDirectorio;
+            entero(fin, FIRMA_FIN_ZIP64);
+            largo(fin, 44);
+            corto(fin, VERSION_ZIP64);
+            corto(fin, VERSION_ZIP64);
+            entero(fin, 0);
+            entero(fin, 0);
+            largo(fin, 1);
+            largo(fin, 1);
+            largo(fin, tamanoDirectorio);
+            largo(fin, inicioDirectorio);
+
+            entero(fin, FIRMA_LOCALIZADOR_ZIP64);
+            entero(fin, 0);
+            largo(fin, inicioFin64);
+            entero(fin, 1);
+        }
+
+        entero(fin, FIRMA_FIN_DIRECTORIO);
+        corto(fin, 0);
+        corto(fin, 0);
+        corto(fin, 1);
+        corto(fin, 1);
+        entero(fin, tamanoDirectorio);
+        entero(fin, fin64 ? LIMITE_32 : inicioDirectorio);
+        corto(fin, 0);
+
+        fin.writeTo(salida);
+    }
+
+    private static void corto(OutputStream salida, int valor) throws IOException {
+        salida.write(valor & 0xff);
+        salida.write((valor >>> 8) & 0xff);
+    }
+
+    private static void entero(OutputStream salida, long valor) throws IOException {
+        corto(salida, (int) valor & 0xffff);
+        corto(salida, (int) (valor >>> 16) & 0xffff);
+    }
+
+    private static void largo(OutputStream salida, long valor) throws IOException {
+        entero(salida, valor & LIMITE_32);
+        entero(salida, valor >>> 32);
+    }
+}
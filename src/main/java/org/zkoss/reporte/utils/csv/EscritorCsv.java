@@ -0,0 +1,191 @@
+package org.zkoss.reporte.utils.csv;
+
+import org.zkoss.reporte.core.model.columnar.Columna;
+import org.zkoss.reporte.core.model.columnar.ColumnaBooleana;
+import org.zkoss.reporte.core.model.columnar.ColumnaEntera;
+import org.zkoss.reporte.core.model.columnar.ColumnaTexto;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Escritor de CSV (RFC 4180, UTF-8, fin de línea CRLF) a partir de resultados columnares.
+ *
+ * Pensado para consumo por herramientas de análisis: los números se escriben sin separador
+ * de miles ni notación científica, las fechas en ISO-8601 y los nulos como campo vacío.
+ * Los textos se escapan una vez por valor del diccionario de la columna y no por fila.
+ *
+ * Uso: {@link #iniciar}, uno o más {@link #agregar} (por ejemplo, una página cada vez) y
+ * {@link #close}, que cierra también la salida.
+ */
+public class EscritorCsv implements Closeable {
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+    private static final String FIN_LINEA = "\r\n";
+
+    private final Writer escritor;
+    private List<String> columnas;
+    private long filasEscritas;
+
+    public EscritorCsv(OutputStream salida) {
+        this.escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+    }
+
+    /**
+     * Escribe la fila de encabezados.
+     */
+    public void iniciar(List<String> columnas) throws IOException {
+        if (this.columnas != null) {
+            throw new IllegalStateException("El CSV ya se inició");
+        }
+        this.columnas = new ArrayList<>(columnas);
+        for (int c = 0; c < columnas.size(); c++) {
+            if (c > 0) {
+                escritor.write(',');
+            }
+            escritor.write(escapar(columnas.get(c)));
+        }
+        escritor.write(FIN_LINEA);
+    }
+
+    /**
+     * Indica si ya se escribieron los encabezados
+     */
+    public boolean isIniciado() {
+        return columnas != null;
+    }
+
+    /**
+     * Agrega las filas del bloque. Las columnas se ubican por nombre; las que el bloque no
+     * trae quedan vacías.
+     */
+    public void agregar(ResultadoColumnar bloque) throws IOException {
+        if (columnas == null) {
+            throw new IllegalStateException("No se inició el CSV");
+        }
+        if (bloque == null || bloque.getCantidadFilas() == 0) {
+            return;
+        }
+
+        Columna[] origen = new Columna[columnas.size()];
+        String[][] diccionarios = new String[columnas.size()][];
+        for (int c = 0; c < origen.length; c++) {
+            int posicion = bloque.posicion(columnas.get(c));
+            origen[c] = posicion >= 0 ? bloque.getColumna(posicion) : null;
+            if (origen[c] instanceof ColumnaTexto) {
+                diccionarios[c] = escaparDiccionario((ColumnaTexto) origen[c]);
+            }
+        }
+
+        for (int f = 0; f < bloque.getCantidadFilas(); f++) {
+            for (int c = 0; c < origen.length; c++) {
+                if (c > 0) {
+                    escritor.write(',');
+                }
+                Columna columna = origen[c];
+                if (columna == null || columna.esNulo(f)) {
+                    continue;
+                }
+                if (diccionarios[c] != null) {
+                    escritor.write(diccionarios[c][((ColumnaTexto) columna).getCodigo(f)]);
+                } else {
+                    escribirValor(columna, f);
+                }
+            }
+            escritor.write(FIN_LINEA);
+            filasEscritas++;
+        }
+    }
+
+    public long getFilasEscritas() {
+        return filasEscritas;
+    }
+
+    @Override
+    public void close() throws IOException {
+        escritor.close();
+    }
+
+    // ===== PRIVADOS =====
+
+    private void escribirValor(Columna columna, int fila) throws IOException {
+        switch (columna.getTipo()) {
+            case ENTERO:
+                escritor.write(Long.toString(((ColumnaEntera) columna).getLong(fila)));
+                break;
+            case DECIMAL:
+                escritor.write(formatearDecimal(columna.getDouble(fila)));
+                break;
+            case BOOLEANO:
+                escritor.write(((ColumnaBooleana) columna).getBoolean(fila) ? "true" : "false");
+                break;
+            default:
+                escritor.write(formatearObjeto(columna.getValor(fila)));
+        }
+    }
+
+    private static String formatearDecimal(double valor) {
+        if (Double.isNaN(valor) || Double.isInfinite(valor)) {
+            return "";
+        }
+        if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            return Long.toString((long) valor);
+        }
+        return BigDecimal.valueOf(valor).toPlainString();
+    }
+
+    private static String formatearObjeto(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor instanceof Double || valor instanceof Float) {
+            return formatearDecimal(((Number) valor).doubleValue());
+        }
+        if (valor instanceof BigDecimal) {
+            return ((BigDecimal) valor).toPlainString();
+        }
+        if (valor instanceof Number || valor instanceof Boolean) {
+            return valor.toString();
+        }
+        if (valor instanceof Date) {
+            return LocalDateTime.ofInstant(((Date) valor).toInstant(), ZoneId.systemDefault()).toString();
+        }
+        // LocalDate y LocalDateTime ya se representan en ISO-8601
+        return escapar(valor.toString());
+    }
+
+    private static String[] escaparDiccionario(ColumnaTexto columna) {
+        String[] diccionario = columna.getDiccionario();
+        String[] escapados = new String[diccionario.length];
+        for (int i = 0; i < diccionario.length; i++) {
+            escapados[i] = escapar(diccionario[i]);
+        }
+        return escapados;
+    }
+
+    /**
+     * Entre comillas solo si el valor contiene separador, comillas o saltos de línea,
+     * o empieza o termina con espacios.
+     */
+    private static String escapar(String valor) {
+        boolean comillas = !valor.isEmpty()
+                && (Character.isWhitespace(valor.charAt(0)) || Character.isWhitespace(valor.charAt(valor.length() - 1)));
+        for (int i = 0; i < valor.length() && !comillas; i++) {
+            char caracter = valor.charAt(i);
+            comillas = caracter == ',' || caracter == '"' || caracter == '\n' || caracter == '\r';
+        }
+        return comillas ? '"' + valor.replace("\"", "\"\"") + '"' : valor;
+    }
+}
@@ -1,4 +1,301 @@
 package org.zkoss.reporte.utils.excel;
 
-public class Generator {
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zkoss.reporte.core.model.columnar.Columna;
+import org.zkoss.reporte.core.model.columnar.ColumnaBooleana;
+import org.zkoss.reporte.core.model.columnar.ColumnaEntera;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Escritor de xlsx en streaming a partir de resultados columnares.
+ *
+ * Usa SXSSF: solo las últimas {@code ventanaFilas} filas viven en memoria, el resto se
+ * vuelca a un archivo temporal comprimido. Las celdas se escriben con su tipo (numérico,
+ * booleano, fecha o texto) y el ancho de cada columna se calcula sobre una muestra de las
+ * primeras filas.
+ *
+ * Al llegar a {@code maxFilasPorHoja} filas de datos (por defecto, el límite de Excel) la
+ * escritura continúa en una hoja nueva con los mismos encabezados: "Nombre", "Nombre (2)"...
+ *
+ * Uso: {@link #iniciarHoja}, uno o más {@link #agregar} (por ejemplo, una página cada vez),
+ * {@link #escribir} y {@link #close}.
+ */
+public class Generator implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Generator.class);
+
+    private static final int MAX_CARACTERES_CELDA = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+    private static final int MAX_ANCHO_CARACTERES = 60;
+    private static final int MAX_LARGO_NOMBRE_HOJA = 31;
+
+    // Filas de datos que caben en una hoja, descontando la de encabezados
+    public static final int MAX_FILAS_DATOS = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+
+    private final SXSSFWorkbook workbook;
+    private final int filasMuestraAncho;
+    private final int maxFilasPorHoja;
+
+    private final CellStyle estiloEncabezado;
+    private final CellStyle estiloDecimal;
+    private final CellStyle estiloFecha;
+    private final CellStyle estiloFechaHora;
+
+    private SXSSFSheet hoja;
+    private String nombreHoja;
+    private int numeroHoja;
+    private List<String> columnas;
+    private int[] anchos;
+    private int filaActual;
+    private int filasMuestreadas;
+    private long filasEscritas;
+
+    public Generator(int ventanaFilas, int filasMuestraAncho) {
+        this(ventanaFilas, filasMuestraAncho, MAX_FILAS_DATOS);
+    }
+
+    public Generator(int ventanaFilas, int filasMuestraAncho, int maxFilasPorHoja) {
+        this.workbook = new SXSSFWorkbook(ventanaFilas);
+        this.workbook.setCompressTempFiles(true);
+        this.filasMuestraAncho = filasMuestraAncho;
+        this.maxFilasPorHoja = Math.min(Math.max(1, maxFilasPorHoja), MAX_FILAS_DATOS);
+
+        CreationHelper helper = workbook.getCreationHelper();
+
+        Font negrita = workbook.createFont();
+        negrita.setBold(true);
+        estiloEncabezado = workbook.createCellStyle();
+        estiloEncabezado.setFont(negrita);
+        estiloEncabezado.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        estiloEncabezado.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+
+        estiloDecimal = workbook.createCellStyle();
+        estiloDecimal.setDataFormat(helper.createDataFormat().getFormat("#,##0.00"));
+
+        estiloFecha = workbook.createCellStyle();
+        estiloFecha.setDataFormat(helper.createDataFormat().getFormat("dd/mm/yyyy"));
+
+        estiloFechaHora = workbook.createCellStyle();
+        estiloFechaHora.setDataFormat(helper.createDataFormat().getFormat("dd/mm/yyyy hh:mm:ss"));
+    }
+
+    /**
+     * Crea una hoja con la fila de encabezados, fija y con autofiltro.
+     */
+    public void iniciarHoja(String nombre, List<String> columnas) {
+        cerrarHoja();
+
+        this.nombreHoja = nombreHojaValido(nombre);
+        this.numeroHoja = 1;
+        this.columnas = new ArrayList<>(columnas);
+        this.anchos = new int[columnas.size()];
+        this.filasMuestreadas = 0;
+        for (int c = 0; c < columnas.size(); c++) {
+            anchos[c] = columnas.get(c).length();
+        }
+        crearHoja(nombreHoja);
+    }
+
+    /**
+     * Indica si ya se inició alguna hoja
+     */
+    public boolean isIniciado() {
+        return columnas != null;
+    }
+
+    /**
+     * Agrega las filas del bloque a la hoja actual. Las columnas se ubican por nombre;
+     * las que el bloque no trae quedan vacías.
+     */
+    public void agregar(ResultadoColumnar bloque) {
+        if (hoja == null) {
+            throw new IllegalStateException("No se inició ninguna hoja");
+        }
+        if (bloque == null || bloque.getCantidadFilas() == 0) {
+            return;
+        }
+
+        Columna[] origen = new Columna[columnas.size()];
+        for (int c = 0; c < origen.length; c++) {
+            int posicion = bloque.posicion(columnas.get(c));
+            origen[c] = posicion >= 0 ? bloque.getColumna(posicion) : null;
+        }
+
+        for (int f = 0; f < bloque.getCantidadFilas(); f++) {
+            if (filaActual > maxFilasPorHoja) {
+                continuarEnHojaNueva();
+            }
+            Row fila = hoja.createRow(filaActual++);
+            filasEscritas++;
+            boolean muestrear = filasMuestreadas < filasMuestraAncho;
+            for (int c = 0; c < origen.length; c++) {
+                Columna columna = origen[c];
+                if (columna == null || columna.esNulo(f)) {
+                    continue;
+                }
+                int largo = escribirCelda(fila.createCell(c), columna, f);
+                if (muestrear && largo > anchos[c]) {
+                    anchos[c] = largo;
+                }
+            }
+            if (muestrear) {
+                filasMuestreadas++;
+            }
+        }
+    }
+
+    /**
+     * Filas de datos escritas en total, en todas las hojas
+     */
+    public long getFilasEscritas() {
+        return filasEscritas;
+    }
+
+    public void escribir(OutputStream salida) throws IOException {
+        cerrarHoja();
+        workbook.write(salida);
+    }
+
+    /**
+     * Libera los archivos temporales de SXSSF.
+     */
+    @Override
+    public void close() throws IOException {
+        workbook.dispose();
+        workbook.close();
+    }
+
+    // ===== PRIVADOS =====
+
+    /**
+     * Escribe el valor con su tipo y devuelve el largo aproximado en caracteres.
+     */
+    private int escribirCelda(Cell celda, Columna columna, int fila) {
+        switch (columna.getTipo()) {
+            case ENTERO:
+                long entero = ((ColumnaEntera) columna).getLong(fila);
+                celda.setCellValue(entero);
+                return digitos(entero);
+            case DECIMAL:
+                double decimal = columna.getDouble(fila);
+                celda.setCellValue(decimal);
+                celda.setCellStyle(estiloDecimal);
+                return digitos((long) decimal) + 3;
+            case BOOLEANO:
+                celda.setCellValue(((ColumnaBooleana) columna).getBoolean(fila));
+                return 5;
+            default:
+                return escribirObjeto(celda, columna.getValor(fila));
+        }
+    }
+
+    private int escribirObjeto(Cell celda, Object valor) {
+        if (valor instanceof Number) {
+            celda.setCellValue(((Number) valor).doubleValue());
+            return valor.toString().length();
+        }
+        if (valor instanceof Boolean) {
+            celda.setCellValue((Boolean) valor);
+            return 5;
+        }
+        if (valor instanceof Date) {
+            celda.setCellValue((Date) valor);
+            celda.setCellStyle(estiloFechaHora);
+            return 19;
+        }
+        if (valor instanceof LocalDateTime) {
+            celda.setCellValue(Date.from(((LocalDateTime) valor).atZone(ZoneId.systemDefault()).toInstant()));
+            celda.setCellStyle(estiloFechaHora);
+            return 19;
+        }
+        if (valor instanceof LocalDate) {
+            celda.setCellValue(Date.from(((LocalDate) valor).atStartOfDay(ZoneId.systemDefault()).toInstant()));
+            celda.setCellStyle(estiloFecha);
+            return 10;
+        }
+
+        String texto = valor.toString();
+        if (texto.length() > MAX_CARACTERES_CELDA) {
+            texto = texto.substring(0, MAX_CARACTERES_CELDA);
+        }
+        celda.setCellValue(texto);
+        return texto.length();
+    }
+
+    private void crearHoja(String nombre) {
+        hoja = workbook.createSheet(nombre);
+        filaActual = 0;
+
+        Row encabezado = hoja.createRow(filaActual++);
+        for (int c = 0; c < columnas.size(); c++) {
+            Cell celda = encabezado.createCell(c);
+            celda.setCellValue(columnas.get(c));
+            celda.setCellStyle(estiloEncabezado);
+        }
+        hoja.createFreezePane(0, 1);
+    }
+
+    /**
+     * Cierra la hoja llena y sigue en otra con los mismos encabezados y anchos.
+     */
+    private void continuarEnHojaNueva() {
+        cerrarHoja();
+        numeroHoja++;
+        String sufijo = " (" + numeroHoja + ")";
+        String base = nombreHoja.length() + sufijo.length() > MAX_LARGO_NOMBRE_HOJA
+                ? nombreHoja.substring(0, MAX_LARGO_NOMBRE_HOJA - sufijo.length())
+                : nombreHoja;
+        crearHoja(base + sufijo);
+        logger.debug("Límite de filas por hoja alcanzado, se continúa en la hoja {}", numeroHoja);
+    }
+
+    /**
+     * Aplica anchos y autofiltro a la hoja en curso, una sola vez.
+     */
+    private void cerrarHoja() {
+        if (hoja == null) {
+            return;
+        }
+        for (int c = 0; c < anchos.length; c++) {
+            int caracteres = Math.min(MAX_ANCHO_CARACTERES, anchos[c] + 2);
+            hoja.setColumnWidth(c, caracteres * 256);
+        }
+        if (!columnas.isEmpty()) {
+            hoja.setAutoFilter(new CellRangeAddress(0, Math.max(0, filaActual - 1), 0, columnas.size() - 1));
+        }
+        hoja = null;
+    }
+
+    private static int digitos(long valor) {
+        return Long.toString(valor).length();
+    }
+
+    private static String nombreHojaValido(String nombre) {
+        String limpio = nombre != null ? nombre.replaceAll("[\\\\/?*\\[\\]:]", "_").trim() : "";
+        if (limpio.isEmpty()) {
+            limpio = "Datos";
+        }
+        return limpio.length() > MAX_LARGO_NOMBRE_HOJA ? limpio.substring(0, MAX_LARGO_NOMBRE_HOJA) : limpio;
+    }
 }
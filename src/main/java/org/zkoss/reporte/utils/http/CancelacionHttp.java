@@ -0,0 +1,115 @@
+package org.zkoss.reporte.utils.http;
+
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Permite cancelar una operación que hace peticiones HTTP al backend desde otro hilo.
+ *
+ * La operación se ejecuta con {@link #ejecutar(CancelacionHttp, Supplier)}; mientras dura,
+ * cada petición creada por {@link RequestFactoryCancelable} en ese hilo queda registrada.
+ * {@link #cancelar()} aborta las peticiones en curso (cerrando su conexión) e interrumpe
+ * los hilos de la operación. Las peticiones que se creen después se abortan al crearse.
+ *
+ * Los hilos auxiliares que trabajan para la operación (por ejemplo, una consulta por provincia)
+ * deben ejecutarse también con {@link #ejecutar(CancelacionHttp, Supplier)} usando la
+ * cancelación obtenida con {@link #actual()} en el hilo que los lanza, o una
+ * {@link #derivada()} de ella si se tienen que poder cancelar por separado.
+ */
+public final class CancelacionHttp {
+
+    private static final ThreadLocal<CancelacionHttp> ACTUAL = new ThreadLocal<>();
+
+    private final Set<HttpUriRequest> peticiones = ConcurrentHashMap.newKeySet();
+    private final Set<Thread> hilos = ConcurrentHashMap.newKeySet();
+    private final Set<CancelacionHttp> derivadas = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelada;
+
+    /**
+     * Cancelación asociada al hilo actual, o null si no hay ninguna
+     */
+    public static CancelacionHttp actual() {
+        return ACTUAL.get();
+    }
+
+    /**
+     * Indica si la operación del hilo actual fue cancelada
+     */
+    public static boolean canceladaActual() {
+        CancelacionHttp cancelacion = ACTUAL.get();
+        return cancelacion != null && cancelacion.isCancelada();
+    }
+
+    /**
+     * Ejecuta la operación en el hilo actual asociada a la cancelación (si no es null).
+     */
+    public static <T> T ejecutar(CancelacionHttp cancelacion, Supplier<T> operacion) {
+        if (cancelacion == null) {
+            return operacion.get();
+        }
+
+        CancelacionHttp anterior = ACTUAL.get();
+        Thread hilo = Thread.currentThread();
+        ACTUAL.set(cancelacion);
+        cancelacion.hilos.add(hilo);
+        try {
+            return operacion.get();
+        } finally {
+            cancelacion.hilos.remove(hilo);
+            if (anterior != null) {
+                ACTUAL.set(anterior);
+            } else {
+                ACTUAL.remove();
+            }
+            // El hilo puede ser de un pool: no debe conservar la interrupción de esta operación
+            if (cancelacion.cancelada && anterior == null) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Cancelación de una parte de la operación: se puede cancelar sola (por ejemplo, al vencer
+     * su tiempo límite) sin afectar al resto, y se cancela también cuando se cancela esta.
+     */
+    public CancelacionHttp derivada() {
+        CancelacionHttp derivada = new CancelacionHttp();
+        derivadas.add(derivada);
+        if (cancelada) {
+            derivada.cancelar();
+        }
+        return derivada;
+    }
+
+    public boolean isCancelada() {
+        return cancelada;
+    }
+
+    public void cancelar() {
+        cancelada = true;
+        for (HttpUriRequest peticion : peticiones) {
+            peticion.abort();
+        }
+        for (Thread hilo : hilos) {
+            hilo.interrupt();
+        }
+        for (CancelacionHttp derivada : derivadas) {
+            derivada.cancelar();
+        }
+    }
+
+    void registrar(HttpUriRequest peticion) {
+        if (cancelada) {
+            peticion.abort();
+            return;
+        }
+        peticiones.add(peticion);
+        // Cancelada entre la comprobación y el registro
+        if (cancelada) {
+            peticion.abort();
+        }
+    }
+}
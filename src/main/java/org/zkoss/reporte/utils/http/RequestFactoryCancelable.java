@@ -0,0 +1,29 @@
+package org.zkoss.reporte.utils.http;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.net.URI;
+
+/**
+ * Request factory que registra cada petición en la {@link CancelacionHttp} del hilo actual,
+ * para poder abortarla desde otro hilo.
+ */
+public class RequestFactoryCancelable extends HttpComponentsClientHttpRequestFactory {
+
+    public RequestFactoryCancelable(HttpClient httpClient) {
+        super(httpClient);
+    }
+
+    @Override
+    protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+        HttpUriRequest peticion = super.createHttpUriRequest(httpMethod, uri);
+        CancelacionHttp cancelacion = CancelacionHttp.actual();
+        if (cancelacion != null) {
+            cancelacion.registrar(peticion);
+        }
+        return peticion;
+    }
+}
@@ -0,0 +1,22 @@
+package org.zkoss.reporte.utils.json;
+
+/**
+ * Destino de las filas leídas por {@link RespuestaQueryDecoder}.
+ *
+ * El decoder reutiliza el mismo arreglo de valores para todas las filas,
+ * por lo que la implementación debe copiar lo que necesite retener.
+ */
+public interface FilaSink {
+
+    /**
+     * Se invoca la primera vez que aparece una columna en los datos.
+     * Los índices son consecutivos empezando en 0.
+     */
+    void nuevaColumna(int indice, String nombre);
+
+    /**
+     * Entrega una fila completa. Las posiciones [0, cantidad) corresponden a las
+     * columnas conocidas hasta el momento; las que no vinieron en la fila son null.
+     */
+    void fila(Object[] valores, int cantidad);
+}
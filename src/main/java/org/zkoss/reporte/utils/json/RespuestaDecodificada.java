@@ -0,0 +1,20 @@
+package org.zkoss.reporte.utils.json;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Map;
+
+/**
+ * Secciones de metadata de la respuesta de ejecución. Los datos no se guardan
+ * aquí: se entregan fila por fila al {@link FilaSink}.
+ */
+@Getter
+@Setter
+public class RespuestaDecodificada {
+
+    private Map<String, Object> paginacion;
+    private Map<String, Object> consolidacion;
+    private boolean datosEncontrados;
+    private int totalFilas;
+}
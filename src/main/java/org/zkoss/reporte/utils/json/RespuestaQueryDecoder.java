@@ -0,0 +1,149 @@
+package org.zkoss.reporte.utils.json;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodifica la respuesta de ejecución de queries sobre el stream de tokens de Jackson.
+ *
+ * Formatos soportados:
+ * - { "datos": [ {...}, ... ], "paginacion": {...}, "consolidacion": {...} }
+ * - [ {...}, ... ]  (la respuesta es directamente la lista de filas)
+ *
+ * Las filas de "datos" nunca se materializan como árbol JSON ni como Map:
+ * cada valor escalar se lee del token y se entrega al {@link FilaSink}.
+ * "paginacion" y "consolidacion" son pequeños y se leen como Map.
+ */
+public final class RespuestaQueryDecoder {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> TIPO_MAPA = new TypeReference<Map<String, Object>>() {};
+
+    private RespuestaQueryDecoder() {
+    }
+
+    public static RespuestaDecodificada decodificar(InputStream entrada, FilaSink sink) throws IOException {
+        RespuestaDecodificada respuesta = new RespuestaDecodificada();
+
+        try (JsonParser parser = MAPPER.getFactory().createParser(entrada)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return respuesta;
+            }
+
+            // La respuesta es directamente la lista de filas
+            if (token == JsonToken.START_ARRAY) {
+                respuesta.setDatosEncontrados(true);
+                respuesta.setTotalFilas(leerFilas(parser, sink));
+                return respuesta;
+            }
+
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Respuesta de ejecución con formato inesperado: " + token);
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = parser.getCurrentName();
+                JsonToken valor = parser.nextToken();
+
+                if ("datos".equals(campo) && valor == JsonToken.START_ARRAY) {
+                    respuesta.setDatosEncontrados(true);
+                    respuesta.setTotalFilas(leerFilas(parser, sink));
+                } else if ("paginacion".equals(campo)) {
+                    respuesta.setPaginacion(leerMapa(parser));
+                } else if ("consolidacion".equals(campo)) {
+                    respuesta.setConsolidacion(leerMapa(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return respuesta;
+    }
+
+    /**
+     * Lee el arreglo de filas. El parser debe estar posicionado en START_ARRAY.
+     */
+    private static int leerFilas(JsonParser parser, FilaSink sink) throws IOException {
+        Map<String, Integer> indices = new HashMap<>();
+        Object[] valores = new Object[16];
+        int columnas = 0;
+        int filas = 0;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                // Elementos que no son objetos no representan filas
+                parser.skipChildren();
+                continue;
+            }
+
+            Arrays.fill(valores, 0, columnas, null);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String nombre = parser.getCurrentName();
+                Integer indice = indices.get(nombre);
+
+                if (indice == null) {
+                    indice = columnas++;
+                    indices.put(nombre, indice);
+                    if (indice >= valores.length) {
+                        valores = Arrays.copyOf(valores, valores.length * 2);
+                    }
+                    sink.nuevaColumna(indice, nombre);
+                }
+
+                parser.nextToken();
+                valores[indice] = leerValor(parser);
+            }
+
+            sink.fila(valores, columnas);
+            filas++;
+        }
+
+        return filas;
+    }
+
+    /**
+     * Lee el valor del token actual con los mismos tipos que produciría Jackson
+     * al deserializar a Map (Integer/Long/BigInteger, Double, Boolean, String).
+     */
+    private static Object leerValor(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case START_OBJECT:
+            case START_ARRAY:
+                // Valores anidados: poco frecuentes, se leen completos
+                return MAPPER.readValue(parser, Object.class);
+            default:
+                return null;
+        }
+    }
+
+    private static Map<String, Object> leerMapa(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        return MAPPER.readValue(parser, TIPO_MAPA);
+    }
+}
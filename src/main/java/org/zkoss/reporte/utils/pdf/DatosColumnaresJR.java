@@ -0,0 +1,130 @@
+package org.zkoss.reporte.utils.pdf;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import org.zkoss.reporte.core.model.columnar.Columna;
+import org.zkoss.reporte.core.model.columnar.ColumnaBooleana;
+import org.zkoss.reporte.core.model.columnar.ColumnaEntera;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.exception.ConsultaCanceladaException;
+import org.zkoss.reporte.utils.http.CancelacionHttp;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Fuente de datos de JasperReports sobre bloques de resultados columnares.
+ *
+ * Los bloques se consumen de a uno a medida que el llenado avanza (por ejemplo, páginas que
+ * se piden al backend recién cuando hacen falta), sin copiar las filas a mapas. Las columnas
+ * se ubican por nombre en cada bloque; los campos {@code cN} de {@link PlantillaPdf} indican
+ * la posición en la lista de columnas del reporte.
+ */
+public class DatosColumnaresJR implements JRDataSource {
+
+    private final List<String> columnas;
+    private final List<Class<?>> tipos;
+    private final Iterator<ResultadoColumnar> bloques;
+    private final long maxFilas;
+    private final LongConsumer progreso;
+
+    private ResultadoColumnar actual;
+    private Columna[] origen;
+    private int fila = -1;
+    private long filasLeidas;
+
+    public DatosColumnaresJR(List<String> columnas, List<Class<?>> tipos, Iterator<ResultadoColumnar> bloques,
+                             long maxFilas, LongConsumer progreso) {
+        this.columnas = columnas;
+        this.tipos = tipos;
+        this.bloques = bloques;
+        this.maxFilas = maxFilas;
+        this.progreso = progreso;
+    }
+
+    /**
+     * Tipo Java con el que se declara el campo de una columna.
+     */
+    public static Class<?> tipoCampo(Columna columna) {
+        switch (columna.getTipo()) {
+            case ENTERO:
+                return Long.class;
+            case DECIMAL:
+                return Double.class;
+            case BOOLEANO:
+                return Boolean.class;
+            default:
+                return String.class;
+        }
+    }
+
+    public long getFilasLeidas() {
+        return filasLeidas;
+    }
+
+    @Override
+    public boolean next() throws JRException {
+        fila++;
+        while (actual == null || fila >= actual.getCantidadFilas()) {
+            if (!bloques.hasNext()) {
+                cambiarBloque(null);
+                return false;
+            }
+            if (CancelacionHttp.canceladaActual()) {
+                throw new ConsultaCanceladaException("Exportación cancelada");
+            }
+            cambiarBloque(bloques.next());
+        }
+
+        if (++filasLeidas > maxFilas) {
+            throw new JRException("El resultado supera las " + maxFilas
+                    + " filas admitidas en PDF; expórtelo a Excel");
+        }
+        return true;
+    }
+
+    @Override
+    public Object getFieldValue(JRField campo) {
+        int indice = Integer.parseInt(campo.getName().substring(1));
+        Columna columna = origen[indice];
+        if (columna == null || columna.esNulo(fila)) {
+            return null;
+        }
+
+        // Un bloque puede traer la columna con otro tipo físico que el primero
+        Class<?> tipo = tipos.get(indice);
+        if (Long.class.equals(tipo) && columna instanceof ColumnaEntera) {
+            return ((ColumnaEntera) columna).getLong(fila);
+        }
+        if (Long.class.equals(tipo) || Double.class.equals(tipo)) {
+            double numero = columna.getDouble(fila);
+            if (Double.isNaN(numero)) {
+                return null;
+            }
+            return Long.class.equals(tipo) ? (Object) (long) numero : (Object) numero;
+        }
+        if (Boolean.class.equals(tipo) && columna instanceof ColumnaBooleana) {
+            return ((ColumnaBooleana) columna).getBoolean(fila);
+        }
+        Object valor = columna.getValor(fila);
+        return Boolean.class.equals(tipo) ? Boolean.valueOf(String.valueOf(valor)) : String.valueOf(valor);
+    }
+
+    private void cambiarBloque(ResultadoColumnar bloque) {
+        if (actual != null) {
+            progreso.accept(actual.getCantidadFilas());
+        }
+        actual = bloque;
+        fila = 0;
+        if (bloque == null) {
+            return;
+        }
+        origen = new Columna[columnas.size()];
+        for (int c = 0; c < origen.length; c++) {
+            int posicion = bloque.posicion(columnas.get(c));
+            origen[c] = posicion >= 0 ? bloque.getColumna(posicion) : null;
+        }
+    }
+}
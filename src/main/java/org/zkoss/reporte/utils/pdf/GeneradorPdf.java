@@ -0,0 +1,68 @@
+package org.zkoss.reporte.utils.pdf;
+
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Llena un reporte compilado y lo escribe como PDF.
+ *
+ * El llenado usa un {@link JRSwapFileVirtualizer}: solo las últimas {@code paginasEnMemoria}
+ * páginas generadas quedan en el heap, el resto se serializa a un archivo de intercambio
+ * que se borra al terminar.
+ */
+public class GeneradorPdf {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneradorPdf.class);
+
+    private static final int BLOQUE_SWAP = 4096;
+    private static final int CRECIMIENTO_SWAP = 100;
+
+    private final String directorioSwap;
+    private final int paginasEnMemoria;
+
+    public GeneradorPdf(String directorioSwap, int paginasEnMemoria) {
+        this.directorioSwap = directorioSwap;
+        this.paginasEnMemoria = paginasEnMemoria;
+    }
+
+    /**
+     * Devuelve la cantidad de páginas del PDF generado.
+     */
+    public int generar(JasperReport reporte, String titulo, JRDataSource datos, OutputStream salida) throws JRException {
+        JRSwapFileVirtualizer virtualizador = new JRSwapFileVirtualizer(paginasEnMemoria,
+                new JRSwapFile(directorioSwap, BLOQUE_SWAP, CRECIMIENTO_SWAP), true);
+        try {
+            Map<String, Object> parametros = new HashMap<>();
+            parametros.put(PlantillaPdf.PARAMETRO_TITULO, titulo);
+            parametros.put(JRParameter.REPORT_VIRTUALIZER, virtualizador);
+
+            JasperPrint impresion = JasperFillManager.fillReport(reporte, parametros, datos);
+            virtualizador.setReadOnly(true);
+
+            JRPdfExporter exportador = new JRPdfExporter();
+            exportador.setExporterInput(new SimpleExporterInput(impresion));
+            exportador.setExporterOutput(new SimpleOutputStreamExporterOutput(salida));
+            exportador.exportReport();
+
+            logger.debug("PDF generado con {} páginas", impresion.getPages().size());
+            return impresion.getPages().size();
+        } finally {
+            virtualizador.cleanup();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.zkoss.reporte.utils.pdf;
+
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.design.JRDesignBand;
+import net.sf.jasperreports.engine.design.JRDesignExpression;
+import net.sf.jasperreports.engine.design.JRDesignField;
+import net.sf.jasperreports.engine.design.JRDesignParameter;
+import net.sf.jasperreports.engine.design.JRDesignSection;
+import net.sf.jasperreports.engine.design.JRDesignStaticText;
+import net.sf.jasperreports.engine.design.JRDesignStyle;
+import net.sf.jasperreports.engine.design.JRDesignTextField;
+import net.sf.jasperreports.engine.design.JasperDesign;
+import net.sf.jasperreports.engine.type.HorizontalTextAlignEnum;
+import net.sf.jasperreports.engine.type.ModeEnum;
+import net.sf.jasperreports.engine.type.OrientationEnum;
+import net.sf.jasperreports.engine.type.TextAdjustEnum;
+import net.sf.jasperreports.engine.type.WhenNoDataTypeEnum;
+
+import java.awt.Color;
+import java.util.List;
+
+/**
+ * Diseño de reporte tabular para un conjunto de columnas: título, encabezados que se repiten
+ * en cada página, una fila de detalle por registro y número de página al pie.
+ *
+ * Los campos se llaman {@code c0, c1...} en el orden de las columnas, para no depender de
+ * que los nombres de columna sean identificadores válidos. El título llega como parámetro,
+ * así el mismo diseño compilado sirve para cualquier nombre de archivo.
+ */
+public final class PlantillaPdf {
+
+    public static final String PARAMETRO_TITULO = "TITULO";
+
+    // A4 apaisado, en puntos
+    private static final int ANCHO_PAGINA = 842;
+    private static final int ALTO_PAGINA = 595;
+    private static final int MARGEN = 20;
+    private static final int ANCHO_UTIL = ANCHO_PAGINA - 2 * MARGEN;
+
+    private static final int ALTO_TITULO = 30;
+    private static final int ALTO_FILA = 14;
+    private static final Color FONDO_ENCABEZADO = new Color(230, 230, 230);
+
+    private PlantillaPdf() {
+    }
+
+    public static String nombreCampo(int indice) {
+        return "c" + indice;
+    }
+
+    /**
+     * Las columnas numéricas ({@code Long}, {@code Double}) se alinean a la derecha con
+     * separador de miles; el resto se muestra como texto.
+     */
+    public static JasperDesign crear(List<String> columnas, List<Class<?>> tipos) throws JRException {
+        JasperDesign diseno = new JasperDesign();
+        diseno.setName("reporte");
+        diseno.setOrientation(OrientationEnum.LANDSCAPE);
+        diseno.setPageWidth(ANCHO_PAGINA);
+        diseno.setPageHeight(ALTO_PAGINA);
+        diseno.setLeftMargin(MARGEN);
+        diseno.setRightMargin(MARGEN);
+        diseno.setTopMargin(MARGEN);
+        diseno.setBottomMargin(MARGEN);
+        diseno.setColumnWidth(ANCHO_UTIL);
+        diseno.setWhenNoDataType(WhenNoDataTypeEnum.ALL_SECTIONS_NO_DETAIL);
+
+        JRDesignStyle normal = new JRDesignStyle();
+        normal.setName("normal");
+        normal.setDefault(true);
+        normal.setFontSize(7f);
+        normal.setPdfEncoding("Cp1252");
+        diseno.addStyle(normal);
+
+        JRDesignParameter titulo = new JRDesignParameter();
+        titulo.setName(PARAMETRO_TITULO);
+        titulo.setValueClass(String.class);
+        diseno.addParameter(titulo);
+
+        for (int c = 0; c < columnas.size(); c++) {
+            JRDesignField campo = new JRDesignField();
+            campo.setName(nombreCampo(c));
+            campo.setValueClass(tipos.get(c));
+            diseno.addField(campo);
+        }
+
+        diseno.setTitle(crearTitulo());
+        diseno.setPageFooter(crearPie());
+        if (!columnas.isEmpty()) {
+            int ancho = ANCHO_UTIL / columnas.size();
+            diseno.setColumnHeader(crearEncabezados(columnas, ancho));
+            ((JRDesignSection) diseno.getDetailSection()).addBand(crearDetalle(tipos, ancho));
+        }
+        return diseno;
+    }
+
+    private static JRDesignBand crearTitulo() {
+        JRDesignTextField texto = new JRDesignTextField();
+        texto.setX(0);
+        texto.setY(0);
+        texto.setWidth(ANCHO_UTIL);
+        texto.setHeight(ALTO_TITULO - 6);
+        texto.setFontSize(12f);
+        texto.setBold(true);
+        texto.setBlankWhenNull(true);
+        texto.setExpression(new JRDesignExpression("$P{" + PARAMETRO_TITULO + "}"));
+
+        JRDesignBand banda = new JRDesignBand();
+        banda.setHeight(ALTO_TITULO);
+        banda.addElement(texto);
+        return banda;
+    }
+
+    private static JRDesignBand crearEncabezados(List<String> columnas, int ancho) {
+        JRDesignBand banda = new JRDesignBand();
+        banda.setHeight(ALTO_FILA + 4);
+        for (int c = 0; c < columnas.size(); c++) {
+            JRDesignStaticText encabezado = new JRDesignStaticText();
+            encabezado.setX(c * ancho);
+            encabezado.setY(0);
+            encabezado.setWidth(ancho);
+            encabezado.setHeight(ALTO_FILA + 4);
+            encabezado.setText(columnas.get(c));
+            encabezado.setBold(true);
+            encabezado.setMode(ModeEnum.OPAQUE);
+            encabezado.setBackcolor(FONDO_ENCABEZADO);
+            banda.addElement(encabezado);
+        }
+        return banda;
+    }
+
+    private static JRDesignBand crearDetalle(List<Class<?>> tipos, int ancho) {
+        JRDesignBand banda = new JRDesignBand();
+        banda.setHeight(ALTO_FILA);
+        for (int c = 0; c < tipos.size(); c++) {
+            JRDesignTextField celda = new JRDesignTextField();
+            celda.setX(c * ancho);
+            celda.setY(0);
+            celda.setWidth(ancho);
+            celda.setHeight(ALTO_FILA);
+            celda.setBlankWhenNull(true);
+            celda.setTextAdjust(TextAdjustEnum.STRETCH_HEIGHT);
+            celda.setExpression(new JRDesignExpression("$F{" + nombreCampo(c) + "}"));
+            if (Number.class.isAssignableFrom(tipos.get(c))) {
+                celda.setHorizontalTextAlign(HorizontalTextAlignEnum.RIGHT);
+                celda.setPattern(Double.class.equals(tipos.get(c)) ? "#,##0.00" : "#,##0");
+            }
+            banda.addElement(celda);
+        }
+        return banda;
+    }
+
+    private static JRDesignBand crearPie() {
+        JRDesignTextField pagina = new JRDesignTextField();
+        pagina.setX(0);
+        pagina.setY(0);
+        pagina.setWidth(ANCHO_UTIL);
+        pagina.setHeight(ALTO_FILA);
+        pagina.setHorizontalTextAlign(HorizontalTextAlignEnum.RIGHT);
+        pagina.setExpression(new JRDesignExpression("\"Página \" + $V{PAGE_NUMBER}"));
+
+        JRDesignBand banda = new JRDesignBand();
+        banda.setHeight(ALTO_FILA);
+        banda.addElement(pagina);
+        return banda;
+    }
+}
@@ -0,0 +1,35 @@
+package org.zkoss.reporte.web.descarga;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.zkoss.reporte.core.exportacion.Descarga;
+import org.zkoss.reporte.core.exportacion.RegistroDescargas;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+
+/**
+ * Descarga de los archivos registrados en {@link RegistroDescargas}.
+ */
+@Controller
+@RequestMapping("/api/descargas")
+@RequiredArgsConstructor
+public class DescargaController {
+
+    private final RegistroDescargas registroDescargas;
+    private final EnvioArchivos envioArchivos;
+
+    @GetMapping("/{token}")
+    public void descargar(@PathVariable String token,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        HttpSession sesion = request.getSession(false);
+        Descarga descarga = sesion != null ? registroDescargas.obtener(token, sesion.getId()) : null;
+        envioArchivos.enviar(descarga, request, response);
+    }
+}
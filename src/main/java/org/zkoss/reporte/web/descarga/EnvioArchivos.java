@@ -0,0 +1,67 @@
+package org.zkoss.reporte.web.descarga;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.zkoss.reporte.core.exportacion.Descarga;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Entrega al navegador los archivos generados en disco sin cargarlos en el heap.
+ *
+ * Si el conector de Tomcat soporta sendfile el archivo lo envía el propio conector
+ * (del page cache al socket); si no, se copia con FileChannel.transferTo.
+ */
+@Component
+public class EnvioArchivos {
+
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Envía el archivo como adjunto, o responde 404 si no existe.
+     */
+    public void enviar(Descarga descarga, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (descarga == null || !Files.isReadable(descarga.getArchivo())) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Path archivo = descarga.getArchivo();
+        long largo = Files.size(archivo);
+
+        response.setContentType(descarga.getContentType());
+        response.setContentLengthLong(largo);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(descarga.getNombre(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            request.setAttribute(SENDFILE_ARCHIVO, archivo.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_INICIO, 0L);
+            request.setAttribute(SENDFILE_FIN, largo);
+            return;
+        }
+
+        try (FileChannel origen = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(response.getOutputStream());
+            long posicion = 0;
+            while (posicion < largo) {
+                posicion += origen.transferTo(posicion, largo - posicion, destino);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.zkoss.reporte.web.exportacion;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.zkoss.reporte.core.dto.request.SolicitudExportacion;
+import org.zkoss.reporte.core.dto.response.EstadoExportacion;
+import org.zkoss.reporte.core.service.interfaces.TrabajoExportacionService;
+import org.zkoss.reporte.web.descarga.EnvioArchivos;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Trabajos de exportación en segundo plano: se envía la consulta y el formato, se consulta
+ * el estado por id y, al completarse, se descarga el archivo. Cada sesión ve solo sus trabajos.
+ */
+@RestController
+@RequestMapping("/api/exportaciones")
+@RequiredArgsConstructor
+public class ExportacionController {
+
+    private final TrabajoExportacionService trabajoExportacionService;
+    private final EnvioArchivos envioArchivos;
+
+    @PostMapping
+    public ResponseEntity<?> enviar(@RequestBody SolicitudExportacion solicitud, HttpSession sesion) {
+        try {
+            return ResponseEntity.accepted().body(trabajoExportacionService.enviar(solicitud, sesion.getId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<EstadoExportacion>> listar(HttpSession sesion) {
+        return ResponseEntity.ok(trabajoExportacionService.listar(sesion.getId()));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<EstadoExportacion> obtener(@PathVariable String id, HttpSession sesion) {
+        EstadoExportacion estado = trabajoExportacionService.obtener(id, sesion.getId());
+        return estado != null ? ResponseEntity.ok(estado) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancelar(@PathVariable String id, HttpSession sesion) {
+        trabajoExportacionService.cancelar(id, sesion.getId());
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/{id}/archivo")
+    public void descargar(@PathVariable String id,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        HttpSession sesion = request.getSession(false);
+        envioArchivos.enviar(sesion != null ? trabajoExportacionService.obtenerArchivo(id, sesion.getId()) : null,
+                request, response);
+    }
+}
@@ -0,0 +1,64 @@
+package org.zkoss.reporte.web.model;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Comparador de encabezado del listbox de resultados. {@link ListModelResultado} lo reconoce
+ * y ordena con el índice de la columna en lugar de comparar las filas una a una; con otro
+ * modelo compara los valores de la columna.
+ */
+public final class ComparadorColumna implements Comparator<Map<String, Object>>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String columna;
+    private final boolean ascendente;
+
+    public ComparadorColumna(String columna, boolean ascendente) {
+        this.columna = columna;
+        this.ascendente = ascendente;
+    }
+
+    public String getColumna() {
+        return columna;
+    }
+
+    public boolean isAscendente() {
+        return ascendente;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public int compare(Map<String, Object> a, Map<String, Object> b) {
+        Object valorA = a.get(columna);
+        Object valorB = b.get(columna);
+        // Nulos al final en ambos sentidos, como en el índice
+        if (valorA == null || valorB == null) {
+            return valorA == null ? (valorB == null ? 0 : 1) : -1;
+        }
+        int comparacion = valorA instanceof Comparable && valorA.getClass() == valorB.getClass()
+                ? ((Comparable) valorA).compareTo(valorB)
+                : valorA.toString().compareTo(valorB.toString());
+        return ascendente ? comparacion : -comparacion;
+    }
+
+    @Override
+    public boolean equals(Object otro) {
+        if (this == otro) {
+            return true;
+        }
+        if (!(otro instanceof ComparadorColumna)) {
+            return false;
+        }
+        ComparadorColumna comparador = (ComparadorColumna) otro;
+        return ascendente == comparador.ascendente && columna.equals(comparador.columna);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(columna, ascendente);
+    }
+}
@@ -0,0 +1,304 @@
+package org.zkoss.reporte.web.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zkoss.reporte.core.dto.request.ParametrosFiltros;
+import org.zkoss.reporte.core.dto.response.MetadataPaginacion;
+import org.zkoss.reporte.core.dto.response.QueryResponse;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.zk.ui.Desktop;
+import org.zkoss.zk.ui.Execution;
+import org.zkoss.zk.ui.Executions;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zul.AbstractListModel;
+import org.zkoss.zul.event.ListDataEvent;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * ListModel que pide los resultados al backend por páginas, a medida que el listbox las muestra.
+ *
+ * - Las páginas se piden con pagina/tamanoPagina y, si ya se conoce, el lastKey de la página
+ *   anterior (keyset pagination). Si se salta a una página sin lastKey previo se usa solo el número.
+ * - Solo se retienen las últimas {@code maxPaginas} páginas usadas (LRU); las demás se vuelven a pedir.
+ * - Al leer una página se precarga la siguiente en segundo plano.
+ * - Si el backend ignora la paginación y devuelve todo en la primera respuesta, se trabaja sobre ella.
+ *
+ * getElementAt se invoca en el hilo de eventos de ZK; la precarga corre en el executor recibido.
+ * Con total desconocido, el ajuste del tamaño que surge al leer una página no se aplica
+ * mientras el listbox está renderizando: se agenda como un evento aparte del desktop.
+ */
+@Slf4j
+public class ListModelPaginado extends AbstractListModel<Map<String, Object>> {
+
+    private static final String EVENTO_AJUSTE_TAMANO = "onAjusteTamano";
+
+    /**
+     * Ejecuta la consulta para los filtros de una página.
+     */
+    @FunctionalInterface
+    public interface CargadorPagina {
+        QueryResponse cargar(ParametrosFiltros filtros);
+    }
+
+    private final transient CargadorPagina cargador;
+    private final transient Executor executor;
+    private final ParametrosFiltros filtrosBase;
+    private final int tamanoPagina;
+
+    private final Map<Integer, ResultadoColumnar> paginas;
+    private final Map<Integer, Map<String, Object>> lastKeys = new ConcurrentHashMap<>();
+    private final transient Map<Integer, CompletableFuture<ResultadoColumnar>> enCurso = new ConcurrentHashMap<>();
+
+    private final QueryResponse primeraRespuesta;
+    private final boolean paginaUnica;
+    private final boolean totalConocido;
+    private int tamano;
+    private boolean hayMas;
+
+    // Tamaño calculado durante el render, pendiente de aplicar (-1: ninguno)
+    private int tamanoPendiente = -1;
+    private transient Desktop desktop;
+
+    /**
+     * Carga la primera página de forma síncrona.
+     */
+    public ListModelPaginado(CargadorPagina cargador, ParametrosFiltros filtros,
+                             int tamanoPagina, int maxPaginas, Executor executor) {
+        this.cargador = cargador;
+        this.executor = executor;
+        this.filtrosBase = filtros.toBuilder().build();
+        this.tamanoPagina = tamanoPagina;
+        this.paginas = new LinkedHashMap<Integer, ResultadoColumnar>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ResultadoColumnar> eldest) {
+                return size() > maxPaginas;
+            }
+        };
+
+        this.primeraRespuesta = cargador.cargar(filtrosPagina(0));
+        ResultadoColumnar primera = registrarPagina(0, primeraRespuesta);
+        MetadataPaginacion paginacion = primeraRespuesta != null ? primeraRespuesta.getPaginacion() : null;
+
+        this.paginaUnica = primera.getCantidadFilas() > tamanoPagina;
+        this.hayMas = !paginaUnica && paginacion != null && Boolean.TRUE.equals(paginacion.getTieneSiguiente());
+        this.totalConocido = !paginaUnica && paginacion != null && paginacion.getTotalRegistros() != null;
+
+        if (totalConocido) {
+            tamano = (int) Math.min(Integer.MAX_VALUE, paginacion.getTotalRegistros());
+        } else {
+            // Total desconocido: se anticipa una página más mientras el backend indique que hay más filas
+            tamano = primera.getCantidadFilas() + (hayMas ? tamanoPagina : 0);
+        }
+
+        log.debug("Modelo paginado creado - total: {}, conocido: {}, página única: {}",
+                tamano, totalConocido, paginaUnica);
+    }
+
+    public QueryResponse getPrimeraRespuesta() {
+        return primeraRespuesta;
+    }
+
+    public List<String> getColumnas() {
+        ResultadoColumnar primera = primeraRespuesta != null ? primeraRespuesta.getResultado() : null;
+        return primera != null ? primera.getColumnas() : Collections.emptyList();
+    }
+
+    public boolean isTotalConocido() {
+        return totalConocido;
+    }
+
+    public boolean isHayMas() {
+        return hayMas;
+    }
+
+    @Override
+    public int getSize() {
+        return tamano;
+    }
+
+    @Override
+    public Map<String, Object> getElementAt(int index) {
+        int pagina = paginaUnica ? 0 : index / tamanoPagina;
+        int fila = paginaUnica ? index : index % tamanoPagina;
+
+        ResultadoColumnar resultado = obtenerPagina(pagina);
+        if (!paginaUnica) {
+            precargar(pagina + 1);
+        }
+
+        return fila < resultado.getCantidadFilas()
+                ? resultado.fila(fila)
+                : Collections.emptyMap();
+    }
+
+    /**
+     * Indica si el resultado completo ya llegó en la primera respuesta, sin más páginas
+     * que pedir al backend.
+     */
+    public boolean isCompleto() {
+        return paginaUnica || (!hayMas && tamano <= tamanoPagina);
+    }
+
+    // ===== CARGA DE PÁGINAS =====
+
+    private ResultadoColumnar obtenerPagina(int pagina) {
+        ResultadoColumnar resultado;
+        synchronized (paginas) {
+            resultado = paginas.get(pagina);
+        }
+        if (resultado != null) {
+            actualizarTamano(pagina, resultado);
+            return resultado;
+        }
+
+        // Si la precarga ya la está trayendo, se espera a que termine
+        CompletableFuture<ResultadoColumnar> precarga = enCurso.get(pagina);
+        if (precarga != null) {
+            try {
+                resultado = precarga.join();
+            } catch (CompletionException | CancellationException e) {
+                log.warn("Falló la precarga de la página {}, se reintenta: {}", pagina, e.getMessage());
+            }
+        }
+        if (resultado == null) {
+            resultado = cargar(pagina);
+        }
+
+        actualizarTamano(pagina, resultado);
+        return resultado;
+    }
+
+    private void precargar(int pagina) {
+        if (executor == null || pagina * (long) tamanoPagina >= tamano) {
+            return;
+        }
+        synchronized (paginas) {
+            if (paginas.containsKey(pagina)) {
+                return;
+            }
+        }
+
+        CompletableFuture<ResultadoColumnar> futuro = new CompletableFuture<>();
+        if (enCurso.putIfAbsent(pagina, futuro) != null) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    futuro.complete(cargar(pagina));
+                } catch (Throwable e) {
+                    futuro.completeExceptionally(e);
+                } finally {
+                    enCurso.remove(pagina, futuro);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool saturado: la página se cargará cuando se muestre
+            enCurso.remove(pagina, futuro);
+            futuro.cancel(false);
+        }
+    }
+
+    private ResultadoColumnar cargar(int pagina) {
+        long inicio = System.currentTimeMillis();
+        QueryResponse respuesta = cargador.cargar(filtrosPagina(pagina));
+        ResultadoColumnar resultado = registrarPagina(pagina, respuesta);
+        log.debug("Página {} cargada - {} filas en {} ms",
+                pagina + 1, resultado.getCantidadFilas(), System.currentTimeMillis() - inicio);
+        return resultado;
+    }
+
+    private ResultadoColumnar registrarPagina(int pagina, QueryResponse respuesta) {
+        ResultadoColumnar resultado = respuesta != null && respuesta.getResultado() != null
+                ? respuesta.getResultado()
+                : ResultadoColumnar.vacio();
+
+        MetadataPaginacion paginacion = respuesta != null ? respuesta.getPaginacion() : null;
+        if (paginacion != null && paginacion.getLastKey() != null) {
+            lastKeys.put(pagina, paginacion.getLastKey());
+        }
+
+        synchronized (paginas) {
+            paginas.put(pagina, resultado);
+        }
+        return resultado;
+    }
+
+    /**
+     * Las páginas son 1-based en el backend. Se envía el lastKey de la página anterior si se conoce.
+     */
+    private ParametrosFiltros filtrosPagina(int pagina) {
+        return filtrosBase.toBuilder()
+                .pagina(pagina + 1)
+                .tamanoPagina(tamanoPagina)
+                .lastKey(pagina > 0 ? lastKeys.get(pagina - 1) : null)
+                .build();
+    }
+
+    /**
+     * Con total desconocido, calcula el tamaño cuando se lee la última página conocida:
+     * filas reales hasta ella más una página anticipada si vino completa.
+     *
+     * Se invoca desde getElementAt, mientras el listbox renderiza: ahí no se puede cambiar el
+     * tamaño ni disparar eventos del modelo. El nuevo tamaño se aplica en un evento posterior.
+     */
+    private void actualizarTamano(int pagina, ResultadoColumnar resultado) {
+        if (totalConocido || paginaUnica || (pagina + 1) * (long) tamanoPagina < tamano) {
+            return;
+        }
+
+        hayMas = resultado.getCantidadFilas() >= tamanoPagina;
+        int nuevo = pagina * tamanoPagina + resultado.getCantidadFilas() + (hayMas ? tamanoPagina : 0);
+        if (nuevo == tamano || nuevo == tamanoPendiente) {
+            return;
+        }
+        boolean agendado = tamanoPendiente >= 0;
+        tamanoPendiente = nuevo;
+        if (!agendado) {
+            agendarAjuste();
+        }
+    }
+
+    private void agendarAjuste() {
+        Execution ejecucion = Executions.getCurrent();
+        if (desktop == null && ejecucion != null) {
+            desktop = ejecucion.getDesktop();
+        }
+        if (desktop == null || !desktop.isAlive()) {
+            tamanoPendiente = -1;
+            return;
+        }
+        if (!desktop.isServerPushEnabled()) {
+            desktop.enableServerPush(true);
+        }
+        Executions.schedule(desktop, evento -> aplicarAjuste(), new Event(EVENTO_AJUSTE_TAMANO));
+    }
+
+    /**
+     * Corre en el hilo de eventos, fuera del render: aplica el tamaño pendiente y avisa al listbox.
+     */
+    private void aplicarAjuste() {
+        int nuevo = tamanoPendiente;
+        tamanoPendiente = -1;
+        int anterior = tamano;
+        if (nuevo < 0 || nuevo == anterior) {
+            return;
+        }
+        tamano = nuevo;
+        if (nuevo > anterior) {
+            fireEvent(ListDataEvent.INTERVAL_ADDED, anterior, nuevo - 1);
+        } else {
+            fireEvent(ListDataEvent.INTERVAL_REMOVED, nuevo, anterior - 1);
+        }
+    }
+}
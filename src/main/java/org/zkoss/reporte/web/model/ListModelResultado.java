@@ -0,0 +1,148 @@
+package org.zkoss.reporte.web.model;
+
+import org.zkoss.reporte.core.indices.FiltroColumna;
+import org.zkoss.reporte.core.indices.IndicesResultado;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.zul.AbstractListModel;
+import org.zkoss.zul.event.ListDataEvent;
+import org.zkoss.zul.ext.Sortable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ListModel sobre un resultado completo en memoria, ordenable y filtrable sin copiar filas.
+ *
+ * El modelo expone una vista: un arreglo con los índices de fila a mostrar, armado a partir de
+ * la permutación de la columna ordenada y de los filtros activos ({@link IndicesResultado}).
+ * Sin orden ni filtros la vista es el resultado tal cual.
+ *
+ * Los encabezados ordenan con {@link ComparadorColumna}; cualquier otro comparador se aplica
+ * sobre las filas de la vista actual.
+ */
+public class ListModelResultado extends AbstractListModel<Map<String, Object>>
+        implements Sortable<Map<String, Object>> {
+
+    private final ResultadoColumnar resultado;
+    private final IndicesResultado indices;
+
+    private List<FiltroColumna> filtros = Collections.emptyList();
+    private Comparator<Map<String, Object>> comparadorOrden;
+    private String columnaOrden;
+    private boolean ascendente = true;
+
+    // Índices de fila a mostrar; null = todas en el orden original
+    private int[] vista;
+
+    public ListModelResultado(ResultadoColumnar resultado, IndicesResultado indices) {
+        this.resultado = resultado;
+        this.indices = indices;
+    }
+
+    public ResultadoColumnar getResultado() {
+        return resultado;
+    }
+
+    public List<FiltroColumna> getFiltros() {
+        return filtros;
+    }
+
+    public int getCantidadTotal() {
+        return resultado.getCantidadFilas();
+    }
+
+    /**
+     * Índices de fila de la vista actual, o null si se muestra el resultado tal cual.
+     * Cada cambio de orden o filtro asigna un arreglo nuevo: se puede leer desde otro hilo.
+     */
+    public int[] getVista() {
+        return vista;
+    }
+
+    /**
+     * Filtros y orden aplicados, por ejemplo "provincia = 6; orden: monto desc".
+     * Vacío si se muestra el resultado tal cual.
+     */
+    public String getDescripcionVista() {
+        List<String> partes = new ArrayList<>();
+        for (FiltroColumna filtro : filtros) {
+            partes.add(filtro.getDescripcion());
+        }
+        if (columnaOrden != null) {
+            partes.add("orden: " + columnaOrden + (ascendente ? " asc" : " desc"));
+        } else if (comparadorOrden != null) {
+            partes.add("orden: " + comparadorOrden + (ascendente ? " asc" : " desc"));
+        }
+        return String.join("; ", partes);
+    }
+
+    @Override
+    public int getSize() {
+        return vista != null ? vista.length : resultado.getCantidadFilas();
+    }
+
+    @Override
+    public Map<String, Object> getElementAt(int index) {
+        return resultado.fila(vista != null ? vista[index] : index);
+    }
+
+    @Override
+    public void sort(Comparator<Map<String, Object>> comparador, boolean ascendente) {
+        this.comparadorOrden = comparador;
+        this.ascendente = ascendente;
+        if (comparador instanceof ComparadorColumna) {
+            columnaOrden = ((ComparadorColumna) comparador).getColumna();
+            this.ascendente = ((ComparadorColumna) comparador).isAscendente();
+            vista = indices.vista(resultado, columnaOrden, this.ascendente, filtros);
+        } else {
+            columnaOrden = null;
+            vista = ordenarVista(comparador);
+        }
+        fireEvent(ListDataEvent.CONTENTS_CHANGED, -1, -1);
+    }
+
+    @Override
+    public String getSortDirection(Comparator<Map<String, Object>> comparador) {
+        if (comparadorOrden == null || !comparadorOrden.equals(comparador)) {
+            return "natural";
+        }
+        return ascendente ? "ascending" : "descending";
+    }
+
+    /**
+     * Reemplaza los filtros activos manteniendo el orden actual.
+     */
+    public void filtrar(List<FiltroColumna> nuevos) {
+        filtros = nuevos != null ? new ArrayList<>(nuevos) : Collections.<FiltroColumna>emptyList();
+        if (comparadorOrden != null && columnaOrden == null) {
+            vista = ordenarVista(comparadorOrden);
+        } else {
+            vista = filtros.isEmpty() && columnaOrden == null
+                    ? null
+                    : indices.vista(resultado, columnaOrden, ascendente, filtros);
+        }
+        fireEvent(ListDataEvent.CONTENTS_CHANGED, -1, -1);
+    }
+
+    // ===== PRIVADOS =====
+
+    /**
+     * Orden con un comparador arbitrario sobre las filas filtradas.
+     */
+    private int[] ordenarVista(Comparator<Map<String, Object>> comparador) {
+        int[] filas = indices.vista(resultado, null, true, filtros);
+        Integer[] ordenadas = new Integer[filas.length];
+        for (int i = 0; i < filas.length; i++) {
+            ordenadas[i] = filas[i];
+        }
+        Arrays.sort(ordenadas, (a, b) -> comparador.compare(resultado.fila(a), resultado.fila(b)));
+        for (int i = 0; i < filas.length; i++) {
+            filas[i] = ordenadas[i];
+        }
+        return filas;
+    }
+}
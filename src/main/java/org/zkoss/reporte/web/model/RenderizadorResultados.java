@@ -0,0 +1,133 @@
+package org.zkoss.reporte.web.model;
+
+import org.zkoss.reporte.core.model.columnar.Columna;
+import org.zkoss.reporte.core.model.columnar.ColumnaBooleana;
+import org.zkoss.reporte.core.model.columnar.ColumnaEntera;
+import org.zkoss.reporte.core.model.columnar.ColumnaTexto;
+import org.zkoss.reporte.core.model.columnar.FilaResultado;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.zul.Listcell;
+import org.zkoss.zul.Listitem;
+import org.zkoss.zul.ListitemRenderer;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renderer de las filas del listbox de resultados: una celda con su texto por columna, sin
+ * plantilla ni expresiones EL por celda.
+ *
+ * Las filas de un {@link ResultadoColumnar} se leen directamente de sus columnas: por cada
+ * bloque (página) se resuelve una sola vez qué columna corresponde a cada encabezado y con qué
+ * formateador se escribe según su tipo. Otras filas (Map genéricos) se leen por nombre.
+ *
+ * No guarda estado por ítem. Se usa en el hilo de eventos de un único desktop (los formatos
+ * no son thread-safe).
+ */
+public class RenderizadorResultados implements ListitemRenderer<Map<String, Object>> {
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter FORMATO_FECHA_HORA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    private final List<String> columnas;
+    private final DecimalFormat formatoDecimal = new DecimalFormat("0.##########", new DecimalFormatSymbols(Locale.ROOT));
+
+    // Acceso precalculado para el último bloque renderizado
+    private ResultadoColumnar bloque;
+    private Columna[] origen;
+    private Formateador[] formateadores;
+
+    public RenderizadorResultados(List<String> columnas) {
+        this.columnas = columnas;
+    }
+
+    public List<String> getColumnas() {
+        return columnas;
+    }
+
+    @Override
+    public void render(Listitem item, Map<String, Object> fila, int indice) {
+        if (fila instanceof FilaResultado) {
+            FilaResultado filaResultado = (FilaResultado) fila;
+            preparar(filaResultado.getResultado());
+            int posicion = filaResultado.getIndice();
+            for (int c = 0; c < origen.length; c++) {
+                Columna columna = origen[c];
+                String texto = columna == null || columna.esNulo(posicion)
+                        ? ""
+                        : formateadores[c].formatear(columna, posicion);
+                item.appendChild(new Listcell(texto));
+            }
+            return;
+        }
+
+        for (String columna : columnas) {
+            item.appendChild(new Listcell(formatearObjeto(fila.get(columna))));
+        }
+    }
+
+    // ===== PRIVADOS =====
+
+    private void preparar(ResultadoColumnar resultado) {
+        if (resultado == bloque) {
+            return;
+        }
+        origen = new Columna[columnas.size()];
+        formateadores = new Formateador[columnas.size()];
+        for (int c = 0; c < origen.length; c++) {
+            int posicion = resultado.posicion(columnas.get(c));
+            origen[c] = posicion >= 0 ? resultado.getColumna(posicion) : null;
+            formateadores[c] = origen[c] != null ? formateador(origen[c]) : null;
+        }
+        bloque = resultado;
+    }
+
+    private Formateador formateador(Columna columna) {
+        switch (columna.getTipo()) {
+            case ENTERO:
+                return (col, fila) -> Long.toString(((ColumnaEntera) col).getLong(fila));
+            case DECIMAL:
+                return (col, fila) -> formatoDecimal.format(col.getDouble(fila));
+            case TEXTO:
+                return (col, fila) -> ((ColumnaTexto) col).getDiccionario()[((ColumnaTexto) col).getCodigo(fila)];
+            case BOOLEANO:
+                return (col, fila) -> ((ColumnaBooleana) col).getBoolean(fila) ? "true" : "false";
+            default:
+                return (col, fila) -> formatearObjeto(col.getValor(fila));
+        }
+    }
+
+    private String formatearObjeto(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor instanceof Double || valor instanceof Float || valor instanceof BigDecimal) {
+            return formatoDecimal.format(valor);
+        }
+        if (valor instanceof LocalDateTime) {
+            return FORMATO_FECHA_HORA.format((LocalDateTime) valor);
+        }
+        if (valor instanceof LocalDate) {
+            return FORMATO_FECHA.format((LocalDate) valor);
+        }
+        if (valor instanceof Date) {
+            return FORMATO_FECHA_HORA.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(((Date) valor).getTime()), ZoneId.systemDefault()));
+        }
+        return valor.toString();
+    }
+
+    @FunctionalInterface
+    private interface Formateador {
+        String formatear(Columna columna, int fila);
+    }
+}
@@ -0,0 +1,54 @@
+package org.zkoss.reporte.web.monitor;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.zkoss.reporte.core.cache.RegistroCaches;
+import org.zkoss.reporte.core.exportacion.AlmacenArtefactos;
+import org.zkoss.reporte.security.token.DiarioTokens;
+import org.zkoss.reporte.security.token.PurgaTokens;
+import org.zkoss.reporte.spring_zk_config.MonitorPoolHttp;
+
+import java.util.Map;
+
+/**
+ * Endpoints de diagnóstico para el equipo de operaciones.
+ */
+@RestController
+@RequestMapping("/api/monitor")
+@RequiredArgsConstructor
+public class MonitorController {
+
+    private final MonitorPoolHttp monitorPoolHttp;
+    private final RegistroCaches registroCaches;
+    private final AlmacenArtefactos almacenArtefactos;
+    private final PurgaTokens purgaTokens;
+    private final DiarioTokens diarioTokens;
+
+    @GetMapping("/http-pool")
+    public ResponseEntity<Map<String, Object>> poolHttp() {
+        return ResponseEntity.ok(monitorPoolHttp.obtenerEstadisticas());
+    }
+
+    @GetMapping("/caches")
+    public ResponseEntity<Map<String, Object>> caches() {
+        return ResponseEntity.ok(registroCaches.obtenerEstadisticas());
+    }
+
+    @GetMapping("/exportaciones")
+    public ResponseEntity<Map<String, Object>> exportaciones() {
+        return ResponseEntity.ok(almacenArtefactos.obtenerEstadisticas());
+    }
+
+    @GetMapping("/tokens")
+    public ResponseEntity<Map<String, Object>> tokens() {
+        return ResponseEntity.ok(purgaTokens.obtenerEstadisticas());
+    }
+
+    @GetMapping("/tokens/diario")
+    public ResponseEntity<Map<String, Object>> diarioTokens() {
+        return ResponseEntity.ok(diarioTokens.obtenerEstadisticas());
+    }
+}
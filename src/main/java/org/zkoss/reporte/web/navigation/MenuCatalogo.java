@@ -0,0 +1,193 @@
+package org.zkoss.reporte.web.navigation;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.zkoss.reporte.core.cache.CatalogoActualizadoEvent;
+import org.zkoss.reporte.core.dto.response.MetadataQuery;
+import org.zkoss.reporte.core.service.interfaces.DatabaseQueryService;
+import org.zkoss.zk.ui.WebApp;
+import org.zkoss.zk.ui.WebApps;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zk.ui.event.EventQueue;
+import org.zkoss.zk.ui.event.EventQueues;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Menú de navegación compartido por todos los desktops.
+ *
+ * El árbol de menús (estáticos más uno por query del catálogo) se construye una vez por
+ * versión del catálogo y se comparte sin copiar: ningún desktop debe modificar los menús.
+ * El estado de cada desktop (menús expandidos, menú activo) lo guarda su sidebar.
+ *
+ * Cuando el catálogo cambia se publica la nueva versión en la cola {@link #COLA_MENU}
+ * (alcance de aplicación); los sidebars suscritos la reciben por server push.
+ */
+@Component
+@Slf4j
+public class MenuCatalogo {
+
+    public static final String COLA_MENU = "menuCatalogo";
+    public static final String EVENTO_MENU_ACTUALIZADO = "onMenuActualizado";
+    public static final String TITULO_MENU_QUERIES = "QUERIES";
+
+    @Autowired
+    private DatabaseQueryService databaseQueryService;
+
+    private volatile Instantanea actual;
+
+    /**
+     * Menú vigente. La primera vez carga el catálogo.
+     */
+    public Instantanea getInstantanea() {
+        Instantanea instantanea = actual;
+        if (instantanea == null) {
+            // La carga publica CatalogoActualizadoEvent; si el catálogo ya estaba en caché no hay evento
+            List<MetadataQuery> catalogo = traerCatalogo();
+            instantanea = actual;
+            if (instantanea == null) {
+                instantanea = publicar(catalogo);
+            }
+        }
+        return instantanea;
+    }
+
+    /**
+     * Vuelve a pedir el catálogo al backend, sin la caché de listados, reconstruye el menú y
+     * lo envía a todos los sidebars si cambió. Si el backend falla se conserva el menú vigente.
+     */
+    public Instantanea recargar() {
+        try {
+            return publicar(databaseQueryService.recargarCatalogo());
+        } catch (Exception e) {
+            log.error("Error recargando queries para el menú: {}", e.getMessage(), e);
+            return getInstantanea();
+        }
+    }
+
+    @EventListener
+    public void alActualizarCatalogo(CatalogoActualizadoEvent evento) {
+        publicar(evento.getCatalogo());
+    }
+
+    /**
+     * Submenú que abre la query en la pantalla de ejecución.
+     */
+    public static NavigationMenu crearMenuQuery(MetadataQuery query) {
+        NavigationMenu submenu = new NavigationMenu();
+        submenu.setLabel(query.getNombre());
+        submenu.setIcon(obtenerIconoQuery(query));
+        submenu.setPath(NavigationService.REPORTE_PATH + "?codigo=" + query.getCodigo());
+        submenu.setQueryCodigo(query.getCodigo());
+        return submenu;
+    }
+
+    // ===== PRIVADOS =====
+
+    private List<MetadataQuery> traerCatalogo() {
+        try {
+            return databaseQueryService.traerQuerys(null);
+        } catch (Exception e) {
+            log.error("Error cargando queries para el menú: {}", e.getMessage(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Construye el menú del catálogo y, si difiere del vigente, lo reemplaza con una versión
+     * nueva y avisa a los sidebars.
+     */
+    private synchronized Instantanea publicar(List<MetadataQuery> catalogo) {
+        List<NavigationMenu> menus = construirMenus(catalogo);
+        Instantanea anterior = actual;
+        if (anterior != null && anterior.menus.equals(menus)) {
+            return anterior;
+        }
+        Instantanea nueva = new Instantanea(anterior != null ? anterior.version + 1 : 1, menus);
+        actual = nueva;
+        log.info("Menú de navegación versión {} - {} queries", nueva.version, catalogo.size());
+
+        if (anterior != null) {
+            notificar(nueva);
+        }
+        return nueva;
+    }
+
+    private void notificar(Instantanea instantanea) {
+        WebApp webApp = WebApps.getCurrent();
+        if (webApp == null) {
+            return;
+        }
+        try {
+            EventQueue<Event> cola = EventQueues.lookup(COLA_MENU, webApp, true);
+            cola.publish(new Event(EVENTO_MENU_ACTUALIZADO, null, instantanea.version));
+        } catch (Exception e) {
+            log.warn("No se pudo notificar el nuevo menú a los sidebars: {}", e.getMessage());
+        }
+    }
+
+    private static List<NavigationMenu> construirMenus(List<MetadataQuery> catalogo) {
+        List<NavigationMenu> menus = new ArrayList<>(NavigationFactory.createNavigationMenus());
+
+        if (!catalogo.isEmpty()) {
+            NavigationMenu menuQueries = new NavigationMenu();
+            menuQueries.setLabel("Consultas");
+            menuQueries.setTitle(TITULO_MENU_QUERIES);
+            menuQueries.setIcon("fas fa-database icon-menu-color");
+            menuQueries.setPath(NavigationService.BLANK_ZUL);
+            menuQueries.setSubMenus(Collections.unmodifiableList(catalogo.stream()
+                    .map(MenuCatalogo::crearMenuQuery)
+                    .collect(Collectors.toList())));
+            menus.add(menuQueries);
+        }
+        return Collections.unmodifiableList(menus);
+    }
+
+    /**
+     * Determina el icono según el tipo/categoría de query
+     */
+    private static String obtenerIconoQuery(MetadataQuery query) {
+        // Query consolidable
+        if (Boolean.TRUE.equals(query.getEsConsolidable())) {
+            return "fas fa-layer-group icon-submenu-color";
+        }
+
+        // Iconos según categoría
+        if (query.getCategoria() != null) {
+            switch (query.getCategoria().toUpperCase()) {
+                case "INFRACCIONES":
+                    return "fas fa-exclamation-triangle icon-submenu-color";
+                case "VEHICULOS":
+                    return "fas fa-car icon-submenu-color";
+                case "ESTADISTICAS":
+                    return "fas fa-chart-bar icon-submenu-color";
+                case "REPORTES":
+                    return "fas fa-file-alt icon-submenu-color";
+                default:
+                    return "fas fa-file-alt icon-submenu-color";
+            }
+        }
+
+        return "fas fa-file-alt icon-submenu-color";
+    }
+
+    /**
+     * Árbol de menús de una versión del catálogo. Inmutable y compartido.
+     */
+    @Getter
+    public static final class Instantanea {
+        private final long version;
+        private final List<NavigationMenu> menus;
+
+        private Instantanea(long version, List<NavigationMenu> menus) {
+            this.version = version;
+            this.menus = menus;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+-- Tabla tokens (PostgreSQL 11 o posterior): de la columna token a token_hash.
+--
+-- Token ya no guarda el JWT completo sino su SHA-256 en hexadecimal (64 caracteres), el
+-- mismo valor que calcula TokenService.hashToken (DigestUtils.sha256Hex sobre los bytes
+-- UTF-8). Las filas existentes se completan con ese hash: las sesiones abiertas se siguen
+-- encontrando y revocando. Después se borra la columna token junto con su restricción única.
+--
+-- Se aplica una vez, con la aplicación detenida y antes de 002_tokens_secuencia_jti.sql.
+-- Puede volver a correrse sin efecto.
+
+BEGIN;
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'tokens' AND column_name = 'token') THEN
+        ALTER TABLE tokens ADD COLUMN IF NOT EXISTS token_hash varchar(64);
+        UPDATE tokens
+           SET token_hash = encode(sha256(convert_to(token, 'UTF8')), 'hex')
+         WHERE token_hash IS NULL AND token IS NOT NULL;
+        ALTER TABLE tokens DROP COLUMN token;
+    END IF;
+END $$;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_tokens_token_hash ON tokens (token_hash);
+
+-- La purga de vencidos recorre la tabla por fecha de expiración
+CREATE INDEX IF NOT EXISTS idx_tokens_expiracion ON tokens (fecha_expiracion);
+
+COMMIT;
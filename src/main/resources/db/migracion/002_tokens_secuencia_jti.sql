@@ -0,0 +1,35 @@
+-- Tabla tokens (PostgreSQL): id por secuencia, jti y fecha de actualización.
+--
+-- Token usa la secuencia tokens_seq con allocationSize = 50 en lugar de IDENTITY, para
+-- que Hibernate pueda agrupar los INSERT en lotes. Con ese tamaño Hibernate reparte los ids
+-- v - 49 .. v por cada valor v de la secuencia: la secuencia arranca 50 después del id más
+-- alto para no repetir ninguno.
+--
+-- jti y fecha_actualizacion sostienen la lista de revocación en memoria. Los tokens
+-- existentes quedan sin jti y se siguen validando contra la tabla.
+--
+-- Se aplica una vez, con la aplicación detenida. Puede volver a correrse sin efecto.
+
+BEGIN;
+
+DO $$
+DECLARE
+    inicio bigint;
+BEGIN
+    SELECT COALESCE(MAX(id), 0) + 50 INTO inicio FROM tokens;
+    EXECUTE format('CREATE SEQUENCE IF NOT EXISTS tokens_seq START WITH %s INCREMENT BY 50', inicio);
+END $$;
+
+-- El id lo asigna Hibernate desde tokens_seq: sin el valor por defecto de la columna IDENTITY
+ALTER TABLE tokens ALTER COLUMN id DROP DEFAULT;
+
+ALTER TABLE tokens ADD COLUMN IF NOT EXISTS jti varchar(36);
+ALTER TABLE tokens ADD COLUMN IF NOT EXISTS fecha_actualizacion timestamp;
+
+-- La sincronización de revocaciones recorre la tabla por fecha_actualizacion
+UPDATE tokens SET fecha_actualizacion = COALESCE(fecha_creacion, now()) WHERE fecha_actualizacion IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_tokens_jti ON tokens (jti);
+CREATE INDEX IF NOT EXISTS idx_tokens_actualizacion ON tokens (fecha_actualizacion);
+
+COMMIT;
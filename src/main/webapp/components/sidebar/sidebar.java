@@ -3,20 +3,23 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
-import org.zkoss.reporte.core.dto.response.MetadataQuery;
 import org.zkoss.reporte.core.service.interfaces.DatabaseQueryService;
-import org.zkoss.reporte.web.navigation.NavigationFactory;
+import org.zkoss.reporte.web.navigation.MenuCatalogo;
 import org.zkoss.reporte.web.navigation.NavigationMenu;
 import org.zkoss.reporte.web.navigation.NavigationService;
 import org.zkoss.bind.BindUtils;
 import org.zkoss.bind.annotation.*;
 import org.zkoss.zk.ui.Desktop;
 import org.zkoss.zk.ui.Executions;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zk.ui.event.EventQueues;
 import org.zkoss.zk.ui.select.annotation.VariableResolver;
 
 import javax.servlet.ServletContext;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static org.zkoss.reporte.web.viewmodel.MainApplicationVM.NAVIGATION;
@@ -33,21 +36,30 @@ public class sidebar {
 
     // ===== SERVICIOS =====
     private DatabaseQueryService databaseQueryService;
+    private MenuCatalogo menuCatalogo;
     private NavigationService navigationModel;
 
     // ===== DATOS DEL MENÚ =====
-    private List<NavigationMenu> menuList; // Lista principal que usa la vista
-    private List<MetadataQuery> queriesDisponibles = new ArrayList<>();
+    // Compartida por todos los desktops: no se modifica
+    private List<NavigationMenu> menuList = new ArrayList<>();
+    private long versionMenu;
+
+    // ===== BÚSQUEDA DE QUERIES =====
+    private static final int MAX_RESULTADOS_BUSQUEDA = 15;
+    private String textoBusqueda = "";
+    private List<NavigationMenu> resultadosBusqueda = new ArrayList<>();
 
     // ===== UI STATE =====
     private String interfazTitle = "";
     private NavigationMenu activeMenu; // Menú actualmente activo
+    // Menús expandidos en este desktop, por título o etiqueta
+    private final Set<String> menusExpandidos = new HashSet<>();
 
     // ===== INICIALIZACIÓN =====
 
     /**
      * Inicialización del ViewModel
-     * Carga menús estáticos y queries dinámicas
+     * Toma el menú compartido (estáticos y queries) y se suscribe a sus actualizaciones
      */
     @Init
     public void init(@ContextParam(ContextType.DESKTOP) Desktop desktop) {
@@ -56,19 +68,22 @@ public class sidebar {
         // 1. Inicializar servicios
         inicializarServicios(desktop);
 
-        // 2. Cargar menús estáticos (SIEMPRE crear lista MUTABLE)
-        List<NavigationMenu> menuStaticos = NavigationFactory.queryMenu();
-        menuList = new ArrayList<>(menuStaticos); // ✅ Crear copia mutable
-        log.info("Menús estáticos cargados: {}", menuList.size());
-
-        // 3. Cargar queries dinámicas
-        cargarQueriesDisponibles();
+        // 2. Menú compartido
+        if (menuCatalogo != null) {
+            aplicarMenu(menuCatalogo.getInstantanea());
+            for (NavigationMenu menu : menuList) {
+                if (menu.isExpanded()) {
+                    menusExpandidos.add(claveMenu(menu));
+                }
+            }
+        }
 
-        // 4. Agregar menú de queries
-        agregarMenuQueries();
+        // 3. Cambios del catálogo por server push
+        EventQueues.lookup(MenuCatalogo.COLA_MENU, EventQueues.APPLICATION, true)
+                .subscribe(this::alActualizarMenu);
 
-        // 5. Log final
-        log.info("=== Sidebar inicializado: {} menús totales ===", menuList.size());
+        // 4. Log final
+        log.info("=== Sidebar inicializado: {} menús totales (versión {}) ===", menuList.size(), versionMenu);
         logearEstructuraMenus();
     }
 
@@ -83,6 +98,7 @@ public class sidebar {
             WebApplicationContext webAppCtx =
                     WebApplicationContextUtils.getWebApplicationContext(servletContext);
             databaseQueryService = webAppCtx.getBean(DatabaseQueryService.class);
+            menuCatalogo = webAppCtx.getBean(MenuCatalogo.class);
             log.info("DatabaseQueryService inicializado correctamente");
         } catch (Exception e) {
             log.error("Error inicializando DatabaseQueryService: {}", e.getMessage(), e);
@@ -101,124 +117,73 @@ public class sidebar {
 
     // ===== GESTIÓN DE QUERIES =====
 
-    /**
-     * Carga las queries disponibles desde el servicio
-     */
-    private void cargarQueriesDisponibles() {
-        try {
-            if (databaseQueryService == null) {
-                log.warn("DatabaseQueryService no disponible - skipping queries");
-                queriesDisponibles = new ArrayList<>();
-                return;
-            }
-
-            log.info("Cargando queries disponibles...");
-            queriesDisponibles = databaseQueryService.traerQuerys(null);
-
-            if (queriesDisponibles == null) {
-                queriesDisponibles = new ArrayList<>();
-            }
-
-            log.info("✅ Queries cargadas: {}", queriesDisponibles.size());
-
-        } catch (Exception e) {
-            log.error("❌ Error cargando queries: {}", e.getMessage(), e);
-            queriesDisponibles = new ArrayList<>();
-        }
+    private void aplicarMenu(MenuCatalogo.Instantanea instantanea) {
+        menuList = instantanea.getMenus();
+        versionMenu = instantanea.getVersion();
     }
 
     /**
-     * Agrega el menú de queries dinámicamente al menuList
+     * Nueva versión del menú publicada por {@link MenuCatalogo}. Se ejecuta en el hilo de
+     * eventos de este desktop; los menús expandidos y el activo se conservan.
      */
-    private void agregarMenuQueries() {
-        if (queriesDisponibles == null || queriesDisponibles.isEmpty()) {
-            log.info("No hay queries para agregar al menú");
+    private void alActualizarMenu(Event event) {
+        if (menuCatalogo == null || !MenuCatalogo.EVENTO_MENU_ACTUALIZADO.equals(event.getName())) {
             return;
         }
-
-        // ✅ Verificar que menuList sea mutable
-        if (menuList == null) {
-            menuList = new ArrayList<>();
+        MenuCatalogo.Instantanea instantanea = menuCatalogo.getInstantanea();
+        if (instantanea.getVersion() == versionMenu) {
+            return;
         }
-
-        // Crear menú principal de Queries
-        NavigationMenu menuQueries = new NavigationMenu();
-        menuQueries.setLabel("Consultas");
-        menuQueries.setTitle("QUERIES");
-        menuQueries.setIcon("fas fa-database icon-menu-color");
-        menuQueries.setPath(NavigationService.BLANK_ZUL);
-        menuQueries.setExpanded(false);
-
-        // Crear submenús para cada query
-        List<NavigationMenu> subMenusQueries = queriesDisponibles.stream()
-                .map(this::crearSubmenuQuery)
-                .collect(Collectors.toList());
-
-        menuQueries.setSubMenus(subMenusQueries);
-
-        // ✅ Agregar a la lista (ya es mutable por @Init)
-        menuList.add(menuQueries);
-
-        log.info("✅ Menú de queries agregado con {} submenús", subMenusQueries.size());
+        aplicarMenu(instantanea);
+        log.info("🔄 Menú actualizado a la versión {}", versionMenu);
+        BindUtils.postNotifyChange(null, null, this, "menuList");
     }
 
     /**
-     * Crea un submenú para una query específica
+     * Recarga las queries dinámicamente (útil para desarrollo).
+     * Si el catálogo cambió, todos los sidebars abiertos reciben el nuevo menú.
      */
-    private NavigationMenu crearSubmenuQuery(MetadataQuery query) {
-        NavigationMenu submenu = new NavigationMenu();
-        submenu.setLabel(query.getNombre());
-        submenu.setIcon(obtenerIconoQuery(query));
-        submenu.setPath("/pages/reporte/ejecutar_query.zul?codigo=" + query.getCodigo());
-        submenu.setQueryCodigo(query.getCodigo());
-        return submenu;
+    @Command
+    @NotifyChange({"menuList"})
+    public void recargarQueries() {
+        log.info("🔄 Recargando queries...");
+        if (menuCatalogo == null) {
+            return;
+        }
+        aplicarMenu(menuCatalogo.recargar());
+
+        log.info("✅ Queries recargadas - Total menús: {}", menuList.size());
+        logearEstructuraMenus();
     }
 
     /**
-     * Determina el icono según el tipo/categoría de query
+     * Búsqueda mientras se escribe. Se resuelve sobre el índice en memoria del catálogo,
+     * sin peticiones al backend por cada tecla.
      */
-    private String obtenerIconoQuery(MetadataQuery query) {
-        // Query consolidable
-        if (Boolean.TRUE.equals(query.getEsConsolidable())) {
-            return "fas fa-layer-group icon-submenu-color";
+    @Command
+    @NotifyChange({"textoBusqueda", "resultadosBusqueda"})
+    public void buscarQueries(@BindingParam("texto") String texto) {
+        textoBusqueda = texto != null ? texto : "";
+        if (textoBusqueda.trim().isEmpty() || databaseQueryService == null) {
+            resultadosBusqueda = new ArrayList<>();
+            return;
         }
-
-        // Iconos según categoría
-        if (query.getCategoria() != null) {
-            switch (query.getCategoria().toUpperCase()) {
-                case "INFRACCIONES":
-                    return "fas fa-exclamation-triangle icon-submenu-color";
-                case "VEHICULOS":
-                    return "fas fa-car icon-submenu-color";
-                case "ESTADISTICAS":
-                    return "fas fa-chart-bar icon-submenu-color";
-                case "REPORTES":
-                    return "fas fa-file-alt icon-submenu-color";
-                default:
-                    return "fas fa-file-alt icon-submenu-color";
-            }
+        try {
+            resultadosBusqueda = databaseQueryService.buscarQueries(textoBusqueda).stream()
+                    .limit(MAX_RESULTADOS_BUSQUEDA)
+                    .map(MenuCatalogo::crearMenuQuery)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            log.error("❌ Error buscando queries: {}", e.getMessage(), e);
+            resultadosBusqueda = new ArrayList<>();
         }
-
-        return "fas fa-file-alt icon-submenu-color";
     }
 
-    /**
-     * Recarga las queries dinámicamente (útil para desarrollo)
-     */
     @Command
-    @NotifyChange({"menuList", "queriesDisponibles"})
-    public void recargarQueries() {
-        log.info("🔄 Recargando queries...");
-
-        // Remover menú de queries anterior
-        menuList.removeIf(menu -> "QUERIES".equals(menu.getTitle()));
-
-        // Cargar queries nuevamente
-        cargarQueriesDisponibles();
-        agregarMenuQueries();
-
-        log.info("✅ Queries recargadas - Total menús: {}", menuList.size());
-        logearEstructuraMenus();
+    @NotifyChange({"textoBusqueda", "resultadosBusqueda"})
+    public void limpiarBusqueda() {
+        textoBusqueda = "";
+        resultadosBusqueda = new ArrayList<>();
     }
 
     // ===== COMANDOS DE NAVEGACIÓN =====
@@ -279,11 +244,12 @@ public class sidebar {
     @NotifyChange({"menuList"})
     public void toggleMenu(@BindingParam("menu") NavigationMenu menu) {
         log.debug("🔄 Toggling menu: {} - Estado actual: {}",
-                menu.getLabel(), menu.isExpanded());
+                menu.getLabel(), isExpandido(menu));
 
-        // Toggle estado
-        menu.setExpanded(!menu.isExpanded());
-        log.debug("Nuevo estado: {}", menu.isExpanded());
+        // Toggle estado (propio de este desktop: el menú es compartido)
+        String clave = claveMenu(menu);
+        boolean expandir = !menusExpandidos.contains(clave);
+        log.debug("Nuevo estado: {}", expandir);
 
         // Si el menú tiene path propio, navegar
         if (menu.getPath() != null && !menu.getPath().isEmpty() &&
@@ -292,18 +258,10 @@ public class sidebar {
         }
 
         // Colapsar otros menús (accordion behavior)
-        if (menu.isExpanded()) {
-            menuList.stream()
-                    .filter(m -> m != menu && m.isExpanded())
-                    .forEach(m -> {
-                        m.setExpanded(false);
-                        log.debug("Colapsando menú: {}", m.getLabel());
-                    });
+        menusExpandidos.clear();
+        if (expandir) {
+            menusExpandidos.add(clave);
         }
-
-        // Notificar cambios
-        BindUtils.postNotifyChange(null, null, menu, "expanded");
-        BindUtils.postNotifyChange(null, null, menuList, ".");
     }
 
     /**
@@ -334,21 +292,21 @@ public class sidebar {
     }
 
     /**
-     * Verifica si un menú está activo
+     * Verifica si un menú está expandido en este desktop
      */
-    public boolean isMenuActive(NavigationMenu menu) {
-        return activeMenu != null && activeMenu.equals(menu);
+    public boolean isExpandido(NavigationMenu menu) {
+        return menu != null && menusExpandidos.contains(claveMenu(menu));
+    }
+
+    private static String claveMenu(NavigationMenu menu) {
+        return menu.getTitle() != null ? menu.getTitle() : menu.getLabel();
     }
 
     /**
-     * ✅ CRÍTICO: Retorna la lista principal de menús
-     * Este método es llamado por ZK cuando se hace @load(vm.menuList)
+     * Verifica si un menú está activo
      */
-    public List<NavigationMenu> getMenuList() {
-        if (menuList == null) {
-            menuList = new ArrayList<>();
-        }
-        return menuList;
+    public boolean isMenuActive(NavigationMenu menu) {
+        return activeMenu != null && activeMenu.equals(menu);
     }
 
     /**
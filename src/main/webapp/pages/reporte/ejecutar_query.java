@@ -6,11 +6,37 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 import org.zkoss.bind.annotation.*;
+import org.zkoss.reporte.core.consolidacion.CuboConsolidacion;
+import org.zkoss.reporte.core.consolidacion.FuncionAgregacion;
+import org.zkoss.reporte.core.consolidacion.MotorConsolidacion;
+import org.zkoss.reporte.core.dto.request.SolicitudExportacion;
+import org.zkoss.reporte.core.dto.response.EstadoExportacion;
+import org.zkoss.reporte.core.dto.response.MetadataConsolidacion;
+import org.zkoss.reporte.core.exportacion.RegistroDescargas;
+import org.zkoss.reporte.core.indices.FiltroColumna;
+import org.zkoss.reporte.core.indices.MotorIndices;
+import org.zkoss.reporte.core.dto.response.MetadataPaginacion;
+import org.zkoss.reporte.core.dto.response.MetadataProvincia;
 import org.zkoss.reporte.core.dto.response.MetadataQuery;
 import org.zkoss.reporte.core.model.ColumnaDef;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.service.interfaces.ConsultaDistribuidaService;
+import org.zkoss.reporte.core.service.interfaces.TrabajoExportacionService;
 import org.zkoss.reporte.core.service.interfaces.ReporteService;
-import org.zkoss.zk.ui.Component;
+import org.zkoss.reporte.spring_zk_config.ExportacionProperties;
+import org.zkoss.reporte.spring_zk_config.ResultadosProperties;
+import org.zkoss.reporte.utils.excel.Generator;
+import org.zkoss.reporte.utils.http.CancelacionHttp;
+import org.zkoss.reporte.web.model.ComparadorColumna;
+import org.zkoss.reporte.web.model.ListModelPaginado;
+import org.zkoss.reporte.web.model.ListModelResultado;
+import org.zkoss.reporte.web.model.RenderizadorResultados;
+import org.zkoss.bind.BindUtils;
+import org.zkoss.zk.ui.Desktop;
+import org.zkoss.zk.ui.DesktopUnavailableException;
 import org.zkoss.zk.ui.Executions;
+import org.zkoss.zk.ui.event.Event;
+import org.zkoss.zk.ui.util.DesktopCleanup;
 import org.zkoss.zk.ui.select.annotation.VariableResolver;
 import org.zkoss.zul.*;
 import org.zkoss.reporte.core.dto.request.ConsultaQuery;
@@ -19,9 +45,19 @@ import org.zkoss.reporte.core.dto.response.QueryResponse;
 import org.zkoss.reporte.core.service.interfaces.DatabaseQueryService;
 
 import javax.servlet.ServletContext;
-import java.io.ByteArrayInputStream;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * ViewModel para la ejecución de queries dinámicas con soporte de consolidación.
@@ -36,6 +72,16 @@ public class ejecutar_query {
     // ===== SERVICIOS =====
     private DatabaseQueryService databaseQueryService;
     private ReporteService infraccionesService;
+    private ConsultaDistribuidaService consultaDistribuidaService;
+    private TrabajoExportacionService trabajoExportacionService;
+    private MotorConsolidacion motorConsolidacion;
+    private MotorIndices motorIndices;
+    private ResultadosProperties resultadosProperties;
+    private ExportacionProperties exportacionProperties;
+    private RegistroDescargas registroDescargas;
+    private Executor precargaExecutor;
+    private Executor ejecucionExecutor;
+    private Executor trabajosExportacionExecutor;
 
     // ===== PROPIEDADES DE LA QUERY =====
     private String codigoQuery;
@@ -67,16 +113,49 @@ public class ejecutar_query {
 
     // ===== RESULTADOS =====
     private QueryResponse resultadoQuery;
-    private ListModelList<Map<String, Object>> resultados;
+    private ListModel<Map<String, Object>> resultados;
     private List<ColumnaDef> columnas;
     private List<String> columnasResultado = new ArrayList<>();
+    private RenderizadorResultados renderizadorResultados;
     private boolean hayResultados = false;
     private Integer totalRegistros = 0;
     private String tiempoEjecucion = "0 ms";
 
+    // Datos sin consolidar de la última consulta, para reconsolidar sin volver al backend
+    private QueryResponse respuestaBase;
+    private String firmaRespuestaBase;
+    private CompletableFuture<CuboConsolidacion> cubo;
+
+    private static final String FORMATO_EXCEL = "excel";
+    private static final String FORMATO_PDF = "pdf";
+    private static final String FORMATO_CSV_ZIP = "csv-zip";
+    private static final String FORMATO_CSV_GZIP = "csv-gz";
+    private static final Map<String, String> ETIQUETAS_FORMATO = new LinkedHashMap<>();
+    private static final Map<String, String> ETIQUETAS_TIPO_FILTRO = new LinkedHashMap<>();
+    static {
+        ETIQUETAS_FORMATO.put(FORMATO_EXCEL, "Excel (xlsx)");
+        ETIQUETAS_FORMATO.put(FORMATO_CSV_ZIP, "CSV comprimido (zip)");
+        ETIQUETAS_FORMATO.put(FORMATO_CSV_GZIP, "CSV comprimido (gzip)");
+
+        ETIQUETAS_TIPO_FILTRO.put(FiltroColumna.Tipo.IGUAL.name(), "Igual a");
+        ETIQUETAS_TIPO_FILTRO.put(FiltroColumna.Tipo.RANGO.name(), "Entre");
+        ETIQUETAS_TIPO_FILTRO.put(FiltroColumna.Tipo.CONTIENE.name(), "Contiene");
+    }
+    private static final String CONTENT_TYPE_XLSX =
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    private static final String ATRIBUTO_LIMPIEZA_DESCARGAS = "reporte.limpiezaDescargas";
+
     // ===== ESTADO =====
     private boolean ejecutando = false;
-    private String formatoExportar = "excel";
+    private String mensajeProgreso;
+    private String descripcionTrabajo;
+    private long inicioEjecucion;
+    private CancelacionHttp cancelacion;
+    private String formatoExportar = FORMATO_EXCEL;
+    private boolean exportarPorProvincia = false;
+
+    // Exportaciones en segundo plano de esta sesión (panel de exportaciones)
+    private List<EstadoExportacion> trabajosExportacion = new ArrayList<>();
 
     // Funciones de agregación
     private boolean funcionSum = true;
@@ -86,9 +165,18 @@ public class ejecutar_query {
     private boolean funcionMin = false;
 
     // Opciones de consolidación
-    private String nivelConsolidacion = "completo";
+    private static final String NIVEL_COMPLETO = "completo";
+    private static final String NIVEL_TOTAL = "total";
+    private String nivelConsolidacion = NIVEL_COMPLETO;
     private boolean incluirSubtotales = false;
 
+    // Filtros rápidos sobre el resultado en memoria (no vuelven al backend)
+    private List<FiltroColumna> filtrosResultado = new ArrayList<>();
+    private String columnaFiltro;
+    private String tipoFiltro = FiltroColumna.Tipo.CONTIENE.name();
+    private String valorFiltro;
+    private String valorFiltroHasta;
+
     // ===== INICIALIZACIÓN =====
 
     /**
@@ -104,10 +192,26 @@ public class ejecutar_query {
         WebApplicationContext webAppCtx = WebApplicationContextUtils.getWebApplicationContext(servletContext);
         databaseQueryService = webAppCtx.getBean(DatabaseQueryService.class);
         infraccionesService = webAppCtx.getBean(ReporteService.class);
+        consultaDistribuidaService = webAppCtx.getBean(ConsultaDistribuidaService.class);
+        trabajoExportacionService = webAppCtx.getBean(TrabajoExportacionService.class);
+        motorConsolidacion = webAppCtx.getBean(MotorConsolidacion.class);
+        motorIndices = webAppCtx.getBean(MotorIndices.class);
+        resultadosProperties = webAppCtx.getBean(ResultadosProperties.class);
+        exportacionProperties = webAppCtx.getBean(ExportacionProperties.class);
+        registroDescargas = webAppCtx.getBean(RegistroDescargas.class);
+        precargaExecutor = webAppCtx.getBean("precargaExecutor", Executor.class);
+        ejecucionExecutor = webAppCtx.getBean("ejecucionExecutor", Executor.class);
+        trabajosExportacionExecutor = webAppCtx.getBean("trabajosExportacionExecutor", Executor.class);
 
         // Inicializar filtros vacíos
         filtros = new ParametrosFiltros();
 
+        // Al salir de la página se sueltan los resultados en memoria y se cancela el trabajo en curso
+        Executions.getCurrent().getDesktop().addListener((DesktopCleanup) desktop -> liberarResultados());
+
+        // Exportaciones de la sesión que siguen en curso o listas para descargar
+        trabajosExportacion = trabajoExportacionService.listar(sesionActual());
+
         // Validar y cargar query si se proporcionó código
         if (codigo != null && !codigo.isEmpty()) {
             this.codigoQuery = codigo;
@@ -212,88 +316,509 @@ public class ejecutar_query {
     /**
      * Ejecuta la query con los filtros especificados y muestra los resultados.
      * Incluye manejo de consolidación si está activado.
+     *
+     * La consulta corre en el pool de ejecución, no en el hilo de la petición: el resultado
+     * se entrega al desktop por server push. Mientras está en curso se ignoran nuevos
+     * clics de ejecutar y se puede cancelar, lo que aborta la petición HTTP al backend.
      */
     @Command
-    @NotifyChange({"resultados", "hayResultados", "totalRegistros",
-            "tiempoEjecucion", "ejecutando", "columnasResultado"})
+    @NotifyChange({"ejecutando", "mensajeProgreso"})
     public void ejecutarQuery() {
         if (codigoQuery == null || codigoQuery.isEmpty()) {
             mostrarAdvertencia("No se ha especificado una query para ejecutar");
             return;
         }
+        if (ejecutando) {
+            log.debug("⏳ Ejecución en curso, se ignora la nueva solicitud");
+            return;
+        }
 
-        try {
-            ejecutando = true;
-            log.debug("▶️ Ejecutando query: {}", codigoQuery);
+        log.debug("▶️ Ejecutando query: {}", codigoQuery);
 
-            // Preparar filtros incluyendo consolidación
-            prepararFiltros();
+        // Preparar filtros incluyendo consolidación. La selección se toma aquí, en el hilo
+        // de eventos: el trabajo en segundo plano no accede a los componentes.
+        prepararFiltros();
+        List<String> agrupacion = aplicarNivelConsolidacion(camposAgrupacionCombinados());
+        List<String> medidas = extraerValoresSeleccionados(camposNumericosSeleccionados);
+        List<FuncionAgregacion> funciones = funcionesSeleccionadas();
 
-            // Construir objeto de consulta
+        // Ejecutar consulta: se trae la primera página, el resto se pide al paginar.
+        // Con "todas las BDS" cada provincia se consulta en paralelo y se combina aquí.
+        String codigo = codigoQuery;
+        boolean distribuida = filtros.isUsarTodasLasBDS() && consultaDistribuidaService.isDisponible();
+        ListModelPaginado.CargadorPagina cargador = filtrosPagina -> {
             ConsultaQuery consulta = ConsultaQuery.builder()
-                    .parametrosFiltros(filtros)
+                    .parametrosFiltros(filtrosPagina)
                     .formato("json")
                     .build();
+            return distribuida
+                    ? consultaDistribuidaService.ejecutarConsulta(codigo, consulta)
+                    : infraccionesService.ejecutarConsulta(codigo, consulta);
+        };
+        // La consulta distribuida ya consolida cada provincia y combina los parciales: traer
+        // las filas sin consolidar de todas las provincias para reagruparlas aquí no compensa
+        boolean consolidar = consolidado && !distribuida;
+
+        // El trabajo recibe copias del estado de la pantalla (filtros, selección, firma y
+        // metadata de la query): no lee ni escribe esos campos del ViewModel, solo usa los servicios
+        ParametrosFiltros filtrosEjecucion = filtros.toBuilder().build();
+        ResultadoEjecucion ejecucion = new ResultadoEjecucion(respuestaBase, firmaRespuestaBase, cubo);
+        PedidoConsolidacion pedido = consolidar
+                ? new PedidoConsolidacion(agrupacion, medidas, funciones, incluirSubtotales,
+                        firmaFiltrosBase(filtrosEjecucion), queryMetadata)
+                : null;
+
+        long inicio = System.currentTimeMillis();
+        ejecutarEnSegundoPlano("Ejecutando consulta",
+                () -> cargarResultados(ejecucion, cargador, filtrosEjecucion, pedido),
+                (resultado, error) -> mostrarResultados(resultado, error, inicio, filtrosEjecucion));
+    }
 
-            // Medir tiempo de ejecución
-            long inicio = System.currentTimeMillis();
-
-            // Ejecutar consulta
-            resultadoQuery = infraccionesService.ejecutarConsulta(codigoQuery, consulta);
+    /**
+     * Lanza el trabajo en el pool de ejecución y muestra el overlay de progreso con la opción
+     * de cancelar. Al terminar, alTerminar recibe el resultado o el error en el hilo de eventos
+     * del desktop (por server push), salvo que el trabajo se haya cancelado antes.
+     */
+    private <T> void ejecutarEnSegundoPlano(String descripcion, Supplier<T> trabajo, BiConsumer<T, Throwable> alTerminar) {
+        ejecutarEnSegundoPlano(descripcion, ejecucionExecutor, trabajo, alTerminar);
+    }
 
-            long fin = System.currentTimeMillis();
-            tiempoEjecucion = (fin - inicio) + " ms";
+    private <T> void ejecutarEnSegundoPlano(String descripcion, Executor executor, Supplier<T> trabajo,
+                                            BiConsumer<T, Throwable> alTerminar) {
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        if (!desktop.isServerPushEnabled()) {
+            desktop.enableServerPush(true);
+        }
 
-            // Procesar resultados
-            if (resultadoQuery != null && resultadoQuery.getDatos() != null) {
-                List<Map<String, Object>> datos = resultadoQuery.getDatos();
+        CancelacionHttp cancelacionActual = new CancelacionHttp();
+        try {
+            CompletableFuture
+                    .supplyAsync(() -> CancelacionHttp.ejecutar(cancelacionActual, trabajo), executor)
+                    .whenComplete((valor, error) ->
+                            entregar(desktop, cancelacionActual, () -> alTerminar.accept(valor, error)));
+        } catch (RejectedExecutionException e) {
+            log.warn("⚠️ Pool de ejecución saturado, se rechaza: {} ({})", descripcion, codigoQuery);
+            mostrarAdvertencia("El servidor está ocupado, intente nuevamente en unos segundos");
+            return;
+        }
 
-                // Extraer columnas del primer registro
-                if (!datos.isEmpty()) {
-                    columnasResultado = new ArrayList<>(datos.get(0).keySet());
-                    log.info("🔍 Columnas encontradas: {}", columnasResultado);
-                }
+        cancelacion = cancelacionActual;
+        inicioEjecucion = System.currentTimeMillis();
+        ejecutando = true;
+        descripcionTrabajo = descripcion;
+        mensajeProgreso = descripcion + "...";
+    }
 
-                // Convertir datos a ListModelList para ZK
-                resultados = new ListModelList<>(datos);
-                hayResultados = !datos.isEmpty();
-                totalRegistros = datos.size();
+    /**
+     * Cancela el trabajo en curso: aborta las peticiones al backend y descarta su resultado.
+     */
+    @Command
+    @NotifyChange({"ejecutando", "mensajeProgreso"})
+    public void cancelarEjecucion() {
+        if (!ejecutando || cancelacion == null) {
+            return;
+        }
+        log.info("⛔ Cancelando ejecución de query: {}", codigoQuery);
+        cancelacion.cancelar();
+        cancelacion = null;
+        ejecutando = false;
+        mensajeProgreso = null;
+        mostrarInformacion("Operación cancelada");
+    }
 
-//                crearHeadersListbox();
+    /**
+     * Actualiza el tiempo transcurrido mientras el trabajo está en curso.
+     */
+    @Command
+    @NotifyChange("mensajeProgreso")
+    public void actualizarProgreso() {
+        if (ejecutando) {
+            long segundos = (System.currentTimeMillis() - inicioEjecucion) / 1000;
+            mensajeProgreso = descripcionTrabajo + "... " + segundos + " s";
+        }
+    }
 
-                log.debug("✅ Query ejecutada exitosamente - {} registros en {}",
-                        totalRegistros, tiempoEjecucion);
+    /**
+     * Trabajo en segundo plano: trae los resultados y arma el modelo del listbox.
+     * Todo lo que produce queda en {@code ejecucion}; no modifica el ViewModel.
+     *
+     * @param pedido Consolidación a resolver en memoria, o null si no se consolida aquí
+     */
+    private ResultadoEjecucion cargarResultados(ResultadoEjecucion ejecucion,
+                                                ListModelPaginado.CargadorPagina cargador,
+                                                ParametrosFiltros filtrosEjecucion,
+                                                PedidoConsolidacion pedido) {
+        // Con consolidación se reagrupan en memoria los datos sin consolidar, si es posible
+        if (pedido != null) {
+            consolidarLocalmente(ejecucion, cargador, filtrosEjecucion, pedido);
+        }
+        if (ejecucion.modelo == null) {
+            ListModelPaginado paginado = new ListModelPaginado(
+                    cargador,
+                    filtrosEjecucion,
+                    resultadosProperties.getTamanoPagina(),
+                    resultadosProperties.getPaginasEnMemoria(),
+                    precargaExecutor);
+            ejecucion.resultadoQuery = paginado.getPrimeraRespuesta();
+            ejecucion.modelo = paginado;
+        }
+        return ejecucion;
+    }
 
-                // Log adicional si se aplicó consolidación
-                if (Boolean.TRUE.equals(filtros.getConsolidado()) &&
-                        filtros.getConsolidacion() != null &&
-                        !filtros.getConsolidacion().isEmpty()) {
-                    log.debug("📊 Consolidación aplicada con {} campos: {}",
-                            filtros.getConsolidacion().size(),
-                            filtros.getConsolidacion());
+    /**
+     * Devuelve el resultado al desktop. Si el trabajo fue cancelado, o el desktop ya no
+     * existe, el resultado se descarta.
+     */
+    private void entregar(Desktop desktop, CancelacionHttp cancelacionEjecucion, Runnable accion) {
+        if (cancelacionEjecucion.isCancelada()) {
+            log.debug("Resultado de trabajo cancelado descartado");
+            return;
+        }
+        try {
+            Executions.schedule(desktop, event -> {
+                if (cancelacionEjecucion != cancelacion) {
+                    return;
                 }
+                ejecutando = false;
+                cancelacion = null;
+                mensajeProgreso = null;
+                accion.run();
+                BindUtils.postNotifyChange(null, null, this, "*");
+            }, new Event("onTrabajoTerminado"));
+        } catch (DesktopUnavailableException e) {
+            log.debug("Desktop cerrado antes de recibir el resultado del trabajo");
+        }
+    }
 
-                mostrarInformacion("Consulta ejecutada exitosamente");
-            } else {
-                // Sin resultados
-                hayResultados = false;
-                totalRegistros = 0;
-                resultados = new ListModelList<>();
-                columnasResultado = new ArrayList<>();
-                log.warn("⚠️ La consulta no devolvió resultados");
-                mostrarAdvertencia("La consulta no devolvió resultados");
+    /**
+     * Se ejecuta en el hilo de eventos del desktop con el resultado de la consulta. Es el
+     * único lugar donde el resultado de un trabajo pasa a los campos del ViewModel.
+     */
+    private void mostrarResultados(ResultadoEjecucion ejecucion, Throwable error, long inicio,
+                                   ParametrosFiltros filtrosEjecucion) {
+        long fin = System.currentTimeMillis();
+        tiempoEjecucion = (fin - inicio) + " ms";
+
+        if (error != null) {
+            Throwable causa = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            log.error("❌ Error ejecutando query: {}", causa.getMessage(), causa);
+            mostrarError("Error al ejecutar la consulta: " + causa.getMessage());
+            hayResultados = false;
+            totalRegistros = 0;
+            resultados = new ListModelList<>();
+            columnasResultado = new ArrayList<>();
+            return;
+        }
+
+        respuestaBase = ejecucion.respuestaBase;
+        firmaRespuestaBase = ejecucion.firmaRespuestaBase;
+        cubo = ejecucion.cubo;
+        resultadoQuery = ejecucion.resultadoQuery;
+        ListModel<Map<String, Object>> modelo = ejecucion.modelo;
+
+        // Procesar resultados
+        if (resultadoQuery != null && resultadoQuery.getDatos() != null) {
+            List<Map<String, Object>> datos = resultadoQuery.getDatos();
+
+            // Columnas en el orden en que llegaron del backend
+            if (!datos.isEmpty()) {
+                columnasResultado = resultadoQuery.getColumnas() != null
+                        ? new ArrayList<>(resultadoQuery.getColumnas())
+                        : new ArrayList<>(datos.get(0).keySet());
+                log.info("🔍 Columnas encontradas: {}", columnasResultado);
             }
 
-        } catch (Exception e) {
-            log.error("❌ Error ejecutando query: {}", e.getMessage(), e);
-            mostrarError("Error al ejecutar la consulta: " + e.getMessage());
+            // Modelo paginado: el listbox pide al backend solo las páginas que muestra
+            // (o, si se consolidó localmente, el resultado ya está completo en memoria)
+            resultados = indexar(modelo);
+            filtrosResultado = new ArrayList<>();
+            hayResultados = !datos.isEmpty();
+            totalRegistros = modelo.getSize();
+
+            log.debug("✅ Query ejecutada exitosamente - {} registros en {}",
+                    totalRegistros, tiempoEjecucion);
+
+            // Log adicional si se aplicó consolidación
+            if (Boolean.TRUE.equals(filtrosEjecucion.getConsolidado()) &&
+                    filtrosEjecucion.getConsolidacion() != null &&
+                    !filtrosEjecucion.getConsolidacion().isEmpty()) {
+                log.debug("📊 Consolidación aplicada con {} campos: {}",
+                        filtrosEjecucion.getConsolidacion().size(),
+                        filtrosEjecucion.getConsolidacion());
+            }
+
+            if (Boolean.TRUE.equals(resultadoQuery.getParcial())) {
+                mostrarAdvertencia("Resultados parciales: " + describirProvinciasFallidas());
+            } else {
+                mostrarInformacion("Consulta ejecutada exitosamente");
+            }
+        } else {
+            // Sin resultados
             hayResultados = false;
             totalRegistros = 0;
             resultados = new ListModelList<>();
             columnasResultado = new ArrayList<>();
-        } finally {
-            ejecutando = false;
+            log.warn("⚠️ La consulta no devolvió resultados");
+            mostrarAdvertencia("La consulta no devolvió resultados");
+        }
+    }
+
+    /**
+     * Un resultado completo en memoria (consolidado localmente o devuelto entero por el
+     * backend) se muestra con un modelo ordenable y filtrable sobre sus índices.
+     */
+    private ListModel<Map<String, Object>> indexar(ListModel<Map<String, Object>> modelo) {
+        ResultadoColumnar resultado = resultadoQuery.getResultado();
+        boolean completo = !(modelo instanceof ListModelPaginado) || ((ListModelPaginado) modelo).isCompleto();
+        if (resultado == null || !completo || resultado.getCantidadFilas() != modelo.getSize()) {
+            return modelo;
         }
+        return new ListModelResultado(resultado, motorIndices.obtener(resultado));
+    }
+
+    /**
+     * Consolida en memoria por los campos y funciones seleccionados.
+     *
+     * Los datos sin consolidar se piden una sola vez por combinación de filtros; mientras
+     * no cambien fechas, provincia o municipio, cambiar la agrupación o las funciones no
+     * vuelve al backend. Si no es posible (resultado incompleto o demasiado grande) deja
+     * el modelo en null y la consolidación queda a cargo del backend.
+     *
+     * Corre en segundo plano: trabaja sobre {@code ejecucion}, que trae los datos sin
+     * consolidar de la ejecución anterior, y sobre el pedido tomado en el hilo de eventos.
+     */
+    private void consolidarLocalmente(ResultadoEjecucion ejecucion,
+                                      ListModelPaginado.CargadorPagina cargador,
+                                      ParametrosFiltros filtros,
+                                      PedidoConsolidacion pedido) {
+        // La agrupación por periodo temporal (DIARIO, MENSUAL...) la resuelve el backend
+        if (filtros.getPeriodoTemporal() != null && !filtros.getPeriodoTemporal().isEmpty()) {
+            return;
+        }
+        List<String> agrupacion = pedido.agrupacion;
+        List<String> medidas = pedido.medidas;
+        List<FuncionAgregacion> funciones = pedido.funciones;
+        boolean incluirSubtotales = pedido.subtotales;
+
+        String firma = pedido.firma;
+        if (ejecucion.respuestaBase == null || !firma.equals(ejecucion.firmaRespuestaBase)) {
+            ejecucion.respuestaBase = null;
+            ejecucion.firmaRespuestaBase = null;
+            ejecucion.cubo = null;
+
+            QueryResponse base = cargarSinConsolidar(cargador, filtros);
+            if (base == null) {
+                return;
+            }
+
+            ejecucion.respuestaBase = base;
+            ejecucion.firmaRespuestaBase = firma;
+            ejecucion.cubo = iniciarCubo(base.getResultado(), pedido.metadata);
+        } else {
+            log.debug("📊 Reutilizando {} filas sin consolidar", ejecucion.respuestaBase.getResultado().getCantidadFilas());
+        }
+
+        // Con el cubo listo, cambiar agrupación, nivel, funciones o subtotales es una búsqueda
+        QueryResponse respuestaBase = ejecucion.respuestaBase;
+        ResultadoColumnar datos = respuestaBase.getResultado();
+        CompletableFuture<CuboConsolidacion> cubo = ejecucion.cubo;
+        CuboConsolidacion cuboListo = cubo != null && cubo.isDone() && !cubo.isCompletedExceptionally()
+                ? cubo.getNow(null)
+                : null;
+
+        // Sin medidas seleccionadas, el cubo y la consolidación directa usan las mismas por defecto
+        List<String> medidasResueltas = MotorConsolidacion.resolverMedidas(datos, agrupacion, medidas);
+        ResultadoColumnar consolidadoLocal;
+        if (cuboListo != null && !medidasResueltas.isEmpty() && cuboListo.contiene(agrupacion, medidasResueltas)) {
+            log.debug("📊 Consolidación resuelta desde el cubo");
+            consolidadoLocal = cuboListo.consultar(agrupacion, medidasResueltas, funciones, incluirSubtotales);
+        } else if (incluirSubtotales) {
+            consolidadoLocal = motorConsolidacion.construirCubo(datos, agrupacion, medidasResueltas, 0)
+                    .consultar(agrupacion, medidasResueltas, funciones, true);
+        } else {
+            consolidadoLocal = motorConsolidacion.consolidar(datos, agrupacion, medidasResueltas, funciones);
+        }
+
+        QueryResponse resultadoQuery = new QueryResponse();
+        resultadoQuery.setResultado(consolidadoLocal);
+        resultadoQuery.setDatos(consolidadoLocal.filas());
+        resultadoQuery.setColumnas(consolidadoLocal.getColumnas());
+        resultadoQuery.setQuery(respuestaBase.getQuery());
+        resultadoQuery.setProvincias(respuestaBase.getProvincias());
+        resultadoQuery.setParcial(respuestaBase.getParcial());
+        resultadoQuery.setConsolidacion(MetadataConsolidacion.builder()
+                .consolidado(true)
+                .local(true)
+                .camposAgrupacion(agrupacion)
+                .camposNumericos(medidasResueltas)
+                .funciones(filtros.getFunciones())
+                .registrosOriginales(datos.getCantidadFilas())
+                .registrosConsolidados(consolidadoLocal.getCantidadFilas())
+                .build());
+
+        ejecucion.resultadoQuery = resultadoQuery;
+        ejecucion.modelo = new ListModelList<>(resultadoQuery.getDatos(), true);
+    }
+
+    /**
+     * Trae los datos sin consolidar si no superan el límite de consolidación local, o null.
+     *
+     * Primero se pide una página de una fila: con el total que informa el backend se decide
+     * sin traer nada más, y si la respuesta ya trae todo (el backend ignoró la paginación)
+     * se usa esa. Sin total se pide una fila más que el límite: si llega, no entra.
+     */
+    private QueryResponse cargarSinConsolidar(ListModelPaginado.CargadorPagina cargador, ParametrosFiltros filtros) {
+        int maxFilas = resultadosProperties.getMaxFilasConsolidacionLocal();
+        ParametrosFiltros sinConsolidar = filtros.toBuilder()
+                .consolidado(false)
+                .consolidacion(null)
+                .funciones(null)
+                .nivelConsolidacion(null)
+                .incluirSubtotales(null)
+                .pagina(1)
+                .lastKey(null)
+                .build();
+
+        QueryResponse sonda = cargador.cargar(sinConsolidar.toBuilder().tamanoPagina(1).build());
+        if (sonda == null || sonda.getResultado() == null) {
+            return null;
+        }
+        MetadataPaginacion paginacion = sonda.getPaginacion();
+        Long total = paginacion != null ? paginacion.getTotalRegistros() : null;
+        int filasSonda = sonda.getResultado().getCantidadFilas();
+        if ((total != null && total > maxFilas) || filasSonda > maxFilas) {
+            log.info("📊 {} filas sin consolidar superan el límite local, se consolida en el backend",
+                    total != null ? total : filasSonda);
+            return null;
+        }
+        boolean haySiguiente = paginacion != null && Boolean.TRUE.equals(paginacion.getTieneSiguiente());
+        if (!haySiguiente && (filasSonda > 1 || (total != null && total <= filasSonda))) {
+            return sonda;
+        }
+
+        QueryResponse base = cargador.cargar(sinConsolidar.toBuilder().tamanoPagina(maxFilas + 1).build());
+        if (base == null || base.getResultado() == null) {
+            return null;
+        }
+        if (base.getResultado().getCantidadFilas() > maxFilas) {
+            log.info("📊 Más de {} filas sin consolidar, se consolida en el backend", maxFilas);
+            return null;
+        }
+        if (base.getPaginacion() != null && Boolean.TRUE.equals(base.getPaginacion().getTieneSiguiente())) {
+            log.info("📊 Datos sin consolidar paginados por el backend, se consolida en el backend");
+            return null;
+        }
+        return base;
+    }
+
+    /**
+     * Precalcula en segundo plano el cubo de subtotales sobre todas las dimensiones que
+     * declara la query consolidable. Mientras no termina se consolida directamente.
+     * Devuelve null si no corresponde construirlo.
+     */
+    private CompletableFuture<CuboConsolidacion> iniciarCubo(ResultadoColumnar datos, MetadataQuery metadata) {
+        if (!resultadosProperties.isCuboHabilitado() || metadata == null
+                || !Boolean.TRUE.equals(metadata.getEsConsolidable())) {
+            return null;
+        }
+
+        LinkedHashSet<String> dimensiones = new LinkedHashSet<>();
+        if (metadata.getCamposAgrupacionList() != null) {
+            dimensiones.addAll(metadata.getCamposAgrupacionList());
+        }
+        if (metadata.getCamposUbicacionList() != null) {
+            dimensiones.addAll(metadata.getCamposUbicacionList());
+        }
+        if (metadata.getCamposTiempoList() != null) {
+            dimensiones.addAll(metadata.getCamposTiempoList());
+        }
+        List<String> medidas = metadata.getCamposNumericosList() != null
+                ? metadata.getCamposNumericosList()
+                : Collections.emptyList();
+
+        CompletableFuture<CuboConsolidacion> cubo = motorConsolidacion.construirCuboAsync(datos,
+                new ArrayList<>(dimensiones), medidas, resultadosProperties.getMaxDimensionesCubo());
+        cubo.exceptionally(e -> {
+            log.warn("⚠️ No se pudo construir el cubo de consolidación: {}", e.getMessage());
+            return null;
+        });
+        return cubo;
+    }
+
+    /**
+     * Campos de agrupación, ubicación y tiempo seleccionados, en ese orden jerárquico.
+     */
+    private List<String> camposAgrupacionCombinados() {
+        List<String> campos = new ArrayList<>();
+        campos.addAll(extraerValoresSeleccionados(camposAgrupacionSeleccionados));
+        campos.addAll(extraerValoresSeleccionados(camposUbicacionSeleccionados));
+        campos.addAll(extraerValoresSeleccionados(camposTiempoSeleccionados));
+        return campos;
+    }
+
+    /**
+     * Recorta la jerarquía según el nivel elegido: "completo" usa todos los campos,
+     * "total" ninguno y el nombre de un campo agrupa hasta ese campo inclusive.
+     */
+    private List<String> aplicarNivelConsolidacion(List<String> campos) {
+        if (NIVEL_TOTAL.equals(nivelConsolidacion)) {
+            return new ArrayList<>();
+        }
+        int posicion = campos.indexOf(nivelConsolidacion);
+        return posicion >= 0 ? new ArrayList<>(campos.subList(0, posicion + 1)) : campos;
+    }
+
+    /**
+     * Niveles de consolidación disponibles para los campos seleccionados.
+     */
+    @DependsOn({"camposAgrupacionSeleccionados", "camposUbicacionSeleccionados", "camposTiempoSeleccionados"})
+    public List<String> getNivelesConsolidacion() {
+        List<String> niveles = new ArrayList<>();
+        niveles.add(NIVEL_COMPLETO);
+        niveles.addAll(camposAgrupacionCombinados());
+        niveles.add(NIVEL_TOTAL);
+        return niveles;
+    }
+
+    /**
+     * Filtros que determinan los datos sin consolidar. Las opciones de consolidación no participan.
+     */
+    private String firmaFiltrosBase(ParametrosFiltros filtros) {
+        return String.join("|",
+                codigoQuery,
+                String.valueOf(filtros.getFechaInicio()),
+                String.valueOf(filtros.getFechaFin()),
+                String.valueOf(filtros.getProvincia()),
+                String.valueOf(filtros.getMunicipio()),
+                String.valueOf(filtros.isUsarTodasLasBDS()));
+    }
+
+    /**
+     * Funciones de agregación marcadas. Sin ninguna marcada se aplica SUM.
+     */
+    private List<FuncionAgregacion> funcionesSeleccionadas() {
+        List<FuncionAgregacion> funciones = new ArrayList<>();
+        if (funcionSum) {
+            funciones.add(FuncionAgregacion.SUM);
+        }
+        if (funcionAvg) {
+            funciones.add(FuncionAgregacion.AVG);
+        }
+        if (funcionCount) {
+            funciones.add(FuncionAgregacion.COUNT);
+        }
+        if (funcionMax) {
+            funciones.add(FuncionAgregacion.MAX);
+        }
+        if (funcionMin) {
+            funciones.add(FuncionAgregacion.MIN);
+        }
+        if (funciones.isEmpty()) {
+            funciones.add(FuncionAgregacion.SUM);
+        }
+        return funciones;
     }
 
     /**
@@ -322,200 +847,419 @@ public class ejecutar_query {
     }
 
     /**
-     * Crea los headers del listbox dinámicamente después de ejecutar la query.
-     * Este método busca el listbox y crea los headers basándose en columnasResultado.
+     * Obtiene las columnas de los resultados.
+     * Este método DEBE ser público para que ZK pueda accederlo.
      */
+    public List<String> getColumnasResultado() {
+        return columnasResultado != null ? columnasResultado : new ArrayList<>();
+    }
+
     /**
-     * Crea los headers del listbox dinámicamente después de ejecutar la query.
-     * Usa Events.postEvent para asegurar que el listbox ya está renderizado.
+     * Renderer de las filas de resultados para las columnas actuales. Se recrea cuando
+     * cambian las columnas (otra consulta u otra consolidación).
      */
+    public RenderizadorResultados getRenderizadorResultados() {
+        List<String> columnas = getColumnasResultado();
+        if (renderizadorResultados == null || !renderizadorResultados.getColumnas().equals(columnas)) {
+            renderizadorResultados = new RenderizadorResultados(columnas);
+        }
+        return renderizadorResultados;
+    }
+
     /**
-     * Crea los headers del listbox dinámicamente después de ejecutar la query.
-     * Usa un timer para asegurar que el componente está disponible.
+     * Establece las columnas de los resultados.
      */
-    private void crearHeadersListbox() {
-        if (columnasResultado == null || columnasResultado.isEmpty()) {
-            log.warn("⚠️ No hay columnas para crear headers");
-            return;
-        }
+    public void setColumnasResultado(List<String> columnasResultado) {
+        this.columnasResultado = columnasResultado;
+        log.debug("🔍 Columnas establecidas: {}", columnasResultado);
+    }
+
+    // ===== ORDEN Y FILTROS DEL RESULTADO =====
 
-        // ⭐ Crear un timer para ejecutar después del renderizado
-        org.zkoss.zk.ui.util.Clients.evalJavaScript(
-                "setTimeout(function() { zAu.send(new zk.Event(zk.Widget.$('#listboxResultados'), 'onCreateHeaders')); }, 100);"
-        );
+    public boolean isResultadoOrdenable() {
+        return resultados instanceof ListModelResultado;
     }
 
     /**
-     * Crea y retorna un Listhead con headers dinámicos.
-     * Este método se llama desde un getter para que ZK lo renderice automáticamente.
+     * Comparadores de los encabezados por columna. Vacío si el resultado no está en memoria:
+     * un modelo paginado no se puede ordenar sin volver al backend.
      */
-    public Listhead getListheadDinamico() {
-        if (columnasResultado == null || columnasResultado.isEmpty()) {
-            return null;
-        }
+    public Map<String, Comparator<Map<String, Object>>> getComparadoresAscendentes() {
+        return comparadores(true);
+    }
 
-        Listhead listhead = new Listhead();
-        listhead.setStyle("background: linear-gradient(to bottom, #f8f9fa 0%, #e9ecef 100%);");
+    public Map<String, Comparator<Map<String, Object>>> getComparadoresDescendentes() {
+        return comparadores(false);
+    }
 
-        for (String nombreColumna : columnasResultado) {
-            Listheader header = new Listheader();
-            header.setLabel(nombreColumna);
-            header.setHflex("1");
-            header.setAlign("left");
-            header.setStyle("font-weight: 600; padding: 12px 8px; border-right: 1px solid #dee2e6;");
-            header.setParent(listhead);
+    public List<String> getTiposFiltro() {
+        List<String> tipos = new ArrayList<>();
+        for (FiltroColumna.Tipo tipo : FiltroColumna.Tipo.values()) {
+            tipos.add(tipo.name());
         }
+        return tipos;
+    }
 
-        return listhead;
+    public Map<String, String> getEtiquetasTipoFiltro() {
+        return ETIQUETAS_TIPO_FILTRO;
     }
 
     /**
-     * Evento personalizado para crear headers después del renderizado.
+     * Filas que quedan visibles con los filtros activos.
      */
+    public int getFilasFiltradas() {
+        return resultados != null ? resultados.getSize() : 0;
+    }
+
     @Command
-    public void crearHeaders() {
+    @NotifyChange({"filtrosResultado", "filasFiltradas", "valorFiltro", "valorFiltroHasta"})
+    public void agregarFiltroResultado() {
+        if (!isResultadoOrdenable() || columnaFiltro == null) {
+            mostrarAdvertencia("Seleccione la columna a filtrar");
+            return;
+        }
         try {
-            Component listboxComp = Executions.getCurrent().getDesktop()
-                    .getFirstPage().getFellow("listboxResultados");
-
-            if (listboxComp instanceof Listbox) {
-                Listbox listbox = (Listbox) listboxComp;
+            List<FiltroColumna> nuevos = new ArrayList<>(filtrosResultado);
+            nuevos.add(new FiltroColumna(columnaFiltro, FiltroColumna.Tipo.valueOf(tipoFiltro), valorFiltro, valorFiltroHasta));
+            long inicio = System.currentTimeMillis();
+            ((ListModelResultado) resultados).filtrar(nuevos);
+            filtrosResultado = nuevos;
+            valorFiltro = null;
+            valorFiltroHasta = null;
+            log.debug("🔎 Filtro aplicado en {} ms - {} de {} filas", System.currentTimeMillis() - inicio,
+                    resultados.getSize(), totalRegistros);
+        } catch (IllegalArgumentException e) {
+            mostrarAdvertencia(e.getMessage());
+        }
+    }
 
-                // Limpiar listhead existente
-                if (listbox.getListhead() != null) {
-                    listbox.getListhead().detach();
-                }
+    @Command
+    @NotifyChange({"filtrosResultado", "filasFiltradas"})
+    public void quitarFiltroResultado(@BindingParam("filtro") FiltroColumna filtro) {
+        if (!isResultadoOrdenable()) {
+            return;
+        }
+        List<FiltroColumna> nuevos = new ArrayList<>(filtrosResultado);
+        nuevos.remove(filtro);
+        ((ListModelResultado) resultados).filtrar(nuevos);
+        filtrosResultado = nuevos;
+    }
 
-                // Crear nuevo listhead
-                Listhead listhead = new Listhead();
-                listhead.setStyle("background: linear-gradient(to bottom, #f8f9fa 0%, #e9ecef 100%);");
-                listhead.setParent(listbox);
-
-                // Crear listheader para cada columna
-                for (String nombreColumna : columnasResultado) {
-                    Listheader header = new Listheader();
-                    header.setLabel(nombreColumna);
-                    header.setHflex("1");
-                    header.setAlign("left");
-                    header.setStyle("font-weight: 600; padding: 12px 8px; border-right: 1px solid #dee2e6;");
-                    header.setParent(listhead);
-                }
+    @Command
+    @NotifyChange({"filtrosResultado", "filasFiltradas"})
+    public void limpiarFiltrosResultado() {
+        if (isResultadoOrdenable()) {
+            ((ListModelResultado) resultados).filtrar(null);
+        }
+        filtrosResultado = new ArrayList<>();
+    }
 
-                log.info("✅ {} headers creados", columnasResultado.size());
+    private Map<String, Comparator<Map<String, Object>>> comparadores(boolean ascendente) {
+        Map<String, Comparator<Map<String, Object>>> comparadores = new HashMap<>();
+        if (isResultadoOrdenable()) {
+            for (String columna : getColumnasResultado()) {
+                comparadores.put(columna, new ComparadorColumna(columna, ascendente));
             }
-        } catch (Exception e) {
-            log.error("❌ Error: {}", e.getMessage());
         }
+        return comparadores;
+    }
+
+    public List<String> getFormatosExportar() {
+        return new ArrayList<>(ETIQUETAS_FORMATO.keySet());
+    }
+
+    public Map<String, String> getEtiquetasFormato() {
+        return ETIQUETAS_FORMATO;
     }
 
     /**
-     * Obtiene las columnas de los resultados.
-     * Este método DEBE ser público para que ZK pueda accederlo.
+     * Exporta los resultados actuales en el formato elegido (Excel o CSV comprimido).
+     * Genera un archivo con formato y nombre descriptivo.
+     *
+     * Con el resultado completo en memoria se exportan las filas que muestra el listbox, con los
+     * filtros rápidos y el orden aplicados; si no, la consulta se recorre en el backend.
+     *
+     * Los CSV siempre se generan como trabajo de exportación, comprimidos en paralelo.
+     *
+     * Con el resultado en memoria el Excel se arma en el pool de trabajos de exportación y, por
+     * server push, se descarga desde DescargaController; el archivo se borra con el desktop.
+     *
+     * Si no, se encola un trabajo de exportación (TrabajoExportacionService): el archivo se
+     * genera en segundo plano con concurrencia acotada y, al terminar, se descarga desde el
+     * panel de exportaciones. Los archivos generados se reutilizan entre exportaciones idénticas.
      */
-    public List<String> getColumnasResultado() {
-        return columnasResultado != null ? columnasResultado : new ArrayList<>();
+    @Command
+    @NotifyChange({"trabajosExportacion", "hayExportacionesPendientes", "ejecutando", "mensajeProgreso"})
+    public void exportarExcel() {
+        if (!hayResultados) {
+            mostrarAdvertencia("No hay resultados para exportar");
+            return;
+        }
+
+        log.info("📊 Exportando resultados - Query: {}, Formato: {}", codigoQuery, formatoExportar);
+
+        boolean excel = FORMATO_EXCEL.equals(formatoExportar);
+        if (excel && !exportarPorProvincia && isResultadoEnMemoria()) {
+            if (ejecutando) {
+                mostrarAdvertencia("Espere a que termine la operación en curso");
+                return;
+            }
+            exportarDesdeMemoria();
+            return;
+        }
+
+        // El resto se encola como trabajo de exportación y se descarga desde el panel
+        boolean csv = FORMATO_CSV_ZIP.equals(formatoExportar) || FORMATO_CSV_GZIP.equals(formatoExportar);
+        encolarExportacion(formatoExportar, excel && exportarPorProvincia, csv);
     }
 
     /**
-     * Actualiza las columnas del grid de resultados dinámicamente.
-     * Se ejecuta después de obtener los datos de la query.
+     * Exporta a PDF en el pool de trabajos. Si el resultado está completo en memoria (por
+     * ejemplo, un reporte consolidado) se exportan las filas que muestra el listbox, con los
+     * filtros rápidos y el orden aplicados; si no, se recorre en el backend.
      */
-    private void actualizarColumnasGrid() {
-        if (columnasResultado == null || columnasResultado.isEmpty()) {
-            log.warn("⚠️ No hay columnas para actualizar");
+    @Command
+    @NotifyChange({"trabajosExportacion", "hayExportacionesPendientes"})
+    public void exportarPdf() {
+        if (!hayResultados) {
+            mostrarAdvertencia("No hay resultados para exportar");
             return;
         }
 
+        log.info("📄 Exportando resultados a PDF - Query: {}", codigoQuery);
+        encolarExportacion(FORMATO_PDF, false, true);
+    }
+
+    /**
+     * @param desdeMemoria Si el resultado está completo en memoria, exportar lo que muestra el listbox
+     */
+    private void encolarExportacion(String formato, boolean porProvincia, boolean desdeMemoria) {
         try {
-            // Buscar el grid en la página
-            Component comp = Executions.getCurrent().getDesktop().getFirstPage()
-                    .getFellow("gridResultados");
+            prepararFiltros();
+            ResultadoColumnar datos = null;
+            String vista = null;
+            if (desdeMemoria && isResultadoEnMemoria() && resultadoQuery != null) {
+                datos = datosVisibles().get();
+                vista = descripcionVista();
+            }
+            SolicitudExportacion solicitud = SolicitudExportacion.builder()
+                    .tipoConsulta(codigoQuery)
+                    .consulta(ConsultaQuery.builder()
+                            .parametrosFiltros(filtros.toBuilder().build())
+                            .formato(formato)
+                            .build())
+                    .nombre(queryNombre)
+                    .porProvincia(porProvincia)
+                    .vista(vista)
+                    .build();
+            EstadoExportacion trabajo = trabajoExportacionService.enviar(solicitud, datos, sesionActual());
+            trabajosExportacion = trabajoExportacionService.listar(sesionActual());
 
-            if (comp instanceof Grid) {
-                Grid grid = (Grid) comp;
+            mostrarInformacion(trabajo.isTerminado()
+                    ? "El archivo está listo en el panel de exportaciones"
+                    : "Exportación en cola: el archivo estará disponible en el panel de exportaciones");
 
-                // Limpiar columnas existentes
-                if (grid.getColumns() != null) {
-                    grid.getColumns().detach();
-                }
+        } catch (Exception e) {
+            log.error("❌ Error encolando exportación: {}", e.getMessage(), e);
+            mostrarError("Error al exportar: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Refresca el panel de exportaciones mientras haya trabajos pendientes.
+     */
+    @Command
+    @NotifyChange({"trabajosExportacion", "hayExportacionesPendientes"})
+    public void actualizarExportaciones() {
+        trabajosExportacion = trabajoExportacionService.listar(sesionActual());
+    }
 
-                // Crear nuevas columnas
-                Columns columns = new Columns();
-                columns.setParent(grid);
+    @Command
+    public void descargarExportacion(@BindingParam("id") String id) {
+        Executions.getCurrent().sendRedirect("/api/exportaciones/" + id + "/archivo");
+    }
 
-                for (String nombreColumna : columnasResultado) {
-                    Column col = new Column();
-                    col.setLabel(nombreColumna);
-                    col.setHflex("1");
-                    col.setAlign("left");
-                    col.setParent(columns);
-                }
+    /**
+     * Quita el trabajo del panel. Si está en curso y nadie más lo espera, se cancela.
+     */
+    @Command
+    @NotifyChange({"trabajosExportacion", "hayExportacionesPendientes"})
+    public void quitarExportacion(@BindingParam("id") String id) {
+        trabajoExportacionService.cancelar(id, sesionActual());
+        trabajosExportacion = trabajoExportacionService.listar(sesionActual());
+    }
 
-                log.info("✅ {} columnas creadas en el grid", columnasResultado.size());
+    public boolean isHayExportacionesPendientes() {
+        for (EstadoExportacion trabajo : trabajosExportacion) {
+            if (!trabajo.isTerminado()) {
+                return true;
             }
-        } catch (Exception e) {
-            log.error("❌ Error actualizando columnas del grid: {}", e.getMessage(), e);
         }
+        return false;
     }
 
     /**
-     * Establece las columnas de los resultados.
+     * Tamaño legible de un archivo del panel de exportaciones.
      */
-    public void setColumnasResultado(List<String> columnasResultado) {
-        this.columnasResultado = columnasResultado;
-        log.debug("🔍 Columnas establecidas: {}", columnasResultado);
+    public String formatearBytes(Long bytes) {
+        if (bytes == null) {
+            return "";
+        }
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String[] unidades = {"KB", "MB", "GB", "TB"};
+        double valor = bytes;
+        int unidad = -1;
+        while (valor >= 1024 && unidad < unidades.length - 1) {
+            valor /= 1024;
+            unidad++;
+        }
+        return String.format("%.1f %s", valor, unidades[unidad]);
     }
 
     /**
-     * Exporta los resultados actuales a un archivo Excel.
-     * Genera un archivo con formato y nombre descriptivo.
+     * Ritmo y duración de la generación, por ejemplo "85.3 MB/s en 12 s".
      */
-    @Command
-    public void exportarExcel() {
-        if (!hayResultados) {
-            mostrarAdvertencia("No hay resultados para exportar");
-            return;
+    public String formatearRitmo(EstadoExportacion trabajo) {
+        if (trabajo == null || trabajo.getBytesPorSegundo() == null) {
+            return "";
         }
+        long segundos = trabajo.getDuracionMs() != null ? trabajo.getDuracionMs() / 1000 : 0;
+        return formatearBytes(trabajo.getBytesPorSegundo()) + "/s en " + segundos + " s";
+    }
 
-        try {
-            log.info("📊 Exportando resultados a Excel - Query: {}", codigoQuery);
+    private String sesionActual() {
+        return ((HttpSession) Executions.getCurrent().getDesktop().getSession().getNativeSession()).getId();
+    }
 
-            // Preparar filtros para la descarga
-            prepararFiltros();
+    /**
+     * Indica si el resultado que se está mostrando está completo en memoria: consolidado
+     * localmente o devuelto entero en la primera respuesta.
+     */
+    private boolean isResultadoEnMemoria() {
+        return !(resultados instanceof ListModelPaginado) || ((ListModelPaginado) resultados).isCompleto();
+    }
 
-            // Construir consulta con formato Excel
-            ConsultaQuery consulta = ConsultaQuery.builder()
-                    .parametrosFiltros(filtros)
-                    .formato("excel")
-                    .build();
+    /**
+     * Genera el Excel en el pool de trabajos de exportación con las filas que muestra el
+     * listbox en este momento, y al terminar redirige el navegador a la descarga.
+     */
+    private void exportarDesdeMemoria() {
+        Desktop desktop = Executions.getCurrent().getDesktop();
+        HttpSession sesion = (HttpSession) desktop.getSession().getNativeSession();
+        asegurarLimpiezaDescargas(desktop);
+
+        // El trabajo recibe copias del estado de la pantalla; del ViewModel solo usa los servicios
+        Supplier<ResultadoColumnar> datos = datosVisibles();
+        String nombre = queryNombre;
+        List<String> columnas = new ArrayList<>(columnasResultado);
+        String nombreArchivo = generarNombreArchivo("xlsx");
+        String sesionId = sesion.getId();
+        String desktopId = desktop.getId();
+
+        ejecutarEnSegundoPlano("Generando Excel", trabajosExportacionExecutor,
+                () -> generarExcel(datos.get(), nombre, columnas, nombreArchivo, sesionId, desktopId),
+                (token, error) -> ofrecerDescarga(token, error, nombreArchivo));
+    }
 
-            // Generar archivo Excel a través del servicio
-            byte[] archivo = infraccionesService != null
-                    ? infraccionesService.descargarConsulta(codigoQuery, consulta)
-                    : null;
+    /**
+     * Trabajo en segundo plano: escribe el Excel y lo registra para la descarga. El archivo
+     * queda a nombre del desktop, así se borra con él aunque el trabajo se cancele.
+     *
+     * @return token de descarga
+     */
+    private String generarExcel(ResultadoColumnar datos, String nombre, List<String> columnas,
+                                String nombreArchivo, String sesionId, String desktopId) {
+        Path archivo = null;
+        try {
+            archivo = registroDescargas.crearArchivo(".xlsx");
+            try (Generator generador = new Generator(
+                    exportacionProperties.getVentanaFilas(),
+                    exportacionProperties.getFilasMuestraAncho(),
+                    exportacionProperties.getMaxFilasPorHoja());
+                 OutputStream salida = Files.newOutputStream(archivo)) {
+                generador.iniciarHoja(nombre, columnas);
+                generador.agregar(datos);
+                generador.escribir(salida);
+                log.debug("📊 Excel generado con {} filas", generador.getFilasEscritas());
+            }
+            String token = registroDescargas.registrar(archivo, nombreArchivo, CONTENT_TYPE_XLSX, sesionId, desktopId);
+            archivo = null;
+            return token;
+        } catch (IOException e) {
+            throw new RuntimeException("Error al generar el archivo: " + e.getMessage(), e);
+        } finally {
+            if (archivo != null) {
+                RegistroDescargas.borrar(archivo);
+            }
+        }
+    }
+
+    /**
+     * Filas del resultado en memoria tal como las muestra el listbox: con los filtros rápidos y
+     * el orden aplicados. La vista se toma al llamar; la copia de las filas se arma en get(),
+     * que puede correr fuera del hilo de eventos.
+     */
+    private Supplier<ResultadoColumnar> datosVisibles() {
+        ResultadoColumnar datos = resultadoQuery.getResultado();
+        int[] vista = resultados instanceof ListModelResultado ? ((ListModelResultado) resultados).getVista() : null;
+        return () -> vista != null ? datos.seleccion(vista) : datos;
+    }
 
-            if (archivo != null && archivo.length > 0) {
-                // Generar nombre descriptivo para el archivo
-                String nombreArchivo = generarNombreArchivo();
+    private String descripcionVista() {
+        return resultados instanceof ListModelResultado ? ((ListModelResultado) resultados).getDescripcionVista() : "";
+    }
 
-                // Iniciar descarga en el navegador
-                org.zkoss.zul.Filedownload.save(
-                        new ByteArrayInputStream(archivo),
-                        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
-                        nombreArchivo
-                );
+    /**
+     * Se ejecuta en el hilo de eventos: redirige el navegador a la URL de descarga.
+     */
+    private void ofrecerDescarga(String token, Throwable error, String nombreArchivo) {
+        if (error != null) {
+            Throwable causa = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            log.error("❌ Error exportando a Excel: {}", causa.getMessage(), causa);
+            mostrarError("Error al exportar: " + causa.getMessage());
+            return;
+        }
+        Executions.getCurrent().sendRedirect("/api/descargas/" + token);
+        log.info("✅ Archivo generado: {}", nombreArchivo);
+        mostrarInformacion("Archivo generado, la descarga comenzará en unos segundos");
+    }
 
-                log.info("✅ Archivo exportado exitosamente: {}", nombreArchivo);
-                mostrarInformacion("Archivo descargado exitosamente");
-            } else {
-                log.warn("⚠️ No se pudo generar el archivo de exportación");
-                mostrarAdvertencia("No se pudo generar el archivo de exportación");
-            }
+    /**
+     * La primera vez se agrega al desktop la limpieza de sus archivos de descarga.
+     */
+    private void asegurarLimpiezaDescargas(Desktop desktop) {
+        if (desktop.getAttribute(ATRIBUTO_LIMPIEZA_DESCARGAS) == null) {
+            RegistroDescargas registro = registroDescargas;
+            desktop.addListener((DesktopCleanup) d -> registro.liberar(d.getId()));
+            desktop.setAttribute(ATRIBUTO_LIMPIEZA_DESCARGAS, Boolean.TRUE);
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Error exportando a Excel: {}", e.getMessage(), e);
-            mostrarError("Error al exportar: " + e.getMessage());
+    /**
+     * Suelta los datos sin consolidar, el cubo y el resultado mostrado, y cancela el trabajo
+     * en curso. Se invoca cuando se destruye el desktop, aunque la sesión siga viva.
+     */
+    private void liberarResultados() {
+        if (cancelacion != null) {
+            cancelacion.cancelar();
+            cancelacion = null;
         }
+        respuestaBase = null;
+        firmaRespuestaBase = null;
+        cubo = null;
+        resultadoQuery = null;
+        resultados = null;
+    }
+
+    /**
+     * La exportación por provincia solo se ofrece con la consulta distribuida configurada.
+     */
+    public boolean isExportacionPorProvinciaDisponible() {
+        return consultaDistribuidaService != null && consultaDistribuidaService.isDisponible();
     }
 
     /**
@@ -524,12 +1268,17 @@ public class ejecutar_query {
      */
     @Command
     @NotifyChange({"filtros", "fechaDesde", "fechaHasta", "resultados",
-            "hayResultados", "totalRegistros", "tiempoEjecucion",
-            "consolidacion", "consolidado", "camposAgrupacionSeleccionados",
+            "hayResultados", "totalRegistros", "tiempoEjecucion", "ejecutando", "mensajeProgreso",
+            "columnasResultado", "renderizadorResultados", "filtrosResultado", "consolidacion", "consolidado", "camposAgrupacionSeleccionados",
             "camposNumericosSeleccionados"})
     public void limpiar() {
         log.info("🧹 Limpiando filtros y resultados");
 
+        // Una consulta en curso escribiría sus resultados después de limpiar
+        if (ejecutando) {
+            cancelarEjecucion();
+        }
+
         // Resetear filtros
         filtros = new ParametrosFiltros();
         fechaDesde = null;
@@ -542,11 +1291,15 @@ public class ejecutar_query {
         camposNumericosSeleccionados = new ArrayList<>();
 
         // Limpiar resultados
+        respuestaBase = null;
+        firmaRespuestaBase = null;
+        cubo = null;
         resultados = new ListModelList<>();
         hayResultados = false;
         totalRegistros = 0;
         tiempoEjecucion = "0 ms";
         columnasResultado = new ArrayList<>();
+        filtrosResultado = new ArrayList<>();
 
         mostrarInformacion("Filtros y resultados limpiados");
     }
@@ -563,38 +1316,6 @@ public class ejecutar_query {
         mostrarInformacion("Query recargada");
     }
 
-    /**
-     * Crea las columnas dinámicamente después de obtener los resultados.
-     * Este método se llama desde el ZUL mediante el atributo afterCompose.
-     */
-    @Command
-    @NotifyChange("*")
-    public void crearColumnasGrid(@BindingParam("grid") Component grid) {
-        if (!(grid instanceof Grid) || columnasResultado == null || columnasResultado.isEmpty()) {
-            return;
-        }
-
-        Grid gridComponent = (Grid) grid;
-
-        // Limpiar columnas existentes
-        if (gridComponent.getColumns() != null) {
-            gridComponent.getColumns().getChildren().clear();
-        }
-
-        // Crear columnas dinámicamente
-        Columns columns = new Columns();
-        columns.setParent(gridComponent);
-
-        for (String nombreColumna : columnasResultado) {
-            Column col = new Column();
-            col.setLabel(nombreColumna);
-            col.setHflex("1");
-            col.setParent(columns);
-        }
-
-        log.info("✅ Columnas creadas dinámicamente: {}", columnasResultado.size());
-    }
-
     /**
      * Comando ejecutado cuando cambia el estado del checkbox de consolidado.
      * Limpia las selecciones de consolidación si se desmarca.
@@ -691,15 +1412,28 @@ public class ejecutar_query {
                 filtros.setConsolidacion(new ArrayList<>());
             }
 
+            // Funciones y opciones de consolidación
+            List<String> funciones = new ArrayList<>();
+            for (FuncionAgregacion funcion : funcionesSeleccionadas()) {
+                funciones.add(funcion.name());
+            }
+            filtros.setFunciones(funciones);
+            filtros.setNivelConsolidacion(nivelConsolidacion);
+            filtros.setIncluirSubtotales(incluirSubtotales);
+
             // Log detallado de lo que se enviará
             log.info("✅ Parámetros de consolidación:");
             log.info("   - consolidado: true");
             log.info("   - consolidacion: {}", camposCombinados);
+            log.info("   - funciones: {}", funciones);
 
         } else {
             // Si no está consolidado, limpiar parámetros de consolidación
             filtros.setConsolidado(false);
             filtros.setConsolidacion(null);
+            filtros.setFunciones(null);
+            filtros.setNivelConsolidacion(null);
+            filtros.setIncluirSubtotales(null);
             log.info("ℹ️ Modo consolidación: DESACTIVADO");
         }
     }
@@ -708,7 +1442,7 @@ public class ejecutar_query {
      * Genera un nombre de archivo descriptivo con timestamp.
      * Formato: nombreQuery_YYYYMMDD_HHMMSS.xlsx
      */
-    private String generarNombreArchivo() {
+    private String generarNombreArchivo(String extension) {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMdd_HHmmss");
         String timestamp = sdf.format(new Date());
 
@@ -717,7 +1451,7 @@ public class ejecutar_query {
                 ? queryNombre.replaceAll("[^a-zA-Z0-9]", "_")
                 : "reporte";
 
-        return nombreBase + "_" + timestamp + ".xlsx";
+        return nombreBase + "_" + timestamp + "." + extension;
     }
 
     // ===== GETTERS Y SETTERS PERSONALIZADOS =====
@@ -792,11 +1526,27 @@ public class ejecutar_query {
         return queryMetadata != null ? queryMetadata.getCategoria() : null;
     }
 
+    /**
+     * Lista las provincias que no aportaron datos a una consulta distribuida.
+     */
+    private String describirProvinciasFallidas() {
+        StringBuilder detalle = new StringBuilder();
+        for (MetadataProvincia provincia : resultadoQuery.getProvincias()) {
+            if (!MetadataProvincia.ESTADO_OK.equals(provincia.getEstado())) {
+                if (detalle.length() > 0) {
+                    detalle.append(", ");
+                }
+                detalle.append(provincia.getProvincia()).append(" (").append(provincia.getEstado()).append(")");
+            }
+        }
+        return detalle.toString();
+    }
+
     /**
      * Verifica si existen datos en los resultados.
      */
     public boolean hayDatos() {
-        return resultados != null && !resultados.isEmpty();
+        return resultados != null && resultados.getSize() > 0;
     }
 
     // ===== MENSAJES AL USUARIO =====
@@ -824,4 +1574,51 @@ public class ejecutar_query {
         Messagebox.show(mensaje, "Error",
                 Messagebox.OK, Messagebox.ERROR);
     }
+
+    /**
+     * Lo que produce una ejecución en segundo plano. Cada ejecución tiene el suyo y solo
+     * mostrarResultados, en el hilo de eventos, lo pasa al ViewModel: un trabajo cancelado
+     * o reemplazado no toca el estado que leen la vista y las exportaciones.
+     */
+    /**
+     * Consolidación pedida, tomada en el hilo de eventos para el trabajo en segundo plano.
+     */
+    private static final class PedidoConsolidacion {
+        private final List<String> agrupacion;
+        private final List<String> medidas;
+        private final List<FuncionAgregacion> funciones;
+        private final boolean subtotales;
+
+        // Firma de los filtros base (incluye el código de la query) y metadata al ejecutar
+        private final String firma;
+        private final MetadataQuery metadata;
+
+        private PedidoConsolidacion(List<String> agrupacion, List<String> medidas,
+                                    List<FuncionAgregacion> funciones, boolean subtotales,
+                                    String firma, MetadataQuery metadata) {
+            this.agrupacion = agrupacion;
+            this.medidas = medidas;
+            this.funciones = funciones;
+            this.subtotales = subtotales;
+            this.firma = firma;
+            this.metadata = metadata;
+        }
+    }
+
+    private static final class ResultadoEjecucion {
+        private ListModel<Map<String, Object>> modelo;
+        private QueryResponse resultadoQuery;
+
+        // Datos sin consolidar: llegan los de la ejecución anterior y se reemplazan si cambió la firma
+        private QueryResponse respuestaBase;
+        private String firmaRespuestaBase;
+        private CompletableFuture<CuboConsolidacion> cubo;
+
+        private ResultadoEjecucion(QueryResponse respuestaBase, String firmaRespuestaBase,
+                                   CompletableFuture<CuboConsolidacion> cubo) {
+            this.respuestaBase = respuestaBase;
+            this.firmaRespuestaBase = firmaRespuestaBase;
+            this.cubo = cubo;
+        }
+    }
 }
\ No newline at end of file
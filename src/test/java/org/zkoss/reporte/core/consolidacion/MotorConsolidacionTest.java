@@ -0,0 +1,70 @@
+package org.zkoss.reporte.core.consolidacion;
+
+import org.junit.jupiter.api.Test;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnarBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Medidas por defecto y equivalencia entre el cubo y la consolidación directa.
+ */
+class MotorConsolidacionTest {
+
+    private final MotorConsolidacion motor = new MotorConsolidacion(ForkJoinPool.commonPool());
+
+    private final ResultadoColumnar datos = datos();
+
+    @Test
+    void sinMedidasSeUsanLasNumericasQueNoSonDeAgrupacion() {
+        assertThat(MotorConsolidacion.resolverMedidas(datos, Collections.singletonList("region"), null))
+                .containsExactly("municipio", "monto", "cantidad");
+        assertThat(MotorConsolidacion.resolverMedidas(datos, Arrays.asList("region", "municipio"),
+                Collections.emptyList()))
+                .containsExactly("monto", "cantidad");
+    }
+
+    @Test
+    void medidasPedidasSinDuplicadosNiCamposDeAgrupacion() {
+        assertThat(MotorConsolidacion.resolverMedidas(datos, Collections.singletonList("region"),
+                Arrays.asList("cantidad", "region", "inexistente", "cantidad", "monto")))
+                .containsExactly("cantidad", "monto");
+    }
+
+    @Test
+    void cuboYConsolidacionDirectaDevuelvenLoMismo() {
+        CuboConsolidacion cubo = motor.construirCubo(datos, Arrays.asList("region", "municipio"),
+                Arrays.asList("monto", "cantidad"), 5);
+        List<FuncionAgregacion> funciones = Arrays.asList(FuncionAgregacion.SUM, FuncionAgregacion.MAX);
+
+        List<String> agrupacion = Collections.singletonList("region");
+        List<String> medidas = MotorConsolidacion.resolverMedidas(datos, agrupacion, null);
+        // El municipio es numérico y no es medida del cubo: se consolida directamente
+        assertThat(cubo.contiene(agrupacion, medidas)).isFalse();
+
+        agrupacion = Arrays.asList("municipio", "region");
+        medidas = MotorConsolidacion.resolverMedidas(datos, agrupacion, null);
+        assertThat(cubo.contiene(agrupacion, medidas)).isTrue();
+
+        ResultadoColumnar desdeCubo = cubo.consultar(agrupacion, medidas, funciones, false);
+        ResultadoColumnar directo = motor.consolidar(datos, agrupacion, medidas, funciones);
+        assertThat(desdeCubo.getColumnas()).isEqualTo(directo.getColumnas());
+        assertThat(desdeCubo.filas()).isEqualTo(directo.filas());
+    }
+
+    private static ResultadoColumnar datos() {
+        ResultadoColumnarBuilder builder = new ResultadoColumnarBuilder(
+                Arrays.asList("region", "municipio", "descripcion", "monto", "cantidad"));
+        builder.agregarFila("NORTE", 10L, "a", 100.5, 1L);
+        builder.agregarFila("SUR", 20L, "b", 50.0, 2L);
+        builder.agregarFila("NORTE", 10L, "c", 25.25, 3L);
+        builder.agregarFila("NORTE", 11L, "d", 10.0, 4L);
+        builder.agregarFila("SUR", 20L, "e", 5.0, 5L);
+        return builder.construir();
+    }
+}
@@ -0,0 +1,76 @@
+package org.zkoss.reporte.core.indices;
+
+import org.junit.jupiter.api.Test;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnar;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnarBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Orden de columnas numéricas con valores negativos, cero y positivos en ambos sentidos.
+ */
+class IndicesResultadoTest {
+
+    private final IndicesResultado indices = new IndicesResultado(ForkJoinPool.commonPool());
+
+    @Test
+    void ordenaDecimalesConSigno() {
+        ResultadoColumnar resultado = resultado(3.5, -2.25, 0.0, null, -1000.0, 0.125, -0.5, 42.0);
+
+        assertThat(valores(resultado, true))
+                .containsExactly(-1000.0, -2.25, -0.5, 0.0, 0.125, 3.5, 42.0, null);
+        assertThat(valores(resultado, false))
+                .containsExactly(42.0, 3.5, 0.125, 0.0, -0.5, -2.25, -1000.0, null);
+    }
+
+    @Test
+    void ordenaEnterosConSigno() {
+        ResultadoColumnar resultado = resultado(7L, -3L, 0L, Long.MIN_VALUE, Long.MAX_VALUE, -1L);
+
+        assertThat(valores(resultado, true))
+                .containsExactly(Long.MIN_VALUE, -3L, -1L, 0L, 7L, Long.MAX_VALUE);
+        assertThat(valores(resultado, false))
+                .containsExactly(Long.MAX_VALUE, 7L, 0L, -1L, -3L, Long.MIN_VALUE);
+    }
+
+    @Test
+    void ordenaDecimalesEnParalelo() {
+        // Más filas que un bloque para pasar por el merge sort con fork/join
+        Random random = new Random(17);
+        Double[] valores = new Double[IndicesResultado.UMBRAL_BLOQUE * 4 + 3];
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = (random.nextDouble() - 0.5) * 1_000_000;
+        }
+        ResultadoColumnar resultado = resultado((Object[]) valores);
+
+        Double[] ascendente = valores.clone();
+        Arrays.sort(ascendente);
+        Double[] descendente = ascendente.clone();
+        Collections.reverse(Arrays.asList(descendente));
+
+        assertThat(valores(resultado, true)).containsExactly((Object[]) ascendente);
+        assertThat(valores(resultado, false)).containsExactly((Object[]) descendente);
+    }
+
+    private static ResultadoColumnar resultado(Object... valores) {
+        ResultadoColumnarBuilder builder = new ResultadoColumnarBuilder(Collections.singletonList("valor"));
+        for (Object valor : valores) {
+            builder.agregarFila(valor);
+        }
+        return builder.construir();
+    }
+
+    private Object[] valores(ResultadoColumnar resultado, boolean ascendente) {
+        int[] vista = indices.vista(resultado, "valor", ascendente, null);
+        Object[] valores = new Object[vista.length];
+        for (int i = 0; i < vista.length; i++) {
+            valores[i] = resultado.getValor(vista[i], 0);
+        }
+        return valores;
+    }
+}
@@ -0,0 +1,170 @@
+package org.zkoss.reporte.core.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.zkoss.reporte.core.dto.request.ConsultaQuery;
+import org.zkoss.reporte.core.dto.request.ParametrosFiltros;
+import org.zkoss.reporte.core.dto.response.MetadataPaginacion;
+import org.zkoss.reporte.core.dto.response.MetadataProvincia;
+import org.zkoss.reporte.core.dto.response.QueryResponse;
+import org.zkoss.reporte.core.model.columnar.ResultadoColumnarBuilder;
+import org.zkoss.reporte.core.service.interfaces.ReporteService;
+import org.zkoss.reporte.spring_zk_config.DistribucionProperties;
+import org.zkoss.reporte.utils.http.CancelacionHttp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Paginación por provincia y corte de las provincias que vencen el tiempo límite.
+ */
+class ConsultaDistribuidaServiceImplTest {
+
+    private final ReporteService reporteService = mock(ReporteService.class);
+    private final DistribucionProperties properties = new DistribucionProperties();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ConsultaDistribuidaServiceImpl service = new ConsultaDistribuidaServiceImpl();
+
+    // Filas de cada provincia y páginas pedidas al backend (provincia, página, lastKey)
+    private final Map<String, Integer> filasPorProvincia = new HashMap<>();
+    private final List<String> pedidas = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void preparar() {
+        ReflectionTestUtils.setField(service, "reporteService", reporteService);
+        ReflectionTestUtils.setField(service, "properties", properties);
+        ReflectionTestUtils.setField(service, "executor", executor);
+    }
+
+    @AfterEach
+    void cerrar() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void cadaProvinciaPaginaPorSuCuenta() {
+        filasPorProvincia.put("A", 5);
+        filasPorProvincia.put("B", 0);
+        filasPorProvincia.put("C", 7);
+        properties.setProvincias(Arrays.asList("A", "B", "C"));
+        when(reporteService.ejecutarConsulta(anyString(), any())).thenAnswer(invocacion ->
+                pagina(invocacion.getArgument(1)));
+
+        QueryResponse primera = ejecutar(1, null);
+        assertThat(filas(primera)).containsExactly("A0", "A1", "A2", "A3");
+        assertThat(primera.getPaginacion().getTotalRegistros()).isEqualTo(12L);
+        assertThat(primera.getPaginacion().getTieneSiguiente()).isTrue();
+        assertThat(pedidas).containsExactlyInAnyOrder("A1-", "B1-", "C1-");
+
+        pedidas.clear();
+        QueryResponse segunda = ejecutar(2, primera.getPaginacion().getLastKey());
+        assertThat(filas(segunda)).containsExactly("A4", "C0", "C1", "C2");
+        // A sigue con el lastKey de su primera página; B no tiene filas en esta página
+        assertThat(pedidas).containsExactlyInAnyOrder("A2-A3", "C1-");
+
+        pedidas.clear();
+        QueryResponse tercera = ejecutar(3, segunda.getPaginacion().getLastKey());
+        assertThat(filas(tercera)).containsExactly("C3", "C4", "C5", "C6");
+        assertThat(tercera.getPaginacion().getTieneSiguiente()).isFalse();
+        assertThat(pedidas).containsExactlyInAnyOrder("C1-", "C2-C3");
+        assertThat(tercera.getParcial()).isFalse();
+    }
+
+    @Test
+    void laProvinciaQueVenceElTiempoSeAborta() throws InterruptedException {
+        filasPorProvincia.put("A", 3);
+        properties.setProvincias(Arrays.asList("A", "LENTA"));
+        properties.setTimeoutMs(300);
+        CountDownLatch abortada = new CountDownLatch(1);
+        AtomicBoolean cancelada = new AtomicBoolean();
+        when(reporteService.ejecutarConsulta(anyString(), any())).thenAnswer(invocacion -> {
+            ConsultaQuery consulta = invocacion.getArgument(1);
+            if ("LENTA".equals(consulta.getParametrosFiltros().getProvincia())) {
+                try {
+                    Thread.sleep(30_000);
+                } catch (InterruptedException e) {
+                    // Cancelada su operación, sus peticiones HTTP quedan abortadas
+                    cancelada.set(CancelacionHttp.canceladaActual());
+                    abortada.countDown();
+                    throw new IllegalStateException("abortada");
+                }
+            }
+            return pagina(consulta);
+        });
+
+        long inicio = System.currentTimeMillis();
+        QueryResponse respuesta = service.ejecutarConsulta("infracciones", ConsultaQuery.builder()
+                .parametrosFiltros(new ParametrosFiltros())
+                .build());
+
+        assertThat(System.currentTimeMillis() - inicio).isLessThan(5_000);
+        assertThat(filas(respuesta)).containsExactly("A0", "A1", "A2");
+        assertThat(respuesta.getParcial()).isTrue();
+        assertThat(respuesta.getProvincias()).extracting(MetadataProvincia::getEstado)
+                .containsExactly(MetadataProvincia.ESTADO_OK, MetadataProvincia.ESTADO_TIMEOUT);
+        assertThat(abortada.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancelada).isTrue();
+    }
+
+    private QueryResponse ejecutar(int pagina, Map<String, Object> lastKey) {
+        ParametrosFiltros filtros = new ParametrosFiltros();
+        filtros.setPagina(pagina);
+        filtros.setTamanoPagina(4);
+        filtros.setLastKey(lastKey);
+        return service.ejecutarConsulta("infracciones", ConsultaQuery.builder().parametrosFiltros(filtros).build());
+    }
+
+    /**
+     * Backend de prueba: la página pedida de la provincia, o todas sus filas sin paginación.
+     */
+    private QueryResponse pagina(ConsultaQuery consulta) {
+        ParametrosFiltros filtros = consulta.getParametrosFiltros();
+        String provincia = filtros.getProvincia();
+        int total = filasPorProvincia.getOrDefault(provincia, 0);
+        int tamano = filtros.getTamanoPagina() != null ? filtros.getTamanoPagina() : Math.max(total, 1);
+        int numero = filtros.getPagina() != null ? filtros.getPagina() : 1;
+        pedidas.add(provincia + numero + "-" + (filtros.getLastKey() != null ? filtros.getLastKey().get("id") : ""));
+
+        ResultadoColumnarBuilder builder = new ResultadoColumnarBuilder(Arrays.asList("id", "provincia"));
+        int desde = (numero - 1) * tamano;
+        int hasta = Math.min(desde + tamano, total);
+        for (int i = desde; i < hasta; i++) {
+            builder.agregarFila(provincia + i, provincia);
+        }
+
+        QueryResponse respuesta = new QueryResponse();
+        respuesta.setResultado(builder.construir());
+        MetadataPaginacion paginacion = new MetadataPaginacion();
+        paginacion.setPaginaActual(numero);
+        paginacion.setTotalRegistros((long) total);
+        paginacion.setTieneSiguiente(hasta < total);
+        paginacion.setLastKey(hasta > desde ? Collections.singletonMap("id", provincia + (hasta - 1)) : null);
+        respuesta.setPaginacion(paginacion);
+        return respuesta;
+    }
+
+    private static List<Object> filas(QueryResponse respuesta) {
+        List<Object> ids = new ArrayList<>();
+        for (int f = 0; f < respuesta.getResultado().getCantidadFilas(); f++) {
+            ids.add(respuesta.getResultado().getValor(f, 0));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,101 @@
+package org.zkoss.reporte.security.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.security.Key;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verificación del token de una petición en el {@code AuthenticationFilter}: la de antes
+ * (clave y parser armados en cada lectura, tres lecturas por petición) contra la actual
+ * (una sola lectura con el parser de {@link JwtService}).
+ * Solo mide CPU: las consultas a la base que la caché de usuarios y de tokens evita no
+ * están en estos números.
+ * <p>
+ * No corre con las pruebas. Para ejecutarlo:
+ * {@code mvn -B test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.zkoss.reporte.security.config.VerificacionTokenBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerificacionTokenBenchmark {
+
+    private JwtProperties jwtProperties;
+    private JwtService jwtService;
+    private UserDetails usuario;
+    private String token;
+
+    @Setup
+    public void preparar() {
+        jwtProperties = new JwtProperties();
+        // Sin repositorio ni TokenService: la verificación no los usa
+        jwtService = new JwtService(jwtProperties, null, null);
+        jwtService.inicializar();
+        usuario = new User("operador", "clave", Collections.emptyList());
+        token = Jwts.builder()
+                .setId("jti-benchmark")
+                .setSubject(usuario.getUsername())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + jwtProperties.getExpiration()))
+                .signWith(claveAnterior())
+                .compact();
+    }
+
+    @Benchmark
+    public boolean verificacionAnterior() {
+        // extractUsername + isTokenValid de antes: username, subject y expiración por separado
+        String username = leerAnterior(token).getSubject();
+        return username.equals(usuario.getUsername())
+                && leerAnterior(token).getSubject().equals(usuario.getUsername())
+                && !leerAnterior(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean verificacionActual() {
+        Claims claims = jwtService.extractAllClaims(token);
+        return jwtService.isTokenValid(claims, usuario);
+    }
+
+    // JwtService.extractAllClaims anterior: clave y parser nuevos en cada llamada
+    private Claims leerAnterior(String jwt) {
+        return Jwts.parserBuilder()
+                .setSigningKey(claveAnterior())
+                .build()
+                .parseClaimsJws(jwt)
+                .getBody();
+    }
+
+    private Key claveAnterior() {
+        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtProperties.getSecret()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VerificacionTokenBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,74 @@
+package org.zkoss.reporte.security.token;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.zkoss.reporte.security.config.JwtProperties;
+import org.zkoss.reporte.security.user.Usuario;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Revocación masiva de los tokens que todavía no se escribieron.
+ */
+class DiarioTokensTest {
+
+    private final TokenRepository tokenRepository = mock(TokenRepository.class);
+    private final List<Token> escritos = new ArrayList<>();
+    private DiarioTokens diario;
+
+    @BeforeEach
+    void preparar() {
+        when(tokenRepository.saveAll(any())).thenAnswer(invocacion -> {
+            Iterable<Token> lote = invocacion.getArgument(0);
+            lote.forEach(escritos::add);
+            return lote;
+        });
+        diario = new DiarioTokens(tokenRepository, new JwtProperties());
+        diario.inicializar();
+    }
+
+    @Test
+    void tokenEmitidoDuranteElUpdateSeEscribeRevocado() {
+        diario.registrar(token("a", 1L));
+
+        // El token llega después de vaciar la cola y antes de que termine el UPDATE
+        List<Token> revocados = diario.revocarPendientes(1L, () -> diario.registrar(token("b", 1L)));
+        diario.escribirPendientes();
+
+        assertThat(revocados).extracting(Token::getTokenHash).containsExactlyInAnyOrder("a", "b");
+        assertThat(escritos).extracting(Token::getTokenHash).containsExactly("a", "b");
+        assertThat(escritos).allMatch(Token::isRevocado);
+        assertThat(diario.estaPendiente("b")).isFalse();
+    }
+
+    @Test
+    void losPendientesSeRevocanAunqueFalleElUpdate() {
+        diario.registrar(token("a", 1L));
+        diario.registrar(token("otro", 2L));
+
+        assertThatThrownBy(() -> diario.revocarPendientes(1L, () -> {
+            throw new IllegalStateException("base no disponible");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(diario.estaPendiente("a")).isFalse();
+        assertThat(diario.estaPendiente("otro")).isTrue();
+    }
+
+    private static Token token(String hash, Long usuarioId) {
+        Usuario usuario = new Usuario();
+        usuario.setId(usuarioId);
+        return Token.builder()
+                .tokenHash(hash)
+                .jti(hash)
+                .tipoToken(TokenType.BEARER)
+                .usuario(usuario)
+                .build();
+    }
+}
@@ -0,0 +1,152 @@
+package org.zkoss.reporte.security.user;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.zkoss.reporte.security.authentication.AuthService;
+import org.zkoss.reporte.security.config.JwtService;
+import org.zkoss.reporte.security.refresh_token.RefreshToken;
+import org.zkoss.reporte.security.refresh_token.RefreshTokenRepository;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cantidad de consultas de la autenticación y del refresh, roles de un usuario leído sin ellos
+ * y caché de segundo nivel de Rol.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ConsultasUsuarioTest {
+
+    // Solo las entidades y repositorios de usuarios: AdminApplication escanea la aplicación entera
+    @Configuration
+    @EntityScan(basePackageClasses = {Usuario.class, RefreshToken.class})
+    @EnableJpaRepositories(basePackageClasses = {UsuarioRepository.class, RefreshTokenRepository.class})
+    static class Configuracion {
+    }
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private Statistics estadisticas;
+    private Long rolId;
+
+    @BeforeEach
+    void preparar() {
+        Rol rol = new Rol();
+        rol.setNombre("ADMIN");
+        rol.agregarPermiso(Permission.READ);
+        rol.agregarPermiso(Permission.CREATE);
+        entityManager.persist(rol);
+        rolId = rol.getId();
+
+        Usuario usuario = new Usuario();
+        usuario.setUsername("operador");
+        usuario.setPassword("clave");
+        usuario.setEmail("operador@example.com");
+        usuario.setRoles(new HashSet<>(Collections.singleton(rol)));
+        entityManager.persist(usuario);
+
+        entityManager.persist(RefreshToken.builder()
+                .token("refresh-operador")
+                .expiryDate(Instant.now().plusSeconds(3600))
+                .usuario(usuario)
+                .build());
+        entityManager.flush();
+        entityManager.clear();
+
+        estadisticas = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+    }
+
+    @Test
+    void autenticarTraeUsuarioRolesYPermisosEnUnaConsulta() {
+        Usuario usuario = usuarioRepository.findConRolesByUsername("operador").orElseThrow(AssertionError::new);
+
+        assertThat(usuario.getRoles()).singleElement()
+                .satisfies(rol -> assertThat(rol.getPermisos()).contains(Permission.READ, Permission.CREATE));
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void refreshTraeTokenUsuarioYRolesEnUnaConsulta() {
+        RefreshToken token = refreshTokenRepository.findByToken("refresh-operador").orElseThrow(AssertionError::new);
+
+        assertThat(token.getUsuario().getRoles()).singleElement()
+                .satisfies(rol -> assertThat(rol.getPermisos()).contains(Permission.READ));
+        assertThat(estadisticas.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void tokenDeUnUsuarioSinRolesCargadosLosVuelveALeer() {
+        // findByUsername no trae los roles; fuera de la sesión recorrerlos fallaría
+        Usuario usuario = usuarioRepository.findByUsername("operador").orElseThrow(AssertionError::new);
+        entityManager.detach(usuario);
+        assertThat(Hibernate.isInitialized(usuario.getRoles())).isFalse();
+
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.generateToken(any(UserDetails.class))).thenReturn("jwt");
+        AuthService authService = new AuthService(null, jwtService, null, usuarioRepository, null, null, null);
+
+        assertThat(authService.generateTokenForUser(usuario)).isEqualTo("jwt");
+
+        ArgumentCaptor<UserDetails> userDetails = ArgumentCaptor.forClass(UserDetails.class);
+        verify(jwtService).generateToken(userDetails.capture());
+        assertThat(userDetails.getValue().getAuthorities())
+                .extracting(GrantedAuthority::getAuthority)
+                .contains("ROLE_ADMIN", Permission.READ.getPermission());
+    }
+
+    @Test
+    void rolSeLeeDeLaCacheDeSegundoNivel() {
+        // Hibernate no lleva a la caché lo insertado en la transacción en curso: los datos de
+        // la prueba se confirman antes de leerlos y se borran al terminar
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+        TestTransaction.start();
+        try {
+            // La autenticación deja el rol en la caché; otra transacción lo lee de ahí sin
+            // consultar la base (una entrada READ_WRITE solo la ven las transacciones posteriores)
+            usuarioRepository.findConRolesByUsername("operador").orElseThrow(AssertionError::new);
+            TestTransaction.end();
+            TestTransaction.start();
+            estadisticas.clear();
+
+            Rol rol = entityManager.find(Rol.class, rolId);
+
+            assertThat(rol.getPermisos()).contains(Permission.READ, Permission.CREATE);
+            assertThat(estadisticas.getDomainDataRegionStatistics(Rol.class.getName()).getHitCount()).isGreaterThan(0);
+        } finally {
+            refreshTokenRepository.deleteAll();
+            usuarioRepository.deleteAll();
+            entityManager.remove(entityManager.find(Rol.class, rolId));
+            TestTransaction.flagForCommit();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.zkoss.reporte.utils.compresion;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Formato del zip en streaming: extra ZIP64 en el encabezado local y descriptor de 8 bytes.
+ */
+class ZipParaleloTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @TempDir
+    Path directorio;
+
+    @AfterEach
+    void cerrar() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void encabezadoLocalConExtraZip64YDescriptorDe8Bytes() throws IOException {
+        byte[] datos = csv(20_000);
+        Path archivo = directorio.resolve("datos.zip");
+        try (ZipParalelo zip = new ZipParalelo(Files.newOutputStream(archivo), "datos.csv", executor,
+                64 * 1024, 6, 4)) {
+            zip.write(datos, 0, datos.length);
+        }
+
+        long comprimido;
+        try (ZipFile zipFile = new ZipFile(archivo.toFile())) {
+            ZipEntry entrada = zipFile.getEntry("datos.csv");
+            assertThat(entrada.getSize()).isEqualTo(datos.length);
+            comprimido = entrada.getCompressedSize();
+            try (InputStream contenido = zipFile.getInputStream(entrada)) {
+                assertThat(leer(contenido)).isEqualTo(datos);
+            }
+        }
+
+        ByteBuffer zip = ByteBuffer.wrap(Files.readAllBytes(archivo)).order(ByteOrder.LITTLE_ENDIAN);
+        int largoNombre = zip.getShort(26);
+        assertThat(zip.getShort(28)).isEqualTo((short) 20);
+        int extra = 30 + largoNombre;
+        assertThat(zip.getShort(extra)).isEqualTo((short) 0x0001);
+        assertThat(zip.getShort(extra + 2)).isEqualTo((short) 16);
+        assertThat(zip.getLong(extra + 4)).isZero();
+        assertThat(zip.getLong(extra + 12)).isZero();
+
+        int descriptor = extra + 20 + (int) comprimido;
+        assertThat(zip.getInt(descriptor)).isEqualTo(0x08074b50);
+        assertThat(zip.getLong(descriptor + 8)).isEqualTo(comprimido);
+        assertThat(zip.getLong(descriptor + 16)).isEqualTo(datos.length);
+        assertThat(zip.getInt(descriptor + 24)).isEqualTo(0x02014b50);
+    }
+
+    private static byte[] csv(int filas) {
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < filas; i++) {
+            texto.append(i).append(";provincia ").append(i % 24).append(';').append(i * 31 % 977).append('\n');
+        }
+        return texto.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] leer(InputStream entrada) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int leidos;
+        while ((leidos = entrada.read(buffer)) > 0) {
+            salida.write(buffer, 0, leidos);
+        }
+        return salida.toByteArray();
+    }
+}